@@ -0,0 +1,77 @@
+-- =============================================================================
+-- Benchmark : lecture des réservations confirmées d'une agence pour une journée
+--
+-- Compare l'ancienne requête (toutes les réservations CONFIRMED de l'agence,
+-- filtrées ensuite en Java) à la requête par intervalle [début, fin[ utilisée
+-- par AvailabilityService, avec les index existants puis avec l'index composite
+-- idx_reservation_agency_status_start.
+--
+-- Tout est créé dans un schéma jetable "bench" : aucune table de public n'est touchée.
+-- Utilisation : psql -U postgres -d agency_db -f reservation_range_benchmark.sql
+-- =============================================================================
+
+\timing on
+
+DROP SCHEMA IF EXISTS bench CASCADE;
+CREATE SCHEMA bench;
+
+CREATE TABLE bench.reservation (
+    id bigint PRIMARY KEY,
+    agency_id bigint,
+    status character varying(255),
+    start_date_time timestamp(6) without time zone,
+    end_date_time timestamp(6) without time zone,
+    user_id bigint NOT NULL
+);
+
+-- 1 000 000 réservations réparties sur 50 agences et 2 ans, une heure ouvrée au hasard
+INSERT INTO bench.reservation (id, agency_id, status, start_date_time, end_date_time, user_id)
+SELECT g,
+       1 + (g % 50),
+       (ARRAY['PENDING', 'CONFIRMED', 'CONFIRMED', 'CANCELED', 'COMPLETED'])[1 + (g % 5)],
+       date '2024-01-01' + ((g / 50) % 730) * interval '1 day' + (8 + (g % 9)) * interval '1 hour',
+       date '2024-01-01' + ((g / 50) % 730) * interval '1 day' + (9 + (g % 9)) * interval '1 hour',
+       1 + (g % 1000)
+FROM generate_series(1, 1000000) AS g;
+
+-- Index présents dans init.sql avant l'index composite
+CREATE INDEX bench_reservation_agency ON bench.reservation USING btree (agency_id);
+CREATE INDEX bench_reservation_status_datetime ON bench.reservation USING btree (status, start_date_time);
+ANALYZE bench.reservation;
+
+-- -----------------------------------------------------------------------------
+-- 1. Ancienne requête : findByAgencyAndStatus puis filtre par date côté Java
+-- -----------------------------------------------------------------------------
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM bench.reservation
+WHERE agency_id = 7 AND status = 'CONFIRMED';
+
+-- -----------------------------------------------------------------------------
+-- 2. Requête par intervalle, sans l'index composite
+-- -----------------------------------------------------------------------------
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT start_date_time FROM bench.reservation
+WHERE agency_id = 7 AND status = 'CONFIRMED'
+  AND start_date_time >= timestamp '2025-03-10 00:00' AND start_date_time < timestamp '2025-03-11 00:00'
+ORDER BY start_date_time;
+
+-- -----------------------------------------------------------------------------
+-- 3. Requête par intervalle, avec l'index composite
+-- -----------------------------------------------------------------------------
+CREATE INDEX bench_reservation_agency_status_start ON bench.reservation USING btree (agency_id, status, start_date_time);
+ANALYZE bench.reservation;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT start_date_time FROM bench.reservation
+WHERE agency_id = 7 AND status = 'CONFIRMED'
+  AND start_date_time >= timestamp '2025-03-10 00:00' AND start_date_time < timestamp '2025-03-11 00:00'
+ORDER BY start_date_time;
+
+-- Même requête sur une semaine (enrichissement de la vue hebdomadaire)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT start_date_time FROM bench.reservation
+WHERE agency_id = 7 AND status = 'CONFIRMED'
+  AND start_date_time >= timestamp '2025-03-10 00:00' AND start_date_time < timestamp '2025-03-17 00:00'
+ORDER BY start_date_time;
+
+DROP SCHEMA bench CASCADE;
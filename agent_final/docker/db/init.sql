@@ -765,7 +765,11 @@ CREATE TABLE public.availability (
     agency_id bigint,
     date date NOT NULL,
     available_time_slots text,
-    booked_time_slots text
+    booked_time_slots text,
+    available_slots_mask bigint,
+    booked_slots_mask bigint,
+    slot_granularity integer,
+    version bigint DEFAULT 0 NOT NULL
 );
 
 
@@ -924,6 +928,7 @@ CREATE TABLE public.reservation (
     agency_id bigint,
     handled_by_agent_id bigint,
     reminder_sent boolean DEFAULT false,
+    version bigint DEFAULT 0 NOT NULL,
     CONSTRAINT reservation_status_check CHECK (((status)::text = ANY ((ARRAY['PENDING'::character varying, 'CONFIRMED'::character varying, 'CANCELED'::character varying, 'COMPLETED'::character varying])::text[])))
 );
 
@@ -940,7 +945,8 @@ CREATE TABLE public.users (
     email character varying(50),
     password character varying(100),
     role character varying(255),
-    username character varying(50)
+    username character varying(50),
+    token_valid_after timestamp(6) without time zone
 );
 
 
@@ -1283,6 +1289,105 @@ ALTER TABLE public.verification_code ALTER COLUMN id ADD GENERATED BY DEFAULT AS
 );
 
 
+--
+-- Name: email_outbox; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.email_outbox (
+    id bigint NOT NULL,
+    recipient character varying(255),
+    subject character varying(255),
+    html_body text,
+    text_body text,
+    status character varying(255),
+    attempts integer NOT NULL,
+    next_attempt_at timestamp(6) without time zone,
+    last_error text,
+    created_at timestamp(6) without time zone,
+    sent_at timestamp(6) without time zone,
+    CONSTRAINT email_outbox_status_check CHECK (((status)::text = ANY ((ARRAY['PENDING'::character varying, 'SENDING'::character varying, 'SENT'::character varying, 'DEAD'::character varying])::text[])))
+);
+
+
+ALTER TABLE public.email_outbox OWNER TO postgres;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE; Schema: public; Owner: postgres
+--
+
+ALTER TABLE public.email_outbox ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY (
+    SEQUENCE NAME public.email_outbox_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1
+);
+
+
+--
+-- Name: cluster_node; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.cluster_node (
+    node_id character varying(255) NOT NULL,
+    host character varying(255),
+    started_at timestamp(6) without time zone,
+    last_heartbeat timestamp(6) without time zone
+);
+
+
+ALTER TABLE public.cluster_node OWNER TO postgres;
+
+--
+-- Name: job_lease; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.job_lease (
+    name character varying(255) NOT NULL,
+    owner character varying(255),
+    locked_at timestamp(6) without time zone,
+    locked_until timestamp(6) without time zone,
+    last_run_at timestamp(6) without time zone,
+    last_run_by character varying(255)
+);
+
+
+ALTER TABLE public.job_lease OWNER TO postgres;
+
+
+--
+-- Name: user_presence; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.user_presence (
+    id bigint NOT NULL,
+    node_id character varying(255) NOT NULL,
+    user_id bigint NOT NULL,
+    agent_id bigint,
+    agency_id bigint,
+    display_name character varying(255),
+    sessions integer NOT NULL,
+    online_since timestamp(6) without time zone
+);
+
+
+ALTER TABLE public.user_presence OWNER TO postgres;
+
+--
+-- Name: user_presence_id_seq; Type: SEQUENCE; Schema: public; Owner: postgres
+--
+
+ALTER TABLE public.user_presence ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY (
+    SEQUENCE NAME public.user_presence_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1
+);
+
+
 --
 -- TOC entry 4902 (class 2604 OID 25115)
 -- Name: contact_message id; Type: DEFAULT; Schema: public; Owner: postgres
@@ -1992,6 +2097,14 @@ ALTER TABLE ONLY public.availability
     ADD CONSTRAINT availability_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: availability uk_availability_agency_date; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.availability
+    ADD CONSTRAINT uk_availability_agency_date UNIQUE (agency_id, date);
+
+
 --
 -- TOC entry 4953 (class 2606 OID 25079)
 -- Name: blocked_time_slots blocked_time_slots_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
@@ -2127,6 +2240,46 @@ ALTER TABLE ONLY public.verification_code
     ADD CONSTRAINT verification_code_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: email_outbox email_outbox_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.email_outbox
+    ADD CONSTRAINT email_outbox_pkey PRIMARY KEY (id);
+
+
+--
+-- Name: cluster_node cluster_node_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.cluster_node
+    ADD CONSTRAINT cluster_node_pkey PRIMARY KEY (node_id);
+
+
+--
+-- Name: job_lease job_lease_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.job_lease
+    ADD CONSTRAINT job_lease_pkey PRIMARY KEY (name);
+
+
+--
+-- Name: user_presence user_presence_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.user_presence
+    ADD CONSTRAINT user_presence_pkey PRIMARY KEY (id);
+
+
+--
+-- Name: user_presence uk_user_presence_node_user; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.user_presence
+    ADD CONSTRAINT uk_user_presence_node_user UNIQUE (node_id, user_id);
+
+
 --
 -- TOC entry 4927 (class 1259 OID 25278)
 -- Name: idx_agency_city; Type: INDEX; Schema: public; Owner: postgres
@@ -2295,6 +2448,13 @@ CREATE INDEX idx_mv_agencies_city ON public.mv_agencies_with_services USING btre
 CREATE INDEX idx_reservation_agency ON public.reservation USING btree (agency_id);
 
 
+--
+-- Name: idx_reservation_agency_status_start; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX idx_reservation_agency_status_start ON public.reservation USING btree (agency_id, status, start_date_time);
+
+
 --
 -- TOC entry 4911 (class 1259 OID 25152)
 -- Name: idx_reservation_agent; Type: INDEX; Schema: public; Owner: postgres
@@ -2343,6 +2503,34 @@ CREATE INDEX idx_reservation_status_datetime ON public.reservation USING btree (
 CREATE INDEX idx_reservation_user ON public.reservation USING btree (user_id);
 
 
+--
+-- Name: idx_email_outbox_status_next_attempt; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX idx_email_outbox_status_next_attempt ON public.email_outbox USING btree (status, next_attempt_at);
+
+
+--
+-- Name: idx_cluster_node_heartbeat; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX idx_cluster_node_heartbeat ON public.cluster_node USING btree (last_heartbeat);
+
+
+--
+-- Name: idx_user_presence_agency; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX idx_user_presence_agency ON public.user_presence USING btree (agency_id);
+
+
+--
+-- Name: uk_reservation_lock_active; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE UNIQUE INDEX uk_reservation_lock_active ON public.reservation_lock USING btree (reservation_id) WHERE active;
+
+
 --
 -- TOC entry 4974 (class 2606 OID 24601)
 -- Name: verification_code fk54hony7tk7x7gaaqp0rf16raa; Type: FK CONSTRAINT; Schema: public; Owner: postgres
@@ -0,0 +1,127 @@
+package com.project.agent.security;
+
+import java.lang.reflect.Field;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.project.agent.model.Users;
+import com.project.agent.model.Users.Role;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Débit de JwtTokenProvider.parseToken selon l'état du cache des jetons vérifiés :
+ * - coldParse : jeton jamais vu (vérification HMAC, analyse JSON puis mise en cache) ;
+ * - warmHit : jeton déjà en cache ;
+ * - cacheDisabled : même jeton, cache désactivé (vérification à chaque appel).
+ *
+ * Lancement : mvn -P benchmark test-compile exec:exec -Djmh.include=JwtTokenBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JwtTokenBenchmark {
+
+    private static final String SECRET = "746573742D6F6E6C792D64756D6D792D7365637265742D666F722D756E6974";
+
+    // Jetons distincts parcourus en boucle, plus nombreux que les entrées du cache : chaque appel est un défaut
+    private static final int COLD_TOKENS = 8192;
+    private static final int COLD_CACHE_ENTRIES = 1024;
+
+    private JwtTokenProvider coldProvider;
+    private JwtTokenProvider cachedProvider;
+    private JwtTokenProvider uncachedProvider;
+
+    private String token;
+    private String[] coldTokens;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        coldProvider = provider(true, COLD_CACHE_ENTRIES);
+        cachedProvider = provider(true, 10000);
+        uncachedProvider = provider(false, 10000);
+
+        token = cachedProvider.generateToken(user(1L));
+        coldTokens = new String[COLD_TOKENS];
+        for (int i = 0; i < COLD_TOKENS; i++) {
+            coldTokens[i] = coldProvider.generateToken(user(i + 1L));
+        }
+        if (cachedProvider.parseToken(token).isEmpty()) {
+            throw new IllegalStateException("Jeton de référence invalide");
+        }
+    }
+
+    @Benchmark
+    public Optional<Claims> coldParse(Cursor cursor) {
+        String coldToken = coldTokens[cursor.next];
+        cursor.next = (cursor.next + 1) % COLD_TOKENS;
+        return coldProvider.parseToken(coldToken);
+    }
+
+    @Benchmark
+    public Optional<Claims> warmHit() {
+        return cachedProvider.parseToken(token);
+    }
+
+    @Benchmark
+    public Optional<Claims> cacheDisabled() {
+        return uncachedProvider.parseToken(token);
+    }
+
+    private static JwtTokenProvider provider(boolean cacheEnabled, int maxEntries) throws Exception {
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache();
+        setField(tokenCache, "enabled", cacheEnabled);
+        setField(tokenCache, "maxEntries", maxEntries);
+
+        JwtTokenProvider provider = new JwtTokenProvider();
+        setField(provider, "jwtSecret", SECRET);
+        setField(provider, "jwtExpirationInMs", 86400000);
+        setField(provider, "refreshTokenExpirationInMs", 604800000);
+        // Révocation désactivée : seul le coût de vérification et du cache est mesuré
+        TokenRevocationList revocationList = new TokenRevocationList();
+        setField(revocationList, "enabled", false);
+        setField(provider, "revocationList", revocationList);
+        setField(provider, "tokenCache", tokenCache);
+        provider.init();
+        return provider;
+    }
+
+    private static Users user(Long id) {
+        Users user = new Users();
+        user.setId(id);
+        user.setEmail("user" + id + "@test.com");
+        user.setUsername("user" + id);
+        user.setRole(Role.USER);
+        return user;
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private static void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
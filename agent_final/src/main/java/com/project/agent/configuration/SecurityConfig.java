@@ -60,6 +60,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/agencies/**").permitAll()
                         .requestMatchers("/api/services/**").permitAll()
                         .requestMatchers("/api/timeslots/**").hasAnyRole("AGENT", "ADMIN")
+                        .requestMatchers("/api/locks/**").hasAnyRole("AGENT", "ADMIN")
 
                         // All other requests require authentication
                         .anyRequest().authenticated()
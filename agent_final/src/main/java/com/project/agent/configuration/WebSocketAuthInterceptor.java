@@ -0,0 +1,137 @@
+package com.project.agent.configuration;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import com.project.agent.security.JwtTokenProvider;
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.ReservationEventPublisher;
+import com.project.agent.service.UserService;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Authentifie les sessions STOMP à partir de l'en-tête natif "Authorization: Bearer ..."
+ * de la trame CONNECT. Les connexions sans jeton restent anonymes (topics publics).
+ *
+ * Les topics d'une agence (/topic/agency/{agencyId}/...) ne sont ouverts qu'aux agents
+ * de cette agence et aux administrateurs : tout autre abonnement est ignoré. Les anciens
+ * topics globaux de réservations, qui portent le trafic de toutes les agences, sont réservés
+ * aux administrateurs. Les abonnements
+ * à un motif (jokers "*", "**", "?", variables "{...}", jokers de broker) sont refusés : le
+ * broker les appliquerait à toutes les destinations correspondantes, topics d'agence compris.
+ */
+@Component
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketAuthInterceptor.class);
+
+    private static final String AGENCY_TOPIC_PATTERN = "/topic/agency/{agencyId}/**";
+
+    // Jokers des brokers relayés (ActiveMQ ">", RabbitMQ "#"), en plus des motifs Ant
+    private static final String BROKER_WILDCARDS = ">#";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    // Chargés à la première connexion : évite une dépendance circulaire avec la configuration WebSocket
+    @Lazy
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Lazy
+    @Autowired
+    private UserService userService;
+
+    @Lazy
+    @Autowired
+    private IdentityCache identityCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return canSubscribe(accessor) ? message : null;
+        }
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String bearerToken = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            String jwt = bearerToken.substring(7);
+            try {
+                Claims claims = tokenProvider.parseToken(jwt).orElse(null);
+                if (claims != null && !tokenProvider.isRefreshToken(claims)) {
+                    UserDetails userDetails = tokenProvider.getUserFromClaims(claims);
+                    if (userDetails == null) {
+                        userDetails = userService.loadUserByUsername(claims.getSubject());
+                    }
+                    accessor.setUser(new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities()));
+                    logger.debug("Session WebSocket {} authentifiée pour {}", accessor.getSessionId(),
+                            userDetails.getUsername());
+                }
+            } catch (Exception e) {
+                logger.warn("Authentification de la session WebSocket {} impossible: {}",
+                        accessor.getSessionId(), e.getMessage());
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Refuse les motifs ; un topic d'agence n'est accessible qu'aux agents de l'agence et aux administrateurs,
+     * les anciens topics globaux qu'aux administrateurs
+     */
+    private boolean canSubscribe(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || isPattern(destination)) {
+            return refuse(accessor, destination);
+        }
+
+        Principal user = accessor.getUser();
+        if (ReservationEventPublisher.isLegacyTopic(destination)) {
+            return (user != null && identityCache.isAdmin(user.getName())) || refuse(accessor, destination);
+        }
+        if (!pathMatcher.match(AGENCY_TOPIC_PATTERN, destination)) {
+            return true;
+        }
+
+        Map<String, String> variables = pathMatcher.extractUriTemplateVariables(AGENCY_TOPIC_PATTERN, destination);
+        try {
+            Long agencyId = Long.valueOf(variables.get("agencyId"));
+            if (user != null && identityCache.canAccessAgency(user.getName(), agencyId)) {
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            // Destination mal formée : refusée ci-dessous
+        }
+        return refuse(accessor, destination);
+    }
+
+    private boolean isPattern(String destination) {
+        return pathMatcher.isPattern(destination)
+                || destination.chars().anyMatch(c -> BROKER_WILDCARDS.indexOf(c) >= 0);
+    }
+
+    private boolean refuse(StompHeaderAccessor accessor, String destination) {
+        logger.warn("Abonnement de la session WebSocket {} à {} refusé", accessor.getSessionId(), destination);
+        return false;
+    }
+}
@@ -1,22 +1,107 @@
 package com.project.agent.configuration;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+/**
+ * Configuration STOMP. Par défaut, le broker simple en mémoire diffuse les messages aux
+ * sessions de cette instance uniquement. En mode "relay", les destinations /topic et /queue
+ * sont relayées à un broker STOMP externe (ActiveMQ ou Artemis) partagé par toutes les
+ * instances : un message publié sur l'une atteint les abonnés de toutes.
+ *
+ * Avec spring.threads.virtual.enabled, les canaux client traitent chaque message sur un
+ * thread virtuel au lieu des pools bornés app.websocket.inbound.* et app.websocket.outbound.*.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    private static final String RELAY_MODE = "relay";
+
     @Value("${app.cors.allowed-origins}")
     private String allowedOrigins;
 
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode = "simple";
+
+    @Value("${app.websocket.broker.relay.host:localhost}")
+    private String relayHost = "localhost";
+
+    @Value("${app.websocket.broker.relay.port:61613}")
+    private int relayPort = 61613;
+
+    @Value("${app.websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${app.websocket.broker.relay.client-login:guest}")
+    private String relayClientLogin = "guest";
+
+    @Value("${app.websocket.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode = "guest";
+
+    @Value("${app.websocket.broker.relay.system-login:guest}")
+    private String relaySystemLogin = "guest";
+
+    @Value("${app.websocket.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode = "guest";
+
+    // Pools des canaux : messages reçus des clients, et messages envoyés aux sessions
+    @Value("${app.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize = 8;
+
+    @Value("${app.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize = 32;
+
+    @Value("${app.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity = 10000;
+
+    @Value("${app.websocket.outbound.core-pool-size:16}")
+    private int outboundCorePoolSize = 16;
+
+    @Value("${app.websocket.outbound.max-pool-size:64}")
+    private int outboundMaxPoolSize = 64;
+
+    @Value("${app.websocket.outbound.queue-capacity:50000}")
+    private int outboundQueueCapacity = 50000;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Limites d'une session lente : au-delà, la session est fermée au lieu de retenir les messages
+    @Value("${app.websocket.session.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs = 10000;
+
+    @Value("${app.websocket.session.send-buffer-size-kb:512}")
+    private int sendBufferSizeKb = 512;
+
+    @Autowired
+    private WebSocketAuthInterceptor webSocketAuthInterceptor;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
+        config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
+
+        if (RELAY_MODE.equalsIgnoreCase(brokerMode)) {
+            enableBrokerRelay(config);
+            return;
+        }
+
         ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
         taskScheduler.setPoolSize(1);
         taskScheduler.setThreadNamePrefix("ws-heartbeat-");
@@ -25,8 +110,65 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.enableSimpleBroker("/topic", "/queue")
               .setHeartbeatValue(new long[]{10000, 10000})
               .setTaskScheduler(taskScheduler);
-        config.setApplicationDestinationPrefixes("/app");
-        config.setUserDestinationPrefix("/user");
+    }
+
+    /**
+     * Relais vers le broker externe : une connexion TCP "système" pour les messages publiés par
+     * l'application, puis une connexion par session cliente. Les destinations /user/... sont
+     * résolues entre instances via les topics de diffusion du registre des utilisateurs.
+     *
+     * Le broker doit accepter les destinations séparées par des "/" (/topic/agency/1/locks...),
+     * ce que font ActiveMQ et Artemis. Le plugin STOMP de RabbitMQ les refuse : il n'est pas pris en charge.
+     */
+    private void enableBrokerRelay(MessageBrokerRegistry config) {
+        StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayClientLogin)
+                .setClientPasscode(relayClientPasscode)
+                .setSystemLogin(relaySystemLogin)
+                .setSystemPasscode(relaySystemPasscode)
+                .setSystemHeartbeatSendInterval(10000)
+                .setSystemHeartbeatReceiveInterval(10000)
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry");
+        if (StringUtils.hasText(relayVirtualHost)) {
+            relay.setVirtualHost(relayVirtualHost);
+        }
+        logger.info("Messages STOMP relayés au broker {}:{}", relayHost, relayPort);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Associe l'utilisateur du JWT à la session STOMP dès la trame CONNECT
+        registration.interceptors(webSocketAuthInterceptor);
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+            return;
+        }
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Diffusion vers les sessions : un client lent n'occupe qu'un thread de ce pool
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+            return;
+        }
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeKb * 1024);
     }
 
     @Override
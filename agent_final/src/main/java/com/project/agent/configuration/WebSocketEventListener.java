@@ -1,65 +1,73 @@
 package com.project.agent.configuration;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.security.Principal;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.ReservationLockService;
+import com.project.agent.service.realtime.PresenceRegistry;
+
 @Component
 public class WebSocketEventListener {
     
     private static final Logger logger = LoggerFactory.getLogger(WebSocketEventListener.class);
     
-    // Map pour suivre les connexions actives
-    private final Map<String, String> connectedAgents = new ConcurrentHashMap<>();
+    @Autowired
+    private PresenceRegistry presenceRegistry;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private ReservationLockService lockService;
     
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
         
-        // Dans un système de production, vous récupéreriez l'identité de l'agent ici
-        // Pour simplifier, nous utilisons seulement l'ID de session
-        connectedAgents.put(sessionId, sessionId);
-        
-        logger.info("Nouvel agent connecté: {}", sessionId);
+        // Utilisateur associé à la session par WebSocketAuthInterceptor ; les sessions anonymes ne sont pas suivies
+        Principal user = event.getUser();
+        if (user == null) {
+            logger.debug("Nouvelle session WebSocket anonyme: {}", sessionId);
+            return;
+        }
         
-        // Informer tous les clients qu'un agent s'est connecté
-        messagingTemplate.convertAndSend("/topic/agent-status", 
-                Map.of("type", "CONNECTED", "agentId", sessionId, "totalConnected", connectedAgents.size()));
+        try {
+            identityCache.find(user.getName()).ifPresent(identity -> presenceRegistry.connect(sessionId, identity));
+            logger.info("Session WebSocket {} connectée pour {}", sessionId, user.getName());
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'enregistrement de la session {}: {}", sessionId, e.getMessage());
+        }
     }
     
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headerAccessor.getSessionId();
+        String sessionId = event.getSessionId();
         
-        if (connectedAgents.containsKey(sessionId)) {
-            connectedAgents.remove(sessionId);
-            
-            logger.info("Agent déconnecté: {}", sessionId);
-            
-            // Informer tous les clients qu'un agent s'est déconnecté
-            messagingTemplate.convertAndSend("/topic/agent-status", 
-                    Map.of("type", "DISCONNECTED", "agentId", sessionId, "totalConnected", connectedAgents.size()));
+        // Libérer immédiatement les verrous que cette session renouvelait
+        try {
+            lockService.releaseSessionLeases(sessionId);
+        } catch (Exception e) {
+            logger.error("Erreur lors de la libération des verrous de la session {}: {}", sessionId, e.getMessage());
         }
+        
+        presenceRegistry.disconnect(sessionId);
+        logger.debug("Session WebSocket déconnectée: {}", sessionId);
     }
     
     /**
      * Obtient le nombre d'agents actuellement connectés
      */
     public int getConnectedAgentsCount() {
-        return connectedAgents.size();
+        return presenceRegistry.countOnlineAgents();
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,32 @@
 package com.project.agent.controller;
 
+import java.security.Principal;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.Authentication;
 
 import com.project.agent.dto.AgentInfoDTO;
 import com.project.agent.dto.AgentStatsDTO;
 import com.project.agent.dto.ApiResponse;
+import com.project.agent.dto.ReservationDeltaDTO;
 import com.project.agent.dto.ReservationCompletionRequest;
 import com.project.agent.dto.ReservationConfirmationRequest;
 import com.project.agent.dto.ReservationCancellationRequest;
+import com.project.agent.exception.ConflictException;
 import com.project.agent.model.Agent;
 import com.project.agent.model.Reservation;
 import com.project.agent.model.Reservation.Status;
+import com.project.agent.repository.AgencyRepository;
 import com.project.agent.repository.AgentRepository;
 import com.project.agent.repository.ReservationRepository;
 import com.project.agent.service.AgentStatsService;
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.IdentityCache.Identity;
 import com.project.agent.service.ReservationService;
 import com.project.agent.service.ReservationLockService;
 import com.project.agent.service.EmailService;
@@ -38,15 +43,18 @@ public class AgentController {
     @Autowired
     private EmailService emailService;
     
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-    
     @Autowired
     private AgentRepository agentRepository;
     
     @Autowired
     private ReservationRepository reservationRepository;
     
+    @Autowired
+    private AgencyRepository agencyRepository;
+    
+    @Autowired
+    private IdentityCache identityCache;
+    
     @Autowired
     private AgentStatsService agentStatsService;
     
@@ -56,24 +64,15 @@ public class AgentController {
     @GetMapping("/reservations/pending")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<List<Reservation>> getPendingReservations() {
-        // Get the current agent
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
+        // Get the current agent's agency (cached identity, no agent query)
+        Long agencyId = identityCache.current().map(Identity::agencyId).orElse(null);
         
-        try {
-            // Try to find agent with this email
-            Agent agent = agentRepository.findByUser_Email(email)
-                    .orElseThrow(() -> new RuntimeException("Agent not found"));
-            
-            // If agent is associated with an agency, get only that agency's reservations
-            if (agent.getAgency() != null) {
-                List<Reservation> pendingReservations = reservationRepository.findByAgencyAndStatus(
-                    agent.getAgency(), Status.PENDING);
-                return ResponseEntity.ok(pendingReservations);
-            }
-        } catch (Exception e) {
-            // If not found as Agent or any other error, fall back to standard behavior
-            // This handles the case where the user is an AGENT role but not in the Agent table
+        // If agent is associated with an agency, get only that agency's reservations
+        // (otherwise, e.g. an AGENT role not in the Agent table, fall back to standard behavior)
+        if (agencyId != null) {
+            List<Reservation> pendingReservations = reservationRepository.findByAgencyAndStatus(
+                agencyRepository.getReferenceById(agencyId), Status.PENDING);
+            return ResponseEntity.ok(pendingReservations);
         }
         
         // Default behavior - get all pending reservations
@@ -84,20 +83,12 @@ public class AgentController {
     @GetMapping("/reservations/confirmed")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<List<Reservation>> getConfirmedReservations() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
+        Long agencyId = identityCache.current().map(Identity::agencyId).orElse(null);
         
-        try {
-            Agent agent = agentRepository.findByUser_Email(email)
-                    .orElseThrow(() -> new RuntimeException("Agent not found"));
-            
-            if (agent.getAgency() != null) {
-                List<Reservation> confirmedReservations = reservationRepository.findByAgencyAndStatus(
-                    agent.getAgency(), Status.CONFIRMED);
-                return ResponseEntity.ok(confirmedReservations);
-            }
-        } catch (Exception e) {
-            // Fall back to standard behavior
+        if (agencyId != null) {
+            List<Reservation> confirmedReservations = reservationRepository.findByAgencyAndStatus(
+                agencyRepository.getReferenceById(agencyId), Status.CONFIRMED);
+            return ResponseEntity.ok(confirmedReservations);
         }
         
         List<Reservation> confirmedReservations = reservationRepository.findByStatus(Status.CONFIRMED);
@@ -107,20 +98,12 @@ public class AgentController {
     @GetMapping("/reservations/completed")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<List<Reservation>> getCompletedReservations() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
+        Long agencyId = identityCache.current().map(Identity::agencyId).orElse(null);
         
-        try {
-            Agent agent = agentRepository.findByUser_Email(email)
-                    .orElseThrow(() -> new RuntimeException("Agent not found"));
-            
-            if (agent.getAgency() != null) {
-                List<Reservation> completedReservations = reservationRepository.findByAgencyAndStatus(
-                    agent.getAgency(), Status.COMPLETED);
-                return ResponseEntity.ok(completedReservations);
-            }
-        } catch (Exception e) {
-            // Fall back to standard behavior
+        if (agencyId != null) {
+            List<Reservation> completedReservations = reservationRepository.findByAgencyAndStatus(
+                agencyRepository.getReferenceById(agencyId), Status.COMPLETED);
+            return ResponseEntity.ok(completedReservations);
         }
         
         List<Reservation> completedReservations = reservationRepository.findByStatus(Status.COMPLETED);
@@ -130,20 +113,12 @@ public class AgentController {
     @GetMapping("/reservations/canceled")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<List<Reservation>> getCanceledReservations() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
+        Long agencyId = identityCache.current().map(Identity::agencyId).orElse(null);
         
-        try {
-            Agent agent = agentRepository.findByUser_Email(email)
-                    .orElseThrow(() -> new RuntimeException("Agent not found"));
-            
-            if (agent.getAgency() != null) {
-                List<Reservation> canceledReservations = reservationRepository.findByAgencyAndStatus(
-                    agent.getAgency(), Status.CANCELED);
-                return ResponseEntity.ok(canceledReservations);
-            }
-        } catch (Exception e) {
-            // Fall back to standard behavior
+        if (agencyId != null) {
+            List<Reservation> canceledReservations = reservationRepository.findByAgencyAndStatus(
+                agencyRepository.getReferenceById(agencyId), Status.CANCELED);
+            return ResponseEntity.ok(canceledReservations);
         }
         
         List<Reservation> canceledReservations = reservationRepository.findByStatus(Status.CANCELED);
@@ -166,12 +141,7 @@ public class AgentController {
     @PutMapping("/toggle-availability")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<AgentInfoDTO> toggleAvailability() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Agent agent = agentRepository.findAll().stream()
-                .filter(a -> a.getUser().getEmail().equals(email))
-                .findFirst()
+        Agent agent = agentRepository.findById(identityCache.currentAgent().agentId())
                 .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
         
         agent.setAvailable(!agent.isAvailable());
@@ -191,11 +161,18 @@ public class AgentController {
         return ResponseEntity.ok(stats);
     }
     
-    // Endpoint WebSocket pour demander les réservations en attente
+    /**
+     * Endpoint WebSocket : renvoie à l'agent qui le demande, sur /user/queue/reservations,
+     * l'instantané des réservations actives de son agence (les deltas suivent sur
+     * /topic/agency/{agencyId}/reservations)
+     */
     @MessageMapping("/fetch-reservations")
-    public void fetchReservationsWs() {
-        List<Reservation> pendingReservations = reservationService.getPendingReservations();
-        messagingTemplate.convertAndSend("/topic/reservations", pendingReservations);
+    @SendToUser(destinations = "/queue/reservations", broadcast = false)
+    public List<ReservationDeltaDTO> fetchReservationsWs(Principal principal) {
+        Identity agent = identityCache.find(principal == null ? null : principal.getName())
+                .filter(Identity::isAgent)
+                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+        return reservationService.getAgencySnapshot(agent.agencyId());
     }
     
     @PostMapping("/reservation/confirm/{id}")
@@ -237,7 +214,6 @@ public class AgentController {
                 
                 // Envoyer l'email de confirmation
                 emailService.sendReservationConfirmation(confirmedReservation, confirmationRequest.getMessage());
-                messagingTemplate.convertAndSend("/topic/reservation-updated", confirmedReservation);
                 
                 // Libérer le verrou après traitement
                 lockService.releaseReservationLock(reservationId);
@@ -248,6 +224,8 @@ public class AgentController {
                 lockService.releaseReservationLock(reservationId);
                 throw e;
             }
+        } catch (ConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), false));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage(), false));
         }
@@ -290,9 +268,6 @@ public class AgentController {
                 // Notification de l'annulation par email
                 emailService.sendReservationCancellation(canceledReservation, reason);
                 
-                // Notifier en temps réel de la mise à jour
-                messagingTemplate.convertAndSend("/topic/reservation-updated", canceledReservation);
-                
                 // Libérer le verrou après traitement
                 lockService.releaseReservationLock(reservationId);
                 
@@ -347,9 +322,6 @@ public class AgentController {
                 // Notification de la complétion par email
                 emailService.sendReservationCompletion(completedReservation, notes);
                 
-                // Notifier en temps réel de la mise à jour
-                messagingTemplate.convertAndSend("/topic/reservation-updated", completedReservation);
-                
                 // Libérer le verrou après traitement
                 lockService.releaseReservationLock(reservationId);
                 
@@ -1,5 +1,7 @@
 package com.project.agent.controller;
 
+import java.util.Optional;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +30,7 @@ import com.project.agent.security.JwtTokenProvider;
 import com.project.agent.service.PasswordResetService;
 import com.project.agent.service.UserService;
 
+import io.jsonwebtoken.Claims;
 import jakarta.validation.Valid;
 
 @RestController
@@ -90,14 +93,17 @@ public class AuthController {
         try {
             String refreshToken = refreshRequest.getRefreshToken();
             
-            if (tokenProvider.validateToken(refreshToken)) {
-                String email = tokenProvider.getEmailFromJWT(refreshToken);
-                String newAccessToken = tokenProvider.generateTokenFromEmail(email);
-                String newRefreshToken = tokenProvider.generateRefreshToken(email);
+            Optional<Claims> claims = tokenProvider.parseToken(refreshToken);
+            if (claims.isPresent()) {
+                String email = claims.get().getSubject();
                 
+                // Rôle et identifiants relus en base : le nouveau jeton d'accès les porte en claims
                 Users user = userService.findByEmail(email)
                         .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
                 
+                String newAccessToken = tokenProvider.generateToken(user);
+                String newRefreshToken = tokenProvider.generateRefreshToken(email);
+                
                 JwtAuthResponse response = new JwtAuthResponse(
                         newAccessToken,
                         newRefreshToken,
@@ -183,10 +189,14 @@ public class AuthController {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
                 
-                if (tokenProvider.validateToken(token)) {
-                    String email = tokenProvider.getEmailFromJWT(token);
-                    Users user = userService.findByEmail(email)
-                            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+                Optional<Claims> claims = tokenProvider.parseToken(token);
+                if (claims.isPresent()) {
+                    String email = claims.get().getSubject();
+                    Users user = tokenProvider.getUserFromClaims(claims.get());
+                    if (user == null) {
+                        user = userService.findByEmail(email)
+                                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+                    }
                     
                     return ResponseEntity.ok(new ApiResponse(
                             email + "|" + user.getRole() + "|" + user.getUsername(), 
@@ -7,11 +7,11 @@ import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -22,8 +22,8 @@ import org.springframework.web.bind.annotation.*;
 import com.project.agent.dto.ApiResponse;
 import com.project.agent.dto.AvailabilityDTO;
 import com.project.agent.dto.TimeSlotCheckDTO;
+import com.project.agent.exception.ConflictException;
 import com.project.agent.model.Agency;
-import com.project.agent.model.Availability;
 import com.project.agent.repository.AgencyRepository;
 import com.project.agent.service.AvailabilityService;
 
@@ -55,14 +55,8 @@ public class AvailabilityController {
             // Convertir la chaîne de date en LocalDate
             LocalDate requestedDate = LocalDate.parse(date, DateTimeFormatter.ISO_DATE);
             
-            // Utiliser la méthode pour obtenir les données les plus récentes
-            Availability availability = availabilityService.refreshAvailability(agencyId, requestedDate);
-            
-            // Convertir en DTO avec des informations supplémentaires
-            AvailabilityDTO availabilityDTO = new AvailabilityDTO(availability);
-            
-            // Enrichir le DTO avec des informations sur les créneaux réservés
-            availabilityService.enrichAvailabilityDTO(availabilityDTO);
+            // DTO enrichi, servi depuis le cache tant qu'aucune modification ne l'a invalidé
+            AvailabilityDTO availabilityDTO = availabilityService.getAvailabilityDTO(agencyId, requestedDate);
             
             return ResponseEntity.ok(availabilityDTO);
         } catch (DateTimeParseException e) {
@@ -88,17 +82,8 @@ public class AvailabilityController {
             // Convertir la chaîne de date en LocalDate
             LocalDate requestedStartDate = LocalDate.parse(startDate, DateTimeFormatter.ISO_DATE);
             
-            // Obtenir les disponibilités pour la semaine
-            List<Availability> weekAvailability = availabilityService.getAgencyAvailabilityForWeek(agencyId, requestedStartDate);
-            
-            // Convertir les disponibilités en DTOs
-            List<AvailabilityDTO> response = weekAvailability.stream()
-                .map(availability -> {
-                    AvailabilityDTO dto = new AvailabilityDTO(availability);
-                    availabilityService.enrichAvailabilityDTO(dto);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+            // Obtenir les disponibilités enrichies pour la semaine, calculées en une seule passe
+            List<AvailabilityDTO> response = availabilityService.getAgencyAvailabilityForWeek(agencyId, requestedStartDate);
             
             return ResponseEntity.ok(response);
         } catch (DateTimeParseException e) {
@@ -110,6 +95,34 @@ public class AvailabilityController {
         }
     }
     
+    /**
+     * Récupère les disponibilités d'une agence sur une période (au plus 62 jours, ex. une vue mensuelle)
+     */
+    @GetMapping("/{agencyId}/range")
+    public ResponseEntity<List<AvailabilityDTO>> getAgencyAvailabilityForRange(
+            @PathVariable Long agencyId,
+            @RequestParam String from,
+            @RequestParam String to) {
+        
+        logger.info("Requête de disponibilité du {} au {} pour l'agence {}", from, to, agencyId);
+        
+        try {
+            LocalDate fromDate = LocalDate.parse(from, DateTimeFormatter.ISO_DATE);
+            LocalDate toDate = LocalDate.parse(to, DateTimeFormatter.ISO_DATE);
+            
+            return ResponseEntity.ok(availabilityService.getAgencyAvailabilityForRange(agencyId, fromDate, toDate));
+        } catch (DateTimeParseException e) {
+            logger.error("Format de date invalide: {} / {}", from, to, e);
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Période de disponibilité invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Erreur lors de la récupération des disponibilités: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * Vérifie si un créneau horaire spécifique est disponible
      */
@@ -170,6 +183,9 @@ public class AvailabilityController {
                     requestedDate.atTime(requestedTime));
             
             return ResponseEntity.ok(new ApiResponse("Créneau temporairement réservé", true));
+        } catch (ConflictException e) {
+            logger.warn("Conflit lors de la réservation temporaire: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), false));
         } catch (Exception e) {
             logger.error("Erreur lors de la réservation temporaire: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage(), false));
@@ -217,12 +233,7 @@ public class AvailabilityController {
         try {
             LocalDate date = LocalDate.parse(dateStr, DateTimeFormatter.ISO_DATE);
             
-            // Utiliser la méthode refresh pour obtenir les données les plus récentes
-            Availability availability = availabilityService.refreshAvailability(agencyId, date);
-            
-            // Convertir en DTO
-            AvailabilityDTO availabilityDTO = new AvailabilityDTO(availability);
-            availabilityService.enrichAvailabilityDTO(availabilityDTO);
+            AvailabilityDTO availabilityDTO = availabilityService.getAvailabilityDTO(agencyId, date);
             
             logger.info("Envoi des disponibilités via WebSocket pour l'agence {} à la date {}", agencyId, date);
             messagingTemplate.convertAndSend("/topic/availability/" + agencyId, availabilityDTO);
@@ -0,0 +1,54 @@
+package com.project.agent.controller;
+
+import java.security.Principal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Controller;
+
+import com.project.agent.dto.LockHeartbeatDTO;
+import com.project.agent.model.Users;
+import com.project.agent.service.ReservationLockService;
+
+/**
+ * Battement de cœur des verrous de réservation sur WebSocket.
+ * La session doit avoir été authentifiée par un JWT à la connexion STOMP.
+ */
+@Controller
+public class LockHeartbeatController {
+
+    private static final Logger logger = LoggerFactory.getLogger(LockHeartbeatController.class);
+
+    @Autowired
+    private ReservationLockService lockService;
+
+    /**
+     * Renouvelle les verrous listés par le client et répond sur /user/queue/lock-heartbeat
+     */
+    @MessageMapping("/lock-heartbeat")
+    @SendToUser(destinations = "/queue/lock-heartbeat", broadcast = false)
+    public LockHeartbeatDTO heartbeat(LockHeartbeatDTO request, Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
+        Users user = null;
+        if (principal instanceof UsernamePasswordAuthenticationToken authentication
+                && authentication.getPrincipal() instanceof Users authenticatedUser) {
+            user = authenticatedUser;
+        }
+
+        try {
+            return lockService.renewSessionLeases(headerAccessor.getSessionId(), user, request.getReservationIds());
+        } catch (Exception e) {
+            logger.warn("Battement de cœur refusé pour la session {}: {}", headerAccessor.getSessionId(),
+                    e.getMessage());
+            LockHeartbeatDTO response = new LockHeartbeatDTO();
+            response.setReservationIds(request.getReservationIds());
+            response.setLost(request.getReservationIds());
+            return response;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.project.agent.controller;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.project.agent.dto.LockStatusDTO;
+import com.project.agent.service.ReservationLockService;
+
+/**
+ * Instantané des verrous actifs d'une agence pour les tableaux de bord des agents.
+ * Le client charge l'instantané (REST ou abonnement STOMP) puis suit les deltas
+ * publiés sur /topic/agency/{agencyId}/locks.
+ */
+@RestController
+@RequestMapping("/api/locks")
+public class LockSnapshotController {
+
+    @Autowired
+    private ReservationLockService lockService;
+
+    /**
+     * Verrous actifs d'une agence, en une seule requête
+     */
+    @GetMapping("/active")
+    @PreAuthorize("hasAnyRole('AGENT', 'ADMIN')")
+    public ResponseEntity<List<LockStatusDTO>> getActiveLocks(@RequestParam Long agencyId) {
+        return ResponseEntity.ok(lockService.getActiveLocks(agencyId));
+    }
+
+    /**
+     * Instantané renvoyé directement à l'abonné de /app/locks/agency/{agencyId}
+     */
+    @SubscribeMapping("/locks/agency/{agencyId}")
+    public List<LockStatusDTO> subscribeActiveLocks(@DestinationVariable Long agencyId, Principal principal) {
+        if (!(principal instanceof Authentication authentication) || authentication.getAuthorities().stream()
+                .noneMatch(a -> a.getAuthority().equals("ROLE_AGENT") || a.getAuthority().equals("ROLE_ADMIN"))) {
+            throw new RuntimeException("Accès refusé");
+        }
+        return lockService.getActiveLocks(agencyId);
+    }
+}
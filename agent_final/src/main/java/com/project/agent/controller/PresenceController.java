@@ -0,0 +1,60 @@
+package com.project.agent.controller;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.realtime.PresenceRegistry;
+import com.project.agent.service.realtime.PresenceRegistry.AgentPresence;
+
+/**
+ * Agents en ligne d'une agence. Le client charge la liste (REST ou abonnement STOMP)
+ * puis applique les changements publiés sur /topic/agency/{agencyId}/presence.
+ * Seuls les agents de l'agence et les administrateurs y ont accès.
+ */
+@RestController
+@RequestMapping("/api/agent/presence")
+public class PresenceController {
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private IdentityCache identityCache;
+
+    /**
+     * Agents en ligne d'une agence sur cette instance
+     */
+    @GetMapping
+    @PreAuthorize("hasAnyRole('AGENT', 'ADMIN')")
+    public ResponseEntity<List<AgentPresence>> getOnlineAgents(@RequestParam Long agencyId, Authentication authentication) {
+        if (!identityCache.canAccessAgency(authentication.getName(), agencyId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(presenceRegistry.getOnlineAgents(agencyId));
+    }
+
+    /**
+     * Liste renvoyée directement à l'abonné de /app/agency/{agencyId}/presence
+     */
+    @SubscribeMapping("/agency/{agencyId}/presence")
+    public List<AgentPresence> subscribeOnlineAgents(@DestinationVariable Long agencyId, Principal principal) {
+        if (!(principal instanceof Authentication authentication)
+                || !identityCache.canAccessAgency(authentication.getName(), agencyId)) {
+            throw new RuntimeException("Accès refusé");
+        }
+        return presenceRegistry.getOnlineAgents(agencyId);
+    }
+}
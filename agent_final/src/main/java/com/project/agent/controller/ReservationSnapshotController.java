@@ -0,0 +1,61 @@
+package com.project.agent.controller;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.project.agent.dto.ReservationDeltaDTO;
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.ReservationService;
+
+/**
+ * Instantané des réservations actives (en attente et confirmées) d'une agence.
+ * Le client charge l'instantané (REST ou abonnement STOMP) puis applique les deltas
+ * publiés sur /topic/agency/{agencyId}/reservations. Seuls les agents de l'agence
+ * et les administrateurs y ont accès.
+ */
+@RestController
+@RequestMapping("/api/agent/reservations")
+public class ReservationSnapshotController {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private IdentityCache identityCache;
+
+    /**
+     * Réservations actives d'une agence, en une seule requête
+     */
+    @GetMapping("/snapshot")
+    @PreAuthorize("hasAnyRole('AGENT', 'ADMIN')")
+    public ResponseEntity<List<ReservationDeltaDTO>> getSnapshot(@RequestParam Long agencyId, Authentication authentication) {
+        if (!identityCache.canAccessAgency(authentication.getName(), agencyId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(reservationService.getAgencySnapshot(agencyId));
+    }
+
+    /**
+     * Instantané renvoyé directement à l'abonné de /app/agency/{agencyId}/reservations
+     */
+    @SubscribeMapping("/agency/{agencyId}/reservations")
+    public List<ReservationDeltaDTO> subscribeSnapshot(@DestinationVariable Long agencyId, Principal principal) {
+        if (!(principal instanceof Authentication authentication)
+                || !identityCache.canAccessAgency(authentication.getName(), agencyId)) {
+            throw new RuntimeException("Accès refusé");
+        }
+        return reservationService.getAgencySnapshot(agencyId);
+    }
+}
@@ -1,16 +1,29 @@
 package com.project.agent.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.project.agent.dto.ApiResponse;
 import com.project.agent.scheduler.MaintenanceScheduler;
 import com.project.agent.scheduler.MaintenanceScheduler.TaskStatistics;
+import com.project.agent.security.VerifiedTokenCache;
+import com.project.agent.service.AvailabilityCache;
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.cluster.ClusterMembership;
+import com.project.agent.service.cluster.JobLeaseService;
+import com.project.agent.service.diagnostics.VirtualThreadPinningMonitor;
+import com.project.agent.service.mail.EmailDispatcher;
+import com.project.agent.service.mail.EmailOutboxService;
+import com.project.agent.service.realtime.CoalescingPublisher;
+import com.project.agent.service.realtime.PresenceRegistry;
 
 @RestController
 @RequestMapping("/api/admin/system")
@@ -20,6 +33,36 @@ public class SystemMonitoringController {
     @Autowired
     private MaintenanceScheduler maintenanceScheduler;
     
+    @Autowired
+    private AvailabilityCache availabilityCache;
+    
+    @Autowired
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+    
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+    
+    @Autowired
+    private CoalescingPublisher livePublisher;
+    
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+    
+    @Autowired
+    private VirtualThreadPinningMonitor pinningMonitor;
+    
+    @Autowired
+    private ClusterMembership clusterMembership;
+    
+    @Autowired
+    private JobLeaseService jobLeaseService;
+    
     /**
      * Récupère les statistiques des tâches planifiées
      */
@@ -27,4 +70,80 @@ public class SystemMonitoringController {
     public ResponseEntity<Map<String, TaskStatistics>> getScheduledTasksStatistics() {
         return ResponseEntity.ok(maintenanceScheduler.getTaskStatistics());
     }
+    
+    /**
+     * Récupère les statistiques du cache des disponibilités (succès, échecs, évictions)
+     */
+    @GetMapping("/availability-cache")
+    public ResponseEntity<Map<String, Object>> getAvailabilityCacheStatistics() {
+        return ResponseEntity.ok(availabilityCache.getStatistics());
+    }
+    
+    /**
+     * Récupère les statistiques du cache des identités (succès, échecs, évictions)
+     */
+    @GetMapping("/identity-cache")
+    public ResponseEntity<Map<String, Object>> getIdentityCacheStatistics() {
+        return ResponseEntity.ok(identityCache.getStatistics());
+    }
+    
+    /**
+     * Récupère les statistiques du cache des jetons JWT vérifiés (succès, échecs, évictions, expirations)
+     */
+    @GetMapping("/token-cache")
+    public ResponseEntity<Map<String, Object>> getTokenCacheStatistics() {
+        return ResponseEntity.ok(verifiedTokenCache.getStatistics());
+    }
+    
+    /**
+     * Récupère les statistiques d'envoi des emails (envoyés, échecs, abandonnés, profondeur de la file)
+     */
+    @GetMapping("/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxStatistics() {
+        return ResponseEntity.ok(emailDispatcher.getStatistics());
+    }
+    
+    /**
+     * Récupère les statistiques des notifications WebSocket regroupées (publiées, envoyées, fusionnées, abandonnées)
+     */
+    @GetMapping("/websocket-publisher")
+    public ResponseEntity<Map<String, Object>> getWebSocketPublisherStatistics() {
+        return ResponseEntity.ok(livePublisher.getStatistics());
+    }
+    
+    /**
+     * Récupère les statistiques de présence (sessions, utilisateurs et agents en ligne, événements publiés ou évités)
+     */
+    @GetMapping("/presence")
+    public ResponseEntity<Map<String, Object>> getPresenceStatistics() {
+        return ResponseEntity.ok(presenceRegistry.getStatistics());
+    }
+    
+    /**
+     * Récupère les épinglages de threads virtuels observés (nombre, durée, sites, appels JDBC concernés)
+     */
+    @GetMapping("/virtual-threads")
+    public ResponseEntity<Map<String, Object>> getVirtualThreadStatistics() {
+        return ResponseEntity.ok(pinningMonitor.getStatistics());
+    }
+    
+    /**
+     * État du cluster : instances vivantes, part de cette instance et baux des tâches planifiées
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<Map<String, Object>> getClusterStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(clusterMembership.getStatus());
+        status.put("jobs", jobLeaseService.getStatus());
+        return ResponseEntity.ok(status);
+    }
+    
+    /**
+     * Remet en attente les emails abandonnés après le nombre maximal de tentatives
+     */
+    @PostMapping("/email-outbox/retry-dead")
+    public ResponseEntity<ApiResponse> retryDeadEmails() {
+        int count = emailOutboxService.requeueDead();
+        emailDispatcher.wakeUp();
+        return ResponseEntity.ok(new ApiResponse(count + " emails remis en attente", true));
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -17,13 +18,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import com.project.agent.dto.ApiResponse;
 import com.project.agent.dto.DeleteAccountRequest;
 import com.project.agent.dto.PasswordChangeRequest;
 import com.project.agent.dto.ReservationRequest;
 import com.project.agent.dto.UsernameUpdateRequest;
+import com.project.agent.exception.ConflictException;
 import com.project.agent.model.Reservation;
 import com.project.agent.model.Users;
 import com.project.agent.repository.UserRepository;
@@ -43,9 +44,6 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
     
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-    
     @Autowired
     private UserService userService;
     
@@ -57,10 +55,11 @@ public class UserController {
             Reservation newReservation = reservationService.createReservation(reservationRequest);
             logger.info("Réservation créée avec succès, ID: {}", newReservation.getId());
             
-            // Notifier les agents en temps réel
-            messagingTemplate.convertAndSend("/topic/reservations", newReservation);
-            
             return ResponseEntity.ok(new ApiResponse("Réservation créée avec succès", true));
+        } catch (ConflictException e) {
+            // Le créneau a été pris par un autre client entre l'affichage et la réservation
+            logger.warn("Conflit lors de la création de la réservation: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(e.getMessage(), false));
         } catch (Exception e) {
             logger.error("Erreur lors de la création de la réservation: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new ApiResponse(e.getMessage(), false));
@@ -88,12 +87,9 @@ public class UserController {
     public ResponseEntity<ApiResponse> cancelReservation(@PathVariable("id") Long reservationId) {
         logger.info("Requête d'annulation de réservation: {}", reservationId);
         try {
-            Reservation canceledReservation = reservationService.cancelReservation(reservationId);
+            reservationService.cancelReservation(reservationId);
             logger.info("Réservation annulée avec succès: {}", reservationId);
             
-            // Notifier en temps réel
-            messagingTemplate.convertAndSend("/topic/reservation-updated", canceledReservation);
-            
             return ResponseEntity.ok(new ApiResponse("Réservation annulée avec succès", true));
         } catch (Exception e) {
             logger.error("Erreur lors de l'annulation de la réservation: {}", e.getMessage());
@@ -2,11 +2,13 @@ package com.project.agent.dto;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
 import com.project.agent.model.Availability;
+import com.project.agent.model.SlotCalendar;
 import lombok.Data;
 
 @Data
@@ -17,6 +19,7 @@ public class AvailabilityDTO {
     private LocalDate date;
     private List<LocalTime> availableTimeSlots;
     private List<LocalTime> bookedTimeSlots;
+    private int slotGranularity; // Durée en minutes des créneaux des masques de la ligne
     private Map<String, String> bookedSlotInfo; // Informations sur chaque créneau réservé (sans révéler de données sensibles)
     private boolean isPastDate;
     
@@ -28,9 +31,24 @@ public class AvailabilityDTO {
         this.date = availability.getDate();
         this.availableTimeSlots = availability.getAvailableTimeSlots();
         this.bookedTimeSlots = availability.getBookedTimeSlots();
+        this.slotGranularity = availability.getSlotGranularity() != null
+                ? availability.getSlotGranularity() : SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
         this.isPastDate = LocalDate.now().isAfter(availability.getDate());
         
         // Initialisation de la map d'informations sur les créneaux réservés
         this.bookedSlotInfo = new HashMap<>();
     }
+    
+    // Constructeur de copie, utilisé par le cache des disponibilités
+    public AvailabilityDTO(AvailabilityDTO other) {
+        this.id = other.id;
+        this.agencyId = other.agencyId;
+        this.agencyName = other.agencyName;
+        this.date = other.date;
+        this.availableTimeSlots = new ArrayList<>(other.availableTimeSlots);
+        this.bookedTimeSlots = new ArrayList<>(other.bookedTimeSlots);
+        this.slotGranularity = other.slotGranularity;
+        this.bookedSlotInfo = new HashMap<>(other.bookedSlotInfo);
+        this.isPastDate = other.isPastDate;
+    }
 }
\ No newline at end of file
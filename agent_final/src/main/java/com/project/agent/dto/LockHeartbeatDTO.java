@@ -0,0 +1,20 @@
+package com.project.agent.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Battement de cœur des verrous d'une session WebSocket (/app/lock-heartbeat).
+ * Le client envoie les réservations qu'il détient ; le serveur répond sur
+ * /user/queue/lock-heartbeat avec celles renouvelées et celles perdues.
+ */
+@Data
+public class LockHeartbeatDTO {
+    private List<Long> reservationIds = new ArrayList<>();
+    private List<Long> renewed = new ArrayList<>();
+    private List<Long> lost = new ArrayList<>();
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,22 @@
+package com.project.agent.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Verrous libérés ensemble (expiration, fermeture d'une session, balayage) : un seul
+ * message par agence sur /topic/agency/{agencyId}/locks/released, et un seul pour tout
+ * le lot sur /topic/reservation-locks-released (agencyId absent).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LockReleaseDTO {
+    private Long agencyId;
+    private List<Long> reservationIds = new ArrayList<>();
+    private String lockMessage;
+}
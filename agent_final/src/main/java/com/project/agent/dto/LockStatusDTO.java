@@ -1,5 +1,7 @@
 package com.project.agent.dto;
 
+import java.time.LocalDateTime;
+
 import lombok.Data;
 
 @Data
@@ -10,4 +12,6 @@ public class LockStatusDTO {
     private String agentName;
     private String agentEmail;
     private String lockMessage;
+    private Long agencyId;
+    private LocalDateTime expiresAt;
 }
\ No newline at end of file
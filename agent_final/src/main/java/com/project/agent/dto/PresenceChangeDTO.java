@@ -0,0 +1,25 @@
+package com.project.agent.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.project.agent.service.realtime.PresenceRegistry.AgentPresence;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Changement de présence des agents d'une agence (/topic/agency/{agencyId}/presence).
+ * Seul l'écart avec le dernier message publié est envoyé : un agent déconnecté puis
+ * reconnecté dans la fenêtre d'agrégation n'apparaît pas.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceChangeDTO {
+    private Long agencyId;
+    private List<AgentPresence> online = new ArrayList<>();
+    private List<Long> offline = new ArrayList<>();
+    private int onlineCount;
+}
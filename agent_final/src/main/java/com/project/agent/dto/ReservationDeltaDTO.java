@@ -0,0 +1,44 @@
+package com.project.agent.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.project.agent.model.Reservation;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Changement d'une réservation publié sur /topic/agency/{agencyId}/reservations.
+ *
+ * Seuls l'identifiant, le statut, la version et les champs modifiés sont transmis.
+ * L'instantané de /app/agency/{agencyId}/reservations utilise le même format, avec
+ * tous les champs affichés ; le client ignore tout delta dont la version n'est pas
+ * supérieure à celle qu'il connaît déjà pour cette réservation.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ReservationDeltaDTO {
+    private Long id;
+    private Reservation.Status status;
+    private Long version;
+    private Map<String, Object> changes = new LinkedHashMap<>();
+
+    public ReservationDeltaDTO(Long id, Reservation.Status status, Long version) {
+        this.id = id;
+        this.status = status;
+        this.version = version;
+    }
+
+    /**
+     * Ajoute un champ modifié (ignoré s'il est null)
+     */
+    public ReservationDeltaDTO change(String field, Object value) {
+        if (value != null) {
+            changes.put(field, value);
+        }
+        return this;
+    }
+}
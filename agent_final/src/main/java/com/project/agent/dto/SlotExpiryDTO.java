@@ -0,0 +1,34 @@
+package com.project.agent.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Créneaux d'une agence passés à l'état réservé parce que leur heure est atteinte
+ * (/topic/availability/{agencyId}/expired). Le client les retire de sa vue sans
+ * recharger toute la journée.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotExpiryDTO {
+    private Long agencyId;
+    private LocalDate date;
+    private List<LocalTime> expiredSlots = new ArrayList<>();
+
+    /**
+     * Réunit deux expirations successives de la même journée en un seul message
+     */
+    public static SlotExpiryDTO merge(SlotExpiryDTO previous, SlotExpiryDTO next) {
+        List<LocalTime> slots = new ArrayList<>(previous.getExpiredSlots());
+        next.getExpiredSlots().stream().filter(time -> !slots.contains(time)).forEach(slots::add);
+        slots.sort(null);
+        return new SlotExpiryDTO(next.getAgencyId(), next.getDate(), slots);
+    }
+}
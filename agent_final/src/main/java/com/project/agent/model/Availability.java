@@ -2,9 +2,9 @@ package com.project.agent.model;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 import jakarta.persistence.Column;
@@ -14,89 +14,173 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 @Entity
+@Table(
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_availability_agency_date", columnNames = {"agency_id", "date"})
+    }
+)
 @Data
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class Availability {
-    
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    
+
     @ManyToOne
     @JoinColumn(name = "agency_id")
     private Agency agency;
-    
+
     @Column(nullable = false)
     private LocalDate date;
-    
-    // Utiliser des getters et setters pour convertir entre String et List<LocalTime>
+
+    // Version pour le verrouillage optimiste : deux modifications concurrentes ne peuvent pas s'écraser
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    @JsonIgnore
+    private Long version = 0L;
+
+    // Créneaux encodés en bitmap, un bit par créneau de la journée (voir SlotCalendar)
+    @Column(name = "available_slots_mask")
+    @JsonIgnore
+    private Long availableSlotsMask = SlotCalendar.EMPTY;
+
+    @Column(name = "booked_slots_mask")
+    @JsonIgnore
+    private Long bookedSlotsMask = SlotCalendar.EMPTY;
+
+    @Column(name = "slot_granularity")
+    @JsonIgnore
+    private Integer slotGranularity = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+
+    // Anciennes colonnes texte, lues uniquement pour migrer les lignes existantes
     @Column(name = "available_time_slots", columnDefinition = "text")
-    private String availableTimeSlotsString = "";
-    
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String legacyAvailableTimeSlots;
+
     @Column(name = "booked_time_slots", columnDefinition = "text")
-    private String bookedTimeSlotsString = "";
-    
-    // Getters et setters pour la conversion
-    public List<LocalTime> getAvailableTimeSlots() {
-        if (availableTimeSlotsString == null || availableTimeSlotsString.isEmpty()) {
-            return new ArrayList<>();
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String legacyBookedTimeSlots;
+
+    /**
+     * Convertit les lignes encore au format texte vers les bitmaps au chargement
+     */
+    @PostLoad
+    void migrateLegacyTimeSlots() {
+        if (slotGranularity == null) {
+            slotGranularity = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
         }
-        
-        List<LocalTime> result = new ArrayList<>();
-        for (String timeStr : availableTimeSlotsString.split(",")) {
-            if (!timeStr.trim().isEmpty()) {
-                result.add(LocalTime.parse(timeStr.trim()));
-            }
+        if (availableSlotsMask == null) {
+            availableSlotsMask = SlotCalendar.parse(legacyAvailableTimeSlots, slotGranularity);
         }
-        return result;
-    }
-    
-    public void setAvailableTimeSlots(List<LocalTime> availableTimeSlots) {
-        if (availableTimeSlots == null || availableTimeSlots.isEmpty()) {
-            this.availableTimeSlotsString = "";
-            return;
+        if (bookedSlotsMask == null) {
+            bookedSlotsMask = SlotCalendar.parse(legacyBookedTimeSlots, slotGranularity);
         }
-        
-        StringBuilder sb = new StringBuilder();
-        for (LocalTime time : availableTimeSlots) {
-            if (sb.length() > 0) {
-                sb.append(",");
-            }
-            sb.append(time.toString());
+    }
+
+    private int granularity() {
+        return slotGranularity != null ? slotGranularity : SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+    }
+
+    private long available() {
+        return availableSlotsMask != null ? availableSlotsMask : SlotCalendar.EMPTY;
+    }
+
+    private long booked() {
+        return bookedSlotsMask != null ? bookedSlotsMask : SlotCalendar.EMPTY;
+    }
+
+    // Opérations sur les créneaux, sans allocation
+    public boolean hasAvailableSlot(LocalTime time) {
+        return SlotCalendar.contains(available(), time, granularity());
+    }
+
+    public boolean hasBookedSlot(LocalTime time) {
+        return SlotCalendar.contains(booked(), time, granularity());
+    }
+
+    public boolean addAvailableSlot(LocalTime time) {
+        long before = available();
+        availableSlotsMask = SlotCalendar.add(before, time, granularity());
+        return availableSlotsMask != before;
+    }
+
+    public boolean removeAvailableSlot(LocalTime time) {
+        long before = available();
+        availableSlotsMask = SlotCalendar.remove(before, time, granularity());
+        return availableSlotsMask != before;
+    }
+
+    public boolean addBookedSlot(LocalTime time) {
+        long before = booked();
+        bookedSlotsMask = SlotCalendar.add(before, time, granularity());
+        return bookedSlotsMask != before;
+    }
+
+    public boolean removeBookedSlot(LocalTime time) {
+        long before = booked();
+        bookedSlotsMask = SlotCalendar.remove(before, time, granularity());
+        return bookedSlotsMask != before;
+    }
+
+    /**
+     * Passe un créneau de disponible à réservé
+     */
+    public void reserveSlot(LocalTime time) {
+        removeAvailableSlot(time);
+        addBookedSlot(time);
+    }
+
+    /**
+     * Passe un créneau de réservé à disponible
+     */
+    public void releaseSlot(LocalTime time) {
+        removeBookedSlot(time);
+        addAvailableSlot(time);
+    }
+
+    /**
+     * Marque comme réservés tous les créneaux disponibles qui commencent avant ou à l'heure donnée
+     * @return le nombre de créneaux expirés
+     */
+    public int expireSlotsUpTo(LocalTime time) {
+        long expired = available() & SlotCalendar.upTo(time, granularity());
+        if (expired == SlotCalendar.EMPTY) {
+            return 0;
         }
-        this.availableTimeSlotsString = sb.toString();
+        availableSlotsMask = available() & ~expired;
+        bookedSlotsMask = booked() | expired;
+        return SlotCalendar.count(expired);
     }
-    
+
+    // Vues en liste pour la sérialisation JSON et les DTO
+    public List<LocalTime> getAvailableTimeSlots() {
+        return SlotCalendar.toTimes(available(), granularity());
+    }
+
+    public void setAvailableTimeSlots(List<LocalTime> availableTimeSlots) {
+        this.availableSlotsMask = SlotCalendar.fromTimes(availableTimeSlots, granularity());
+    }
+
     public List<LocalTime> getBookedTimeSlots() {
-        if (bookedTimeSlotsString == null || bookedTimeSlotsString.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        List<LocalTime> result = new ArrayList<>();
-        for (String timeStr : bookedTimeSlotsString.split(",")) {
-            if (!timeStr.trim().isEmpty()) {
-                result.add(LocalTime.parse(timeStr.trim()));
-            }
-        }
-        return result;
+        return SlotCalendar.toTimes(booked(), granularity());
     }
-    
+
     public void setBookedTimeSlots(List<LocalTime> bookedTimeSlots) {
-        if (bookedTimeSlots == null || bookedTimeSlots.isEmpty()) {
-            this.bookedTimeSlotsString = "";
-            return;
-        }
-        
-        StringBuilder sb = new StringBuilder();
-        for (LocalTime time : bookedTimeSlots) {
-            if (sb.length() > 0) {
-                sb.append(",");
-            }
-            sb.append(time.toString());
-        }
-        this.bookedTimeSlotsString = sb.toString();
+        this.bookedSlotsMask = SlotCalendar.fromTimes(bookedTimeSlots, granularity());
     }
-}
\ No newline at end of file
+}
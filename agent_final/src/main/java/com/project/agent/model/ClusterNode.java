@@ -0,0 +1,34 @@
+package com.project.agent.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Instance de l'application, vivante tant que son battement de cœur est récent
+ */
+@Entity
+@Table(name = "cluster_node",
+       indexes = {
+           @Index(name = "idx_cluster_node_heartbeat", columnList = "last_heartbeat")
+       })
+@Data
+public class ClusterNode {
+
+    @Id
+    @Column(name = "node_id")
+    private String nodeId;
+
+    private String host;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "last_heartbeat")
+    private LocalDateTime lastHeartbeat;
+}
@@ -0,0 +1,64 @@
+package com.project.agent.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Email en attente d'envoi (outbox) : enregistré dans la même transaction que la
+ * modification métier, puis envoyé en arrière-plan par le répartiteur d'emails.
+ */
+@Entity
+@Table(name = "email_outbox",
+       indexes = {
+           @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status,next_attempt_at")
+       })
+@Data
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String recipient;
+
+    private String subject;
+
+    @Column(name = "html_body", columnDefinition = "TEXT")
+    private String htmlBody;
+
+    @Column(name = "text_body", columnDefinition = "TEXT")
+    private String textBody;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int attempts;
+
+    // Prochaine tentative (PENDING) ou fin du bail d'envoi (SENDING)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+
+    public enum Status {
+        PENDING,  // En attente d'envoi ou de nouvelle tentative
+        SENDING,  // Réservé par un worker jusqu'à nextAttemptAt
+        SENT,     // Envoyé
+        DEAD      // Abandonné après le nombre maximal de tentatives
+    }
+}
@@ -0,0 +1,36 @@
+package com.project.agent.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * Bail d'exécution d'une tâche planifiée : une seule instance à la fois détient le bail
+ * d'une tâche, jusqu'à lockedUntil (horloge de la base de données).
+ */
+@Entity
+@Table(name = "job_lease")
+@Data
+public class JobLease {
+
+    @Id
+    private String name;
+
+    private String owner;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+
+    @Column(name = "last_run_by")
+    private String lastRunBy;
+}
@@ -10,8 +10,11 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -21,6 +24,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 @Entity
+@Table(
+    indexes = {
+        @Index(name = "idx_reservation_agency_status_start", columnList = "agency_id, status, start_date_time")
+    }
+)
 @Data
 @EntityListeners(AuditingEntityListener.class)
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
@@ -49,6 +57,11 @@ public class Reservation {
     @Enumerated(EnumType.STRING)
     private Status status;
 
+    // Version pour le verrouillage optimiste, reprise dans les deltas publiés aux agences
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version = 0L;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
@@ -0,0 +1,153 @@
+package com.project.agent.model;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calendrier des créneaux d'une journée encodé dans un seul long : le bit i
+ * représente le créneau qui commence à i * granularité minutes après minuit.
+ *
+ * Toutes les opérations travaillent sur des primitives et n'allouent rien,
+ * sauf les conversions vers/depuis des listes de LocalTime utilisées pour les DTO.
+ */
+public final class SlotCalendar {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** Granularité par défaut : 48 créneaux de 30 minutes par jour */
+    public static final int DEFAULT_GRANULARITY_MINUTES = 30;
+
+    public static final long EMPTY = 0L;
+
+    private SlotCalendar() {
+    }
+
+    /**
+     * Vérifie qu'une granularité découpe la journée en au plus 64 créneaux entiers
+     */
+    public static void checkGranularity(int granularityMinutes) {
+        if (granularityMinutes <= 0
+                || MINUTES_PER_DAY % granularityMinutes != 0
+                || MINUTES_PER_DAY / granularityMinutes > Long.SIZE) {
+            throw new IllegalArgumentException("Granularité de créneau invalide: " + granularityMinutes
+                    + " minutes (doit diviser 1440 et produire au plus 64 créneaux)");
+        }
+    }
+
+    public static int slotCount(int granularityMinutes) {
+        return MINUTES_PER_DAY / granularityMinutes;
+    }
+
+    /**
+     * Index du créneau contenant l'heure donnée (les heures non alignées sont arrondies au créneau inférieur)
+     */
+    public static int indexOf(LocalTime time, int granularityMinutes) {
+        return (time.getHour() * 60 + time.getMinute()) / granularityMinutes;
+    }
+
+    public static LocalTime timeOf(int index, int granularityMinutes) {
+        int minutes = index * granularityMinutes;
+        return LocalTime.of(minutes / 60, minutes % 60);
+    }
+
+    /**
+     * Début du créneau qui contient l'heure donnée
+     */
+    public static LocalTime floor(LocalTime time, int granularityMinutes) {
+        return timeOf(indexOf(time, granularityMinutes), granularityMinutes);
+    }
+
+    /**
+     * Indique si l'heure donnée commence exactement un créneau
+     */
+    public static boolean isAligned(LocalTime time, int granularityMinutes) {
+        return time.getSecond() == 0 && time.getNano() == 0
+                && (time.getHour() * 60 + time.getMinute()) % granularityMinutes == 0;
+    }
+
+    public static long bit(LocalTime time, int granularityMinutes) {
+        return 1L << indexOf(time, granularityMinutes);
+    }
+
+    public static boolean contains(long mask, LocalTime time, int granularityMinutes) {
+        return (mask & bit(time, granularityMinutes)) != 0;
+    }
+
+    public static long add(long mask, LocalTime time, int granularityMinutes) {
+        return mask | bit(time, granularityMinutes);
+    }
+
+    public static long remove(long mask, LocalTime time, int granularityMinutes) {
+        return mask & ~bit(time, granularityMinutes);
+    }
+
+    public static int count(long mask) {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Masque des n premiers créneaux de la journée
+     */
+    public static long lowBits(int n) {
+        if (n <= 0) {
+            return EMPTY;
+        }
+        return n >= Long.SIZE ? -1L : (1L << n) - 1;
+    }
+
+    /**
+     * Masque de tous les créneaux qui commencent avant ou exactement à l'heure donnée
+     */
+    public static long upTo(LocalTime time, int granularityMinutes) {
+        return lowBits(indexOf(time, granularityMinutes) + 1);
+    }
+
+    /**
+     * Index du prochain créneau présent dans le masque à partir de fromIndex, ou -1.
+     * Permet d'itérer sans allocation :
+     * {@code for (int i = nextSlot(mask, 0); i >= 0; i = nextSlot(mask, i + 1))}
+     */
+    public static int nextSlot(long mask, int fromIndex) {
+        if (fromIndex >= Long.SIZE) {
+            return -1;
+        }
+        long remaining = mask & (-1L << fromIndex);
+        return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+    }
+
+    public static long fromTimes(List<LocalTime> times, int granularityMinutes) {
+        long mask = EMPTY;
+        if (times != null) {
+            for (LocalTime time : times) {
+                mask |= bit(time, granularityMinutes);
+            }
+        }
+        return mask;
+    }
+
+    public static List<LocalTime> toTimes(long mask, int granularityMinutes) {
+        long validSlots = mask & lowBits(slotCount(granularityMinutes));
+        List<LocalTime> result = new ArrayList<>(count(validSlots));
+        for (int i = nextSlot(validSlots, 0); i >= 0; i = nextSlot(validSlots, i + 1)) {
+            result.add(timeOf(i, granularityMinutes));
+        }
+        return result;
+    }
+
+    /**
+     * Convertit l'ancien format texte ("09:00,10:00,...") en masque
+     */
+    public static long parse(String csv, int granularityMinutes) {
+        long mask = EMPTY;
+        if (csv == null || csv.isEmpty()) {
+            return mask;
+        }
+        for (String timeStr : csv.split(",")) {
+            if (!timeStr.trim().isEmpty()) {
+                mask |= bit(LocalTime.parse(timeStr.trim()), granularityMinutes);
+            }
+        }
+        return mask;
+    }
+}
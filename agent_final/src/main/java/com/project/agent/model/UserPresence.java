@@ -0,0 +1,54 @@
+package com.project.agent.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Sessions WebSocket ouvertes par un utilisateur sur une instance du cluster.
+ * Une ligne par instance et par utilisateur, retirée à la fermeture de sa dernière session ;
+ * les lignes d'une instance sans battement de cœur récent ne sont plus comptées.
+ */
+@Entity
+@Table(name = "user_presence",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_user_presence_node_user", columnNames = {"node_id", "user_id"})
+       },
+       indexes = {
+           @Index(name = "idx_user_presence_agency", columnList = "agency_id")
+       })
+@Data
+public class UserPresence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "agent_id")
+    private Long agentId;
+
+    @Column(name = "agency_id")
+    private Long agencyId;
+
+    @Column(name = "display_name")
+    private String displayName;
+
+    private int sessions;
+
+    @Column(name = "online_since")
+    private LocalDateTime onlineSince;
+}
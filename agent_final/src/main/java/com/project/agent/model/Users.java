@@ -1,11 +1,15 @@
 package com.project.agent.model;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.Collections;
+import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.NaturalId;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -45,6 +49,18 @@ public class Users implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
     
+    // Identifiant de l'agent associé (null hors agents), chargé dans la même requête que l'utilisateur
+    // pour que le principal authentifié suffise à identifier l'agent
+    @Formula("(select a.id from agent a where a.user_id = id)")
+    @JsonIgnore
+    private Long agentId;
+    
+    // Les jetons émis avant cette date sont refusés ; écrit uniquement par TokenRevocationList,
+    // jamais par la sauvegarde de l'entité
+    @Column(name = "token_valid_after", insertable = false, updatable = false)
+    @JsonIgnore
+    private LocalDateTime tokenValidAfter;
+    
     public enum Role {
         USER("ROLE_USER"),
         AGENT("ROLE_AGENT"),
@@ -5,6 +5,9 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.project.agent.model.Agency;
@@ -16,6 +19,53 @@ public interface AvailabilityRepository extends JpaRepository<Availability, Long
     List<Availability> findByAgency(Agency agency);
     List<Availability> findByAgencyAndDateGreaterThanEqual(Agency agency, LocalDate date);
     Optional<Availability> findByAgencyAndDate(Agency agency, LocalDate date);
+    List<Availability> findByAgencyAndDateBetweenOrderByDate(Agency agency, LocalDate startDate, LocalDate endDate);
     boolean existsByAgencyAndDate(Agency agency, LocalDate date);
     List<Availability> findByDateBefore(LocalDate date);
+    
+    /**
+     * État des créneaux d'une journée lu directement en base (sans passer par le contexte de persistance)
+     */
+    interface SlotState {
+        Long getId();
+        Long getVersion();
+        Long getAvailableSlotsMask();
+        Long getBookedSlotsMask();
+        Integer getSlotGranularity();
+    }
+    
+    /**
+     * Lit l'état des créneaux et la version d'une disponibilité
+     */
+    @Query("SELECT a.id AS id, a.version AS version, a.availableSlotsMask AS availableSlotsMask, "
+            + "a.bookedSlotsMask AS bookedSlotsMask, a.slotGranularity AS slotGranularity "
+            + "FROM Availability a WHERE a.agency = :agency AND a.date = :date")
+    Optional<SlotState> findSlotState(@Param("agency") Agency agency, @Param("date") LocalDate date);
+    
+    /**
+     * Remplace les créneaux d'une disponibilité seulement si sa version n'a pas changé depuis la lecture
+     * @return 1 si la mise à jour a été appliquée, 0 si une autre modification est passée entre-temps
+     */
+    @Modifying
+    @Query("UPDATE Availability a SET a.availableSlotsMask = :availableSlotsMask, a.bookedSlotsMask = :bookedSlotsMask, "
+            + "a.version = a.version + 1 WHERE a.id = :id AND a.version = :version")
+    int compareAndSetSlots(
+            @Param("id") Long id,
+            @Param("version") Long version,
+            @Param("availableSlotsMask") Long availableSlotsMask,
+            @Param("bookedSlotsMask") Long bookedSlotsMask);
+    
+    /**
+     * Crée la disponibilité d'une journée si aucune n'existe encore (sans erreur en cas de création concurrente)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO availability (agency_id, date, available_slots_mask, booked_slots_mask, slot_granularity, version) "
+            + "VALUES (:agencyId, :date, :availableSlotsMask, :bookedSlotsMask, :slotGranularity, 0) "
+            + "ON CONFLICT (agency_id, date) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(
+            @Param("agencyId") Long agencyId,
+            @Param("date") LocalDate date,
+            @Param("availableSlotsMask") Long availableSlotsMask,
+            @Param("bookedSlotsMask") Long bookedSlotsMask,
+            @Param("slotGranularity") Integer slotGranularity);
 }
\ No newline at end of file
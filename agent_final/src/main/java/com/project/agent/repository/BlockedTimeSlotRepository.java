@@ -36,6 +36,25 @@ public interface BlockedTimeSlotRepository extends JpaRepository<BlockedTimeSlot
             @Param("startDate") LocalDate startDate, 
             @Param("endDate") LocalDate endDate);
     
+    /**
+     * Date, heure et motif d'un créneau bloqué, sans charger l'agence ni l'agent
+     */
+    interface BlockedSlot {
+        LocalDate getDate();
+        LocalTime getTime();
+        String getReason();
+    }
+    
+    /**
+     * Créneaux bloqués d'une agence entre deux dates incluses, en une seule requête
+     */
+    @Query("SELECT b.date AS date, b.time AS time, b.reason AS reason FROM BlockedTimeSlot b "
+            + "WHERE b.agency = :agency AND b.date BETWEEN :startDate AND :endDate ORDER BY b.date, b.time")
+    List<BlockedSlot> findBlockedSlotsByAgencyAndDateBetween(
+            @Param("agency") Agency agency,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+    
     /**
      * Trouve tous les créneaux bloqués par un agent spécifique
      */
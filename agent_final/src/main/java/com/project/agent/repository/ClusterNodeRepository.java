@@ -0,0 +1,43 @@
+package com.project.agent.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.model.ClusterNode;
+
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    /**
+     * Enregistre ou rafraîchit le battement de cœur d'une instance
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO cluster_node (node_id, host, started_at, last_heartbeat) "
+            + "VALUES (:nodeId, :host, LOCALTIMESTAMP, LOCALTIMESTAMP) "
+            + "ON CONFLICT (node_id) DO UPDATE SET last_heartbeat = LOCALTIMESTAMP", nativeQuery = true)
+    int heartbeat(@Param("nodeId") String nodeId, @Param("host") String host);
+
+    /**
+     * Identifiants des instances vivantes, triés (même ordre sur toutes les instances)
+     */
+    @Query(value = "SELECT node_id FROM cluster_node "
+            + "WHERE last_heartbeat >= LOCALTIMESTAMP - make_interval(secs => :ttlSeconds) ORDER BY node_id",
+            nativeQuery = true)
+    List<String> findLiveNodeIds(@Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Supprime les instances arrêtées depuis longtemps
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cluster_node "
+            + "WHERE last_heartbeat < LOCALTIMESTAMP - make_interval(secs => :olderThanSeconds)", nativeQuery = true)
+    int deleteStale(@Param("olderThanSeconds") long olderThanSeconds);
+}
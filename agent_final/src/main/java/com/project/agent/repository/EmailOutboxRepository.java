@@ -0,0 +1,53 @@
+package com.project.agent.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.project.agent.model.EmailOutbox;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Identifiants des emails à envoyer (en attente échus, ou bail d'envoi expiré après un arrêt),
+     * verrouillés sans attendre ceux déjà réservés par un autre worker ou une autre instance
+     */
+    @Query(value = "SELECT id FROM email_outbox WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Réserve les emails pour un worker jusqu'à la fin du bail
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.project.agent.model.EmailOutbox.Status.SENDING, "
+            + "e.nextAttemptAt = :leaseUntil, e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int markSending(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.project.agent.model.EmailOutbox.Status.SENT, "
+            + "e.sentAt = :sentAt, e.lastError = null WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Remet en attente les emails abandonnés (relance manuelle)
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.project.agent.model.EmailOutbox.Status.PENDING, "
+            + "e.attempts = 0, e.nextAttemptAt = :now WHERE e.status = com.project.agent.model.EmailOutbox.Status.DEAD")
+    int requeueDead(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.status = com.project.agent.model.EmailOutbox.Status.SENT "
+            + "AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+
+    long countByStatus(EmailOutbox.Status status);
+}
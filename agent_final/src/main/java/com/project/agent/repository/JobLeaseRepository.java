@@ -0,0 +1,39 @@
+package com.project.agent.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.model.JobLease;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /**
+     * Prend le bail d'une tâche s'il est libre ou échu (horloge de la base, insensible au décalage entre instances)
+     * @return 1 si le bail a été obtenu, 0 s'il est détenu par une autre instance
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO job_lease (name, owner, locked_at, locked_until) "
+            + "VALUES (:name, :owner, LOCALTIMESTAMP, LOCALTIMESTAMP + make_interval(secs => :lockAtMostSeconds)) "
+            + "ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, locked_at = EXCLUDED.locked_at, "
+            + "locked_until = EXCLUDED.locked_until WHERE job_lease.locked_until <= LOCALTIMESTAMP", nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner,
+            @Param("lockAtMostSeconds") long lockAtMostSeconds);
+
+    /**
+     * Rend le bail après l'exécution ; il reste détenu au moins lockAtLeastSeconds après sa prise,
+     * pour qu'une instance dont l'horloge de déclenchement est en retard ne relance pas la même échéance
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE job_lease SET locked_until = GREATEST(LOCALTIMESTAMP, "
+            + "locked_at + make_interval(secs => :lockAtLeastSeconds)), last_run_at = LOCALTIMESTAMP, "
+            + "last_run_by = owner WHERE name = :name AND owner = :owner", nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner,
+            @Param("lockAtLeastSeconds") long lockAtLeastSeconds);
+}
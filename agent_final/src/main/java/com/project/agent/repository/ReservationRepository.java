@@ -1,10 +1,13 @@
 package com.project.agent.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.project.agent.model.Agency;
@@ -37,6 +40,45 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      */
     List<Reservation> findByAgencyAndStartDateTimeBetween(Agency agency, LocalDateTime start, LocalDateTime end);
     
+    /**
+     * Début et service d'une réservation, sans charger l'entité ni ses associations
+     */
+    interface BookedSlot {
+        LocalDateTime getStartDateTime();
+        String getService();
+    }
+    
+    /**
+     * Débuts et services des réservations d'une agence dans un statut donné, sur l'intervalle [from, to[,
+     * en une seule requête (s'appuie sur l'index agency_id, status, start_date_time)
+     */
+    @Query("SELECT r.startDateTime AS startDateTime, r.service AS service FROM Reservation r "
+            + "WHERE r.agency = :agency AND r.status = :status "
+            + "AND r.startDateTime >= :from AND r.startDateTime < :to ORDER BY r.startDateTime")
+    List<BookedSlot> findBookedSlotsByAgencyAndStatusInRange(
+            @Param("agency") Agency agency,
+            @Param("status") Status status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+    
+    /**
+     * Retourne uniquement les dates/heures de début des réservations d'une agence dans un statut donné,
+     * sur l'intervalle [from, to[ (s'appuie sur l'index agency_id, status, start_date_time)
+     */
+    @Query("SELECT r.startDateTime FROM Reservation r WHERE r.agency = :agency AND r.status = :status "
+            + "AND r.startDateTime >= :from AND r.startDateTime < :to ORDER BY r.startDateTime")
+    List<LocalDateTime> findStartDateTimesByAgencyAndStatusInRange(
+            @Param("agency") Agency agency,
+            @Param("status") Status status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+    
+    /**
+     * Vérifie s'il existe une réservation d'une agence dans un statut donné dont le début se trouve dans un intervalle
+     */
+    boolean existsByAgencyAndStatusAndStartDateTimeBetween(
+        Agency agency, Status status, LocalDateTime start, LocalDateTime end);
+    
     long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     long countByStatus(Status status);
     
@@ -49,4 +91,91 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
      */
     @Query("SELECT DISTINCT r.agency FROM Reservation r WHERE r.user = ?1 AND r.status = 'COMPLETED'")
     List<Agency> findDistinctAgenciesByUserAndStatusCompleted(Users user);
+    
+    /**
+     * Agence d'une réservation, sans charger l'entité
+     */
+    interface ReservationAgency {
+        Long getId();
+        Long getAgencyId();
+    }
+    
+    /**
+     * Agences d'un lot de réservations en une seule requête
+     */
+    @Query("SELECT r.id AS id, r.agency.id AS agencyId FROM Reservation r WHERE r.id IN :ids")
+    List<ReservationAgency> findAgencyIdsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Réservations d'une agence parmi un lot, sans charger les entités
+     */
+    @Query("SELECT r.id FROM Reservation r WHERE r.agency.id = :agencyId AND r.id IN :ids")
+    List<Long> findIdsByAgencyIdAndIdIn(@Param("agencyId") Long agencyId, @Param("ids") Collection<Long> ids);
+    
+    /**
+     * Champs d'une réservation affichés sur le tableau de bord d'une agence
+     */
+    interface ReservationSummary {
+        Long getId();
+        Status getStatus();
+        Long getVersion();
+        String getService();
+        String getPreferredDate();
+        LocalDateTime getStartDateTime();
+        LocalDateTime getEndDateTime();
+        Long getHandledByAgentId();
+    }
+    
+    /**
+     * Réservations d'une agence dans les statuts donnés, sans charger les entités liées
+     */
+    @Query("SELECT r.id AS id, r.status AS status, r.version AS version, r.service AS service, "
+            + "r.preferredDate AS preferredDate, r.startDateTime AS startDateTime, r.endDateTime AS endDateTime, "
+            + "a.id AS handledByAgentId "
+            + "FROM Reservation r LEFT JOIN r.handledByAgent a "
+            + "WHERE r.agency.id = :agencyId AND r.status IN :statuses ORDER BY r.id")
+    List<ReservationSummary> findSummariesByAgencyIdAndStatusIn(
+            @Param("agencyId") Long agencyId,
+            @Param("statuses") Collection<Status> statuses);
+    
+    /**
+     * Prochain lot de réservations confirmées sans rappel (24 h), au-delà de afterId ; les lignes
+     * sont verrouillées jusqu'au commit et ignorées par une autre instance qui traite les rappels
+     */
+    @Query(value = "SELECT id FROM reservation WHERE status = 'CONFIRMED' AND start_date_time BETWEEN :from AND :to "
+            + "AND reminder_sent = false AND id > :afterId ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockDueReminderIds(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            @Param("afterId") long afterId, @Param("limit") int limit);
+    
+    /**
+     * Même chose pour les rappels courts (1 h)
+     */
+    @Query(value = "SELECT id FROM reservation WHERE status = 'CONFIRMED' AND start_date_time BETWEEN :from AND :to "
+            + "AND short_reminder_sent = false AND id > :afterId ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockDueShortReminderIds(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            @Param("afterId") long afterId, @Param("limit") int limit);
+    
+    /**
+     * Réservations d'un lot avec client, agence, agent et avis chargés en une seule requête
+     */
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.agency LEFT JOIN FETCH r.handledByAgent "
+            + "LEFT JOIN FETCH r.feedback WHERE r.id IN :ids ORDER BY r.id")
+    List<Reservation> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Marque le rappel comme envoyé ; la version est incrémentée comme pour une modification JPA,
+     * afin qu'une copie lue avant ce passage ne l'écrase pas
+     */
+    @Modifying
+    @Query("UPDATE Reservation r SET r.reminderSent = true, r.version = r.version + 1 WHERE r.id IN :ids")
+    int markReminderSent(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Marque le rappel court comme envoyé, en incrémentant la version
+     */
+    @Modifying
+    @Query("UPDATE Reservation r SET r.shortReminderSent = true, r.version = r.version + 1 WHERE r.id IN :ids")
+    int markShortReminderSent(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.project.agent.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.model.UserPresence;
+
+/**
+ * Présence partagée entre les instances. Les lectures ne retiennent que les instances dont le
+ * battement de cœur (cluster_node) date de moins de ttlSeconds.
+ */
+@Repository
+public interface UserPresenceRepository extends JpaRepository<UserPresence, Long> {
+
+    /**
+     * Agent en ligne, toutes instances confondues
+     */
+    interface OnlineAgent {
+        Long getAgentId();
+        Long getAgencyId();
+        String getDisplayName();
+        Long getSessions();
+        LocalDateTime getOnlineSince();
+    }
+
+    String LIVE_NODE_JOIN = "FROM user_presence p JOIN cluster_node n ON n.node_id = p.node_id "
+            + "WHERE n.last_heartbeat >= LOCALTIMESTAMP - make_interval(secs => :ttlSeconds) ";
+
+    String ONLINE_AGENT_COLUMNS = "SELECT p.agent_id AS agentId, p.agency_id AS agencyId, "
+            + "max(p.display_name) AS displayName, sum(p.sessions) AS sessions, min(p.online_since) AS onlineSince ";
+
+    /**
+     * Enregistre le nombre de sessions d'un utilisateur sur une instance
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_presence (node_id, user_id, agent_id, agency_id, display_name, sessions, online_since) "
+            + "VALUES (:nodeId, :userId, :agentId, :agencyId, :displayName, :sessions, LOCALTIMESTAMP) "
+            + "ON CONFLICT (node_id, user_id) DO UPDATE SET sessions = EXCLUDED.sessions", nativeQuery = true)
+    int upsert(
+            @Param("nodeId") String nodeId,
+            @Param("userId") Long userId,
+            @Param("agentId") Long agentId,
+            @Param("agencyId") Long agencyId,
+            @Param("displayName") String displayName,
+            @Param("sessions") int sessions);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_presence WHERE node_id = :nodeId AND user_id = :userId", nativeQuery = true)
+    int deleteByNodeAndUser(@Param("nodeId") String nodeId, @Param("userId") Long userId);
+
+    /**
+     * Retire les lignes d'une instance (redémarrage sous le même identifiant)
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_presence WHERE node_id = :nodeId", nativeQuery = true)
+    int deleteByNode(@Param("nodeId") String nodeId);
+
+    /**
+     * Retire les lignes des instances qui ne figurent plus dans cluster_node
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_presence p WHERE NOT EXISTS "
+            + "(SELECT 1 FROM cluster_node n WHERE n.node_id = p.node_id)", nativeQuery = true)
+    int deleteOrphans();
+
+    @Query(value = ONLINE_AGENT_COLUMNS + LIVE_NODE_JOIN
+            + "AND p.agent_id IS NOT NULL AND p.agency_id IS NOT NULL GROUP BY p.agent_id, p.agency_id "
+            + "ORDER BY min(p.online_since)", nativeQuery = true)
+    List<OnlineAgent> findOnlineAgents(@Param("ttlSeconds") long ttlSeconds);
+
+    @Query(value = ONLINE_AGENT_COLUMNS + LIVE_NODE_JOIN
+            + "AND p.agent_id IS NOT NULL AND p.agency_id = :agencyId GROUP BY p.agent_id, p.agency_id "
+            + "ORDER BY min(p.online_since)", nativeQuery = true)
+    List<OnlineAgent> findOnlineAgentsByAgency(@Param("agencyId") Long agencyId, @Param("ttlSeconds") long ttlSeconds);
+
+    @Query(value = "SELECT count(DISTINCT p.user_id) " + LIVE_NODE_JOIN, nativeQuery = true)
+    long countOnlineUsers(@Param("ttlSeconds") long ttlSeconds);
+
+    @Query(value = "SELECT count(DISTINCT p.agent_id) " + LIVE_NODE_JOIN + "AND p.agent_id IS NOT NULL", nativeQuery = true)
+    long countOnlineAgents(@Param("ttlSeconds") long ttlSeconds);
+
+    @Query(value = "SELECT count(*) > 0 " + LIVE_NODE_JOIN + "AND p.agent_id = :agentId", nativeQuery = true)
+    boolean isAgentOnline(@Param("agentId") Long agentId, @Param("ttlSeconds") long ttlSeconds);
+}
@@ -1,14 +1,48 @@
 package com.project.agent.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import com.project.agent.model.Users;
 
 @Repository
 public interface UserRepository extends JpaRepository<Users, Long> {
+    
+    // Identité d'un utilisateur avec son agent et son agence éventuels
+    interface UserIdentity {
+        Long getUserId();
+        String getEmail();
+        String getDisplayName();
+        Users.Role getRole();
+        Long getAgentId();
+        Long getAgencyId();
+    }
+    
+    // Date avant laquelle les jetons d'un utilisateur sont refusés (null si jamais révoqués)
+    interface TokenEpoch {
+        Long getId();
+        LocalDateTime getTokenValidAfter();
+    }
+    
     Optional<Users> findByEmail(String email);
+    
+    // L'identifiant est lu aussi : un compte jamais révoqué (date nulle) reste distinct d'un compte absent
+    @Query("SELECT u.id AS id, u.tokenValidAfter AS tokenValidAfter FROM Users u WHERE u.email = :email")
+    Optional<TokenEpoch> findTokenEpochByEmail(@Param("email") String email);
+    
+    @Modifying
+    @Query(value = "UPDATE users SET token_valid_after = :validAfter WHERE email = :email", nativeQuery = true)
+    int updateTokenValidAfter(@Param("email") String email, @Param("validAfter") LocalDateTime validAfter);
+    
+    @Query("SELECT u.id AS userId, u.email AS email, u.username AS displayName, u.role AS role, "
+            + "a.id AS agentId, ag.id AS agencyId "
+            + "FROM Users u LEFT JOIN Agent a ON a.user = u LEFT JOIN a.agency ag WHERE u.email = :email")
+    Optional<UserIdentity> findIdentityByEmail(@Param("email") String email);
     Boolean existsByEmail(String email);
     List<Users> findAll();
     long countByRole(Users.Role role);
@@ -1,5 +1,6 @@
 package com.project.agent.scheduler;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Component;
 import com.project.agent.model.Reservation;
 import com.project.agent.model.Reservation.Status;
 import com.project.agent.repository.ReservationRepository;
+import com.project.agent.service.cluster.JobLeaseService;
 
 @Component
 @ConditionalOnProperty(name = "scheduler.imminent-appointments-check.enabled", havingValue = "true", matchIfMissing = true)
@@ -27,12 +29,19 @@ public class AppointmentReminderScheduler {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
+    @Autowired
+    private JobLeaseService jobLeaseService;
+    
     /**
      * Vérifie les rendez-vous imminents et envoie une notification aux agents
      * Exécuté toutes les 15 minutes
      */
     @Scheduled(cron = "${scheduler.imminent-appointments-check.cron:0 */15 * * * *}")
     public void notifyUpcomingAppointments() {
+        jobLeaseService.runExclusively("notifyUpcomingAppointments", Duration.ofMinutes(5), this::runNotifyUpcomingAppointments);
+    }
+    
+    private void runNotifyUpcomingAppointments() {
         logger.info("Vérification des rendez-vous imminents");
         
         LocalDateTime now = LocalDateTime.now();
@@ -1,81 +1,278 @@
 package com.project.agent.scheduler;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.project.agent.dto.AvailabilityDTO;
-import com.project.agent.model.Availability;
-import com.project.agent.repository.AvailabilityRepository;
-import com.project.agent.service.AvailabilityService;
+import com.project.agent.dto.SlotExpiryDTO;
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.service.AvailabilityCache;
+import com.project.agent.service.cluster.ClusterMembership;
+import com.project.agent.service.cluster.ClusterMembership.Shard;
+import com.project.agent.service.cluster.JobLeaseService;
+import com.project.agent.service.realtime.CoalescingPublisher;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class AvailabilityScheduler {
     
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityScheduler.class);
+    
+    /*
+     * Union des créneaux encore disponibles aujourd'hui, par granularité, pour les agences
+     * de cette instance. Paramètres : granularité par défaut, date, shardCount, shardIndex.
+     */
+    private static final String REMAINING_SLOTS_SQL = """
+            SELECT COALESCE(slot_granularity, ?) AS granularity, bit_or(available_slots_mask) AS mask
+            FROM availability
+            WHERE date = ? AND available_slots_mask <> 0 AND MOD(agency_id, ?) = ?
+            GROUP BY 1
+            """;
+    
+    /*
+     * Passe à l'état réservé, en une instruction, les créneaux disponibles du masque pour toutes
+     * les lignes concernées, et retourne ce qui a été retiré à chaque agence. La version est
+     * incrémentée comme pour une modification JPA. Paramètres : masque, date, granularité par
+     * défaut, granularité, masque, shardCount, shardIndex.
+     */
+    private static final String EXPIRE_SLOTS_SQL = """
+            WITH due AS (
+                SELECT id, available_slots_mask & ? AS expired
+                FROM availability
+                WHERE date = ? AND COALESCE(slot_granularity, ?) = ?
+                  AND (available_slots_mask & ?) <> 0 AND MOD(agency_id, ?) = ?
+                FOR UPDATE
+            )
+            UPDATE availability a SET
+                available_slots_mask = a.available_slots_mask & ~due.expired,
+                booked_slots_mask = COALESCE(a.booked_slots_mask, 0) | due.expired,
+                version = a.version + 1
+            FROM due
+            WHERE a.id = due.id
+            RETURNING a.agency_id, due.expired
+            """;
+    
+    // Nouvel essai après une erreur de base de données
+    private static final Duration ERROR_RETRY_DELAY = Duration.ofMinutes(1);
+    
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private CoalescingPublisher livePublisher;
     
     @Autowired
-    private AvailabilityRepository availabilityRepository;
+    private JdbcTemplate jdbcTemplate;
     
     @Autowired
-    private AvailabilityService availabilityService;
-    
-    // Vérifier toutes les minutes pour les créneaux passés
-    @Scheduled(fixedRateString = "${scheduler.availability-check.interval-ms:60000}")
-    @ConditionalOnProperty(name = "scheduler.availability-check.enabled", havingValue = "true", matchIfMissing = true)
-    public void checkPassedTimeSlots() {
-        LocalDate today = LocalDate.now();
-        LocalTime now = LocalTime.now();
-        
-        // Rechercher toutes les disponibilités pour aujourd'hui
-        List<Availability> todayAvailabilities = availabilityRepository.findByDate(today);
-        
-        for (Availability availability : todayAvailabilities) {
-            boolean updated = false;
-            List<LocalTime> availableSlots = new ArrayList<>(availability.getAvailableTimeSlots());
+    private AvailabilityCache availabilityCache;
+    
+    @Autowired
+    private ClusterMembership clusterMembership;
+    
+    @Autowired
+    private JobLeaseService jobLeaseService;
+    
+    @Value("${scheduler.availability-check.enabled:true}")
+    private boolean slotExpiryEnabled = true;
+    
+    @Value("${scheduler.future-availability-generation.enabled:true}")
+    private boolean futureAvailabilityGenerationEnabled = true;
+    
+    @Value("${scheduler.old-availability-archiving.enabled:true}")
+    private boolean oldAvailabilityArchivingEnabled = true;
+    
+    // Attente maximale entre deux passages : rattrape les créneaux ajoutés par une autre instance
+    // ou les agences reprises après un changement de la composition du cluster
+    @Value("${scheduler.availability-check.max-sleep-minutes:15}")
+    private long maxSleepMinutes = 15;
+    
+    private ScheduledExecutorService slotExpiryExecutor;
+    
+    // Thread de slotExpiryExecutor : ses propres invalidations ne le réveillent pas
+    private volatile Thread slotExpiryThread;
+    
+    private ScheduledFuture<?> pendingExpiry;
+    
+    // Un seul passage en attente pour une rafale de modifications
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    
+    /**
+     * Expiration des créneaux passés, à l'heure exacte de début du prochain créneau disponible.
+     *
+     * Plutôt que de relire toutes les disponibilités du jour à intervalle fixe, un seul thread
+     * calcule la prochaine heure de début de créneau parmi les agences de cette instance et
+     * dort jusque-là. À l'échéance, une instruction par granularité retire les créneaux
+     * atteints de toutes les lignes concernées, puis seuls les créneaux retirés sont publiés.
+     * Toute modification des disponibilités du jour (signalée par {@link AvailabilityCache})
+     * déclenche un nouveau calcul de l'échéance, sauf celles que ce thread vient de faire : le
+     * passage en cours en tient déjà compte.
+     */
+    @PostConstruct
+    void startSlotExpiry() {
+        if (!slotExpiryEnabled) {
+            return;
+        }
+        ThreadFactory threadFactory = Thread.ofPlatform().name("slot-expiry").daemon(true).factory();
+        slotExpiryExecutor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> slotExpiryThread = threadFactory.newThread(runnable));
+        availabilityCache.addChangeListener((agencyId, date) -> {
+            if (LocalDate.now().equals(date) && Thread.currentThread() != slotExpiryThread) {
+                wakeUp();
+            }
+        });
+        wakeUp();
+    }
+    
+    @PreDestroy
+    void stopSlotExpiry() {
+        if (slotExpiryExecutor != null) {
+            slotExpiryExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Demande un passage immédiat (expiration éventuelle puis calcul de la prochaine échéance)
+     */
+    void wakeUp() {
+        if (slotExpiryExecutor != null && wakeUpPending.compareAndSet(false, true)) {
+            slotExpiryExecutor.execute(() -> {
+                wakeUpPending.set(false);
+                checkPassedTimeSlots();
+            });
+        }
+    }
+    
+    /**
+     * Retire les créneaux atteints des agences de cette instance, puis planifie le passage suivant.
+     * Exécuté uniquement sur le thread slot-expiry.
+     */
+    void checkPassedTimeSlots() {
+        LocalDateTime now = LocalDateTime.now();
+        Duration delay;
+        try {
+            LocalDate today = now.toLocalDate();
+            LocalTime time = now.toLocalTime();
+            Shard shard = clusterMembership.getShard();
             
-            // Vérifier les créneaux qui sont maintenant passés
-            for (LocalTime slot : availableSlots) {
-                if (slot.isBefore(now) || slot.equals(now)) {
-                    availability.getAvailableTimeSlots().remove(slot);
-                    availability.getBookedTimeSlots().add(slot); // Optionnel: marquer comme "réservé"
-                    updated = true;
+            Map<Integer, Long> remaining = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Long> slots : findRemainingSlots(today, shard).entrySet()) {
+                int granularity = slots.getKey();
+                long reached = SlotCalendar.upTo(time, granularity);
+                if ((slots.getValue() & reached) != 0) {
+                    expireSlots(today, granularity, reached, shard);
                 }
+                remaining.put(granularity, slots.getValue() & ~reached);
             }
             
-            if (updated) {
-                // Enregistrer les changements
-                Availability savedAvailability = availabilityRepository.save(availability);
-                
-                // Envoyer une notification à tous les clients
-                AvailabilityDTO dto = new AvailabilityDTO(savedAvailability);
-                // Enrichir le DTO si nécessaire
-                if (availabilityService != null) {
-                    availabilityService.enrichAvailabilityDTO(dto);
-                }
-                messagingTemplate.convertAndSend("/topic/availability/" + availability.getAgency().getId(), dto);
+            delay = Duration.between(now, nextExpiry(remaining, now, Duration.ofMinutes(maxSleepMinutes)));
+        } catch (Exception e) {
+            logger.error("Erreur lors de l'expiration des créneaux passés: {}", e.getMessage());
+            delay = ERROR_RETRY_DELAY;
+        }
+        schedule(delay);
+    }
+    
+    /**
+     * Prochaine échéance : début du premier créneau restant toutes granularités confondues,
+     * sans dépasser maxSleep ni minuit (les disponibilités du lendemain sont alors relues)
+     */
+    static LocalDateTime nextExpiry(Map<Integer, Long> remaining, LocalDateTime now, Duration maxSleep) {
+        LocalDateTime next = now.plus(maxSleep);
+        LocalDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay();
+        if (midnight.isBefore(next)) {
+            next = midnight;
+        }
+        
+        for (Map.Entry<Integer, Long> slots : remaining.entrySet()) {
+            int granularity = slots.getKey();
+            long validSlots = slots.getValue() & SlotCalendar.lowBits(SlotCalendar.slotCount(granularity));
+            int index = SlotCalendar.nextSlot(validSlots, 0);
+            if (index < 0) {
+                continue;
+            }
+            LocalDateTime start = now.toLocalDate().atTime(SlotCalendar.timeOf(index, granularity));
+            if (start.isBefore(next)) {
+                next = start;
             }
         }
+        return next.isBefore(now) ? now : next;
+    }
+    
+    private Map<Integer, Long> findRemainingSlots(LocalDate today, Shard shard) {
+        Map<Integer, Long> remaining = new LinkedHashMap<>();
+        jdbcTemplate.query(REMAINING_SLOTS_SQL,
+                (RowCallbackHandler) rs -> remaining.put(rs.getInt("granularity"), rs.getLong("mask")),
+                SlotCalendar.DEFAULT_GRANULARITY_MINUTES, today, shard.count(), shard.index());
+        return remaining;
+    }
+    
+    private void expireSlots(LocalDate today, int granularity, long reached, Shard shard) {
+        List<SlotExpiryDTO> expirations = jdbcTemplate.query(EXPIRE_SLOTS_SQL,
+                (rs, rowNum) -> new SlotExpiryDTO(rs.getLong("agency_id"), today,
+                        SlotCalendar.toTimes(rs.getLong("expired"), granularity)),
+                reached, today, SlotCalendar.DEFAULT_GRANULARITY_MINUTES, granularity, reached,
+                shard.count(), shard.index());
+        
+        for (SlotExpiryDTO expiration : expirations) {
+            availabilityCache.invalidate(expiration.getAgencyId(), today);
+            livePublisher.publish("/topic/availability/" + expiration.getAgencyId() + "/expired", today, expiration,
+                    SlotExpiryDTO::merge);
+        }
+        if (!expirations.isEmpty()) {
+            logger.debug("{} disponibilités mises à jour pour les créneaux de {} minutes", expirations.size(), granularity);
+        }
+    }
+    
+    private synchronized void schedule(Duration delay) {
+        if (pendingExpiry != null) {
+            pendingExpiry.cancel(false);
+        }
+        if (slotExpiryExecutor != null && !slotExpiryExecutor.isShutdown()) {
+            pendingExpiry = slotExpiryExecutor.schedule(this::checkPassedTimeSlots, delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
     }
     
     // Ajouter de nouvelles méthodes planifiées
     @Scheduled(cron = "${scheduler.future-availability-generation.cron:0 0 0 * * *}")
-    @ConditionalOnProperty(name = "scheduler.future-availability-generation.enabled", havingValue = "true", matchIfMissing = true)
     public void generateFutureAvailabilities() {
+        if (!futureAvailabilityGenerationEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("generateFutureAvailabilities", Duration.ofHours(1), this::runGenerateFutureAvailabilities);
+    }
+    
+    private void runGenerateFutureAvailabilities() {
         // Implémentation...
     }
     
     @Scheduled(cron = "${scheduler.old-availability-archiving.cron:0 0 1 * * SUN}")
-    @ConditionalOnProperty(name = "scheduler.old-availability-archiving.enabled", havingValue = "true", matchIfMissing = true)
     public void archiveOldAvailabilities() {
+        if (!oldAvailabilityArchivingEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("archiveOldAvailabilities", Duration.ofHours(1), this::runArchiveOldAvailabilities);
+    }
+    
+    private void runArchiveOldAvailabilities() {
         // Implémentation...
     }
 }
\ No newline at end of file
@@ -1,23 +1,20 @@
 package com.project.agent.scheduler;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import com.project.agent.model.ReservationLock;
-import com.project.agent.repository.ReservationLockRepository;
-import com.project.agent.repository.ReservationRepository;
-
-import org.springframework.transaction.annotation.Transactional;
+import com.project.agent.service.cluster.JobLeaseService;
+import com.project.agent.service.realtime.PresenceRegistry;
 
 @Component
 public class MaintenanceScheduler {
@@ -25,65 +22,33 @@ public class MaintenanceScheduler {
     private static final Logger logger = LoggerFactory.getLogger(MaintenanceScheduler.class);
     
     @Autowired
-    private ReservationLockRepository lockRepository;
+    private SimpMessagingTemplate messagingTemplate;
     
     @Autowired
-    private ReservationRepository reservationRepository;
+    private JobLeaseService jobLeaseService;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private PresenceRegistry presenceRegistry;
+    
+    @Value("${scheduler.system-metrics.enabled:true}")
+    private boolean systemMetricsEnabled = true;
     
     // Map pour stocker les statistiques des tâches planifiées
     private final Map<String, TaskStatistics> taskStats = new HashMap<>();
     
-    /**
-     * Nettoyer les verrous de réservation expirés
-     * Exécuté toutes les 10 minutes
-     */
-    @Scheduled(fixedRateString = "${scheduler.expired-locks-cleanup.interval-ms:600000}")
-    @ConditionalOnProperty(name = "scheduler.expired-locks-cleanup.enabled", havingValue = "true", matchIfMissing = true)
-    @Transactional
-    public void cleanupExpiredLocks() {
-        String taskName = "cleanupExpiredLocks";
-        startTask(taskName);
-        
-        logger.info("Nettoyage des verrous de réservation expirés");
-        
-        LocalDateTime now = LocalDateTime.now();
-        List<ReservationLock> expiredLocks = lockRepository.findByActiveAndExpiresAtBefore(true, now);
-        
-        if (!expiredLocks.isEmpty()) {
-            logger.info("Suppression de {} verrous expirés", expiredLocks.size());
-            
-            for (ReservationLock lock : expiredLocks) {
-                // Désactiver le verrou
-                lock.setActive(false);
-                lockRepository.save(lock);
-                
-                // Notifier de la libération du verrou
-                if (lock.getReservation() != null) {
-                    messagingTemplate.convertAndSend(
-                            "/topic/reservation-lock-status",
-                            Map.of(
-                                "locked", false, 
-                                "reservationId", lock.getReservation().getId(),
-                                "message", "Verrou expiré automatiquement"
-                            )
-                    );
-                }
-            }
-        }
-        
-        completeTask(taskName, expiredLocks.size());
-    }
-    
     /**
      * Calculer des métriques d'utilisation du système
      * Exécuté toutes les heures
      */
     @Scheduled(cron = "${scheduler.system-metrics.cron:0 0 * * * *}")
-    @ConditionalOnProperty(name = "scheduler.system-metrics.enabled", havingValue = "true", matchIfMissing = true)
     public void calculateSystemMetrics() {
+        if (!systemMetricsEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("calculateSystemMetrics", Duration.ofMinutes(10), this::runCalculateSystemMetrics);
+    }
+    
+    private void runCalculateSystemMetrics() {
         String taskName = "calculateSystemMetrics";
         startTask(taskName);
         
@@ -92,8 +57,9 @@ public class MaintenanceScheduler {
         // Implémentation simplifiée pour l'exemple
         Map<String, Object> metrics = new HashMap<>();
         metrics.put("timestamp", LocalDateTime.now());
-        metrics.put("activeUsers", 0); // À implémenter
-        metrics.put("activeAgents", 0); // À implémenter
+        // Sessions WebSocket ouvertes sur toutes les instances du cluster (voir PresenceRegistry)
+        metrics.put("activeUsers", presenceRegistry.countOnlineUsers());
+        metrics.put("activeAgents", presenceRegistry.countOnlineAgents());
         
         // Publier les métriques
         messagingTemplate.convertAndSend("/topic/system-metrics", metrics);
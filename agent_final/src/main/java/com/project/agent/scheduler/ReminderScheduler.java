@@ -1,12 +1,13 @@
 package com.project.agent.scheduler;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -15,6 +16,11 @@ import com.project.agent.model.Reservation;
 import com.project.agent.model.Reservation.Status;
 import com.project.agent.repository.ReservationRepository;
 import com.project.agent.service.EmailService;
+import com.project.agent.service.ReminderService;
+import com.project.agent.service.ReservationEventPublisher;
+import com.project.agent.service.ReminderService.ChunkResult;
+import com.project.agent.service.ReminderService.ReminderType;
+import com.project.agent.service.cluster.JobLeaseService;
 
 @Component
 public class ReminderScheduler {
@@ -27,93 +33,117 @@ public class ReminderScheduler {
     @Autowired
     private EmailService emailService;
     
+    @Autowired
+    private ReminderService reminderService;
+    
+    @Autowired
+    private JobLeaseService jobLeaseService;
+    
+    @Autowired
+    private ReservationEventPublisher reservationEvents;
+    
     @Autowired(required = false)
     private SimpMessagingTemplate messagingTemplate;
     
+    @Value("${scheduler.appointment-reminders.chunk-size:200}")
+    private int reminderChunkSize = 200;
+    
+    // Interrupteurs des tâches : @ConditionalOnProperty n'a pas d'effet sur une méthode @Scheduled
+    @Value("${scheduler.appointment-reminders.enabled:true}")
+    private boolean appointmentRemindersEnabled = true;
+    
+    @Value("${scheduler.short-reminders.enabled:true}")
+    private boolean shortRemindersEnabled = true;
+    
+    @Value("${scheduler.abandoned-reservations-cleanup.enabled:true}")
+    private boolean abandonedReservationsCleanupEnabled = true;
+    
     /**
      * Vérifie toutes les heures les rendez-vous à venir et envoie des rappels
      * pour ceux prévus dans les 24 prochaines heures
      */
     @Scheduled(cron = "${scheduler.appointment-reminders.cron:0 0 * * * *}")
-    @ConditionalOnProperty(name = "scheduler.appointment-reminders.enabled", havingValue = "true", matchIfMissing = true)
     public void sendAppointmentReminders() {
+        if (!appointmentRemindersEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("sendAppointmentReminders", Duration.ofMinutes(50), this::runAppointmentReminders);
+    }
+    
+    private void runAppointmentReminders() {
         logger.info("Exécution du planificateur de rappels de rendez-vous");
         
         // Définir la fenêtre de temps pour les rappels (prochaines 24 heures)
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime tomorrow = now.plusHours(24);
+        int reminded = dispatchReminders(ReminderType.DAY_BEFORE, now, now.plusHours(24), true);
         
-        // Récupérer les réservations confirmées dans cette fenêtre de temps
-        List<Reservation> upcomingReservations = reservationRepository
-                .findByStatusAndStartDateTimeBetween(Status.CONFIRMED, now, tomorrow);
+        logger.info("Rappels envoyés pour les rendez-vous des prochaines 24 heures: {}", reminded);
+    }
+    
+    /**
+     * Envoie un rappel 1 heure avant le rendez-vous
+     * Vérifie toutes les 15 minutes
+     */
+    @Scheduled(cron = "${scheduler.short-reminders.cron:0 */15 * * * *}")
+    public void sendShortReminders() {
+        if (!shortRemindersEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("sendShortReminders", Duration.ofMinutes(14), this::runShortReminders);
+    }
+    
+    private void runShortReminders() {
+        logger.info("Vérification des rappels courts (1 heure avant)");
         
-        logger.info("Nombre de rendez-vous à venir dans les prochaines 24 heures: {}", upcomingReservations.size());
+        LocalDateTime now = LocalDateTime.now();
+        int reminded = dispatchReminders(ReminderType.HOUR_BEFORE, now, now.plusHours(1), false);
         
-        for (Reservation reservation : upcomingReservations) {
+        logger.info("Rappels courts envoyés pour les rendez-vous de la prochaine heure: {}", reminded);
+    }
+    
+    /**
+     * Parcourt les rappels dus lot par lot (une transaction par lot) ; un lot en échec est
+     * annulé entièrement et repris au passage suivant
+     */
+    private int dispatchReminders(ReminderType type, LocalDateTime from, LocalDateTime to, boolean notify) {
+        int reminded = 0;
+        long afterId = 0;
+        while (true) {
+            ChunkResult chunk;
             try {
-                // Vérifier si le rappel a déjà été envoyé
-                if (!reservation.isReminderSent()) {
-                    // Envoyer le rappel
-                    emailService.sendAppointmentReminder(reservation);
-                    
-                    // Marquer le rappel comme envoyé
-                    reservation.setReminderSent(true);
-                    reservationRepository.save(reservation);
-                    
-                    logger.info("Rappel envoyé pour la réservation ID: {}", reservation.getId());
-                    
-                    // Notification WebSocket (si disponible)
-                    if (messagingTemplate != null) {
-                        messagingTemplate.convertAndSend("/topic/reminder-sent", reservation.getId());
-                    }
-                }
+                chunk = reminderService.dispatchChunk(type, from, to, afterId, reminderChunkSize);
             } catch (Exception e) {
-                logger.error("Erreur lors de l'envoi du rappel pour la réservation ID {}: {}", 
-                        reservation.getId(), e.getMessage());
+                logger.error("Erreur lors de l'envoi d'un lot de rappels ({}) après la réservation ID {}: {}",
+                        type, afterId, e.getMessage());
+                return reminded;
+            }
+            if (chunk.isEmpty()) {
+                return reminded;
+            }
+            
+            afterId = chunk.lastId();
+            reminded += chunk.remindedIds().size();
+            
+            // Notification WebSocket (si disponible)
+            if (notify && messagingTemplate != null) {
+                chunk.remindedIds().forEach(id -> messagingTemplate.convertAndSend("/topic/reminder-sent", id));
             }
         }
-    }
-    
-    /**
-     * Envoie un rappel 1 heure avant le rendez-vous
-     * Vérifie toutes les 15 minutes
-     */
-    @Scheduled(cron = "${scheduler.short-reminders.cron:0 */15 * * * *}")
-    @ConditionalOnProperty(name = "scheduler.short-reminders.enabled", havingValue = "true", matchIfMissing = true)
-    public void sendShortReminders() {
-        logger.info("Vérification des rappels courts (1 heure avant)");
-        
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime oneHourLater = now.plusHours(1);
-        
-        List<Reservation> upcomingReservations = reservationRepository
-                .findByStatusAndStartDateTimeBetweenAndShortReminderSentFalse(
-                    Status.CONFIRMED, now, oneHourLater);
-        
-        logger.info("Nombre de rendez-vous dans la prochaine heure: {}", upcomingReservations.size());
-        
-        for (Reservation reservation : upcomingReservations) {
-            try {
-                emailService.sendAppointmentReminder(reservation);
-                
-                reservation.setShortReminderSent(true);
-                reservationRepository.save(reservation);
-                
-                logger.info("Rappel court envoyé pour la réservation ID: {}", reservation.getId());
-            } catch (Exception e) {
-                logger.error("Erreur lors de l'envoi du rappel court pour la réservation ID {}: {}", 
-                        reservation.getId(), e.getMessage());
-            }
-        }
-    }
-    
-    /**
-     * Vérifie chaque jour les rendez-vous en attente expirés (plus de 7 jours sans confirmation)
+    }
+    
+    /**
+     * Vérifie chaque jour les rendez-vous en attente expirés (plus de 7 jours sans confirmation)
      * et les annule automatiquement
      */
     @Scheduled(cron = "${scheduler.abandoned-reservations-cleanup.cron:0 0 0 * * *}")
-    @ConditionalOnProperty(name = "scheduler.abandoned-reservations-cleanup.enabled", havingValue = "true", matchIfMissing = true)
     public void cancelExpiredPendingReservations() {
+        if (!abandonedReservationsCleanupEnabled) {
+            return;
+        }
+        jobLeaseService.runExclusively("cancelExpiredPendingReservations", Duration.ofHours(1), this::runCancelExpiredPendingReservations);
+    }
+    
+    private void runCancelExpiredPendingReservations() {
         logger.info("Vérification des réservations en attente expirées");
         
         // Définir la date limite (7 jours dans le passé)
@@ -136,7 +166,7 @@ public class ReminderScheduler {
                         "\n\nAutomatiquement annulée après 7 jours sans confirmation.";
                 reservation.setDescription(newDescription);
                 
-                reservationRepository.save(reservation);
+                Reservation savedReservation = reservationRepository.save(reservation);
                 
                 // Notifier le client
                 emailService.sendReservationCancellation(
@@ -146,9 +176,8 @@ public class ReminderScheduler {
                 logger.info("Réservation ID {} annulée automatiquement", reservation.getId());
                 
                 // Notification WebSocket (si disponible)
-                if (messagingTemplate != null) {
-                    messagingTemplate.convertAndSend("/topic/reservation-updated", reservation);
-                }
+                reservationEvents.publishLegacy(ReservationEventPublisher.LEGACY_UPDATED_TOPIC, savedReservation);
+                reservationEvents.publish(savedReservation);
             } catch (Exception e) {
                 logger.error("Erreur lors de l'annulation automatique de la réservation ID {}: {}", 
                         reservation.getId(), e.getMessage());
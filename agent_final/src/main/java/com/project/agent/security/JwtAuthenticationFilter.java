@@ -17,7 +17,10 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.project.agent.service.UserService;
 
+import io.jsonwebtoken.Claims;
+
 import java.io.IOException;
+import java.util.Optional;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -35,10 +38,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String email = tokenProvider.getEmailFromJWT(jwt);
+            // Une seule analyse du jeton ; les jetons de rafraîchissement n'authentifient pas les appels
+            Optional<Claims> claims = StringUtils.hasText(jwt) ? tokenProvider.parseToken(jwt) : Optional.empty();
+            if (claims.isPresent() && !tokenProvider.isRefreshToken(claims.get())) {
+                String email = claims.get().getSubject();
 
-                UserDetails userDetails = userService.loadUserByUsername(email);
+                // Utilisateur reconstruit depuis les claims, sans requête ; les jetons émis avant
+                // l'ajout des claims sont encore chargés depuis la base jusqu'à leur expiration
+                UserDetails userDetails = tokenProvider.getUserFromClaims(claims.get());
+                if (userDetails == null) {
+                    userDetails = userService.loadUserByUsername(email);
+                }
                 UsernamePasswordAuthenticationToken authentication = 
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -3,8 +3,10 @@ package com.project.agent.security;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -13,11 +15,20 @@ import com.project.agent.model.Users;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtTokenProvider {
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    // Claims des jetons d'accès : l'utilisateur est reconstruit sans requête
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+    private static final String NAME_CLAIM = "name";
+    private static final String AGENT_ID_CLAIM = "aid";
+    private static final String TYPE_CLAIM = "type";
+    private static final String REFRESH_TYPE = "refresh";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
@@ -27,25 +38,66 @@ public class JwtTokenProvider {
     @Value("${app.jwt.refresh.expiration:604800000}")
     private int refreshTokenExpirationInMs;
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    // Claims des jetons déjà vérifiés, pour ne pas revérifier le même jeton à chaque appel
+    @Autowired
+    private VerifiedTokenCache tokenCache;
+
+    // Clé et parseur construits une seule fois (le parseur est immuable et thread-safe)
+    private Key signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateToken(Authentication authentication) {
-        Users userPrincipal = (Users) authentication.getPrincipal();
-        return generateTokenFromEmail(userPrincipal.getEmail());
+        return generateToken((Users) authentication.getPrincipal());
     }
 
+    /**
+     * Jeton d'accès portant l'identifiant, le rôle et le nom de l'utilisateur
+     */
+    public String generateToken(Users user) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
+
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getEmail())
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLE_CLAIM, user.getRole().name())
+                .claim(NAME_CLAIM, user.getDisplayName());
+        if (user.getAgentId() != null) {
+            builder.claim(AGENT_ID_CLAIM, user.getAgentId());
+        }
+
+        return builder
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * Jeton d'accès sans claims d'identité : l'utilisateur sera rechargé depuis la base à chaque appel
+     * @deprecated utiliser {@link #generateToken(Users)}
+     */
+    @Deprecated
     public String generateTokenFromEmail(String email) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
                 .setSubject(email)
-                .setIssuedAt(new Date())
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -55,30 +107,40 @@ public class JwtTokenProvider {
 
         return Jwts.builder()
                 .setSubject(email)
-                .setIssuedAt(new Date())
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .claim("type", "refresh")
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .claim(TYPE_CLAIM, REFRESH_TYPE)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String getEmailFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Vérifie et lit un jeton en une seule analyse ; vide s'il est invalide, expiré ou révoqué
+     */
+    public Optional<Claims> parseToken(String token) {
+        Claims claims = tokenCache.get(token);
+        if (claims == null) {
+            claims = verify(token);
+            if (claims == null) {
+                return Optional.empty();
+            }
+            tokenCache.put(token, claims);
+        }
 
-        return claims.getSubject();
+        // Vérifiée à chaque appel, y compris pour un jeton en cache
+        if (revocationList.isRevoked(claims.getSubject(), claims.getIssuedAt())) {
+            logger.warn("Revoked JWT token for {}", claims.getSubject());
+            return Optional.empty();
+        }
+        return Optional.of(claims);
     }
 
-    public boolean validateToken(String authToken) {
+    /**
+     * Vérifie la signature et l'expiration d'un jeton ; null s'il est invalide
+     */
+    private Claims verify(String token) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (io.jsonwebtoken.security.SecurityException ex) {
             logger.error("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
@@ -90,10 +152,44 @@ public class JwtTokenProvider {
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty");
         }
-        return false;
+        return null;
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return REFRESH_TYPE.equals(claims.get(TYPE_CLAIM, String.class));
+    }
+
+    /**
+     * Utilisateur reconstruit à partir des claims d'un jeton d'accès, sans accès à la base.
+     * Retourne null pour un jeton émis avant l'ajout des claims (à recharger depuis la base).
+     */
+    public Users getUserFromClaims(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null) {
+            return null;
+        }
+
+        Users user = new Users();
+        user.setId(userId);
+        user.setEmail(claims.getSubject());
+        user.setUsername(claims.get(NAME_CLAIM, String.class));
+        user.setRole(Users.Role.valueOf(role));
+        user.setAgentId(claims.get(AGENT_ID_CLAIM, Long.class));
+        return user;
+    }
+
+    public String getEmailFromJWT(String token) {
+        return parseToken(token)
+                .map(Claims::getSubject)
+                .orElseThrow(() -> new JwtException("Invalid JWT token"));
+    }
+
+    public boolean validateToken(String authToken) {
+        return parseToken(authToken).isPresent();
     }
 
     public long getExpirationTime() {
         return jwtExpirationInMs;
     }
-}
\ No newline at end of file
+}
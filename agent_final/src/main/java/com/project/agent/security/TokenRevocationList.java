@@ -0,0 +1,119 @@
+package com.project.agent.security;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.UserRepository.TokenEpoch;
+
+/**
+ * Révocation des jetons JWT, par email.
+ *
+ * Les jetons portent le rôle et l'identifiant de l'utilisateur : un changement de rôle,
+ * de mot de passe ou une suppression de compte doit donc invalider les jetons déjà émis.
+ * Seule la date de révocation est conservée, dans la colonne users.token_valid_after
+ * partagée par toutes les instances : tout jeton émis avant elle est refusé, de même que
+ * les jetons d'un compte supprimé.
+ *
+ * Chaque instance garde la date lue quelques secondes (app.jwt.revocation.cache-ttl-ms) :
+ * une révocation est immédiate sur l'instance qui la prononce, et atteint les autres
+ * au plus tard à l'expiration de leur cache.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    // Compte supprimé : tous ses jetons sont refusés
+    private static final long DELETED = Long.MAX_VALUE;
+
+    @Value("${app.jwt.revocation.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.jwt.revocation.cache-ttl-ms:5000}")
+    private long cacheTtlMs = 5000;
+
+    @Value("${app.jwt.revocation.cache-max-entries:10000}")
+    private int cacheMaxEntries = 10000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Email -> date de révocation lue (millisecondes, tronquées à la seconde comme "iat")
+    private final Map<String, CachedEpoch> epochs = new ConcurrentHashMap<>();
+
+    private record CachedEpoch(long revokedBeforeMillis, long loadedAtMillis) {
+    }
+
+    /**
+     * Révoque tous les jetons déjà émis pour cet email
+     */
+    @Transactional
+    public void revokeAll(String email) {
+        if (!enabled || email == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long revokedBefore = now - now % 1000;
+        userRepository.updateTokenValidAfter(email,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(revokedBefore), ZoneId.systemDefault()));
+        // Connue tout de suite sur cette instance, sans attendre la validation de la transaction
+        remember(email, revokedBefore, now);
+        logger.info("Jetons émis pour {} révoqués", email);
+    }
+
+    /**
+     * Indique si un jeton émis à cette date pour cet email a été révoqué
+     */
+    public boolean isRevoked(String email, Date issuedAt) {
+        if (!enabled || email == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        CachedEpoch cached = epochs.get(email);
+        if (cached == null || now - cached.loadedAtMillis() >= cacheTtlMs) {
+            cached = remember(email, load(email), now);
+        }
+
+        if (cached.revokedBeforeMillis() == DELETED) {
+            return true;
+        }
+        return cached.revokedBeforeMillis() > 0 && (issuedAt == null || issuedAt.getTime() < cached.revokedBeforeMillis());
+    }
+
+    public int size() {
+        return epochs.size();
+    }
+
+    private long load(String email) {
+        Optional<TokenEpoch> epoch = userRepository.findTokenEpochByEmail(email);
+        if (epoch.isEmpty()) {
+            return DELETED;
+        }
+        LocalDateTime validAfter = epoch.get().getTokenValidAfter();
+        return validAfter == null ? 0 : validAfter.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private CachedEpoch remember(String email, long revokedBeforeMillis, long now) {
+        if (epochs.size() >= cacheMaxEntries) {
+            epochs.values().removeIf(entry -> now - entry.loadedAtMillis() >= cacheTtlMs);
+        }
+        CachedEpoch cached = new CachedEpoch(revokedBeforeMillis, now);
+        epochs.put(email, cached);
+        return cached;
+    }
+}
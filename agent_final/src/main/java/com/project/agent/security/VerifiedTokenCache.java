@@ -0,0 +1,165 @@
+package com.project.agent.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Cache borné des jetons JWT déjà vérifiés : empreinte SHA-256 du jeton -> claims.
+ *
+ * Un même jeton d'accès est présenté à chaque appel pendant 24 heures ; une fois sa
+ * signature vérifiée, ses claims sont réutilisés sans nouvelle vérification HMAC ni
+ * analyse JSON. Seule l'empreinte du jeton est conservée, jamais le jeton lui-même.
+ * Une entrée expire avec le jeton ; au-delà de la taille maximale, les entrées
+ * expirées puis les moins récemment utilisées sont évincées. La révocation reste
+ * vérifiée à chaque appel par {@link JwtTokenProvider}.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    // Intervalle minimal entre deux purges complètes des entrées expirées
+    private static final long PURGE_INTERVAL_MS = 1000;
+
+    @Value("${app.jwt.token-cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.jwt.token-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    // LinkedHashMap en ordre d'accès : la première entrée est la moins récemment utilisée
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long lastPurgeMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private record Entry(Claims claims, long expiresAtMillis) {
+    }
+
+    /**
+     * Claims d'un jeton déjà vérifié, ou null s'il est absent ou expiré.
+     * Les claims retournés sont partagés et ne doivent pas être modifiés.
+     */
+    public Claims get(String token) {
+        if (!enabled || token == null) {
+            return null;
+        }
+
+        String key = hash(token);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.claims();
+    }
+
+    /**
+     * Met en cache les claims d'un jeton dont la signature vient d'être vérifiée
+     */
+    public void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (!enabled || token == null || expiration == null) {
+            return;
+        }
+
+        String key = hash(token);
+        synchronized (entries) {
+            entries.put(key, new Entry(claims, expiration.getTime()));
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Vide entièrement le cache
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Statistiques du cache pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+
+    /**
+     * Au-delà de la taille maximale, retire d'abord les jetons expirés (au plus une purge
+     * complète par seconde), puis les moins récemment utilisés
+     */
+    private void evictOverflow() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeMillis >= PURGE_INTERVAL_MS) {
+            lastPurgeMillis = now;
+            Iterator<Entry> values = entries.values().iterator();
+            while (values.hasNext()) {
+                if (values.next().expiresAtMillis() <= now) {
+                    values.remove();
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -40,6 +40,15 @@ public class AgencyService {
 
     @Autowired
     private BlockedTimeSlotRepository blockedTimeSlotRepository;
+    
+    @Autowired
+    private AvailabilityCache availabilityCache;
+    
+    @Autowired
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private AvailabilityService availabilityService;
     // Get all agencies
     public List<Agency> getAllAgencies() {
         return agencyRepository.findAll();
@@ -63,6 +72,7 @@ public class AgencyService {
         if (agencyRepository.existsByPhoneNumber(agency.getPhoneNumber())) {
             throw new RuntimeException("Agency with this phone number already exists");
         }
+        availabilityService.checkBusinessHours(agency.getBusinessHours());
         if (serviceIds != null && !serviceIds.isEmpty()) {
             List<ServiceOffering> services = serviceIds.stream()
                 .map(id -> serviceOfferingService.getServiceById(id.shortValue()))
@@ -89,7 +99,7 @@ public class AgencyService {
             agencyRepository.existsByPhoneNumber(agencyDetails.getPhoneNumber())) {
             throw new RuntimeException("Une agence avec ce numéro de téléphone existe déjà");
         }
-        
+        availabilityService.checkBusinessHours(agencyDetails.getBusinessHours());
         
         // Update fields
         agency.setName(agencyDetails.getName());
@@ -107,6 +117,9 @@ public class AgencyService {
             agency.getServices().addAll(services);
         }
         
+        // Le nom de l'agence figure dans les disponibilités en cache
+        availabilityCache.invalidateAgency(id);
+        
         return agencyRepository.save(agency);
     }
     
@@ -120,6 +133,7 @@ public class AgencyService {
 
         // 2. Delete all availability records for this agency
         availabilityRepository.deleteAll(availabilityRepository.findByAgency(agency));
+        availabilityCache.invalidateAgency(id);
 
         // 3. Handle reservations: nullify handledByAgent for agents of this agency,
         //    delete reservation locks, then delete reservations
@@ -142,6 +156,7 @@ public class AgencyService {
         for (Agent agent : agents) {
             agent.setAgency(null);
             agentRepository.save(agent);
+            identityCache.evict(agent.getEmail());
         }
 
         // 5. Clear services join table
@@ -159,6 +174,7 @@ public class AgencyService {
                 .orElseThrow(() -> new RuntimeException("Agent not found with id " + agentId));
         
         agent.setAgency(agency);
+        identityCache.evict(agent.getEmail());
         return agentRepository.save(agent);
     }
     
@@ -168,6 +184,7 @@ public class AgencyService {
                 .orElseThrow(() -> new RuntimeException("Agent not found with id " + agentId));
         
         agent.setAgency(null);
+        identityCache.evict(agent.getEmail());
         return agentRepository.save(agent);
     }
     
@@ -4,18 +4,15 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import com.project.agent.dto.AgentInfoDTO;
 import com.project.agent.dto.AgentStatsDTO;
 import com.project.agent.model.Agent;
 import com.project.agent.model.Reservation;
-import com.project.agent.model.Users;
 import com.project.agent.repository.AgentRepository;
 import com.project.agent.repository.ReservationRepository;
-import com.project.agent.repository.UserRepository;
+import com.project.agent.service.IdentityCache.Identity;
 
 @Service
 public class AgentStatsService {
@@ -24,7 +21,7 @@ public class AgentStatsService {
     private AgentRepository agentRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private IdentityCache identityCache;
     
     @Autowired
     private ReservationRepository reservationRepository;
@@ -33,13 +30,7 @@ public class AgentStatsService {
      * Récupère les informations de l'agent actuellement connecté
      */
     public AgentInfoDTO getCurrentAgentInfo() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        
-        Agent agent = agentRepository.findByUser(user)
+        Agent agent = agentRepository.findById(identityCache.currentAgent().agentId())
                 .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
         
         AgentInfoDTO agentInfo = new AgentInfoDTO();
@@ -60,14 +51,9 @@ public class AgentStatsService {
      * Calcule les statistiques pour l'agent actuel
      */
     public AgentStatsDTO getAgentStats() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        
-        Agent agent = agentRepository.findByUser(user)
-                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+        // Seul l'identifiant de l'agent sert à la requête : pas de chargement de l'agent
+        Identity identity = identityCache.currentAgent();
+        Agent agent = agentRepository.getReferenceById(identity.agentId());
         
         // Calculer les statistiques des dernières 24 heures
         LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
@@ -0,0 +1,218 @@
+package com.project.agent.service;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.dto.AvailabilityDTO;
+
+/**
+ * Cache mémoire borné des AvailabilityDTO enrichis, par agence et par date.
+ *
+ * Les entrées expirent après un TTL et les moins récemment lues sont évincées
+ * au-delà de la taille maximale. Chaque point de modification des disponibilités
+ * invalide l'entrée concernée ; l'invalidation est rejouée après le commit pour
+ * qu'une lecture concurrente ne remette pas en cache un état non encore validé.
+ * Étant le point de passage de toute modification, il prévient aussi les écouteurs
+ * enregistrés, une fois la modification validée.
+ */
+@Component
+public class AvailabilityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityCache.class);
+
+    @Value("${app.availability.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.availability.cache.max-entries:5000}")
+    private int maxEntries = 5000;
+
+    @Value("${app.availability.cache.ttl-seconds:60}")
+    private long ttlSeconds = 60;
+
+    // LinkedHashMap en ordre d'accès : la première entrée est la moins récemment utilisée
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Incrémenté à chaque invalidation, pour refuser les valeurs calculées avant celle-ci
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Écouteurs prévenus de chaque modification des disponibilités (agence, date)
+    private final List<BiConsumer<Long, LocalDate>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private record Key(Long agencyId, LocalDate date) {
+    }
+
+    private record Entry(AvailabilityDTO dto, long expiresAtNanos) {
+    }
+
+    /**
+     * Retourne une copie du DTO en cache, ou null s'il est absent ou expiré
+     */
+    public AvailabilityDTO get(Long agencyId, LocalDate date) {
+        if (!enabled) {
+            return null;
+        }
+
+        Key key = new Key(agencyId, date);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos() - System.nanoTime() <= 0) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return new AvailabilityDTO(entry.dto());
+    }
+
+    /**
+     * Version courante, à lire avant de calculer une valeur à mettre en cache
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Met un DTO en cache, sauf si une invalidation a eu lieu depuis la lecture de loadedVersion
+     */
+    public void put(Long agencyId, LocalDate date, AvailabilityDTO dto, long loadedVersion) {
+        if (!enabled) {
+            return;
+        }
+
+        Entry entry = new Entry(new AvailabilityDTO(dto), System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+        synchronized (entries) {
+            if (version.get() != loadedVersion) {
+                logger.debug("Disponibilités de l'agence {} au {} non mises en cache: invalidées pendant le calcul",
+                        agencyId, date);
+                return;
+            }
+            entries.put(new Key(agencyId, date), entry);
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Invalide les disponibilités d'une agence pour une date
+     */
+    public void invalidate(Long agencyId, LocalDate date) {
+        Key key = new Key(agencyId, date);
+        remove(key);
+        TransactionHooks.afterCommit(() -> remove(key));
+        TransactionHooks.afterCommitOrNow(() -> notifyChange(agencyId, date));
+    }
+
+    /**
+     * Enregistre un écouteur appelé après chaque modification des disponibilités d'une agence
+     * pour une date (après le commit s'il y a une transaction, sinon immédiatement)
+     */
+    public void addChangeListener(BiConsumer<Long, LocalDate> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Invalide toutes les dates d'une agence
+     */
+    public void invalidateAgency(Long agencyId) {
+        removeAgency(agencyId);
+        TransactionHooks.afterCommit(() -> removeAgency(agencyId));
+    }
+
+    /**
+     * Vide entièrement le cache
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Statistiques du cache pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void remove(Key key) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(key);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private void removeAgency(Long agencyId) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.keySet().removeIf(key -> key.agencyId().equals(agencyId));
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private void notifyChange(Long agencyId, LocalDate date) {
+        for (BiConsumer<Long, LocalDate> listener : changeListeners) {
+            try {
+                listener.accept(agencyId, date);
+            } catch (Exception e) {
+                logger.warn("Erreur d'un écouteur des disponibilités: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Évince les entrées les moins récemment utilisées au-delà de la taille maximale
+     */
+    private void evictOverflow() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+}
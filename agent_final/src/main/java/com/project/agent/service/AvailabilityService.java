@@ -5,35 +5,45 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
 import com.project.agent.dto.AvailabilityDTO;
 import com.project.agent.dto.TimeSlotManagementDTO;
+import com.project.agent.exception.ConflictException;
 import com.project.agent.model.Agency;
 import com.project.agent.model.Agency.BusinessHours;
-import com.project.agent.model.Agent;
 import com.project.agent.model.Availability;
 import com.project.agent.model.BlockedTimeSlot;
 import com.project.agent.model.Reservation;
+import com.project.agent.model.SlotCalendar;
 import com.project.agent.repository.AgencyRepository;
 import com.project.agent.repository.AgentRepository;
 import com.project.agent.repository.AvailabilityRepository;
+import com.project.agent.repository.AvailabilityRepository.SlotState;
 import com.project.agent.repository.BlockedTimeSlotRepository;
+import com.project.agent.repository.BlockedTimeSlotRepository.BlockedSlot;
 import com.project.agent.repository.ReservationRepository;
+import com.project.agent.repository.ReservationRepository.BookedSlot;
+import com.project.agent.service.IdentityCache.Identity;
+import com.project.agent.service.realtime.CoalescingPublisher;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
@@ -56,71 +66,166 @@ public class AvailabilityService {
     @Autowired
     private AgentRepository agentRepository;
     
+    // Notifications regroupées par agence et par date : une rafale n'envoie que l'état final
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private CoalescingPublisher livePublisher;
     
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Autowired
+    private AvailabilityCache availabilityCache;
+    
+    @Autowired
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Granularité des bitmaps de créneaux pour les nouvelles disponibilités
+    @Value("${app.availability.slot-granularity-minutes:30}")
+    private int slotGranularityMinutes = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+    
+    // Nombre maximal de tentatives d'une modification de créneau en cas de modification concurrente
+    @Value("${app.availability.slot-update.max-attempts:5}")
+    private int slotUpdateMaxAttempts = 5;
+    
+    // Nombre maximal de jours pour une requête de disponibilités par période (deux mois)
+    public static final int MAX_RANGE_DAYS = 62;
     
     /**
-     * Obtient ou crée les disponibilités pour une agence et une date spécifique
+     * Modifications d'un créneau appliquées par compare-and-set sur la version de la disponibilité
      */
-    public Availability getOrCreateAvailability(Long agencyId, LocalDate date) {
-        logger.info("Obtention des disponibilités pour l'agence {} à la date {}", agencyId, date);
-        
+    private enum SlotChange {
+        // Réserver un créneau qui doit être encore disponible (sinon conflit)
+        CLAIM,
+        // Marquer un créneau comme réservé, qu'il soit déjà réservé ou non
+        RESERVE,
+        // Rendre un créneau réservé de nouveau disponible
+        RELEASE
+    }
+    
+    /**
+     * Crée l'index unique (agence, date) dont dépend l'INSERT ... ON CONFLICT de insertIfAbsent
+     * sur les bases qui ne l'ont pas encore, après avoir supprimé les journées en double
+     * (seule la ligne la plus récente de chaque journée est conservée)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueDayIndex() {
+        try {
+            int duplicates = jdbcTemplate.update(
+                    "DELETE FROM availability a WHERE EXISTS ("
+                            + "SELECT 1 FROM availability o WHERE o.agency_id = a.agency_id "
+                            + "AND o.date = a.date AND o.id > a.id)");
+            if (duplicates > 0) {
+                logger.warn("{} disponibilités en double supprimées avant la création de l'index", duplicates);
+            }
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_availability_agency_date "
+                    + "ON availability (agency_id, date)");
+        } catch (Exception e) {
+            logger.error("Impossible de créer l'index uk_availability_agency_date: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Convertit au démarrage les lignes encore au format texte (masques NULL) : les requêtes
+     * natives, dont l'expiration des créneaux, ne lisent que les masques. Sans effet une fois
+     * toutes les lignes converties ; une ligne convertie entre-temps n'est pas réécrite.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyTimeSlots() {
+        try {
+            List<Object[]> updates = new ArrayList<>();
+            List<Long> todayAgencies = new ArrayList<>();
+            LocalDate today = LocalDate.now();
+            
+            jdbcTemplate.query("SELECT id, agency_id, date, slot_granularity, available_slots_mask, booked_slots_mask, "
+                    + "available_time_slots, booked_time_slots FROM availability "
+                    + "WHERE available_slots_mask IS NULL OR booked_slots_mask IS NULL OR slot_granularity IS NULL",
+                    (RowCallbackHandler) rs -> {
+                        int granularity = rs.getObject("slot_granularity") != null
+                                ? rs.getInt("slot_granularity") : SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+                        long available = rs.getObject("available_slots_mask") != null ? rs.getLong("available_slots_mask")
+                                : SlotCalendar.parse(rs.getString("available_time_slots"), granularity);
+                        long booked = rs.getObject("booked_slots_mask") != null ? rs.getLong("booked_slots_mask")
+                                : SlotCalendar.parse(rs.getString("booked_time_slots"), granularity);
+                        updates.add(new Object[] { available, booked, granularity, rs.getLong("id") });
+                        if (today.equals(rs.getObject("date", LocalDate.class))) {
+                            todayAgencies.add(rs.getLong("agency_id"));
+                        }
+                    });
+            if (updates.isEmpty()) {
+                return;
+            }
+            
+            jdbcTemplate.batchUpdate("UPDATE availability SET available_slots_mask = ?, booked_slots_mask = ?, "
+                    + "slot_granularity = ?, version = version + 1 WHERE id = ? AND (available_slots_mask IS NULL "
+                    + "OR booked_slots_mask IS NULL OR slot_granularity IS NULL)", updates);
+            // Les créneaux du jour convertis sont signalés à l'expiration des créneaux
+            todayAgencies.forEach(agencyId -> availabilityCache.invalidate(agencyId, today));
+            logger.info("{} disponibilités converties au format bitmap", updates.size());
+        } catch (Exception e) {
+            logger.error("Impossible de convertir les anciennes disponibilités: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Obtient les disponibilités enregistrées pour une agence et une date,
+     * ou les calcule à la volée sans rien enregistrer si aucune ligne n'existe
+     */
+    @Transactional(readOnly = true)
+    public Availability findOrComputeAvailability(Long agencyId, LocalDate date) {
         Agency agency = agencyRepository.findById(agencyId)
                 .orElseThrow(() -> new RuntimeException("Agence non trouvée"));
-                
-        Optional<Availability> existingAvailability = availabilityRepository.findByAgencyAndDate(agency, date);
         
-        if (existingAvailability.isPresent()) {
-            logger.debug("Disponibilités existantes trouvées");
-            return existingAvailability.get();
-        } else {
-            logger.debug("Création de nouvelles disponibilités");
-            // Déterminer les créneaux horaires disponibles en fonction des heures d'ouverture
-            List<LocalTime> availableSlots = generateAvailableTimeSlots(agency, date);
-            
-            // Obtenir les créneaux déjà réservés pour cette date
-            List<LocalTime> bookedSlots = getBookedTimeSlots(agency, date);
-            
-            // Obtenir les créneaux manuellement bloqués
-            List<LocalTime> blockedSlots = getBlockedTimeSlots(agency, date);
-            
-            // Filtrer les créneaux disponibles pour exclure les créneaux déjà réservés et bloqués
-            availableSlots = availableSlots.stream()
-                .filter(slot -> !bookedSlots.contains(slot) && !blockedSlots.contains(slot))
-                .collect(Collectors.toList());
-            
-            // Ajouter les créneaux bloqués aux créneaux réservés pour l'affichage
-            List<LocalTime> allBookedSlots = new ArrayList<>(bookedSlots);
-            allBookedSlots.addAll(blockedSlots);
-            
-            // Créer une nouvelle disponibilité
-            Availability availability = new Availability();
-            availability.setAgency(agency);
-            availability.setDate(date);
-            availability.setAvailableTimeSlots(availableSlots);
-            availability.setBookedTimeSlots(allBookedSlots);
-            
-            Availability savedAvailability = availabilityRepository.save(availability);
-            logger.info("Nouvelles disponibilités créées pour l'agence {} à la date {}", agencyId, date);
-            
-            return savedAvailability;
-        }
+        return availabilityRepository.findByAgencyAndDate(agency, date)
+                .orElseGet(() -> computeAvailability(agency, date));
+    }
+    
+    /**
+     * Calcule une disponibilité non enregistrée à partir des heures d'ouverture,
+     * des réservations confirmées et des blocages de la journée
+     */
+    private Availability computeAvailability(Agency agency, LocalDate date) {
+        Availability availability = newAvailability(agency, date);
+        int granularity = availability.getSlotGranularity();
+        
+        // Déterminer les créneaux horaires disponibles en fonction des heures d'ouverture
+        long availableSlots = generateAvailableSlotMask(agency, date, granularity);
+        
+        // Obtenir les créneaux déjà réservés pour cette date
+        long bookedSlots = getBookedSlotMask(agency, date, granularity);
+        
+        // Obtenir les créneaux manuellement bloqués
+        long blockedSlots = getBlockedSlotMask(agency, date, granularity);
+        
+        // Exclure les créneaux réservés et bloqués, qui sont affichés comme réservés
+        availability.setAvailableSlotsMask(availableSlots & ~(bookedSlots | blockedSlots));
+        availability.setBookedSlotsMask(bookedSlots | blockedSlots);
+        return availability;
+    }
+    
+    /**
+     * Crée une disponibilité vide à la granularité configurée
+     */
+    private Availability newAvailability(Agency agency, LocalDate date) {
+        SlotCalendar.checkGranularity(slotGranularityMinutes);
+        
+        Availability availability = new Availability();
+        availability.setAgency(agency);
+        availability.setDate(date);
+        availability.setSlotGranularity(slotGranularityMinutes);
+        return availability;
     }
     
     /**
      * Génère les créneaux horaires disponibles en fonction des heures d'ouverture de l'agence
      * avec prise en compte des créneaux passés
      */
-    private List<LocalTime> generateAvailableTimeSlots(Agency agency, LocalDate date) {
-        List<LocalTime> slots = new ArrayList<>();
+    private long generateAvailableSlotMask(Agency agency, LocalDate date, int granularity) {
+        long slots = SlotCalendar.EMPTY;
         
         // Vérifier si la date est dans le passé
         LocalDate today = LocalDate.now();
         if (date.isBefore(today)) {
-            // Retourner une liste vide pour les dates passées
+            // Retourner un masque vide pour les dates passées
             logger.debug("Date {} est dans le passé, aucun créneau disponible", date);
             return slots;
         }
@@ -136,13 +241,6 @@ public class AvailabilityService {
         if (businessHoursOpt.isPresent() && !businessHoursOpt.get().isClosed()) {
             BusinessHours businessHours = businessHoursOpt.get();
             
-            // Formatter pour parser les heures d'ouverture et de fermeture
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-            
-            // Convertir les heures d'ouverture/fermeture en LocalTime
-            LocalTime openingTime = LocalTime.parse(businessHours.getOpeningTime(), formatter);
-            LocalTime closingTime = LocalTime.parse(businessHours.getClosingTime(), formatter);
-            
             // Pour aujourd'hui, ne pas proposer les heures déjà passées
             LocalTime currentTime = null;
             if (date.isEqual(today)) {
@@ -153,44 +251,87 @@ public class AvailabilityService {
             }
             
             // Générer des créneaux d'une heure
-            LocalTime slotTime = openingTime;
-            while (slotTime.isBefore(closingTime)) {
-                // Pour aujourd'hui, ignorer les créneaux déjà passés
-                if (currentTime == null || !slotTime.isBefore(currentTime)) {
-                    slots.add(slotTime);
+            for (LocalTime slotTime : hourlySlotStarts(businessHours)) {
+                if (!SlotCalendar.isAligned(slotTime, granularity)) {
+                    // Heures enregistrées avant la vérification de checkBusinessHours : ne pas arrondir
+                    logger.warn("Créneau {} de l'agence {} ignoré: non aligné sur les créneaux de {} minutes",
+                            slotTime, agency.getId(), granularity);
+                } else if (currentTime == null || !slotTime.isBefore(currentTime)) {
+                    // Pour aujourd'hui, ignorer les créneaux déjà passés
+                    slots = SlotCalendar.add(slots, slotTime, granularity);
                 } else {
                     logger.debug("Créneau {} ignoré car déjà passé", slotTime);
                 }
-                slotTime = slotTime.plusHours(1);
             }
         }
         
         return slots;
     }
     
+    /**
+     * Débuts des créneaux d'une heure entre l'ouverture et la fermeture d'une journée
+     */
+    private static List<LocalTime> hourlySlotStarts(BusinessHours businessHours) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
+        LocalTime openingTime = LocalTime.parse(businessHours.getOpeningTime(), formatter);
+        LocalTime closingTime = LocalTime.parse(businessHours.getClosingTime(), formatter);
+        
+        // Parcours en minutes de la journée : une fermeture tardive ne fait pas repasser minuit
+        List<LocalTime> starts = new ArrayList<>();
+        int closingMinute = closingTime.toSecondOfDay() / 60;
+        for (int minute = openingTime.toSecondOfDay() / 60; minute < closingMinute; minute += 60) {
+            starts.add(LocalTime.ofSecondOfDay(minute * 60L));
+        }
+        return starts;
+    }
+    
+    /**
+     * Vérifie que chaque créneau d'une heure des heures d'ouverture commence sur un créneau
+     * de la granularité enregistrée ; sinon le masque le rangerait dans le créneau inférieur
+     */
+    public void checkBusinessHours(List<BusinessHours> businessHours) {
+        SlotCalendar.checkGranularity(slotGranularityMinutes);
+        if (businessHours == null) {
+            return;
+        }
+        
+        for (BusinessHours hours : businessHours) {
+            if (hours.isClosed()) {
+                continue;
+            }
+            for (LocalTime slotTime : hourlySlotStarts(hours)) {
+                if (!SlotCalendar.isAligned(slotTime, slotGranularityMinutes)) {
+                    throw new IllegalArgumentException("Heures d'ouverture du " + hours.getDay() + " invalides: le créneau de "
+                            + slotTime + " n'est pas aligné sur les créneaux de " + slotGranularityMinutes + " minutes");
+                }
+            }
+        }
+    }
+    
     /**
      * Obtient les créneaux déjà réservés pour cette agence et cette date
      */
-    private List<LocalTime> getBookedTimeSlots(Agency agency, LocalDate date) {
-        List<Reservation> reservations = reservationRepository.findByAgencyAndStatus(agency, Reservation.Status.CONFIRMED);
-        
-        // Filtrer les réservations pour cette date et extraire l'heure
-        return reservations.stream()
-                .filter(res -> res.getStartDateTime() != null)
-                .filter(res -> res.getStartDateTime().toLocalDate().equals(date))
-                .map(res -> res.getStartDateTime().toLocalTime())
-                .collect(Collectors.toList());
+    private long getBookedSlotMask(Agency agency, LocalDate date, int granularity) {
+        // Seules les heures de début de la journée demandée sont lues
+        List<LocalDateTime> startDateTimes = reservationRepository.findStartDateTimesByAgencyAndStatusInRange(
+                agency, Reservation.Status.CONFIRMED, date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+        
+        long mask = SlotCalendar.EMPTY;
+        for (LocalDateTime startDateTime : startDateTimes) {
+            mask = SlotCalendar.add(mask, startDateTime.toLocalTime(), granularity);
+        }
+        return mask;
     }
     
     /**
      * Obtient les créneaux manuellement bloqués par les agents
      */
-    private List<LocalTime> getBlockedTimeSlots(Agency agency, LocalDate date) {
-        List<BlockedTimeSlot> blockedSlots = blockedTimeSlotRepository.findByAgencyAndDate(agency, date);
-        
-        return blockedSlots.stream()
-                .map(BlockedTimeSlot::getTime)
-                .collect(Collectors.toList());
+    private long getBlockedSlotMask(Agency agency, LocalDate date, int granularity) {
+        long mask = SlotCalendar.EMPTY;
+        for (BlockedSlot blockedSlot : blockedTimeSlotRepository.findBlockedSlotsByAgencyAndDateBetween(agency, date, date)) {
+            mask = SlotCalendar.add(mask, blockedSlot.getTime(), granularity);
+        }
+        return mask;
     }
     
     /**
@@ -205,47 +346,14 @@ public class AvailabilityService {
             LocalTime time = reservation.getStartDateTime().toLocalTime();
             Agency agency = reservation.getAgency();
             
-            Optional<Availability> availabilityOpt = availabilityRepository.findByAgencyAndDate(agency, date);
-            
-            Availability availability;
-            if (availabilityOpt.isPresent()) {
-                availability = availabilityOpt.get();
-                logger.debug("Disponibilités existantes trouvées, mise à jour");
-                
-                // Ajouter le temps aux créneaux réservés
-                if (!availability.getBookedTimeSlots().contains(time)) {
-                    List<LocalTime> bookedSlots = availability.getBookedTimeSlots();
-                    bookedSlots.add(time);
-                    availability.setBookedTimeSlots(bookedSlots);
-                }
-                
-                // Supprimer des créneaux disponibles si présent
-                List<LocalTime> availableSlots = availability.getAvailableTimeSlots();
-                availableSlots.remove(time);
-                availability.setAvailableTimeSlots(availableSlots);
-                
-            } else {
-                logger.debug("Aucune disponibilité existante, création d'une nouvelle");
-                // Créer une nouvelle disponibilité si elle n'existe pas encore
-                availability = new Availability();
-                availability.setAgency(agency);
-                availability.setDate(date);
-                
-                List<LocalTime> availableSlots = generateAvailableTimeSlots(agency, date);
-                availableSlots.remove(time);
-                availability.setAvailableTimeSlots(availableSlots);
-                
-                List<LocalTime> bookedSlots = new ArrayList<>();
-                bookedSlots.add(time);
-                availability.setBookedTimeSlots(bookedSlots);
-            }
-            
-            Availability savedAvailability = availabilityRepository.saveAndFlush(availability);
+            // Retirer des créneaux disponibles et ajouter aux créneaux réservés (créée si nécessaire)
+            Availability savedAvailability = applySlotChange(agency, date, time, SlotChange.RESERVE);
+            availabilityCache.invalidate(agency.getId(), date);
             logger.info("Disponibilités mises à jour et enregistrées pour l'agence {} à la date {}", agency.getId(), date);
             
             // Envoyer une notification WebSocket pour informer les clients
             logger.debug("Envoi de notification WebSocket pour mise à jour des disponibilités");
-            messagingTemplate.convertAndSend("/topic/availability/" + agency.getId(), savedAvailability);
+            livePublisher.publish("/topic/availability/" + agency.getId(), date, savedAvailability);
         } else {
             logger.warn("Impossible de mettre à jour les disponibilités: date de début manquante ou statut non confirmé");
         }
@@ -278,12 +386,8 @@ public class AvailabilityService {
             throw new RuntimeException("Ce créneau est déjà bloqué");
         }
         
-        // Obtenir l'agent qui effectue le blocage
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Agent agent = agentRepository.findByUser_Email(email)
-                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+        // Obtenir l'agent qui effectue le blocage (identité en cache, sans requête)
+        Identity agent = identityCache.currentAgent();
         
         // Créer un nouveau créneau bloqué
         BlockedTimeSlot blockedSlot = new BlockedTimeSlot();
@@ -291,51 +395,20 @@ public class AvailabilityService {
         blockedSlot.setDate(date);
         blockedSlot.setTime(time);
         blockedSlot.setReason(reason);
-        blockedSlot.setBlockedBy(agent);
+        blockedSlot.setBlockedBy(agentRepository.getReferenceById(agent.agentId()));
         blockedSlot.setBlockedAt(LocalDateTime.now());
         
         blockedTimeSlotRepository.save(blockedSlot);
         
-        // Mettre à jour les disponibilités
-        Optional<Availability> availabilityOpt = availabilityRepository.findByAgencyAndDate(agency, date);
-        
-        if (availabilityOpt.isPresent()) {
-            Availability availability = availabilityOpt.get();
-            
-            // Retirer des créneaux disponibles
-            List<LocalTime> availableSlots = availability.getAvailableTimeSlots();
-            availableSlots.remove(time);
-            availability.setAvailableTimeSlots(availableSlots);
-            
-            // Ajouter aux créneaux réservés (pour l'affichage)
-            List<LocalTime> bookedSlots = availability.getBookedTimeSlots();
-            if (!bookedSlots.contains(time)) {
-                bookedSlots.add(time);
-                availability.setBookedTimeSlots(bookedSlots);
-            }
-            
-            availabilityRepository.save(availability);
-        } else {
-            // Créer une nouvelle disponibilité si nécessaire
-            Availability availability = new Availability();
-            availability.setAgency(agency);
-            availability.setDate(date);
-            
-            List<LocalTime> availableSlots = generateAvailableTimeSlots(agency, date);
-            availableSlots.remove(time);
-            availability.setAvailableTimeSlots(availableSlots);
-            
-            List<LocalTime> bookedSlots = new ArrayList<>();
-            bookedSlots.add(time);
-            availability.setBookedTimeSlots(bookedSlots);
-            
-            availabilityRepository.save(availability);
-        }
+        // Retirer des créneaux disponibles et ajouter aux réservés (pour l'affichage),
+        // en créant la disponibilité si nécessaire
+        Availability availability = applySlotChange(agency, date, time, SlotChange.RESERVE);
+        availabilityCache.invalidate(agencyId, date);
         
         // Notifier via WebSocket
-        AvailabilityDTO dto = new AvailabilityDTO(getOrCreateAvailability(agencyId, date));
+        AvailabilityDTO dto = new AvailabilityDTO(availability);
         enrichAvailabilityDTO(dto);
-        messagingTemplate.convertAndSend("/topic/availability/" + agencyId, dto);
+        livePublisher.publish("/topic/availability/" + agencyId, date, dto);
         
         // Notifier spécifiquement du blocage
         TimeSlotManagementDTO managementDto = new TimeSlotManagementDTO();
@@ -344,9 +417,9 @@ public class AvailabilityService {
         managementDto.setTime(time);
         managementDto.setBlocked(true);
         managementDto.setReason(reason);
-        managementDto.setAgentName(agent.getUsername());
+        managementDto.setAgentName(agent.displayName());
         
-        messagingTemplate.convertAndSend("/topic/timeslot-management", managementDto);
+        livePublisher.publish("/topic/timeslot-management", agencyId + ":" + date + ":" + time, managementDto);
     }
     
     /**
@@ -367,11 +440,7 @@ public class AvailabilityService {
         blockedTimeSlotRepository.delete(blockedSlot);
         
         // Obtenir l'agent qui effectue le déblocage (pour les logs)
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Agent agent = agentRepository.findByUser_Email(email)
-                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+        Identity agent = identityCache.currentAgent();
         
         // Mettre à jour les disponibilités
         Optional<Availability> availabilityOpt = availabilityRepository.findByAgencyAndDate(agency, date);
@@ -380,37 +449,33 @@ public class AvailabilityService {
             Availability availability = availabilityOpt.get();
             
             // Vérifier si ce créneau n'est pas déjà réservé par une réservation confirmée
-            boolean isAlreadyBooked = reservationRepository.findByAgencyAndStartDateTimeBetween(
+            boolean isAlreadyBooked = reservationRepository.existsByAgencyAndStatusAndStartDateTimeBetween(
                     agency, 
+                    Reservation.Status.CONFIRMED,
                     date.atTime(time), 
                     date.atTime(time).plusHours(1)
-            ).stream().anyMatch(res -> res.getStatus() == Reservation.Status.CONFIRMED);
+            );
             
             if (!isAlreadyBooked) {
                 // Ajouter aux créneaux disponibles si dans les heures d'ouverture et pas déjà passé
+                // (le bitmap garde les créneaux triés)
                 if (isWithinBusinessHours(agency, date, time) && !isPastTimeSlot(date, time)) {
-                    List<LocalTime> availableSlots = availability.getAvailableTimeSlots();
-                    if (!availableSlots.contains(time)) {
-                        availableSlots.add(time);
-                        // Trier pour un affichage cohérent
-                        availableSlots.sort(LocalTime::compareTo);
-                        availability.setAvailableTimeSlots(availableSlots);
-                    }
+                    availability.addAvailableSlot(time);
                 }
                 
                 // Retirer des créneaux réservés s'il n'est pas réservé par ailleurs
-                List<LocalTime> bookedSlots = availability.getBookedTimeSlots();
-                bookedSlots.remove(time);
-                availability.setBookedTimeSlots(bookedSlots);
+                availability.removeBookedSlot(time);
             }
             
             availabilityRepository.save(availability);
         }
+        // Le blocage supprimé change aussi les informations affichées sur les créneaux
+        availabilityCache.invalidate(agencyId, date);
         
-        // Notifier via WebSocket
-        AvailabilityDTO dto = new AvailabilityDTO(getOrCreateAvailability(agencyId, date));
+        // Notifier via WebSocket (sans créer de ligne si la journée n'en avait pas)
+        AvailabilityDTO dto = new AvailabilityDTO(findOrComputeAvailability(agencyId, date));
         enrichAvailabilityDTO(dto);
-        messagingTemplate.convertAndSend("/topic/availability/" + agencyId, dto);
+        livePublisher.publish("/topic/availability/" + agencyId, date, dto);
         
         // Notifier spécifiquement du déblocage
         TimeSlotManagementDTO managementDto = new TimeSlotManagementDTO();
@@ -418,9 +483,9 @@ public class AvailabilityService {
         managementDto.setDate(date);
         managementDto.setTime(time);
         managementDto.setBlocked(false);
-        managementDto.setAgentName(agent.getUsername());
+        managementDto.setAgentName(agent.displayName());
         
-        messagingTemplate.convertAndSend("/topic/timeslot-management", managementDto);
+        livePublisher.publish("/topic/timeslot-management", agencyId + ":" + date + ":" + time, managementDto);
     }
     
     /**
@@ -466,6 +531,7 @@ public class AvailabilityService {
     
     /**
      * Marque un créneau horaire comme temporairement réservé
+     * @throws ConflictException si le créneau n'est plus disponible ou reste disputé après plusieurs tentatives
      */
     @Transactional
     public void markTimeSlotAsTemporarilyBooked(Agency agency, LocalDateTime dateTime) {
@@ -474,41 +540,13 @@ public class AvailabilityService {
         LocalDate date = dateTime.toLocalDate();
         LocalTime time = dateTime.toLocalTime();
         
-        // Important: utiliser JPA flush pour garantir la persistance immédiate
-        Availability availability;
-        Optional<Availability> availabilityOpt = availabilityRepository.findByAgencyAndDate(agency, date);
+        // Réservation atomique : échoue si un autre client a pris le créneau entre-temps
+        Availability availability = applySlotChange(agency, date, time, SlotChange.CLAIM);
+        availabilityCache.invalidate(agency.getId(), date);
         
-        if (availabilityOpt.isPresent()) {
-            availability = availabilityOpt.get();
-            logger.debug("Disponibilités existantes trouvées");
-            
-            // Retirer des créneaux disponibles
-            List<LocalTime> availableSlots = availability.getAvailableTimeSlots();
-            boolean removed = availableSlots.remove(time);
-            logger.debug("Créneau retiré des disponibles: {}", removed);
-            availability.setAvailableTimeSlots(availableSlots);
-            
-            // Ajouter aux créneaux temporairement réservés
-            List<LocalTime> tempBookedSlots = new ArrayList<>(availability.getBookedTimeSlots());
-            if (!tempBookedSlots.contains(time)) {
-                tempBookedSlots.add(time);
-                availability.setBookedTimeSlots(tempBookedSlots);
-                logger.debug("Créneau ajouté aux réservés temporairement");
-            }
-            
-            // Sauvegarder et flush immédiatement
-            availability = availabilityRepository.saveAndFlush(availability);
-            
-            // Envoyer notification WebSocket immédiatement
-            logger.debug("Envoi de notification WebSocket pour mise à jour des disponibilités");
-            messagingTemplate.convertAndSend("/topic/availability/" + agency.getId(), availability);
-        } else {
-            logger.debug("Aucune disponibilité existante pour cette date, création d'une nouvelle");
-            availability = getOrCreateAvailability(agency.getId(), date);
-            
-            // Appliquer à nouveau le marquage maintenant que la disponibilité existe
-            markTimeSlotAsTemporarilyBooked(agency, dateTime);
-        }
+        // Envoyer notification WebSocket immédiatement
+        logger.debug("Envoi de notification WebSocket pour mise à jour des disponibilités");
+        livePublisher.publish("/topic/availability/" + agency.getId(), date, availability);
     }
     
     /**
@@ -521,122 +559,297 @@ public class AvailabilityService {
         LocalDate date = dateTime.toLocalDate();
         LocalTime time = dateTime.toLocalTime();
         
-        Optional<Availability> availabilityOpt = availabilityRepository.findByAgencyAndDate(agency, date);
+        Availability availability = applySlotChange(agency, date, time, SlotChange.RELEASE);
         
-        if (availabilityOpt.isPresent()) {
-            Availability availability = availabilityOpt.get();
-            
-            // Retirer des créneaux réservés
-            List<LocalTime> bookedSlots = availability.getBookedTimeSlots();
-            boolean removed = bookedSlots.remove(time);
-            logger.debug("Créneau retiré des réservés: {}", removed);
-            availability.setBookedTimeSlots(bookedSlots);
-            
-            // Ajouter aux créneaux disponibles s'il n'y est pas déjà
-            List<LocalTime> availableSlots = availability.getAvailableTimeSlots();
-            if (!availableSlots.contains(time)) {
-                availableSlots.add(time);
-                // Trier les créneaux disponibles
-                availableSlots.sort(LocalTime::compareTo);
-                availability.setAvailableTimeSlots(availableSlots);
-                logger.debug("Créneau rajouté aux disponibles");
-            }
-            
-            Availability savedAvailability = availabilityRepository.saveAndFlush(availability);
+        if (availability != null) {
+            availabilityCache.invalidate(agency.getId(), date);
             
             // Envoyer notification WebSocket immédiatement
             logger.debug("Envoi de notification WebSocket pour mise à jour des disponibilités");
-            messagingTemplate.convertAndSend("/topic/availability/" + agency.getId(), savedAvailability);
+            livePublisher.publish("/topic/availability/" + agency.getId(), date, availability);
         } else {
             logger.warn("Aucune disponibilité trouvée pour cette date et cette agence");
         }
     }
     
+    /**
+     * Applique une modification de créneau sans verrou : lecture de l'état et de la version,
+     * calcul des nouveaux masques puis mise à jour conditionnée à la version lue.
+     * En cas de modification concurrente, l'opération est rejouée un nombre borné de fois.
+     *
+     * @return l'état à jour de la disponibilité (non attaché au contexte de persistance),
+     *         ou null pour une libération sur une journée sans disponibilité enregistrée
+     * @throws ConflictException si le créneau n'est plus disponible (CLAIM) ou si les tentatives sont épuisées
+     */
+    private Availability applySlotChange(Agency agency, LocalDate date, LocalTime time, SlotChange change) {
+        for (int attempt = 1; attempt <= slotUpdateMaxAttempts; attempt++) {
+            Optional<SlotState> stateOpt = availabilityRepository.findSlotState(agency, date);
+            
+            if (stateOpt.isEmpty()) {
+                if (change == SlotChange.RELEASE) {
+                    return null;
+                }
+                // Créer la journée à partir des réservations et blocages existants, puis réessayer
+                Availability computed = computeAvailability(agency, date);
+                availabilityRepository.insertIfAbsent(agency.getId(), date, computed.getAvailableSlotsMask(),
+                        computed.getBookedSlotsMask(), computed.getSlotGranularity());
+                continue;
+            }
+            
+            SlotState state = stateOpt.get();
+            if (state.getAvailableSlotsMask() == null || state.getBookedSlotsMask() == null) {
+                // Ligne encore au format texte : la convertir une fois via l'entité, puis réessayer
+                availabilityRepository.findByAgencyAndDate(agency, date).ifPresent(availabilityRepository::saveAndFlush);
+                continue;
+            }
+            
+            Availability availability = new Availability();
+            availability.setId(state.getId());
+            availability.setAgency(agency);
+            availability.setDate(date);
+            availability.setSlotGranularity(state.getSlotGranularity());
+            availability.setAvailableSlotsMask(state.getAvailableSlotsMask());
+            availability.setBookedSlotsMask(state.getBookedSlotsMask());
+            availability.setVersion(state.getVersion());
+            
+            if (change == SlotChange.CLAIM && !availability.hasAvailableSlot(time)) {
+                throw new ConflictException("Ce créneau n'est plus disponible");
+            }
+            
+            if (change == SlotChange.RELEASE) {
+                availability.releaseSlot(time);
+            } else {
+                availability.reserveSlot(time);
+            }
+            
+            if (availability.getAvailableSlotsMask().equals(state.getAvailableSlotsMask())
+                    && availability.getBookedSlotsMask().equals(state.getBookedSlotsMask())) {
+                // Rien à écrire
+                return availability;
+            }
+            
+            int updated = availabilityRepository.compareAndSetSlots(state.getId(), state.getVersion(),
+                    availability.getAvailableSlotsMask(), availability.getBookedSlotsMask());
+            if (updated == 1) {
+                availability.setVersion(state.getVersion() + 1);
+                return availability;
+            }
+            
+            logger.debug("Modification concurrente du créneau {} {} de l'agence {} (tentative {}/{})",
+                    date, time, agency.getId(), attempt, slotUpdateMaxAttempts);
+            backOff(attempt);
+        }
+        
+        logger.warn("Créneau {} {} de l'agence {} toujours disputé après {} tentatives",
+                date, time, agency.getId(), slotUpdateMaxAttempts);
+        throw new ConflictException("Le créneau a été modifié simultanément, veuillez réessayer");
+    }
+    
+    /**
+     * Attente courte et aléatoire avant de rejouer une modification, pour désynchroniser les concurrents
+     */
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Modification du créneau interrompue");
+        }
+    }
+    
     /**
      * Récupère les disponibilités pour une semaine
      */
-    public List<Availability> getAgencyAvailabilityForWeek(Long agencyId, LocalDate startDate) {
+    public List<AvailabilityDTO> getAgencyAvailabilityForWeek(Long agencyId, LocalDate startDate) {
         logger.info("Récupération des disponibilités pour la semaine du {} pour l'agence {}", startDate, agencyId);
         
+        return getAgencyAvailabilityForRange(agencyId, startDate, startDate.plusDays(6));
+    }
+    
+    /**
+     * Récupère les disponibilités enrichies d'une agence sur une période [from, to] d'au plus MAX_RANGE_DAYS jours.
+     *
+     * L'agence, les blocages et les réservations confirmées de la période sont chargés une seule fois ;
+     * les journées sans disponibilité enregistrée sont calculées en mémoire et ne sont pas enregistrées.
+     */
+    @Transactional(readOnly = true)
+    public List<AvailabilityDTO> getAgencyAvailabilityForRange(Long agencyId, LocalDate from, LocalDate to) {
+        logger.info("Récupération des disponibilités du {} au {} pour l'agence {}", from, to, agencyId);
+        
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure ou égale à la date de début");
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("La période demandée ne peut pas dépasser " + MAX_RANGE_DAYS + " jours");
+        }
+        
         Agency agency = agencyRepository.findById(agencyId)
                 .orElseThrow(() -> new RuntimeException("Agence non trouvée"));
         
-        List<Availability> weekAvailability = new ArrayList<>();
+        List<BlockedSlot> blockedSlots = blockedTimeSlotRepository.findBlockedSlotsByAgencyAndDateBetween(agency, from, to);
+        List<BookedSlot> reservations = reservationRepository.findBookedSlotsByAgencyAndStatusInRange(
+                agency, Reservation.Status.CONFIRMED, from.atStartOfDay(), to.plusDays(1).atStartOfDay());
         
-        // Créer ou récupérer les disponibilités pour les 7 jours à partir de startDate
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = startDate.plusDays(i);
-            weekAvailability.add(getOrCreateAvailability(agencyId, date));
+        List<Availability> availabilities = availabilityRepository.findByAgencyAndDateBetweenOrderByDate(agency, from, to);
+        
+        Map<LocalDate, Availability> existingByDate = new HashMap<>();
+        for (Availability availability : availabilities) {
+            existingByDate.putIfAbsent(availability.getDate(), availability);
+        }
+        
+        // Créneaux réservés et bloqués de la période, regroupés par date, pour les journées sans ligne
+        Map<LocalDate, Long> unavailableByDate = getUnavailableSlotMasks(blockedSlots, reservations);
+        
+        List<AvailabilityDTO> dtos = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Availability availability = existingByDate.get(date);
+            if (availability == null) {
+                availability = newAvailability(agency, date);
+                long unavailable = unavailableByDate.getOrDefault(date, SlotCalendar.EMPTY);
+                availability.setAvailableSlotsMask(
+                        generateAvailableSlotMask(agency, date, availability.getSlotGranularity()) & ~unavailable);
+                availability.setBookedSlotsMask(unavailable);
+            }
+            dtos.add(new AvailabilityDTO(availability));
         }
         
-        return weekAvailability;
+        enrichAvailabilityDTOs(dtos, blockedSlots, reservations);
+        return dtos;
     }
     
     /**
-     * Récupère la dernière version d'une disponibilité depuis la base de données
+     * Regroupe par date les créneaux réservés et bloqués déjà chargés pour une période
      */
-    @Transactional
-    public Availability refreshAvailability(Long agencyId, LocalDate date) {
-        logger.info("Rafraîchissement des disponibilités pour l'agence {} à la date {}", agencyId, date);
-        
-        Agency agency = agencyRepository.findById(agencyId)
-                .orElseThrow(() -> new RuntimeException("Agence non trouvée"));
+    private Map<LocalDate, Long> getUnavailableSlotMasks(List<BlockedSlot> blockedSlots, List<BookedSlot> reservations) {
+        SlotCalendar.checkGranularity(slotGranularityMinutes);
+        int granularity = slotGranularityMinutes;
+        
+        Map<LocalDate, Long> unavailableByDate = new HashMap<>();
+        for (BookedSlot reservation : reservations) {
+            LocalDateTime start = reservation.getStartDateTime();
+            unavailableByDate.merge(start.toLocalDate(),
+                    SlotCalendar.bit(start.toLocalTime(), granularity), (a, b) -> a | b);
+        }
+        for (BlockedSlot blockedSlot : blockedSlots) {
+            unavailableByDate.merge(blockedSlot.getDate(),
+                    SlotCalendar.bit(blockedSlot.getTime(), granularity), (a, b) -> a | b);
+        }
+        return unavailableByDate;
+    }
+    
+    /**
+     * Retourne le DTO enrichi des disponibilités d'une agence pour une date,
+     * depuis le cache si possible, sinon depuis la base de données
+     */
+    @Transactional(readOnly = true)
+    public AvailabilityDTO getAvailabilityDTO(Long agencyId, LocalDate date) {
+        AvailabilityDTO cached = availabilityCache.get(agencyId, date);
+        if (cached != null) {
+            logger.debug("Disponibilités de l'agence {} à la date {} servies depuis le cache", agencyId, date);
+            return cached;
+        }
         
-        // Forcer une requête fraîche à la base de données
-        entityManager.clear();
+        // Lire la version avant le calcul : une modification concurrente empêchera la mise en cache
+        long cacheVersion = availabilityCache.currentVersion();
         
-        Optional<Availability> refreshedAvailability = availabilityRepository.findByAgencyAndDate(agency, date);
+        AvailabilityDTO dto = new AvailabilityDTO(findOrComputeAvailability(agencyId, date));
+        enrichAvailabilityDTO(dto);
         
-        if (refreshedAvailability.isPresent()) {
-            return refreshedAvailability.get();
-        } else {
-            return getOrCreateAvailability(agencyId, date);
-        }
+        availabilityCache.put(agencyId, date, dto, cacheVersion);
+        return dto;
     }
     
     /**
      * Enrichit un DTO de disponibilité avec des informations supplémentaires
      */
     public void enrichAvailabilityDTO(AvailabilityDTO dto) {
-        // Trouver les réservations confirmées pour les créneaux réservés
-        Agency agency = agencyRepository.findById(dto.getAgencyId())
-                .orElseThrow(() -> new RuntimeException("Agence non trouvée"));
+        enrichAvailabilityDTOs(dto.getAgencyId(), Collections.singletonList(dto));
+    }
+    
+    /**
+     * Enrichit plusieurs DTO d'une même agence en deux requêtes au total : une pour les créneaux
+     * bloqués et une projection (début, service) des réservations confirmées de la période
+     */
+    public void enrichAvailabilityDTOs(Long agencyId, List<AvailabilityDTO> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        
+        // Les DTO proviennent de disponibilités existantes, une référence suffit pour les requêtes
+        Agency agency = agencyRepository.getReferenceById(agencyId);
+        
+        LocalDate startDate = dtos.get(0).getDate();
+        LocalDate endDate = startDate;
+        for (AvailabilityDTO dto : dtos) {
+            if (dto.getDate().isBefore(startDate)) {
+                startDate = dto.getDate();
+            }
+            if (dto.getDate().isAfter(endDate)) {
+                endDate = dto.getDate();
+            }
+        }
+        
+        enrichAvailabilityDTOs(dtos,
+                blockedTimeSlotRepository.findBlockedSlotsByAgencyAndDateBetween(agency, startDate, endDate),
+                reservationRepository.findBookedSlotsByAgencyAndStatusInRange(
+                        agency, Reservation.Status.CONFIRMED, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay()));
+    }
+    
+    /**
+     * Enrichit des DTO à partir des blocages et réservations confirmées déjà chargés pour leur période
+     */
+    private void enrichAvailabilityDTOs(List<AvailabilityDTO> dtos,
+            List<BlockedSlot> blockedSlots, List<BookedSlot> reservations) {
+        // Blocages manuels de la période, indexés par date/heure
+        Map<LocalDateTime, BlockedSlot> blockedByDateTime = new HashMap<>();
+        for (BlockedSlot blockedSlot : blockedSlots) {
+            blockedByDateTime.put(blockedSlot.getDate().atTime(blockedSlot.getTime()), blockedSlot);
+        }
         
-        LocalDate date = dto.getDate();
+        // Réservations confirmées de la période, regroupées par date
+        Map<LocalDate, List<BookedSlot>> reservationsByDate = new HashMap<>();
+        for (BookedSlot reservation : reservations) {
+            reservationsByDate.computeIfAbsent(reservation.getStartDateTime().toLocalDate(), d -> new ArrayList<>())
+                    .add(reservation);
+        }
         
-        // Pour chaque créneau réservé, ajouter des informations sur la réservation
-        for (LocalTime time : dto.getBookedTimeSlots()) {
-            LocalDateTime dateTime = date.atTime(time);
+        for (AvailabilityDTO dto : dtos) {
+            LocalDate date = dto.getDate();
             
-            // Vérifier si c'est une réservation ou un blocage manuel
-            Optional<BlockedTimeSlot> blockedSlot = blockedTimeSlotRepository.findByAgencyAndDateAndTime(agency, date, time);
+            // Indexées par le début du créneau qu'elles occupent, à la granularité de la ligne
+            Map<LocalDateTime, BookedSlot> reservationBySlot = new HashMap<>();
+            for (BookedSlot reservation : reservationsByDate.getOrDefault(date, List.of())) {
+                LocalTime slotStart = SlotCalendar.floor(reservation.getStartDateTime().toLocalTime(),
+                        dto.getSlotGranularity());
+                reservationBySlot.putIfAbsent(date.atTime(slotStart), reservation);
+            }
             
-            if (blockedSlot.isPresent()) {
-                // C'est un blocage manuel
-                String timeKey = time.toString();
-                String reason = blockedSlot.get().getReason();
-                if (reason != null && !reason.isEmpty()) {
-                    dto.getBookedSlotInfo().put(timeKey, "Bloqué: " + reason);
-                } else {
-                    dto.getBookedSlotInfo().put(timeKey, "Créneau bloqué");
-                }
-            } else {
-                // Chercher une réservation confirmée
-                List<Reservation> reservations = reservationRepository.findByAgencyAndStatus(
-                        agency, Reservation.Status.CONFIRMED).stream()
-                        .filter(res -> res.getStartDateTime() != null && 
-                                      res.getStartDateTime().toLocalDate().equals(date) && 
-                                      res.getStartDateTime().toLocalTime().equals(time))
-                        .collect(Collectors.toList());
-                
-                if (!reservations.isEmpty()) {
-                    // Ajouter des informations non sensibles sur la réservation
-                    Reservation reservation = reservations.get(0);
-                    String timeKey = time.toString();
-                    
-                    dto.getBookedSlotInfo().put(timeKey, "Réservé pour: " + reservation.getService());
-                }
-            }
+            // Pour chaque créneau réservé, ajouter des informations sur la réservation
+            for (LocalTime time : dto.getBookedTimeSlots()) {
+                LocalDateTime dateTime = date.atTime(time);
+                String timeKey = time.toString();
+                
+                // Vérifier si c'est une réservation ou un blocage manuel
+                BlockedSlot blockedSlot = blockedByDateTime.get(dateTime);
+                
+                if (blockedSlot != null) {
+                    // C'est un blocage manuel
+                    String reason = blockedSlot.getReason();
+                    if (reason != null && !reason.isEmpty()) {
+                        dto.getBookedSlotInfo().put(timeKey, "Bloqué: " + reason);
+                    } else {
+                        dto.getBookedSlotInfo().put(timeKey, "Créneau bloqué");
+                    }
+                } else {
+                    // Chercher une réservation confirmée
+                    BookedSlot reservation = reservationBySlot.get(dateTime);
+                    
+                    if (reservation != null) {
+                        // Ajouter des informations non sensibles sur la réservation
+                        dto.getBookedSlotInfo().put(timeKey, "Réservé pour: " + reservation.getService());
+                    }
+                }
+            }
         }
     }
     
@@ -678,11 +891,12 @@ public class AvailabilityService {
         }
         
         // Vérifier si le créneau est déjà réservé
-        boolean isBooked = reservationRepository.findByAgencyAndStartDateTimeBetween(
+        boolean isBooked = reservationRepository.existsByAgencyAndStatusAndStartDateTimeBetween(
                 agency, 
+                Reservation.Status.CONFIRMED,
                 date.atTime(time), 
                 date.atTime(time).plusHours(1)
-        ).stream().anyMatch(res -> res.getStatus() == Reservation.Status.CONFIRMED);
+        );
         
         if (isBooked) {
             return false;
@@ -702,12 +916,12 @@ public class AvailabilityService {
             Availability availability = availabilityOpt.get();
             
             // Vérifier si le créneau est disponible
-            return availability.getAvailableTimeSlots().contains(time) &&
-                  !availability.getBookedTimeSlots().contains(time);
+            return availability.hasAvailableSlot(time) &&
+                  !availability.hasBookedSlot(time);
         } else {
             // Si aucune disponibilité n'existe, générer les créneaux disponibles
-            List<LocalTime> availableSlots = generateAvailableTimeSlots(agency, date);
-            return availableSlots.contains(time);
+            long availableSlots = generateAvailableSlotMask(agency, date, slotGranularityMinutes);
+            return SlotCalendar.contains(availableSlots, time, slotGranularityMinutes);
         }
     }
 }
\ No newline at end of file
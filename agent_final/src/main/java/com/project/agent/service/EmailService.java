@@ -174,24 +174,24 @@
 //}
 package com.project.agent.service;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.springframework.util.ResourceUtils;
 
 import com.project.agent.model.Reservation;
 import com.project.agent.model.Users;
+import com.project.agent.service.mail.EmailDispatcher;
+import com.project.agent.service.mail.EmailOutboxService;
+import com.project.agent.service.mail.EmailTemplateEngine;
+import com.project.agent.service.mail.OutgoingEmail;
 
 @Service
 public class EmailService {
@@ -199,34 +199,38 @@ public class EmailService {
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private EmailTemplateEngine templateEngine;
+
     @org.springframework.beans.factory.annotation.Value("${app.frontend-url:http://localhost:4200}")
     private String frontendUrl;
 
-    private static final String EMAIL_TEMPLATE_PATH = "classpath:templates/email_template.html";
-    private static final String FROM_EMAIL = "javajamil89@gmail.com";
+    private static final String EMAIL_TEMPLATE = "email_template";
+    public static final String FROM_EMAIL = "javajamil89@gmail.com";
     
     /**
-     * Charge le template HTML et remplace les variables par leurs valeurs
+     * Remplit le template HTML (compilé au démarrage) avec les valeurs de l'email
      */
     private String loadAndProcessTemplate(String title, String username, String messageContent, 
                                          String actionButton, String conclusion) {
-        try {
-            // Charger le template HTML
-            String template = new String(Files.readAllBytes(
-                    ResourceUtils.getFile(EMAIL_TEMPLATE_PATH).toPath()), StandardCharsets.UTF_8);
-            
-            // Remplacer les variables par leurs valeurs
-            template = template.replace("{{TITLE}}", title)
-                              .replace("{{USERNAME}}", username)
-                              .replace("{{MESSAGE_CONTENT}}", messageContent)
-                              .replace("{{ACTION_BUTTON}}", actionButton != null ? actionButton : "")
-                              .replace("{{CONCLUSION}}", conclusion);
-            
-            return template;
-        } catch (IOException e) {
-            // En cas d'erreur, retourner un message simple
+        if (!templateEngine.hasTemplate(EMAIL_TEMPLATE)) {
+            // Template absent : retourner un message simple
             return "<html><body><p>Bonjour " + username + ",</p><p>" + messageContent + "</p></body></html>";
         }
+        
+        Map<String, String> values = new HashMap<>();
+        values.put("TITLE", title);
+        values.put("USERNAME", username);
+        values.put("MESSAGE_CONTENT", messageContent);
+        values.put("ACTION_BUTTON", actionButton);
+        values.put("CONCLUSION", conclusion);
+        return templateEngine.render(EMAIL_TEMPLATE, values);
     }
     
     /**
@@ -243,9 +247,39 @@ public class EmailService {
     }
     
     /**
-     * Envoie un email HTML avec fallback texte
+     * Envoie un email déjà rendu
+     */
+    public void send(OutgoingEmail email) {
+        sendHtmlEmail(email.recipient(), email.subject(), email.htmlBody(), email.textBody());
+    }
+    
+    /**
+     * Envoie un lot d'emails déjà rendus : enregistrés ensemble dans l'outbox, ou un par un
+     * si l'outbox est désactivée
+     */
+    public void sendAll(List<OutgoingEmail> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        if (emailDispatcher.isEnabled()) {
+            outboxService.enqueueAll(emails);
+            emailDispatcher.wakeUpAfterCommit();
+            return;
+        }
+        emails.forEach(this::send);
+    }
+    
+    /**
+     * Envoie un email HTML avec fallback texte : enregistré dans l'outbox (dans la transaction
+     * de l'appelant) puis envoyé en arrière-plan, ou envoyé directement si l'outbox est désactivée
      */
     private void sendHtmlEmail(String to, String subject, String htmlContent, String textContent) {
+        if (emailDispatcher.isEnabled()) {
+            outboxService.enqueue(to, subject, htmlContent, textContent);
+            emailDispatcher.wakeUpAfterCommit();
+            return;
+        }
+
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -407,6 +441,13 @@ public class EmailService {
     }
     
     public void sendAppointmentReminder(Reservation reservation) {
+        send(renderAppointmentReminder(reservation));
+    }
+    
+    /**
+     * Rend l'email de rappel d'un rendez-vous sans l'envoyer (envoi groupé des rappels)
+     */
+    public OutgoingEmail renderAppointmentReminder(Reservation reservation) {
         String title = "Rappel de votre rendez-vous à venir";
         String username = reservation.getUser().getUsername();
         
@@ -462,8 +503,7 @@ public class EmailService {
             "Merci et à bientôt !"
         );
         
-        // Envoyer l'email
-        sendHtmlEmail(reservation.getUser().getEmail(), title, emailHtml, textContent.toString());
+        return new OutgoingEmail(reservation.getUser().getEmail(), title, emailHtml, textContent.toString());
     }
     
     public void sendVerificationCode(Users user, String code) {
@@ -0,0 +1,249 @@
+package com.project.agent.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.project.agent.model.Users;
+import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.UserRepository.UserIdentity;
+
+/**
+ * Cache des identités résolues (utilisateur, agent, agence) par email.
+ *
+ * Une identité est d'abord cherchée dans la requête HTTP courante, puis dans un
+ * cache partagé à TTL court, et sinon chargée en une seule requête. Les services
+ * qui changent un rôle, une affectation d'agence ou suppriment un compte évincent
+ * l'email concerné ; l'éviction est rejouée après le commit, comme pour
+ * {@link AvailabilityCache}.
+ */
+@Component
+public class IdentityCache {
+
+    private static final String REQUEST_ATTRIBUTE_PREFIX = IdentityCache.class.getName() + ".";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.identity-cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.identity-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    @Value("${app.identity-cache.ttl-seconds:30}")
+    private long ttlSeconds = 30;
+
+    // LinkedHashMap en ordre d'accès : la première entrée est la moins récemment utilisée
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Incrémenté à chaque éviction, pour refuser les identités chargées avant celle-ci
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Identité résolue d'un utilisateur ; agentId et agencyId sont null hors agents
+     */
+    public record Identity(Long userId, String email, String displayName, Users.Role role, Long agentId,
+            Long agencyId) {
+
+        public boolean isAgent() {
+            return agentId != null;
+        }
+    }
+
+    private record Entry(Identity identity, long expiresAtNanos) {
+    }
+
+    /**
+     * Identité de l'utilisateur authentifié
+     */
+    public Optional<Identity> current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return Optional.empty();
+        }
+        return find(authentication.getName());
+    }
+
+    /**
+     * Agent authentifié, ou exception s'il n'est pas un agent
+     */
+    public Identity currentAgent() {
+        return current()
+                .filter(Identity::isAgent)
+                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+    }
+
+    /**
+     * Indique si un utilisateur peut suivre le trafic d'une agence : administrateur, ou agent de cette agence
+     */
+    public boolean canAccessAgency(String email, Long agencyId) {
+        return find(email)
+                .map(identity -> identity.role() == Users.Role.ADMIN
+                        || (identity.isAgent() && agencyId.equals(identity.agencyId())))
+                .orElse(false);
+    }
+
+    /**
+     * Indique si un utilisateur est administrateur (trafic de toutes les agences)
+     */
+    public boolean isAdmin(String email) {
+        return find(email)
+                .map(identity -> identity.role() == Users.Role.ADMIN)
+                .orElse(false);
+    }
+
+    /**
+     * Identité d'un email : requête courante, puis cache partagé, puis base de données
+     */
+    public Optional<Identity> find(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null
+                && request.getAttribute(REQUEST_ATTRIBUTE_PREFIX + email, RequestAttributes.SCOPE_REQUEST)
+                        instanceof Identity identity) {
+            return Optional.of(identity);
+        }
+
+        Identity identity = getShared(email);
+        if (identity == null) {
+            long loadedVersion = version.get();
+            identity = userRepository.findIdentityByEmail(email).map(IdentityCache::toIdentity).orElse(null);
+            if (identity == null) {
+                return Optional.empty();
+            }
+            putShared(email, identity, loadedVersion);
+        }
+
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE_PREFIX + email, identity, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(identity);
+    }
+
+    /**
+     * Évince l'identité d'un email (rôle, agence ou compte modifié)
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        remove(email);
+        TransactionHooks.afterCommit(() -> remove(email));
+    }
+
+    /**
+     * Vide le cache (modification touchant de nombreux agents)
+     */
+    public void evictAll() {
+        clear();
+        TransactionHooks.afterCommit(this::clear);
+    }
+
+    /**
+     * Statistiques du cache pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private static Identity toIdentity(UserIdentity view) {
+        return new Identity(view.getUserId(), view.getEmail(), view.getDisplayName(), view.getRole(),
+                view.getAgentId(), view.getAgencyId());
+    }
+
+    private Identity getShared(String email) {
+        if (!enabled) {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(email);
+            if (entry != null && entry.expiresAtNanos() - System.nanoTime() <= 0) {
+                entries.remove(email);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.identity();
+    }
+
+    private void putShared(String email, Identity identity, long loadedVersion) {
+        if (!enabled) {
+            return;
+        }
+
+        Entry entry = new Entry(identity, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds));
+        synchronized (entries) {
+            if (version.get() != loadedVersion) {
+                return;
+            }
+            entries.put(email, entry);
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void remove(String email) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(email);
+        }
+        evictions.incrementAndGet();
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE_PREFIX + email, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.clear();
+        }
+        evictions.incrementAndGet();
+    }
+}
@@ -9,6 +9,7 @@ import com.project.agent.model.Users;
 import com.project.agent.model.VerificationCode;
 import com.project.agent.repository.UserRepository;
 import com.project.agent.repository.VerificationCodeRepository;
+import com.project.agent.security.TokenRevocationList;
 
 @Service
 public class PasswordResetService {
@@ -25,6 +26,9 @@ public class PasswordResetService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
     public void initiatePasswordReset(String email) {
         Users user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec cet email"));
@@ -86,6 +90,9 @@ public class PasswordResetService {
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
         
+        // Les jetons émis avec l'ancien mot de passe ne sont plus acceptés
+        tokenRevocationList.revokeAll(email);
+        
         // Marquer le code comme utilisé
         verificationCode.setUsed(true);
         verificationCodeRepository.save(verificationCode);
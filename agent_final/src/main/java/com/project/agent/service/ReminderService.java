@@ -0,0 +1,105 @@
+package com.project.agent.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.model.Reservation;
+import com.project.agent.repository.ReservationRepository;
+import com.project.agent.service.mail.OutgoingEmail;
+
+/**
+ * Envoi groupé des rappels de rendez-vous, par lots.
+ *
+ * Chaque lot est traité dans une seule transaction : les lignes sont verrouillées
+ * (FOR UPDATE SKIP LOCKED), les emails rendus en parallèle puis enregistrés dans l'outbox,
+ * et les indicateurs de rappel positionnés en une seule requête UPDATE. Un arrêt en cours
+ * de lot annule à la fois les emails et les indicateurs : aucun rappel n'est perdu ni envoyé
+ * deux fois, et deux instances ne traitent jamais la même réservation.
+ */
+@Service
+public class ReminderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReminderService.class);
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    public enum ReminderType {
+        DAY_BEFORE,   // Rappel 24 heures avant (reminderSent)
+        HOUR_BEFORE   // Rappel 1 heure avant (shortReminderSent)
+    }
+
+    /**
+     * Résultat d'un lot : réservations rappelées et dernier identifiant examiné (-1 si le lot est vide)
+     */
+    public record ChunkResult(List<Long> remindedIds, long lastId) {
+
+        public boolean isEmpty() {
+            return lastId < 0;
+        }
+    }
+
+    /**
+     * Traite le prochain lot de rappels dus dont l'identifiant dépasse afterId
+     */
+    @Transactional
+    public ChunkResult dispatchChunk(ReminderType type, LocalDateTime from, LocalDateTime to, long afterId, int chunkSize) {
+        List<Long> ids = type == ReminderType.DAY_BEFORE
+                ? reservationRepository.lockDueReminderIds(from, to, afterId, chunkSize)
+                : reservationRepository.lockDueShortReminderIds(from, to, afterId, chunkSize);
+        if (ids.isEmpty()) {
+            return new ChunkResult(List.of(), -1);
+        }
+
+        List<Reservation> reservations = reservationRepository.findWithDetailsByIdIn(ids);
+
+        // Rendu en parallèle : les réservations et leurs relations sont déjà chargées
+        List<Rendered> rendered = reservations.parallelStream()
+                .map(this::render)
+                .filter(Objects::nonNull)
+                .toList();
+
+        List<Long> remindedIds = new ArrayList<>(rendered.size());
+        List<OutgoingEmail> emails = new ArrayList<>(rendered.size());
+        for (Rendered item : rendered) {
+            remindedIds.add(item.reservationId());
+            emails.add(item.email());
+        }
+
+        if (!remindedIds.isEmpty()) {
+            emailService.sendAll(emails);
+            if (type == ReminderType.DAY_BEFORE) {
+                reservationRepository.markReminderSent(remindedIds);
+            } else {
+                reservationRepository.markShortReminderSent(remindedIds);
+            }
+        }
+
+        return new ChunkResult(remindedIds, ids.get(ids.size() - 1));
+    }
+
+    private record Rendered(Long reservationId, OutgoingEmail email) {
+    }
+
+    private Rendered render(Reservation reservation) {
+        try {
+            return new Rendered(reservation.getId(), emailService.renderAppointmentReminder(reservation));
+        } catch (Exception e) {
+            // Réservation ignorée pour ce passage, reprise au suivant
+            logger.error("Erreur lors du rendu du rappel pour la réservation ID {}: {}",
+                    reservation.getId(), e.getMessage());
+            return null;
+        }
+    }
+}
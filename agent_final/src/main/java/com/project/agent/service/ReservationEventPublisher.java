@@ -0,0 +1,107 @@
+package com.project.agent.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.dto.ReservationDeltaDTO;
+import com.project.agent.model.Reservation;
+import com.project.agent.repository.ReservationRepository.ReservationSummary;
+
+/**
+ * Publication des changements de réservations par agence, sur /topic/agency/{agencyId}/reservations.
+ *
+ * Chaque message ne porte que l'identifiant, le statut, la version et les champs modifiés,
+ * au lieu du graphe complet de l'entité diffusé à tous sur les anciens topics. Le message
+ * part après le commit : un abonné ne voit jamais un état annulé par un rollback, et la
+ * version publiée est celle écrite en base.
+ *
+ * Les anciens topics globaux (/topic/reservations, /topic/reservation-updated) ne sont plus
+ * alimentés que si app.websocket.legacy-reservation-topics.enabled est activé, et seuls les
+ * administrateurs peuvent s'y abonner.
+ */
+@Component
+public class ReservationEventPublisher {
+
+    // Champs pouvant figurer dans un delta
+    public static final String SERVICE = "service";
+    public static final String PREFERRED_DATE = "preferredDate";
+    public static final String START_DATE_TIME = "startDateTime";
+    public static final String END_DATE_TIME = "endDateTime";
+    public static final String HANDLED_BY_AGENT_ID = "handledByAgentId";
+
+    // Anciens topics globaux : entité complète, trafic de toutes les agences
+    public static final String LEGACY_CREATED_TOPIC = "/topic/reservations";
+    public static final String LEGACY_UPDATED_TOPIC = "/topic/reservation-updated";
+
+    @Value("${app.websocket.legacy-reservation-topics.enabled:false}")
+    private boolean legacyTopicsEnabled = false;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    public static String agencyTopic(Long agencyId) {
+        return "/topic/agency/" + agencyId + "/reservations";
+    }
+
+    /**
+     * Publie le changement d'une réservation à son agence, avec la valeur actuelle des champs indiqués
+     */
+    public void publish(Reservation reservation, String... changedFields) {
+        if (reservation.getAgency() == null) {
+            return;
+        }
+        Long agencyId = reservation.getAgency().getId();
+        TransactionHooks.afterCommitOrNow(() -> messagingTemplate.convertAndSend(agencyTopic(agencyId), toDelta(reservation, changedFields)));
+    }
+
+    /**
+     * Diffuse l'entité complète sur un ancien topic global, seulement si ces topics sont activés
+     */
+    public void publishLegacy(String topic, Reservation reservation) {
+        if (legacyTopicsEnabled) {
+            messagingTemplate.convertAndSend(topic, reservation);
+        }
+    }
+
+    public static boolean isLegacyTopic(String destination) {
+        return LEGACY_CREATED_TOPIC.equals(destination) || LEGACY_UPDATED_TOPIC.equals(destination);
+    }
+
+    /**
+     * Delta d'une réservation ; lu au moment de l'envoi pour reprendre la version incrémentée au flush
+     */
+    public static ReservationDeltaDTO toDelta(Reservation reservation, String... fields) {
+        ReservationDeltaDTO delta = new ReservationDeltaDTO(reservation.getId(), reservation.getStatus(),
+                reservation.getVersion());
+        for (String field : fields) {
+            delta.change(field, valueOf(reservation, field));
+        }
+        return delta;
+    }
+
+    /**
+     * Entrée d'instantané : tous les champs affichés sur le tableau de bord
+     */
+    public static ReservationDeltaDTO toDelta(ReservationSummary summary) {
+        return new ReservationDeltaDTO(summary.getId(), summary.getStatus(), summary.getVersion())
+                .change(SERVICE, summary.getService())
+                .change(PREFERRED_DATE, summary.getPreferredDate())
+                .change(START_DATE_TIME, summary.getStartDateTime())
+                .change(END_DATE_TIME, summary.getEndDateTime())
+                .change(HANDLED_BY_AGENT_ID, summary.getHandledByAgentId());
+    }
+
+    private static Object valueOf(Reservation reservation, String field) {
+        return switch (field) {
+            case SERVICE -> reservation.getService();
+            case PREFERRED_DATE -> reservation.getPreferredDate();
+            case START_DATE_TIME -> reservation.getStartDateTime();
+            case END_DATE_TIME -> reservation.getEndDateTime();
+            case HANDLED_BY_AGENT_ID -> reservation.getHandledByAgent() == null
+                    ? null : reservation.getHandledByAgent().getId();
+            default -> throw new IllegalArgumentException("Champ de réservation inconnu: " + field);
+        };
+    }
+}
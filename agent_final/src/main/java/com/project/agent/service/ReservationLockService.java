@@ -1,30 +1,47 @@
 package com.project.agent.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+
+import com.project.agent.dto.LockHeartbeatDTO;
+import com.project.agent.dto.LockReleaseDTO;
 import com.project.agent.dto.LockStatusDTO;
 import com.project.agent.model.Agent;
 import com.project.agent.model.Reservation;
-import com.project.agent.model.ReservationLock;
 import com.project.agent.model.Users;
 import com.project.agent.repository.AgentRepository;
-import com.project.agent.repository.ReservationLockRepository;
 import com.project.agent.repository.ReservationRepository;
-import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.ReservationRepository.ReservationAgency;
+import com.project.agent.service.IdentityCache.Identity;
+import com.project.agent.service.cluster.JobLeaseService;
+import com.project.agent.service.lock.LockExpiryTimer;
+import com.project.agent.service.lock.LockLeaseRegistry;
+import com.project.agent.service.lock.LockLeaseRegistry.SessionLeases;
+import com.project.agent.service.lock.ReservationLockStore;
+import com.project.agent.service.lock.ReservationLockStore.LockEntry;
 
 @Service
 public class ReservationLockService {
@@ -34,266 +51,221 @@ public class ReservationLockService {
     // Durée d'expiration des verrous en minutes
     private static final int LOCK_EXPIRATION_MINUTES = 5;
     
-    // Cache for active locks to reduce database queries
-    private final Map<Long, Long> activeLockCache = new ConcurrentHashMap<>();
+    private static final String RELEASED_LOCK_MESSAGE = "Réservation disponible pour traitement";
     
+    private static final int MAX_CACHED_RESERVATION_AGENCIES = 10_000;
+    
+    // Agence de chaque réservation (elle ne change jamais), pour router les événements par agence
+    // sans requête à chaque changement de verrou ; LRU borné
+    private final Map<Long, Long> reservationAgencies = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Long>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                    return size() > MAX_CACHED_RESERVATION_AGENCIES;
+                }
+            });
+    
+    // Stockage des verrous (PostgreSQL, Redis ou mémoire selon app.reservation-lock.store)
     @Autowired
-    private ReservationLockRepository lockRepository;
+    private ReservationLockStore lockStore;
     
+    // Libère chaque verrou à son heure d'expiration exacte
     @Autowired
-    private ReservationRepository reservationRepository;
+    private LockExpiryTimer expiryTimer;
     
+    // Verrous renouvelés par battement de cœur, par session WebSocket
     @Autowired
-    private UserRepository userRepository;
+    private LockLeaseRegistry leaseRegistry;
+    
+    @Value("${scheduler.expired-locks-cleanup.enabled:true}")
+    private boolean expiredLocksCleanupEnabled = true;
+    
+    @Autowired
+    private ReservationRepository reservationRepository;
     
     @Autowired
     private AgentRepository agentRepository;
     
+    @Autowired
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private JobLeaseService jobLeaseService;
+    
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
     /**
-     * Vérifie si une réservation est actuellement verrouillée
+     * Agent authentifié, tel que connu du principal
+     */
+    private record CurrentAgent(Long id, String name, String email) {
+    }
+    
+    @PostConstruct
+    public void startExpiryTimer() {
+        expiryTimer.start(this::releaseExpiredLocks);
+    }
+    
+    /**
+     * Vérifie si une réservation est actuellement verrouillée par un autre agent que l'agent actuel
      */
     public boolean isReservationLocked(Reservation reservation) {
-        // First check the cache to avoid database query
-        if (activeLockCache.containsKey(reservation.getId())) {
-            Long agentId = activeLockCache.get(reservation.getId());
-            
-            // Check if the lock belongs to the current agent
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            try {
-                Agent currentAgent = agentRepository.findByUser_Email(email)
-                        .orElseThrow(() -> new RuntimeException("Agent not found"));
-                
-                // If current agent holds the lock, it's not locked for them
-                if (currentAgent.getId().equals(agentId)) {
-                    return false;
-                }
-                
-                // It's locked by someone else
-                return true;
-            } catch (Exception e) {
-                logger.error("Error checking agent for lock: {}", e.getMessage());
-                return true; // Safer to assume it's locked if we can't determine
-            }
+        Optional<LockEntry> lock = lockStore.findActive(reservation.getId());
+        if (lock.isEmpty()) {
+            return false;
         }
         
-        // Cache miss, check the database
-        Optional<ReservationLock> existingLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true);
-        
-        if (existingLock.isPresent()) {
-            ReservationLock lock = existingLock.get();
-            
-            // Vérifier si le verrou est expiré
-            if (lock.isExpired()) {
-                // Libérer le verrou expiré
-                releaseLock(lock);
-                return false;
-            }
-            
-            // Add to cache
-            if (lock.getLockedBy() != null) {
-                activeLockCache.put(reservation.getId(), lock.getLockedBy().getId());
-            }
-            
-            // Vérifier si le verrou appartient à l'agent actuel
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            if (lock.getLockedBy() != null && 
-                lock.getLockedBy().getUser() != null && 
-                lock.getLockedBy().getUser().getEmail().equals(email)) {
-                // Le verrou appartient à l'agent actuel
-                return false;
-            }
-            
-            // La réservation est verrouillée par un autre agent
-            return true;
+        try {
+            // Le verrou de l'agent actuel ne le bloque pas
+            return !lock.get().isHeldBy(getCurrentAgent().id());
+        } catch (Exception e) {
+            logger.error("Error checking agent for lock: {}", e.getMessage());
+            return true; // Safer to assume it's locked if we can't determine
         }
-        
-        // Aucun verrou actif
-        return false;
     }
     
     /**
      * Obtient l'agent qui a verrouillé une réservation
      */
     public Agent getLockingAgent(Reservation reservation) {
-        // Check cache first
-        if (activeLockCache.containsKey(reservation.getId())) {
-            Long agentId = activeLockCache.get(reservation.getId());
-            try {
-                return agentRepository.findById(agentId).orElse(null);
-            } catch (Exception e) {
-                logger.error("Error retrieving agent from cache: {}", e.getMessage());
-                // Fall through to database check
-            }
-        }
-        
-        Optional<ReservationLock> existingLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true);
-        
-        if (existingLock.isPresent() && !existingLock.get().isExpired()) {
-            Agent agent = existingLock.get().getLockedBy();
-            // Update cache
-            if (agent != null) {
-                activeLockCache.put(reservation.getId(), agent.getId());
-            }
-            return agent;
-        }
-        
-        return null;
+        return lockStore.findActive(reservation.getId())
+                .flatMap(lock -> agentRepository.findById(lock.agentId()))
+                .orElse(null);
     }
     
     /**
-     * Tente de verrouiller une réservation pour l'agent actuel
+     * Tente de verrouiller une réservation pour l'agent actuel.
+     * L'agent est identifié par le principal et la prise du verrou est une seule opération
+     * atomique du stockage : aucune autre requête n'est exécutée.
      * @return true si le verrouillage a réussi, false sinon
      */
-    @Transactional
     public boolean lockReservation(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Réservation non trouvée"));
+        CurrentAgent agent = getCurrentAgent();
         
-        // Vérifier si la réservation est déjà verrouillée
-        if (isReservationLocked(reservation)) {
+        LockEntry holder = lockStore.tryAcquire(reservationId, agent.id(),
+                LocalDateTime.now().plusMinutes(LOCK_EXPIRATION_MINUTES));
+        
+        // Réservation déjà verrouillée par un autre agent
+        if (!holder.isHeldBy(agent.id())) {
             return false;
         }
-        
-        // Obtenir l'agent actuel
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        
-        Agent agent = agentRepository.findByUser(user)
-                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
-        
-        // Créer un nouveau verrou
-        ReservationLock lock = new ReservationLock();
-        lock.setReservation(reservation);
-        lock.setLockedBy(agent);
-        lock.setLockedAt(LocalDateTime.now());
-        lock.setExpiresAt(LocalDateTime.now().plusMinutes(LOCK_EXPIRATION_MINUTES));
-        lock.setActive(true);
-        
-        // Sauvegarder le verrou
-        lock = lockRepository.save(lock);
-        
-        // Update cache
-        activeLockCache.put(reservationId, agent.getId());
+        expiryTimer.schedule(reservationId, holder.expiresAt());
         
         // Notifier les autres agents
-        notifyLockStatus(reservation, agent, true);
+        notifyLockStatus(reservationId, agent.id(), agent.name(), agent.email(), holder.expiresAt(), true);
         
-        logger.info("Réservation {} verrouillée par l'agent {}", reservationId, agent.getId());
+        logger.info("Réservation {} verrouillée par l'agent {}", reservationId, agent.id());
         return true;
     }
     
     /**
      * Libère le verrou sur une réservation
      */
-    @Transactional
     public void releaseReservationLock(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Réservation non trouvée"));
+        if (!reservationRepository.existsById(reservationId)) {
+            throw new RuntimeException("Réservation non trouvée");
+        }
         
-        Optional<ReservationLock> existingLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true);
+        CurrentAgent agent = getCurrentAgent();
         
-        if (existingLock.isPresent()) {
-            ReservationLock lock = existingLock.get();
+        if (lockStore.release(reservationId, agent.id())) {
+            expiryTimer.cancel(reservationId);
             
-            // Vérifier si le verrou appartient à l'agent actuel
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
+            // Notifier les autres agents
+            notifyLockStatus(reservationId, agent.id(), agent.name(), agent.email(), null, false);
             
-            if (lock.getLockedBy() != null && 
-                lock.getLockedBy().getUser() != null && 
-                lock.getLockedBy().getUser().getEmail().equals(email)) {
-                
-                // Libérer le verrou
-                releaseLock(lock);
-                
-                // Remove from cache
-                activeLockCache.remove(reservationId);
-                
-                // Notifier les autres agents
-                notifyLockStatus(reservation, lock.getLockedBy(), false);
-                
-                logger.info("Verrou sur la réservation {} libéré par l'agent {}", 
-                        reservationId, lock.getLockedBy().getId());
-            } else {
-                logger.warn("Tentative de libération d'un verrou par un agent non autorisé");
-                throw new RuntimeException("Vous n'êtes pas autorisé à libérer ce verrou");
-            }
+            logger.info("Verrou sur la réservation {} libéré par l'agent {}", reservationId, agent.id());
+        } else if (lockStore.findActive(reservationId).isPresent()) {
+            logger.warn("Tentative de libération d'un verrou par un agent non autorisé");
+            throw new RuntimeException("Vous n'êtes pas autorisé à libérer ce verrou");
         }
     }
     
     /**
      * Prolonger un verrou existant
      */
-    @Transactional
     public boolean extendLock(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Réservation non trouvée"));
-                
-        Optional<ReservationLock> existingLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true);
+        if (!reservationRepository.existsById(reservationId)) {
+            throw new RuntimeException("Réservation non trouvée");
+        }
         
-        if (!existingLock.isPresent()) {
-            return false;
+        CurrentAgent agent = getCurrentAgent();
+        
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(LOCK_EXPIRATION_MINUTES);
+        boolean extended = lockStore.extend(reservationId, agent.id(), expiresAt);
+        
+        if (extended) {
+            expiryTimer.schedule(reservationId, expiresAt);
+            logger.info("Verrou sur la réservation {} prolongé par l'agent {}", reservationId, agent.id());
+        }
+        return extended;
+    }
+    
+    /**
+     * Renouvelle en une seule opération les verrous déclarés par une session WebSocket
+     * (/app/lock-heartbeat) et les associe à la session pour les libérer à sa déconnexion
+     */
+    public LockHeartbeatDTO renewSessionLeases(String sessionId, Users user, List<Long> reservationIds) {
+        if (user == null || user.getAgentId() == null) {
+            throw new RuntimeException("Agent non trouvé");
         }
         
-        ReservationLock lock = existingLock.get();
+        List<Long> requested = reservationIds == null ? List.of()
+                : reservationIds.stream().filter(Objects::nonNull).distinct().toList();
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(LOCK_EXPIRATION_MINUTES);
         
-        // Vérifier si le verrou appartient à l'agent actuel
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
+        List<Long> renewed = requested.isEmpty() ? List.of()
+                : lockStore.extendAll(requested, user.getAgentId(), expiresAt);
+        leaseRegistry.track(sessionId, user.getAgentId(), renewed);
+        renewed.forEach(reservationId -> expiryTimer.schedule(reservationId, expiresAt));
         
-        if (lock.getLockedBy() != null && 
-            lock.getLockedBy().getUser() != null && 
-            lock.getLockedBy().getUser().getEmail().equals(email)) {
-            
-            // Prolonger le verrou
-            lock.setExpiresAt(LocalDateTime.now().plusMinutes(LOCK_EXPIRATION_MINUTES));
-            lockRepository.save(lock);
-            
-            logger.info("Verrou sur la réservation {} prolongé par l'agent {}", 
-                    reservationId, lock.getLockedBy().getId());
-            
-            return true;
+        List<Long> lost = new ArrayList<>(requested);
+        lost.removeAll(renewed);
+        
+        LockHeartbeatDTO result = new LockHeartbeatDTO();
+        result.setReservationIds(requested);
+        result.setRenewed(renewed);
+        result.setLost(lost);
+        result.setExpiresAt(expiresAt);
+        return result;
+    }
+    
+    /**
+     * Libère les verrous suivis par une session WebSocket fermée, sauf ceux qu'une autre
+     * session du même agent renouvelle encore
+     */
+    public void releaseSessionLeases(String sessionId) {
+        SessionLeases leases = leaseRegistry.remove(sessionId);
+        if (leases == null || leases.reservationIds().isEmpty()) {
+            return;
         }
         
-        return false;
+        List<LockEntry> released = lockStore.releaseAll(leases.reservationIds(), leases.agentId());
+        released.forEach(lock -> expiryTimer.cancel(lock.reservationId()));
+        logger.info("Session {} fermée: {} verrous libérés", sessionId, released.size());
+        notifyReleasedLocks(released);
     }
     
     /**
      * Libère le verrou sur une réservation par force (pour admins)
      */
-    @Transactional
     public void forceReleaseReservationLock(Long reservationId) {
-        Reservation reservation = reservationRepository.findById(reservationId)
-                .orElseThrow(() -> new RuntimeException("Réservation non trouvée"));
+        if (!reservationRepository.existsById(reservationId)) {
+            throw new RuntimeException("Réservation non trouvée");
+        }
         
-        Optional<ReservationLock> existingLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true);
+        Optional<LockEntry> releasedLock = lockStore.forceRelease(reservationId);
         
-        if (existingLock.isPresent()) {
-            ReservationLock lock = existingLock.get();
+        if (releasedLock.isPresent()) {
+            expiryTimer.cancel(reservationId);
             
-            // Obtenir l'agent actuel pour les logs
+            // Obtenir l'admin actuel pour les logs
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             String adminEmail = authentication.getName();
             
-            // Libérer le verrou
-            releaseLock(lock);
-            
-            // Remove from cache
-            activeLockCache.remove(reservationId);
-            
             // Notifier les autres agents
-            Agent lockingAgent = lock.getLockedBy();
-            notifyLockStatus(reservation, lockingAgent, false);
+            Agent lockingAgent = agentRepository.findById(releasedLock.get().agentId()).orElse(null);
+            notifyLockStatus(reservationId, lockingAgent, false);
             
             logger.info("Verrou sur la réservation {} FORCÉ par l'admin {}", 
                     reservationId, adminEmail);
@@ -301,110 +273,197 @@ public class ReservationLockService {
     }
     
     /**
-     * Libère un verrou spécifique
+     * Instantané des verrous actifs d'une agence, pour l'ouverture du tableau de bord
+     * (requêtes en nombre constant, quel que soit le nombre de réservations)
      */
-    @Transactional
-    private void releaseLock(ReservationLock lock) {
-        lock.setActive(false);
-        lockRepository.save(lock);
+    public List<LockStatusDTO> getActiveLocks(Long agencyId) {
+        // Filtré par le stockage avant de charger les agents
+        List<LockEntry> agencyLocks = lockStore.findActiveByAgency(agencyId);
+        if (agencyLocks.isEmpty()) {
+            return List.of();
+        }
         
-        // Remove from cache if present
-        if (lock.getReservation() != null) {
-            activeLockCache.remove(lock.getReservation().getId());
+        Map<Long, Agent> agents = loadAgents(agencyLocks);
+        List<LockStatusDTO> snapshot = new ArrayList<>(agencyLocks.size());
+        for (LockEntry lock : agencyLocks) {
+            Agent agent = agents.get(lock.agentId());
+            LockStatusDTO lockStatus = buildLockStatus(lock.reservationId(), lock.agentId(),
+                    agent != null ? agent.getUsername() : null, agent != null ? agent.getEmail() : null,
+                    lock.expiresAt(), true);
+            lockStatus.setAgencyId(agencyId);
+            snapshot.add(lockStatus);
         }
+        return snapshot;
     }
     
     /**
-     * Vérifie et libère les verrous expirés toutes les minutes
+     * Libère en un lot les verrous échus signalés par la minuterie d'expiration
      */
-    @Scheduled(fixedRate = 60000) // Exécuté toutes les minutes
-    @Transactional
+    public void releaseExpiredLocks(List<Long> reservationIds) {
+        notifyReleasedLocks(lockStore.releaseExpired(reservationIds, LocalDateTime.now()));
+    }
+    
+    /**
+     * Filet de sécurité : libère les verrous expirés qu'aucune minuterie locale ne suit
+     * (verrous pris sur une autre instance arrêtée depuis, ou avant un redémarrage)
+     */
+    @Scheduled(fixedRateString = "${scheduler.expired-locks-cleanup.interval-ms:600000}")
     public void cleanupExpiredLocks() {
-        LocalDateTime now = LocalDateTime.now();
-        List<ReservationLock> expiredLocks = lockRepository.findByActiveAndExpiresAtBefore(true, now);
+        if (!expiredLocksCleanupEnabled) {
+            return;
+        }
+        // Une seule instance du cluster effectue le balayage
+        jobLeaseService.runExclusively("cleanupExpiredLocks", Duration.ofMinutes(9),
+                () -> notifyReleasedLocks(lockStore.releaseExpired(LocalDateTime.now())));
+    }
+    
+    /**
+     * Notifie la libération d'un lot de verrous, agents et agences chargés en une requête chacun.
+     * Chaque réservation reçoit son message sur son propre topic ; le topic général et celui
+     * de chaque agence ne reçoivent qu'un message pour tout le lot.
+     */
+    private void notifyReleasedLocks(List<LockEntry> releasedLocks) {
+        if (releasedLocks.isEmpty()) {
+            return;
+        }
         
-        for (ReservationLock lock : expiredLocks) {
-            logger.info("Libération automatique du verrou expiré sur la réservation {}", 
-                    lock.getReservation().getId());
-            
-            // Désactiver le verrou
-            lock.setActive(false);
-            lockRepository.save(lock);
+        List<Long> reservationIds = releasedLocks.stream().map(LockEntry::reservationId).toList();
+        Map<Long, Agent> agents = loadAgents(releasedLocks);
+        Map<Long, Long> agencies = resolveAgencyIds(reservationIds);
+        Map<Long, List<Long>> releasedByAgency = new LinkedHashMap<>();
+        
+        for (LockEntry lock : releasedLocks) {
+            Agent agent = agents.get(lock.agentId());
+            LockStatusDTO lockStatus = buildLockStatus(lock.reservationId(), lock.agentId(),
+                    agent != null ? agent.getUsername() : null, agent != null ? agent.getEmail() : null, null, false);
+            Long agencyId = agencies.get(lock.reservationId());
+            lockStatus.setAgencyId(agencyId);
+            messagingTemplate.convertAndSend("/topic/lock-status/" + lock.reservationId(), lockStatus);
             
-            // Remove from cache
-            if (lock.getReservation() != null) {
-                activeLockCache.remove(lock.getReservation().getId());
+            if (agencyId != null) {
+                releasedByAgency.computeIfAbsent(agencyId, id -> new ArrayList<>()).add(lock.reservationId());
             }
-            
-            // Notifier les autres agents
-            notifyLockStatus(lock.getReservation(), lock.getLockedBy(), false);
         }
         
-        if (!expiredLocks.isEmpty()) {
-            logger.info("{} verrous expirés ont été libérés", expiredLocks.size());
+        releasedByAgency.forEach((agencyId, released) -> messagingTemplate.convertAndSend(
+                "/topic/agency/" + agencyId + "/locks/released",
+                new LockReleaseDTO(agencyId, released, RELEASED_LOCK_MESSAGE)));
+        messagingTemplate.convertAndSend("/topic/reservation-locks-released",
+                new LockReleaseDTO(null, reservationIds, RELEASED_LOCK_MESSAGE));
+        
+        logger.info("{} verrous libérés: {}", releasedLocks.size(), reservationIds);
+    }
+    
+    /**
+     * Agents détenteurs d'un lot de verrous, chargés en une seule requête
+     */
+    private Map<Long, Agent> loadAgents(List<LockEntry> locks) {
+        if (locks.isEmpty()) {
+            return Map.of();
         }
+        return agentRepository.findAllById(locks.stream().map(LockEntry::agentId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Agent::getId, Function.identity()));
     }
     
     /**
-     * Nettoie périodiquement le cache des verrous
+     * Agence de chaque réservation : lue dans le cache, les absentes en une seule requête
      */
-    @Scheduled(fixedRate = 300000) // Toutes les 5 minutes
-    public void cleanupLockCache() {
-        logger.debug("Nettoyage du cache de verrous: {} entrées avant nettoyage", activeLockCache.size());
+    private Map<Long, Long> resolveAgencyIds(Collection<Long> reservationIds) {
+        Map<Long, Long> agencies = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            Long agencyId = reservationAgencies.get(reservationId);
+            if (agencyId != null) {
+                agencies.put(reservationId, agencyId);
+            } else {
+                missing.add(reservationId);
+            }
+        }
         
-        // Loop through cache and verify against database
-        activeLockCache.entrySet().removeIf(entry -> {
-            Long reservationId = entry.getKey();
-            try {
-                Reservation reservation = reservationRepository.findById(reservationId).orElse(null);
-                if (reservation == null) {
-                    return true; // Remove if reservation doesn't exist
+        if (!missing.isEmpty()) {
+            for (ReservationAgency reservation : reservationRepository.findAgencyIdsByIdIn(missing)) {
+                if (reservation.getAgencyId() != null) {
+                    reservationAgencies.put(reservation.getId(), reservation.getAgencyId());
+                    agencies.put(reservation.getId(), reservation.getAgencyId());
                 }
-                
-                boolean hasActiveLock = lockRepository.findFirstByReservationAndActiveOrderByIdDesc(reservation, true).isPresent();
-                return !hasActiveLock; // Remove if no active lock exists
-            } catch (Exception e) {
-                logger.error("Error during lock cache cleanup for reservation {}: {}", reservationId, e.getMessage());
-                return false; // Keep in cache on error to be safe
             }
-        });
+        }
+        return agencies;
+    }
+    
+    /**
+     * Agent correspondant à l'utilisateur authentifié.
+     * Le principal Users porte déjà l'identifiant de l'agent ; la recherche par email
+     * ne sert que pour les authentifications qui ne reposent pas sur l'entité Users.
+     */
+    private CurrentAgent getCurrentAgent() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
-        logger.debug("Cache de verrous nettoyé: {} entrées après nettoyage", activeLockCache.size());
+        if (authentication.getPrincipal() instanceof Users user) {
+            if (user.getAgentId() == null) {
+                throw new RuntimeException("Agent non trouvé");
+            }
+            return new CurrentAgent(user.getAgentId(), user.getDisplayName(), user.getEmail());
+        }
+        
+        Identity agent = identityCache.find(authentication.getName())
+                .filter(Identity::isAgent)
+                .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
+        return new CurrentAgent(agent.agentId(), agent.displayName(), agent.email());
     }
     
     /**
      * Envoie une notification WebSocket sur le statut de verrouillage d'une réservation
      */
-    private void notifyLockStatus(Reservation reservation, Agent agent, boolean locked) {
-        if (reservation == null) return;
+    private void notifyLockStatus(Long reservationId, Agent agent, boolean locked) {
+        if (agent == null) {
+            notifyLockStatus(reservationId, null, null, null, null, locked);
+        } else {
+            notifyLockStatus(reservationId, agent.getId(), agent.getUsername(), agent.getEmail(), null, locked);
+        }
+    }
+    
+    private void notifyLockStatus(Long reservationId, Long agentId, String agentName, String agentEmail,
+            LocalDateTime expiresAt, boolean locked) {
+        if (reservationId == null) return;
         
-        LockStatusDTO lockStatus = new LockStatusDTO();
-        lockStatus.setReservationId(reservation.getId());
-        lockStatus.setLocked(locked);
+        LockStatusDTO lockStatus = buildLockStatus(reservationId, agentId, agentName, agentEmail, expiresAt, locked);
+        Long agencyId = resolveAgencyIds(List.of(reservationId)).get(reservationId);
+        lockStatus.setAgencyId(agencyId);
         
-        if (agent != null) {
-            lockStatus.setAgentId(agent.getId());
-            lockStatus.setAgentName(agent.getUsername());
-            if (agent.getUser() != null) {
-                lockStatus.setAgentEmail(agent.getUser().getEmail());
-            }
+        // Envoyer aux abonnés du topic général
+        messagingTemplate.convertAndSend("/topic/reservation-lock-status", lockStatus);
+        
+        // Envoyer aussi au topic spécifique de cette réservation
+        messagingTemplate.convertAndSend("/topic/lock-status/" + reservationId, lockStatus);
+        
+        // Et le delta au tableau de bord de l'agence (après l'instantané de /app/locks/agency/{agencyId})
+        if (agencyId != null) {
+            messagingTemplate.convertAndSend("/topic/agency/" + agencyId + "/locks", lockStatus);
         }
+    }
+    
+    private LockStatusDTO buildLockStatus(Long reservationId, Long agentId, String agentName, String agentEmail,
+            LocalDateTime expiresAt, boolean locked) {
+        LockStatusDTO lockStatus = new LockStatusDTO();
+        lockStatus.setReservationId(reservationId);
+        lockStatus.setLocked(locked);
+        lockStatus.setAgentId(agentId);
+        lockStatus.setAgentName(agentName);
+        lockStatus.setAgentEmail(agentEmail);
+        lockStatus.setExpiresAt(expiresAt);
 
         // Si le verrou est libéré, ajouter un message explicatif
         if (!locked) {
-            lockStatus.setLockMessage("Réservation disponible pour traitement");
+            lockStatus.setLockMessage(RELEASED_LOCK_MESSAGE);
         } else {
-            String agentInfo = agent != null ? agent.getUsername() : "un agent";
-            if (agent != null && agent.getUser() != null) {
-                agentInfo += " (" + agent.getUser().getEmail() + ")";
+            String agentInfo = agentName != null ? agentName : "un agent";
+            if (agentEmail != null) {
+                agentInfo += " (" + agentEmail + ")";
             }
             lockStatus.setLockMessage("En cours de traitement par " + agentInfo);
         }
-        
-        // Envoyer aux abonnés du topic général
-        messagingTemplate.convertAndSend("/topic/reservation-lock-status", lockStatus);
-        
-        // Envoyer aussi au topic spécifique de cette réservation
-        messagingTemplate.convertAndSend("/topic/lock-status/" + reservation.getId(), lockStatus);
+        return lockStatus;
     }
-}
\ No newline at end of file
+}
@@ -6,10 +6,10 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import com.project.agent.dto.ReservationDeltaDTO;
 import com.project.agent.dto.ReservationRequest;
 import com.project.agent.model.Agency;
 import com.project.agent.model.Agent;
@@ -20,6 +20,7 @@ import com.project.agent.repository.AgencyRepository;
 import com.project.agent.repository.AgentRepository;
 import com.project.agent.repository.ReservationRepository;
 import com.project.agent.repository.UserRepository;
+import com.project.agent.service.IdentityCache.Identity;
 
 import org.springframework.transaction.annotation.Transactional;
 
@@ -43,7 +44,10 @@ public class ReservationService {
     private AvailabilityService availabilityService;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private IdentityCache identityCache;
+    
+    @Autowired
+    private ReservationEventPublisher reservationEvents;
     
     /**
      * Vérifie si un utilisateur a déjà une réservation active (en attente ou confirmée)
@@ -62,10 +66,9 @@ public class ReservationService {
         logger.info("Création d'une réservation: {}", reservationRequest);
         
         // Récupérer l'utilisateur connecté
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
+        Identity identity = identityCache.current()
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        Users user = userRepository.findById(identity.userId())
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
         
         // Vérifier si l'utilisateur a déjà une réservation active
@@ -109,7 +112,9 @@ public class ReservationService {
         
         // Notifier les agents en temps réel
         logger.info("Envoi de notification WebSocket pour la nouvelle réservation");
-        messagingTemplate.convertAndSend("/topic/reservations", savedReservation);
+        reservationEvents.publishLegacy(ReservationEventPublisher.LEGACY_CREATED_TOPIC, savedReservation);
+        reservationEvents.publish(savedReservation, ReservationEventPublisher.SERVICE,
+                ReservationEventPublisher.PREFERRED_DATE);
         
         return savedReservation;
     }
@@ -118,6 +123,16 @@ public class ReservationService {
         return reservationRepository.findByStatus(Status.PENDING);
     }
     
+    /**
+     * Réservations actives d'une agence au format delta, pour l'instantané des tableaux de bord
+     */
+    public List<ReservationDeltaDTO> getAgencySnapshot(Long agencyId) {
+        return reservationRepository.findSummariesByAgencyIdAndStatusIn(agencyId, List.of(Status.PENDING, Status.CONFIRMED))
+                .stream()
+                .map(ReservationEventPublisher::toDelta)
+                .toList();
+    }
+    
     @Transactional
     public Reservation confirmReservation(Long reservationId, LocalDateTime startDateTime, LocalDateTime endDateTime, String messageToClient) {
         logger.info("Confirmation de la réservation: {}", reservationId);
@@ -135,14 +150,8 @@ public class ReservationService {
             throw new RuntimeException("La date de début doit être avant la date de fin");
         }
         
-        // Récupérer l'agent qui effectue l'action
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        
-        Agent agent = agentRepository.findByUser(user)
+        // Récupérer l'agent qui effectue l'action (identité en cache, agent par clé primaire)
+        Agent agent = agentRepository.findById(identityCache.currentAgent().agentId())
                 .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
         
         // Enregistrer l'agent qui traite cette réservation
@@ -170,7 +179,9 @@ public class ReservationService {
         
         // Notifier les clients et les agents de la mise à jour de la réservation
         logger.info("Envoi de notification WebSocket pour la réservation confirmée");
-        messagingTemplate.convertAndSend("/topic/reservation-updated", savedReservation);
+        reservationEvents.publishLegacy(ReservationEventPublisher.LEGACY_UPDATED_TOPIC, savedReservation);
+        reservationEvents.publish(savedReservation, ReservationEventPublisher.START_DATE_TIME,
+                ReservationEventPublisher.END_DATE_TIME, ReservationEventPublisher.HANDLED_BY_AGENT_ID);
         
         return savedReservation;
     }
@@ -201,15 +212,11 @@ public class ReservationService {
         
         // Récupérer l'agent qui effectue l'action
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
         
         // Vérifier si c'est un agent qui effectue l'action
         if (authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_AGENT"))) {
-            Users user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-            
-            Agent agent = agentRepository.findByUser(user)
+            Agent agent = agentRepository.findById(identityCache.currentAgent().agentId())
                     .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
             
             // Enregistrer l'agent qui traite cette réservation
@@ -244,7 +251,8 @@ public class ReservationService {
         
         // Notifier les clients et les agents de la mise à jour de la réservation
         logger.info("Envoi de notification WebSocket pour la réservation annulée");
-        messagingTemplate.convertAndSend("/topic/reservation-updated", savedReservation);
+        reservationEvents.publishLegacy(ReservationEventPublisher.LEGACY_UPDATED_TOPIC, savedReservation);
+        reservationEvents.publish(savedReservation, ReservationEventPublisher.HANDLED_BY_AGENT_ID);
         
         return savedReservation;
     }
@@ -273,14 +281,8 @@ public class ReservationService {
             throw new RuntimeException("La réservation ne peut être marquée comme terminée qu'après la fin du créneau prévu");
         }
         
-        // Récupérer l'agent qui effectue l'action
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        
-        Users user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-        
-        Agent agent = agentRepository.findByUser(user)
+        // Récupérer l'agent qui effectue l'action (identité en cache, agent par clé primaire)
+        Agent agent = agentRepository.findById(identityCache.currentAgent().agentId())
                 .orElseThrow(() -> new RuntimeException("Agent non trouvé"));
         
         // Enregistrer l'agent qui traite cette réservation
@@ -303,7 +305,8 @@ public class ReservationService {
         
         // Notifier les clients et les agents de la mise à jour de la réservation
         logger.info("Envoi de notification WebSocket pour la réservation terminée");
-        messagingTemplate.convertAndSend("/topic/reservation-updated", savedReservation);
+        reservationEvents.publishLegacy(ReservationEventPublisher.LEGACY_UPDATED_TOPIC, savedReservation);
+        reservationEvents.publish(savedReservation, ReservationEventPublisher.HANDLED_BY_AGENT_ID);
         
         return savedReservation;
     }
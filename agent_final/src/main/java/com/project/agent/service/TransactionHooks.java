@@ -0,0 +1,40 @@
+package com.project.agent.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Actions différées jusqu'au commit de la transaction courante : invalidations de cache,
+ * messages temps réel et réveils de workers ne doivent pas devancer les données qu'ils signalent,
+ * ni être émis pour une transaction annulée.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Exécute l'action après le commit de la transaction courante, s'il y en a une ; sinon rien
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Exécute l'action après le commit de la transaction courante, ou immédiatement hors transaction
+     */
+    public static void afterCommitOrNow(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+}
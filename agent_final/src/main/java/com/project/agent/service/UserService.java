@@ -32,6 +32,7 @@ import com.project.agent.repository.ReservationRepository;
 import com.project.agent.repository.BlockedTimeSlotRepository;
 import com.project.agent.repository.UserRepository;
 import com.project.agent.repository.VerificationCodeRepository;
+import com.project.agent.security.TokenRevocationList;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -79,6 +80,13 @@ public class UserService implements UserDetailsService {
     @Autowired
     private BlockedTimeSlotRepository blockedTimeSlotRepository;
 
+    @Autowired
+    private IdentityCache identityCache;
+
+    // Les jetons portent le rôle : ils sont révoqués à chaque changement de rôle, de mot de passe ou suppression
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         return userRepository.findByEmail(email)
@@ -183,6 +191,8 @@ public class UserService implements UserDetailsService {
 		    }
 		    
 		    user.setRole(newRole);
+		    identityCache.evict(user.getEmail());
+		    tokenRevocationList.revokeAll(user.getEmail());
 		    return userRepository.save(user);
 		}
 	    public Optional<Users> findByEmail(String email) {
@@ -247,6 +257,8 @@ public class UserService implements UserDetailsService {
         // Update user role
         user.setRole(Role.AGENT);
         userRepository.save(user);
+        identityCache.evict(user.getEmail());
+        tokenRevocationList.revokeAll(user.getEmail());
         
         // Create a new agent record
         Agent agent = new Agent();
@@ -275,6 +287,7 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
         
         user.setUsername(newUsername);
+        identityCache.evict(email);
         return userRepository.save(user);
     }
 
@@ -294,6 +307,7 @@ public class UserService implements UserDetailsService {
         // Mettre à jour le mot de passe
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        tokenRevocationList.revokeAll(email);
     }
     
     /**
@@ -352,6 +366,8 @@ public class UserService implements UserDetailsService {
             
             // 5. Maintenant, supprimer l'utilisateur
             userRepository.deleteById(userId);
+            identityCache.evict(email);
+            tokenRevocationList.revokeAll(email);
             logger.info("Compte utilisateur supprimé avec succès: {}", email);
         } catch (Exception e) {
             logger.error("Erreur lors de la suppression du compte {}: {}", email, e.getMessage(), e);
@@ -438,6 +454,8 @@ public class UserService implements UserDetailsService {
             
             // 6. Supprimer l'utilisateur
             userRepository.deleteById(userIdToDelete);
+            identityCache.evict(email);
+            tokenRevocationList.revokeAll(email);
             logger.info("Compte utilisateur supprimé avec succès par un administrateur: {}", email);
             
         } catch (Exception e) {
@@ -0,0 +1,179 @@
+package com.project.agent.service.cluster;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.repository.ClusterNodeRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Appartenance au cluster : chaque instance inscrit un battement de cœur dans la table
+ * cluster_node sur son propre thread (indépendant des tâches planifiées), et en déduit sa
+ * part du travail réparti par agence : l'agence d'identifiant id revient à l'instance de
+ * rang id mod N dans la liste triée des N instances vivantes.
+ *
+ * Pendant l'arrivée ou le départ d'une instance, les vues peuvent diverger le temps d'un
+ * battement : une agence peut alors être traitée deux fois ou attendre le passage suivant.
+ * Les tâches réparties doivent donc être idempotentes.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    @Autowired
+    private ClusterNodeRepository clusterNodeRepository;
+
+    @Value("${app.cluster.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.cluster.instance-id:}")
+    private String configuredInstanceId = "";
+
+    @Value("${app.cluster.heartbeat-interval-ms:10000}")
+    private long heartbeatIntervalMs = 10000;
+
+    // Une instance sans battement depuis ce délai n'est plus comptée
+    @Value("${app.cluster.node-ttl-seconds:30}")
+    private long nodeTtlSeconds = 30;
+
+    private String instanceId;
+    private String host;
+
+    private volatile Shard shard = new Shard(0, 1, List.of());
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    /**
+     * Part de cette instance : rang parmi count instances vivantes
+     */
+    public record Shard(int index, int count, List<String> liveNodes) {
+
+        public boolean owns(long key) {
+            return Math.floorMod(key, count) == index;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        host = resolveHost();
+        instanceId = configuredInstanceId == null || configuredInstanceId.isBlank()
+                ? host + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : configuredInstanceId;
+        shard = new Shard(0, 1, List.of(instanceId));
+
+        if (!enabled) {
+            return;
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("cluster-heartbeat").daemon(true).factory());
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Instance {} inscrite dans le cluster", instanceId);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (heartbeatExecutor == null) {
+            return;
+        }
+        heartbeatExecutor.shutdownNow();
+        try {
+            // Départ immédiat : les autres instances reprennent sa part au prochain battement
+            clusterNodeRepository.deleteById(instanceId);
+        } catch (Exception e) {
+            logger.warn("Impossible de retirer l'instance {} du cluster: {}", instanceId, e.getMessage());
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Délai au-delà duquel une instance sans battement de cœur n'est plus comptée
+     */
+    public long getNodeTtlSeconds() {
+        return nodeTtlSeconds;
+    }
+
+    /**
+     * Part actuelle de cette instance (une seule part tant que le cluster est désactivé)
+     */
+    public Shard getShard() {
+        return shard;
+    }
+
+    /**
+     * Indique si l'agence revient à cette instance pour les tâches réparties
+     */
+    public boolean ownsAgency(Long agencyId) {
+        return agencyId != null && shard.owns(agencyId);
+    }
+
+    void heartbeat() {
+        try {
+            clusterNodeRepository.heartbeat(instanceId, host);
+            List<String> liveNodes = clusterNodeRepository.findLiveNodeIds(nodeTtlSeconds);
+            updateShard(liveNodes);
+            clusterNodeRepository.deleteStale(nodeTtlSeconds * 100);
+        } catch (Exception e) {
+            logger.error("Erreur lors du battement de cœur du cluster: {}", e.getMessage());
+        }
+    }
+
+    void updateShard(List<String> liveNodes) {
+        int index = liveNodes.indexOf(instanceId);
+        Shard updated = index < 0
+                // Battement pas encore visible : traiter tout plutôt que rien
+                ? new Shard(0, 1, List.of(instanceId))
+                : new Shard(index, liveNodes.size(), List.copyOf(liveNodes));
+
+        Shard previous = shard;
+        shard = updated;
+        if (previous.index() != updated.index() || previous.count() != updated.count()) {
+            logger.info("Répartition du cluster: instance {} de rang {} sur {} ({})",
+                    instanceId, updated.index(), updated.count(), updated.liveNodes());
+        }
+    }
+
+    /**
+     * État de l'appartenance pour la supervision
+     */
+    public Map<String, Object> getStatus() {
+        Shard current = shard;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("instanceId", instanceId);
+        status.put("shardIndex", current.index());
+        status.put("shardCount", current.count());
+        status.put("liveNodes", current.liveNodes());
+        return status;
+    }
+
+    private static String resolveHost() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.project.agent.service.cluster;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.project.agent.model.JobLease;
+import com.project.agent.repository.JobLeaseRepository;
+
+/**
+ * Exécution unique des tâches planifiées à l'échelle du cluster : avant chaque échéance,
+ * l'instance tente de prendre le bail de la tâche dans la table job_lease ; seule celle
+ * qui l'obtient exécute la tâche, les autres passent leur tour.
+ *
+ * Le bail expire de lui-même après lockAtMost si l'instance s'arrête pendant la tâche, et
+ * reste détenu au moins lockAtLeast après sa prise pour absorber le décalage entre les
+ * horloges de déclenchement des instances.
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Value("${app.cluster.lease.lock-at-least-seconds:30}")
+    private long lockAtLeastSeconds = 30;
+
+    private final Map<String, JobStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Statistiques locales d'une tâche : exécutions sur cette instance et échéances laissées à une autre
+     */
+    public static class JobStats {
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile LocalDateTime lastRunAt;
+        private volatile String lastError;
+
+        public long getRuns() { return runs.get(); }
+        public long getSkipped() { return skipped.get(); }
+        public long getFailures() { return failures.get(); }
+        public LocalDateTime getLastRunAt() { return lastRunAt; }
+        public String getLastError() { return lastError; }
+    }
+
+    /**
+     * Exécute la tâche si cette instance obtient son bail ; retourne false si une autre instance la détient
+     */
+    public boolean runExclusively(String jobName, Duration lockAtMost, Runnable task) {
+        JobStats jobStats = stats.computeIfAbsent(jobName, name -> new JobStats());
+        if (!clusterMembership.isEnabled()) {
+            run(jobName, jobStats, task);
+            return true;
+        }
+
+        String owner = clusterMembership.getInstanceId();
+        int acquired;
+        try {
+            acquired = jobLeaseRepository.tryAcquire(jobName, owner, lockAtMost.toSeconds());
+        } catch (Exception e) {
+            logger.error("Impossible de prendre le bail de la tâche {}: {}", jobName, e.getMessage());
+            jobStats.skipped.incrementAndGet();
+            return false;
+        }
+        if (acquired == 0) {
+            jobStats.skipped.incrementAndGet();
+            logger.debug("Tâche {} déjà prise par une autre instance", jobName);
+            return false;
+        }
+
+        try {
+            run(jobName, jobStats, task);
+        } finally {
+            try {
+                jobLeaseRepository.release(jobName, owner, Math.min(lockAtLeastSeconds, lockAtMost.toSeconds()));
+            } catch (Exception e) {
+                // Le bail expirera de lui-même après lockAtMost
+                logger.warn("Impossible de rendre le bail de la tâche {}: {}", jobName, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void run(String jobName, JobStats jobStats, Runnable task) {
+        jobStats.lastRunAt = LocalDateTime.now();
+        try {
+            task.run();
+            jobStats.runs.incrementAndGet();
+        } catch (RuntimeException e) {
+            jobStats.failures.incrementAndGet();
+            jobStats.lastError = e.getMessage();
+            logger.error("Erreur lors de l'exécution de la tâche {}: {}", jobName, e.getMessage());
+        }
+    }
+
+    /**
+     * Baux du cluster et statistiques locales, pour la supervision
+     */
+    public List<Map<String, Object>> getStatus() {
+        Map<String, JobLease> leases = new LinkedHashMap<>();
+        if (clusterMembership.isEnabled()) {
+            jobLeaseRepository.findAll().forEach(lease -> leases.put(lease.getName(), lease));
+        }
+
+        List<String> names = new ArrayList<>(leases.keySet());
+        stats.keySet().stream().filter(name -> !leases.containsKey(name)).forEach(names::add);
+        names.sort(String::compareTo);
+
+        List<Map<String, Object>> status = new ArrayList<>();
+        for (String name : names) {
+            JobLease lease = leases.get(name);
+            JobStats jobStats = stats.get(name);
+
+            Map<String, Object> job = new LinkedHashMap<>();
+            job.put("name", name);
+            if (lease != null) {
+                job.put("owner", lease.getOwner());
+                job.put("lockedAt", lease.getLockedAt());
+                job.put("lockedUntil", lease.getLockedUntil());
+                job.put("lastRunAt", lease.getLastRunAt());
+                job.put("lastRunBy", lease.getLastRunBy());
+            }
+            if (jobStats != null) {
+                job.put("localRuns", jobStats.getRuns());
+                job.put("localSkipped", jobStats.getSkipped());
+                job.put("localFailures", jobStats.getFailures());
+                job.put("localLastRunAt", jobStats.getLastRunAt());
+                job.put("localLastError", jobStats.getLastError());
+            }
+            status.add(job);
+        }
+        return status;
+    }
+}
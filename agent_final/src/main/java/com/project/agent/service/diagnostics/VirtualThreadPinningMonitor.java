@@ -0,0 +1,182 @@
+package com.project.agent.service.diagnostics;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Diagnostic de l'épinglage des threads virtuels (événement JFR jdk.VirtualThreadPinned).
+ *
+ * Un thread virtuel qui se bloque dans un bloc synchronized (ou un appel natif) reste
+ * attaché à son thread porteur : avec peu de porteurs, quelques blocages suffisent à
+ * immobiliser toute l'application. Chaque épinglage plus long que le seuil est rattaché
+ * à la première méthode de l'application dans la pile ; celui qui se produit pendant un
+ * appel JDBC (java.sql, pilote PostgreSQL ou HikariCP) est signalé en erreur, car il
+ * dure aussi longtemps que la requête SQL.
+ *
+ * Actif uniquement avec spring.threads.virtual.enabled.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.project.agent.";
+    private static final List<String> JDBC_PACKAGES = List.of("java.sql.", "org.postgresql.", "com.zaxxer.hikari.");
+
+    // Nombre de sites détaillés dans les statistiques
+    private static final int TOP_SITES = 10;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.virtual-threads.pinning-monitor.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.virtual-threads.pinning-monitor.threshold-ms:20}")
+    private long thresholdMs = 20;
+
+    private RecordingStream stream;
+
+    // Site (méthode de l'application) -> épinglages observés ; protégé par synchronized (sites)
+    private final Map<String, Site> sites = new HashMap<>();
+
+    private final AtomicLong pinnedEvents = new AtomicLong();
+    private final AtomicLong pinnedInJdbc = new AtomicLong();
+    private final AtomicLong pinnedNanos = new AtomicLong();
+
+    private static final class Site {
+        private final boolean jdbc;
+        private long count;
+        private long maxNanos;
+
+        private Site(boolean jdbc) {
+            this.jdbc = jdbc;
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!virtualThreads || !enabled) {
+            return;
+        }
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::record);
+            stream.startAsync();
+            logger.info("Suivi de l'épinglage des threads virtuels actif (seuil {} ms)", thresholdMs);
+        } catch (Exception e) {
+            stream = null;
+            logger.warn("Suivi de l'épinglage des threads virtuels indisponible: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * Statistiques d'épinglage pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("monitoring", stream != null);
+        stats.put("thresholdMs", thresholdMs);
+        stats.put("pinnedEvents", pinnedEvents.get());
+        stats.put("pinnedInJdbc", pinnedInJdbc.get());
+        stats.put("pinnedMs", TimeUnit.NANOSECONDS.toMillis(pinnedNanos.get()));
+
+        Map<String, Object> topSites = new LinkedHashMap<>();
+        synchronized (sites) {
+            sites.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, Site> entry) -> entry.getValue().count).reversed())
+                    .limit(TOP_SITES)
+                    .forEach(entry -> {
+                        Map<String, Object> site = new LinkedHashMap<>();
+                        site.put("count", entry.getValue().count);
+                        site.put("maxMs", TimeUnit.NANOSECONDS.toMillis(entry.getValue().maxNanos));
+                        site.put("jdbc", entry.getValue().jdbc);
+                        topSites.put(entry.getKey(), site);
+                    });
+        }
+        stats.put("sites", topSites);
+        return stats;
+    }
+
+    private void record(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace != null ? stackTrace.getFrames() : List.of();
+        boolean jdbc = frames.stream().anyMatch(frame -> isIn(frame, JDBC_PACKAGES));
+        String site = frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(VirtualThreadPinningMonitor::describe)
+                .orElse("inconnu");
+
+        recordPinning(site, jdbc, nanos);
+    }
+
+    /**
+     * Comptabilise un épinglage ; le premier de chaque site est journalisé
+     */
+    void recordPinning(String site, boolean jdbc, long nanos) {
+        pinnedEvents.incrementAndGet();
+        pinnedNanos.addAndGet(nanos);
+        if (jdbc) {
+            pinnedInJdbc.incrementAndGet();
+        }
+
+        boolean first;
+        synchronized (sites) {
+            Site entry = sites.get(site);
+            first = entry == null;
+            if (first) {
+                entry = new Site(jdbc);
+                sites.put(site, entry);
+            }
+            entry.count++;
+            entry.maxNanos = Math.max(entry.maxNanos, nanos);
+        }
+
+        if (first && jdbc) {
+            logger.error("Thread virtuel épinglé pendant un appel JDBC ({} ms) dans {} : bloc synchronized autour d'une requête",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), site);
+        } else if (first) {
+            logger.warn("Thread virtuel épinglé ({} ms) dans {}", TimeUnit.NANOSECONDS.toMillis(nanos), site);
+        }
+    }
+
+    private static boolean isIn(RecordedFrame frame, List<String> packages) {
+        String type = frame.getMethod().getType().getName();
+        return packages.stream().anyMatch(type::startsWith);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
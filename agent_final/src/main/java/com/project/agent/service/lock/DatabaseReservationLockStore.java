@@ -0,0 +1,221 @@
+package com.project.agent.service.lock;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verrous stockés dans la table reservation_lock de PostgreSQL (implémentation par défaut).
+ * Partagés entre toutes les instances de l'application qui utilisent la même base.
+ *
+ * L'index unique partiel uk_reservation_lock_active garantit au plus une ligne active
+ * par réservation ; l'acquisition est une seule instruction INSERT ... ON CONFLICT.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reservation-lock.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseReservationLockStore implements ReservationLockStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseReservationLockStore.class);
+
+    private static final String LOCK_COLUMNS = "reservation_id, locked_by_id, locked_at, expires_at";
+
+    /*
+     * Insère le verrou, ou reprend la ligne active existante si elle appartient au même agent
+     * (prolongation) ou si elle a expiré. Sinon l'INSERT ne produit rien et la seconde partie
+     * retourne le détenteur actuel. Paramètres : reservationId, agentId, now, expiresAt, reservationId.
+     */
+    private static final String ACQUIRE_SQL = """
+            WITH acquired AS (
+                INSERT INTO reservation_lock AS l (reservation_id, locked_by_id, locked_at, expires_at, active)
+                VALUES (?, ?, ?, ?, true)
+                ON CONFLICT (reservation_id) WHERE active DO UPDATE SET
+                    locked_by_id = EXCLUDED.locked_by_id,
+                    locked_at = CASE WHEN l.locked_by_id = EXCLUDED.locked_by_id AND l.expires_at >= EXCLUDED.locked_at
+                                     THEN l.locked_at ELSE EXCLUDED.locked_at END,
+                    expires_at = EXCLUDED.expires_at
+                WHERE l.locked_by_id = EXCLUDED.locked_by_id OR l.expires_at < EXCLUDED.locked_at
+                RETURNING reservation_id, locked_by_id, locked_at, expires_at
+            )
+            SELECT reservation_id, locked_by_id, locked_at, expires_at FROM acquired
+            UNION ALL
+            SELECT reservation_id, locked_by_id, locked_at, expires_at FROM reservation_lock
+            WHERE reservation_id = ? AND active AND NOT EXISTS (SELECT 1 FROM acquired)
+            """;
+
+    // Tentatives si le verrou concurrent n'est pas encore visible dans l'instantané de l'instruction
+    private static final int MAX_ACQUIRE_ATTEMPTS = 3;
+
+    private static final RowMapper<LockEntry> LOCK_ROW_MAPPER = (rs, rowNum) -> new LockEntry(
+            rs.getLong("reservation_id"),
+            rs.getObject("locked_by_id", Long.class),
+            rs.getObject("locked_at", LocalDateTime.class),
+            rs.getObject("expires_at", LocalDateTime.class));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Crée l'index unique partiel sur les bases dont le schéma a été généré par Hibernate
+     * (ddl-auto=update ne sait pas le déclarer), après avoir désactivé les doublons éventuels
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureActiveLockIndex() {
+        try {
+            int duplicates = jdbcTemplate.update(
+                    "UPDATE reservation_lock l SET active = false WHERE active AND EXISTS ("
+                            + "SELECT 1 FROM reservation_lock o WHERE o.reservation_id = l.reservation_id "
+                            + "AND o.active AND o.id > l.id)");
+            if (duplicates > 0) {
+                logger.warn("{} verrous actifs en double désactivés avant la création de l'index", duplicates);
+            }
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_reservation_lock_active "
+                    + "ON reservation_lock (reservation_id) WHERE active");
+        } catch (Exception e) {
+            logger.error("Impossible de créer l'index uk_reservation_lock_active: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public LockEntry tryAcquire(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        for (int attempt = 1; attempt <= MAX_ACQUIRE_ATTEMPTS; attempt++) {
+            List<LockEntry> holders;
+            try {
+                holders = jdbcTemplate.query(ACQUIRE_SQL, LOCK_ROW_MAPPER,
+                        reservationId, agentId, LocalDateTime.now(), expiresAt, reservationId);
+            } catch (DataIntegrityViolationException e) {
+                // Clé étrangère : la réservation (ou l'agent) n'existe pas
+                throw new RuntimeException("Réservation non trouvée");
+            }
+
+            if (!holders.isEmpty()) {
+                return holders.get(0);
+            }
+            // Le verrou concurrent a été validé après le début de l'instruction : il sera visible à la suivante
+            logger.debug("Acquisition du verrou de la réservation {} rejouée (tentative {})", reservationId, attempt);
+        }
+        throw new RuntimeException("Impossible d'acquérir le verrou de la réservation " + reservationId);
+    }
+
+    @Override
+    public Optional<LockEntry> findActive(Long reservationId) {
+        List<LockEntry> locks = jdbcTemplate.query(
+                "SELECT " + LOCK_COLUMNS + " FROM reservation_lock "
+                        + "WHERE reservation_id = ? AND active AND expires_at >= ? ORDER BY id DESC LIMIT 1",
+                LOCK_ROW_MAPPER, reservationId, LocalDateTime.now());
+        return locks.stream().findFirst();
+    }
+
+    @Override
+    public List<LockEntry> findAllActive() {
+        return jdbcTemplate.query(
+                "SELECT " + LOCK_COLUMNS + " FROM reservation_lock WHERE active AND expires_at >= ?",
+                LOCK_ROW_MAPPER, LocalDateTime.now());
+    }
+
+    @Override
+    public List<LockEntry> findActiveByAgency(Long agencyId) {
+        return jdbcTemplate.query(
+                "SELECT l.reservation_id, l.locked_by_id, l.locked_at, l.expires_at FROM reservation_lock l "
+                        + "JOIN reservation r ON r.id = l.reservation_id "
+                        + "WHERE r.agency_id = ? AND l.active AND l.expires_at >= ?",
+                LOCK_ROW_MAPPER, agencyId, LocalDateTime.now());
+    }
+
+    @Override
+    public boolean extend(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        return jdbcTemplate.update(
+                "UPDATE reservation_lock SET expires_at = ? "
+                        + "WHERE reservation_id = ? AND locked_by_id = ? AND active AND expires_at >= ?",
+                expiresAt, reservationId, agentId, LocalDateTime.now()) > 0;
+    }
+
+    @Override
+    public List<Long> extendAll(Collection<Long> reservationIds, Long agentId, LocalDateTime expiresAt) {
+        if (reservationIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> params = new ArrayList<>(List.of(expiresAt, agentId, LocalDateTime.now()));
+        params.addAll(reservationIds);
+
+        return jdbcTemplate.queryForList(
+                "UPDATE reservation_lock SET expires_at = ? "
+                        + "WHERE locked_by_id = ? AND active AND expires_at >= ? "
+                        + "AND reservation_id IN (" + placeholders(reservationIds) + ") RETURNING reservation_id",
+                Long.class, params.toArray());
+    }
+
+    @Override
+    public boolean release(Long reservationId, Long agentId) {
+        return jdbcTemplate.update(
+                "UPDATE reservation_lock SET active = false WHERE reservation_id = ? AND locked_by_id = ? AND active",
+                reservationId, agentId) > 0;
+    }
+
+    @Override
+    public List<LockEntry> releaseAll(Collection<Long> reservationIds, Long agentId) {
+        if (reservationIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> params = new ArrayList<>(reservationIds.size() + 1);
+        params.add(agentId);
+        params.addAll(reservationIds);
+
+        return jdbcTemplate.query(
+                "UPDATE reservation_lock SET active = false WHERE locked_by_id = ? AND active "
+                        + "AND reservation_id IN (" + placeholders(reservationIds) + ") RETURNING " + LOCK_COLUMNS,
+                LOCK_ROW_MAPPER, params.toArray());
+    }
+
+    @Override
+    public Optional<LockEntry> forceRelease(Long reservationId) {
+        List<LockEntry> released = jdbcTemplate.query(
+                "UPDATE reservation_lock SET active = false WHERE reservation_id = ? AND active "
+                        + "RETURNING " + LOCK_COLUMNS,
+                LOCK_ROW_MAPPER, reservationId);
+        return released.stream().findFirst();
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(LocalDateTime now) {
+        return jdbcTemplate.query(
+                "UPDATE reservation_lock SET active = false WHERE active AND expires_at < ? RETURNING " + LOCK_COLUMNS,
+                LOCK_ROW_MAPPER, now);
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(Collection<Long> reservationIds, LocalDateTime now) {
+        if (reservationIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Une seule instruction pour tout le lot : UPDATE ... WHERE reservation_id IN (...)
+        List<Object> params = new ArrayList<>(reservationIds.size() + 1);
+        params.add(now);
+        params.addAll(reservationIds);
+
+        return jdbcTemplate.query(
+                "UPDATE reservation_lock SET active = false WHERE active AND expires_at < ? "
+                        + "AND reservation_id IN (" + placeholders(reservationIds) + ") RETURNING " + LOCK_COLUMNS,
+                LOCK_ROW_MAPPER, params.toArray());
+    }
+
+    private static String placeholders(Collection<?> values) {
+        return String.join(", ", Collections.nCopies(values.size(), "?"));
+    }
+}
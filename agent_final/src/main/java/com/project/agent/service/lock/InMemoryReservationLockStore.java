@@ -0,0 +1,156 @@
+package com.project.agent.service.lock;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.repository.ReservationRepository;
+
+/**
+ * Verrous conservés en mémoire : atomiques sur une instance, mais invisibles des autres instances.
+ * À réserver au développement ou à un déploiement sur un seul nœud.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reservation-lock.store", havingValue = "memory")
+public class InMemoryReservationLockStore implements ReservationLockStore {
+
+    private final Map<Long, LockEntry> locks = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Override
+    public LockEntry tryAcquire(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // compute est atomique pour une clé donnée : vérification et écriture en une seule opération
+        return locks.compute(reservationId, (id, current) -> {
+            if (current != null && !current.isExpiredAt(now)) {
+                if (!current.isHeldBy(agentId)) {
+                    return current;
+                }
+                return new LockEntry(id, agentId, current.lockedAt(), expiresAt);
+            }
+            return new LockEntry(id, agentId, now, expiresAt);
+        });
+    }
+
+    @Override
+    public Optional<LockEntry> findActive(Long reservationId) {
+        LockEntry entry = locks.get(reservationId);
+        if (entry == null || entry.isExpiredAt(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    @Override
+    public List<LockEntry> findAllActive() {
+        LocalDateTime now = LocalDateTime.now();
+        return locks.values().stream().filter(entry -> !entry.isExpiredAt(now)).toList();
+    }
+
+    @Override
+    public List<LockEntry> findActiveByAgency(Long agencyId) {
+        List<LockEntry> active = findAllActive();
+        if (active.isEmpty()) {
+            return List.of();
+        }
+        // Les verrous ne connaissent pas l'agence : une requête sur les seuls identifiants pour filtrer
+        Set<Long> agencyReservations = new HashSet<>(reservationRepository.findIdsByAgencyIdAndIdIn(
+                agencyId, active.stream().map(LockEntry::reservationId).toList()));
+        return active.stream().filter(lock -> agencyReservations.contains(lock.reservationId())).toList();
+    }
+
+    @Override
+    public boolean extend(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        LocalDateTime now = LocalDateTime.now();
+        AtomicBoolean extended = new AtomicBoolean(false);
+
+        locks.computeIfPresent(reservationId, (id, current) -> {
+            if (current.isHeldBy(agentId) && !current.isExpiredAt(now)) {
+                extended.set(true);
+                return new LockEntry(id, agentId, current.lockedAt(), expiresAt);
+            }
+            return current;
+        });
+        return extended.get();
+    }
+
+    @Override
+    public List<Long> extendAll(Collection<Long> reservationIds, Long agentId, LocalDateTime expiresAt) {
+        List<Long> extended = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            if (extend(reservationId, agentId, expiresAt)) {
+                extended.add(reservationId);
+            }
+        }
+        return extended;
+    }
+
+    @Override
+    public boolean release(Long reservationId, Long agentId) {
+        AtomicBoolean released = new AtomicBoolean(false);
+
+        locks.computeIfPresent(reservationId, (id, current) -> {
+            if (current.isHeldBy(agentId)) {
+                released.set(true);
+                return null;
+            }
+            return current;
+        });
+        return released.get();
+    }
+
+    @Override
+    public List<LockEntry> releaseAll(Collection<Long> reservationIds, Long agentId) {
+        List<LockEntry> released = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            LockEntry entry = locks.get(reservationId);
+            if (entry != null && entry.isHeldBy(agentId) && locks.remove(reservationId, entry)) {
+                released.add(entry);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public Optional<LockEntry> forceRelease(Long reservationId) {
+        return Optional.ofNullable(locks.remove(reservationId));
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(LocalDateTime now) {
+        List<LockEntry> released = new ArrayList<>();
+        for (LockEntry entry : locks.values()) {
+            // remove(key, value) ne retire l'entrée que si elle n'a pas été réacquise entre-temps
+            if (entry.isExpiredAt(now) && locks.remove(entry.reservationId(), entry)) {
+                released.add(entry);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(Collection<Long> reservationIds, LocalDateTime now) {
+        List<LockEntry> released = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            LockEntry entry = locks.get(reservationId);
+            if (entry != null && entry.isExpiredAt(now) && locks.remove(reservationId, entry)) {
+                released.add(entry);
+            }
+        }
+        return released;
+    }
+}
@@ -0,0 +1,154 @@
+package com.project.agent.service.lock;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Minuterie d'expiration des verrous : chaque verrou acquis ou prolongé sur cette instance
+ * est planifié à son heure d'expiration exacte dans une DelayQueue. Un seul thread attend
+ * la prochaine échéance et transmet en un lot toutes les réservations échues au même moment.
+ *
+ * Seule la dernière échéance de chaque réservation compte : une prolongation ne fait que
+ * reculer l'échéance retenue, et l'entrée déjà en file est réarmée à cette échéance quand
+ * elle arrive. Une réservation n'a donc qu'une entrée en file quel que soit le nombre de
+ * battements de coeur, et une échéance remplacée ou annulée ne déclenche aucune libération.
+ */
+@Component
+public class LockExpiryTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LockExpiryTimer.class);
+
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+
+    // Réservation -> dernière échéance planifiée. Protégé par synchronized (deadlines)
+    private final Map<Long, Long> deadlines = new HashMap<>();
+
+    private volatile Thread worker;
+
+    private record Expiry(Long reservationId, long expiresAtMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((Expiry) other).expiresAtMillis);
+        }
+    }
+
+    /**
+     * Démarre le thread d'expiration ; handler reçoit les identifiants des réservations échues
+     */
+    public synchronized void start(Consumer<List<Long>> handler) {
+        if (worker != null) {
+            return;
+        }
+        worker = Thread.ofPlatform().name("reservation-lock-expiry").daemon(true).start(() -> run(handler));
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Planifie l'expiration d'un verrou ; la milliseconde ajoutée garantit expiresAt < now au déclenchement
+     */
+    public void schedule(Long reservationId, LocalDateTime expiresAt) {
+        long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+        synchronized (deadlines) {
+            Long previous = deadlines.put(reservationId, expiresAtMillis);
+            // Une échéance plus proche déjà en file sera réarmée à celle-ci quand elle arrivera
+            if (previous == null || expiresAtMillis < previous) {
+                queue.put(new Expiry(reservationId, expiresAtMillis));
+            }
+        }
+    }
+
+    /**
+     * Oublie l'échéance d'un verrou libéré : son entrée en file sera ignorée
+     */
+    public void cancel(Long reservationId) {
+        synchronized (deadlines) {
+            deadlines.remove(reservationId);
+        }
+    }
+
+    /**
+     * Nombre de réservations dont l'expiration est planifiée
+     */
+    public int pendingCount() {
+        synchronized (deadlines) {
+            return deadlines.size();
+        }
+    }
+
+    private void run(Consumer<List<Long>> handler) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Expiry> due = new ArrayList<>();
+            try {
+                due.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Regroupe toutes les échéances déjà atteintes pour une seule libération
+            queue.drainTo(due);
+
+            List<Long> expired = retainCurrent(due);
+            if (expired.isEmpty()) {
+                continue;
+            }
+            try {
+                handler.accept(expired);
+            } catch (Exception e) {
+                logger.error("Erreur lors de la libération des verrous expirés: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Réservations dont la dernière échéance planifiée est atteinte ; une entrée dont
+     * l'échéance a été reculée dans le futur est remise en file à la nouvelle échéance
+     */
+    private List<Long> retainCurrent(List<Expiry> due) {
+        List<Long> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (deadlines) {
+            for (Expiry expiry : due) {
+                Long latest = deadlines.get(expiry.reservationId());
+                if (latest == null) {
+                    // Verrou libéré, ou réservation déjà retenue dans ce lot
+                    continue;
+                }
+                if (latest == expiry.expiresAtMillis() || (latest > expiry.expiresAtMillis() && latest <= now)) {
+                    deadlines.remove(expiry.reservationId());
+                    expired.add(expiry.reservationId());
+                } else if (latest > expiry.expiresAtMillis()) {
+                    queue.put(new Expiry(expiry.reservationId(), latest));
+                }
+                // latest < expiresAtMillis : une entrée plus proche est en file pour cette réservation
+            }
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,61 @@
+package com.project.agent.service.lock;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Baux de verrous par session WebSocket : réservations dont chaque session renouvelle
+ * les verrous par battement de cœur, pour les libérer à sa déconnexion.
+ * Propre à l'instance, comme les sessions WebSocket elles-mêmes.
+ */
+@Component
+public class LockLeaseRegistry {
+
+    /**
+     * Verrous suivis par une session pour le compte d'un agent
+     */
+    public record SessionLeases(Long agentId, Set<Long> reservationIds) {
+    }
+
+    private final Map<String, SessionLeases> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Remplace les réservations suivies par une session par celles renouvelées au dernier battement
+     */
+    public void track(String sessionId, Long agentId, Collection<Long> reservationIds) {
+        if (reservationIds.isEmpty()) {
+            sessions.remove(sessionId);
+            return;
+        }
+        sessions.put(sessionId, new SessionLeases(agentId, Set.copyOf(reservationIds)));
+    }
+
+    /**
+     * Retire une session fermée et retourne les réservations à libérer : celles
+     * qu'aucune autre session du même agent (autre onglet) ne renouvelle encore
+     */
+    public SessionLeases remove(String sessionId) {
+        SessionLeases leases = sessions.remove(sessionId);
+        if (leases == null) {
+            return null;
+        }
+
+        List<Long> orphaned = leases.reservationIds().stream()
+                .filter(reservationId -> sessions.values().stream().noneMatch(other ->
+                        other.agentId().equals(leases.agentId()) && other.reservationIds().contains(reservationId)))
+                .toList();
+        return new SessionLeases(leases.agentId(), Set.copyOf(orphaned));
+    }
+
+    /**
+     * Nombre de sessions qui suivent au moins un verrou
+     */
+    public int sessionCount() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,44 @@
+package com.project.agent.service.lock;
+
+import java.util.List;
+
+/**
+ * Opérations Redis atomiques nécessaires à RedisReservationLockStore.
+ *
+ * Une valeur de verrou a la forme "agentId|lockedAtMillis|expiresAtMillis" ; chaque
+ * opération conditionnelle s'exécute côté serveur en un seul aller-retour (script Lua).
+ */
+public interface RedisLockClient {
+
+    /**
+     * Écrit la valeur si la clé est absente, expirée (expiresAt < nowMillis) ou détenue par owner.
+     * Lorsque owner détient déjà un verrou valide, sa date d'acquisition est conservée.
+     *
+     * @return la valeur en place après l'opération
+     */
+    String acquire(String key, String owner, String value, long nowMillis, long ttlMillis);
+
+    /**
+     * Remplace la valeur si la clé est détenue par owner et n'est pas expirée
+     */
+    boolean replaceIfOwned(String key, String owner, String value, long nowMillis, long ttlMillis);
+
+    /**
+     * Supprime la clé si elle est détenue par owner
+     */
+    boolean deleteIfOwned(String key, String owner);
+
+    /**
+     * Supprime la clé si elle contient toujours exactement cette valeur
+     */
+    boolean deleteIfEquals(String key, String value);
+
+    String get(String key);
+
+    String getAndDelete(String key);
+
+    /**
+     * Clés correspondant au motif, parcourues par SCAN sans bloquer le serveur
+     */
+    List<String> scanKeys(String pattern);
+}
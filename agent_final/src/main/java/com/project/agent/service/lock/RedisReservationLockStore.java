@@ -0,0 +1,194 @@
+package com.project.agent.service.lock;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.repository.ReservationRepository;
+
+/**
+ * Verrous stockés dans Redis, une clé par réservation.
+ * Partagés entre toutes les instances connectées au même serveur Redis.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reservation-lock.store", havingValue = "redis")
+public class RedisReservationLockStore implements ReservationLockStore {
+
+    static final String KEY_PREFIX = "reservation-lock:";
+
+    // Les clés survivent un peu à l'expiration du verrou pour que releaseExpired puisse notifier la libération
+    private static final long EXPIRED_KEY_GRACE_MILLIS = 60_000;
+
+    @Autowired
+    private RedisLockClient redisLockClient;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Override
+    public LockEntry tryAcquire(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        long nowMillis = System.currentTimeMillis();
+        String value = encode(agentId, nowMillis, toMillis(expiresAt));
+
+        String current = redisLockClient.acquire(key(reservationId), String.valueOf(agentId), value,
+                nowMillis, ttlMillis(expiresAt, nowMillis));
+        return decode(reservationId, current);
+    }
+
+    @Override
+    public Optional<LockEntry> findActive(Long reservationId) {
+        String value = redisLockClient.get(key(reservationId));
+        if (value == null) {
+            return Optional.empty();
+        }
+        LockEntry entry = decode(reservationId, value);
+        return entry.isExpiredAt(LocalDateTime.now()) ? Optional.empty() : Optional.of(entry);
+    }
+
+    @Override
+    public List<LockEntry> findAllActive() {
+        LocalDateTime now = LocalDateTime.now();
+        List<LockEntry> active = new ArrayList<>();
+        for (String key : redisLockClient.scanKeys(KEY_PREFIX + "*")) {
+            String value = redisLockClient.get(key);
+            if (value != null) {
+                LockEntry entry = decode(Long.valueOf(key.substring(KEY_PREFIX.length())), value);
+                if (!entry.isExpiredAt(now)) {
+                    active.add(entry);
+                }
+            }
+        }
+        return active;
+    }
+
+    @Override
+    public List<LockEntry> findActiveByAgency(Long agencyId) {
+        List<LockEntry> active = findAllActive();
+        if (active.isEmpty()) {
+            return List.of();
+        }
+        // Les verrous ne connaissent pas l'agence : une requête sur les seuls identifiants pour filtrer
+        Set<Long> agencyReservations = new HashSet<>(reservationRepository.findIdsByAgencyIdAndIdIn(
+                agencyId, active.stream().map(LockEntry::reservationId).toList()));
+        return active.stream().filter(lock -> agencyReservations.contains(lock.reservationId())).toList();
+    }
+
+    @Override
+    public boolean extend(Long reservationId, Long agentId, LocalDateTime expiresAt) {
+        Optional<LockEntry> current = findActive(reservationId);
+        if (current.isEmpty() || !current.get().isHeldBy(agentId)) {
+            return false;
+        }
+
+        // Le script revérifie le détenteur et l'expiration côté serveur
+        long nowMillis = System.currentTimeMillis();
+        String value = encode(agentId, toMillis(current.get().lockedAt()), toMillis(expiresAt));
+        return redisLockClient.replaceIfOwned(key(reservationId), String.valueOf(agentId), value,
+                nowMillis, ttlMillis(expiresAt, nowMillis));
+    }
+
+    @Override
+    public List<Long> extendAll(Collection<Long> reservationIds, Long agentId, LocalDateTime expiresAt) {
+        // Un script atomique par réservation : les clés sont indépendantes
+        List<Long> extended = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            if (extend(reservationId, agentId, expiresAt)) {
+                extended.add(reservationId);
+            }
+        }
+        return extended;
+    }
+
+    @Override
+    public boolean release(Long reservationId, Long agentId) {
+        return redisLockClient.deleteIfOwned(key(reservationId), String.valueOf(agentId));
+    }
+
+    @Override
+    public List<LockEntry> releaseAll(Collection<Long> reservationIds, Long agentId) {
+        List<LockEntry> released = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            String value = redisLockClient.get(key(reservationId));
+            if (value == null) {
+                continue;
+            }
+            LockEntry entry = decode(reservationId, value);
+            if (entry.isHeldBy(agentId) && redisLockClient.deleteIfEquals(key(reservationId), value)) {
+                released.add(entry);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public Optional<LockEntry> forceRelease(Long reservationId) {
+        String value = redisLockClient.getAndDelete(key(reservationId));
+        return value == null ? Optional.empty() : Optional.of(decode(reservationId, value));
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(LocalDateTime now) {
+        List<Long> reservationIds = new ArrayList<>();
+        for (String key : redisLockClient.scanKeys(KEY_PREFIX + "*")) {
+            reservationIds.add(Long.valueOf(key.substring(KEY_PREFIX.length())));
+        }
+        return releaseExpired(reservationIds, now);
+    }
+
+    @Override
+    public List<LockEntry> releaseExpired(Collection<Long> reservationIds, LocalDateTime now) {
+        List<LockEntry> released = new ArrayList<>();
+        for (Long reservationId : reservationIds) {
+            String value = redisLockClient.get(key(reservationId));
+            if (value == null) {
+                continue;
+            }
+            LockEntry entry = decode(reservationId, value);
+            // deleteIfEquals ne supprime pas un verrou réacquis entre la lecture et la suppression
+            if (entry.isExpiredAt(now) && redisLockClient.deleteIfEquals(key(reservationId), value)) {
+                released.add(entry);
+            }
+        }
+        return released;
+    }
+
+    private static String key(Long reservationId) {
+        return KEY_PREFIX + reservationId;
+    }
+
+    private static long ttlMillis(LocalDateTime expiresAt, long nowMillis) {
+        return Math.max(toMillis(expiresAt) - nowMillis, 0) + EXPIRED_KEY_GRACE_MILLIS;
+    }
+
+    static String encode(Long agentId, long lockedAtMillis, long expiresAtMillis) {
+        return agentId + "|" + lockedAtMillis + "|" + expiresAtMillis;
+    }
+
+    static LockEntry decode(Long reservationId, String value) {
+        String[] parts = value.split("\\|");
+        if (parts.length != 3) {
+            throw new IllegalStateException("Valeur de verrou Redis invalide pour la réservation "
+                    + reservationId + ": " + value);
+        }
+        return new LockEntry(reservationId, Long.valueOf(parts[0]),
+                fromMillis(Long.parseLong(parts[1])), fromMillis(Long.parseLong(parts[2])));
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
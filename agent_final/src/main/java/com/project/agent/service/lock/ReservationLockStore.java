@@ -0,0 +1,96 @@
+package com.project.agent.service.lock;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stockage des verrous de réservation des agents.
+ *
+ * Chaque implémentation garantit qu'au plus un agent détient un verrou actif
+ * par réservation, y compris entre plusieurs instances de l'application
+ * (sauf l'implémentation mémoire, réservée à une instance unique).
+ * L'implémentation est choisie par la propriété app.reservation-lock.store.
+ */
+public interface ReservationLockStore {
+
+    /**
+     * Verrou détenu par un agent sur une réservation
+     */
+    record LockEntry(Long reservationId, Long agentId, LocalDateTime lockedAt, LocalDateTime expiresAt) {
+
+        public boolean isExpiredAt(LocalDateTime now) {
+            return expiresAt.isBefore(now);
+        }
+
+        public boolean isHeldBy(Long agentId) {
+            return this.agentId != null && this.agentId.equals(agentId);
+        }
+    }
+
+    /**
+     * Tente d'acquérir le verrou en une seule opération atomique.
+     * Le verrou est accordé s'il est libre, expiré, ou déjà détenu par le même agent (il est alors prolongé).
+     *
+     * @return le verrou en place après l'opération : il appartient à agentId si l'acquisition a réussi
+     */
+    LockEntry tryAcquire(Long reservationId, Long agentId, LocalDateTime expiresAt);
+
+    /**
+     * Verrou actif et non expiré sur une réservation
+     */
+    Optional<LockEntry> findActive(Long reservationId);
+
+    /**
+     * Tous les verrous actifs et non expirés
+     */
+    List<LockEntry> findAllActive();
+
+    /**
+     * Verrous actifs et non expirés sur les réservations d'une agence
+     */
+    List<LockEntry> findActiveByAgency(Long agencyId);
+
+    /**
+     * Prolonge un verrou non expiré détenu par l'agent
+     * @return true si le verrou a été prolongé
+     */
+    boolean extend(Long reservationId, Long agentId, LocalDateTime expiresAt);
+
+    /**
+     * Prolonge en une opération les verrous non expirés de l'agent parmi les réservations données
+     * @return les réservations dont le verrou a été prolongé
+     */
+    List<Long> extendAll(Collection<Long> reservationIds, Long agentId, LocalDateTime expiresAt);
+
+    /**
+     * Libère un verrou détenu par l'agent
+     * @return true si un verrou a été libéré
+     */
+    boolean release(Long reservationId, Long agentId);
+
+    /**
+     * Libère en une opération les verrous de l'agent parmi les réservations données
+     * @return les verrous libérés
+     */
+    List<LockEntry> releaseAll(Collection<Long> reservationIds, Long agentId);
+
+    /**
+     * Libère le verrou d'une réservation quel que soit son détenteur
+     * @return le verrou libéré, s'il y en avait un
+     */
+    Optional<LockEntry> forceRelease(Long reservationId);
+
+    /**
+     * Libère tous les verrous expirés avant la date donnée
+     * @return les verrous libérés, pour notifier les agents
+     */
+    List<LockEntry> releaseExpired(LocalDateTime now);
+
+    /**
+     * Libère, parmi les réservations données, les verrous expirés avant la date donnée
+     * @return les verrous libérés, pour notifier les agents
+     */
+    List<LockEntry> releaseExpired(Collection<Long> reservationIds, LocalDateTime now);
+}
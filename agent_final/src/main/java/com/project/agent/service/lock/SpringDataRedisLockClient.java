@@ -0,0 +1,115 @@
+package com.project.agent.service.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+/**
+ * RedisLockClient basé sur Spring Data Redis : les opérations conditionnelles sont des scripts Lua
+ */
+@Component
+@ConditionalOnProperty(name = "app.reservation-lock.store", havingValue = "redis")
+public class SpringDataRedisLockClient implements RedisLockClient {
+
+    // ARGV : owner, value, nowMillis, ttlMillis
+    private static final RedisScript<String> ACQUIRE_SCRIPT = RedisScript.of("""
+            local current = redis.call('GET', KEYS[1])
+            local value = ARGV[2]
+            if current then
+              local owner, lockedAt, expiresAt = string.match(current, '^([^|]*)|([^|]*)|([^|]*)$')
+              if tonumber(expiresAt) >= tonumber(ARGV[3]) then
+                if owner ~= ARGV[1] then
+                  return current
+                end
+                value = owner .. '|' .. lockedAt .. '|' .. string.match(ARGV[2], '([^|]*)$')
+              end
+            end
+            redis.call('SET', KEYS[1], value, 'PX', ARGV[4])
+            return value
+            """, String.class);
+
+    // ARGV : owner, value, nowMillis, ttlMillis
+    private static final RedisScript<Long> REPLACE_IF_OWNED_SCRIPT = RedisScript.of("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then
+              return 0
+            end
+            local owner, expiresAt = string.match(current, '^([^|]*)|[^|]*|([^|]*)$')
+            if owner ~= ARGV[1] or tonumber(expiresAt) < tonumber(ARGV[3]) then
+              return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[4])
+            return 1
+            """, Long.class);
+
+    // ARGV : owner
+    private static final RedisScript<Long> DELETE_IF_OWNED_SCRIPT = RedisScript.of("""
+            local current = redis.call('GET', KEYS[1])
+            if current and string.match(current, '^([^|]*)|') == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    // ARGV : value
+    private static final RedisScript<Long> DELETE_IF_EQUALS_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Override
+    public String acquire(String key, String owner, String value, long nowMillis, long ttlMillis) {
+        return redisTemplate.execute(ACQUIRE_SCRIPT, List.of(key),
+                owner, value, String.valueOf(nowMillis), String.valueOf(ttlMillis));
+    }
+
+    @Override
+    public boolean replaceIfOwned(String key, String owner, String value, long nowMillis, long ttlMillis) {
+        Long replaced = redisTemplate.execute(REPLACE_IF_OWNED_SCRIPT, List.of(key),
+                owner, value, String.valueOf(nowMillis), String.valueOf(ttlMillis));
+        return replaced != null && replaced > 0;
+    }
+
+    @Override
+    public boolean deleteIfOwned(String key, String owner) {
+        Long deleted = redisTemplate.execute(DELETE_IF_OWNED_SCRIPT, List.of(key), owner);
+        return deleted != null && deleted > 0;
+    }
+
+    @Override
+    public boolean deleteIfEquals(String key, String value) {
+        Long deleted = redisTemplate.execute(DELETE_IF_EQUALS_SCRIPT, List.of(key), value);
+        return deleted != null && deleted > 0;
+    }
+
+    @Override
+    public String get(String key) {
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    @Override
+    public String getAndDelete(String key) {
+        return redisTemplate.opsForValue().getAndDelete(key);
+    }
+
+    @Override
+    public List<String> scanKeys(String pattern) {
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(500).build())) {
+            cursor.forEachRemaining(keys::add);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,243 @@
+package com.project.agent.service.mail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.model.EmailOutbox;
+import com.project.agent.service.EmailService;
+import com.project.agent.service.TransactionHooks;
+import com.project.agent.service.cluster.JobLeaseService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Répartiteur des emails de l'outbox : un pool borné de workers réserve les emails par
+ * lots et envoie chaque lot sur une seule connexion SMTP (JavaMailSender.send(MimeMessage...)
+ * ouvre le transport une fois pour tout le tableau).
+ *
+ * Les workers sont réveillés après le commit d'un nouvel email, et par un balayage
+ * périodique qui reprend les nouvelles tentatives échues et les baux expirés.
+ */
+@Component
+public class EmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Value("${app.mail.outbox.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.mail.outbox.workers:2}")
+    private int workers = 2;
+
+    @Value("${app.mail.outbox.batch-size:20}")
+    private int batchSize = 20;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchNanos = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // File bornée au nombre de workers : un réveil de plus est inutile, un worker actif vide déjà la file.
+        // Threads plateforme même avec les threads virtuels : le transport SMTP de Jakarta Mail écrit
+        // sous synchronized, ce qui épinglerait le thread porteur pendant tout l'envoi
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers),
+                Thread.ofPlatform().name("email-dispatcher-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Réveille un worker après le commit de la transaction courante, ou immédiatement hors transaction
+     */
+    public void wakeUpAfterCommit() {
+        TransactionHooks.afterCommitOrNow(this::wakeUp);
+    }
+
+    /**
+     * Réveille un worker s'il reste de la place dans le pool
+     */
+    public void wakeUp() {
+        if (executor != null && !executor.isShutdown()) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Balayage périodique : nouvelles tentatives échues et emails d'une instance arrêtée
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:10000}")
+    public void poll() {
+        for (int i = 0; i < workers; i++) {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Purge quotidienne des emails envoyés
+     */
+    @Scheduled(cron = "${app.mail.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeSent() {
+        jobLeaseService.runExclusively("purgeSentEmails", Duration.ofMinutes(30), () -> {
+            int purged = outboxService.purgeSent();
+            if (purged > 0) {
+                logger.info("{} emails envoyés purgés de l'outbox", purged);
+            }
+        });
+    }
+
+    /**
+     * Envoie des lots jusqu'à ce qu'il n'y ait plus d'email échu
+     */
+    void drain() {
+        try {
+            List<EmailOutbox> batch;
+            while (!(batch = outboxService.claim(batchSize)).isEmpty()) {
+                sendBatch(batch);
+            }
+        } catch (Exception e) {
+            logger.error("Erreur du répartiteur d'emails: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie un lot sur une seule connexion SMTP et enregistre le résultat de chaque email
+     */
+    void sendBatch(List<EmailOutbox> batch) {
+        long startNanos = System.nanoTime();
+        Map<Long, String> failures = new LinkedHashMap<>();
+        // Ordre du lot conservé ; MimeMessage garde l'égalité par identité
+        Map<MimeMessage, Long> idsByMessage = new LinkedHashMap<>();
+
+        for (EmailOutbox email : batch) {
+            try {
+                idsByMessage.put(toMimeMessage(email), email.getId());
+            } catch (MessagingException e) {
+                failures.put(email.getId(), e.getMessage());
+            }
+        }
+
+        if (!idsByMessage.isEmpty()) {
+            try {
+                mailSender.send(idsByMessage.keySet().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                // Échecs par message ; sans détail (connexion impossible), tout le lot a échoué
+                if (e.getFailedMessages().isEmpty()) {
+                    idsByMessage.values().forEach(id -> failures.put(id, e.getMessage()));
+                } else {
+                    e.getFailedMessages().forEach((message, cause) -> {
+                        Long id = idsByMessage.get(message);
+                        if (id != null) {
+                            failures.put(id, cause.getMessage());
+                        }
+                    });
+                }
+            } catch (MailException e) {
+                idsByMessage.values().forEach(id -> failures.put(id, e.getMessage()));
+            }
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        for (Long id : idsByMessage.values()) {
+            if (!failures.containsKey(id)) {
+                sentIds.add(id);
+            }
+        }
+
+        deadLettered.addAndGet(outboxService.recordResults(sentIds, failures));
+        sent.addAndGet(sentIds.size());
+        failedAttempts.addAndGet(failures.size());
+        batches.incrementAndGet();
+        batchNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getTextBody(), email.getHtmlBody());
+        helper.setFrom(EmailService.FROM_EMAIL);
+        return message;
+    }
+
+    /**
+     * Statistiques d'envoi et profondeur de la file pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        long batchCount = batches.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("workers", workers);
+        stats.put("activeWorkers", executor != null ? executor.getActiveCount() : 0);
+        stats.put("batchSize", batchSize);
+        stats.put("sent", sent.get());
+        stats.put("failedAttempts", failedAttempts.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("batches", batchCount);
+        stats.put("averageBatchMillis", batchCount == 0 ? 0.0
+                : TimeUnit.NANOSECONDS.toMicros(batchNanos.get()) / 1000.0 / batchCount);
+        stats.put("averageSendMillis", sent.get() + failedAttempts.get() == 0 ? 0.0
+                : TimeUnit.NANOSECONDS.toMicros(batchNanos.get()) / 1000.0 / (sent.get() + failedAttempts.get()));
+        stats.put("queue", outboxService.getQueueDepth());
+        return stats;
+    }
+}
@@ -0,0 +1,166 @@
+package com.project.agent.service.mail;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.model.EmailOutbox;
+import com.project.agent.repository.EmailOutboxRepository;
+
+/**
+ * Outbox des emails : enregistrement dans la transaction de l'appelant, réservation des
+ * emails à envoyer par lots et suivi des tentatives (nouvel essai avec délai croissant,
+ * puis abandon après le nombre maximal de tentatives).
+ */
+@Service
+public class EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Value("${app.mail.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.mail.outbox.backoff-seconds:30}")
+    private long backoffSeconds = 30;
+
+    @Value("${app.mail.outbox.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds = 3600;
+
+    // Durée pendant laquelle un email réservé n'est pas repris par un autre worker
+    @Value("${app.mail.outbox.lease-seconds:300}")
+    private long leaseSeconds = 300;
+
+    @Value("${app.mail.outbox.retention-days:7}")
+    private int retentionDays = 7;
+
+    /**
+     * Enregistre un email à envoyer, dans la transaction courante s'il y en a une
+     */
+    @Transactional
+    public EmailOutbox enqueue(String recipient, String subject, String htmlBody, String textBody) {
+        return outboxRepository.save(toOutbox(new OutgoingEmail(recipient, subject, htmlBody, textBody),
+                LocalDateTime.now()));
+    }
+
+    /**
+     * Enregistre un lot d'emails à envoyer, dans la transaction courante s'il y en a une
+     */
+    @Transactional
+    public void enqueueAll(List<OutgoingEmail> emails) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.saveAll(emails.stream().map(email -> toOutbox(email, now)).toList());
+    }
+
+    private static EmailOutbox toOutbox(OutgoingEmail outgoing, LocalDateTime now) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(outgoing.recipient());
+        email.setSubject(outgoing.subject());
+        email.setHtmlBody(outgoing.htmlBody());
+        email.setTextBody(outgoing.textBody());
+        email.setStatus(EmailOutbox.Status.PENDING);
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+        return email;
+    }
+
+    /**
+     * Réserve au plus limit emails échus pour le worker appelant
+     */
+    @Transactional
+    public List<EmailOutbox> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = outboxRepository.lockDueIds(now, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        outboxRepository.markSending(ids, now.plusSeconds(leaseSeconds));
+        return outboxRepository.findAllById(ids);
+    }
+
+    /**
+     * Enregistre le résultat d'un lot : envoyés, et erreur par email en échec.
+     * Retourne le nombre d'emails abandonnés.
+     */
+    @Transactional
+    public int recordResults(Collection<Long> sentIds, Map<Long, String> failures) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!sentIds.isEmpty()) {
+            outboxRepository.markSent(sentIds, now);
+        }
+
+        int dead = 0;
+        for (EmailOutbox email : outboxRepository.findAllById(failures.keySet())) {
+            email.setLastError(truncate(failures.get(email.getId())));
+            if (email.getAttempts() >= maxAttempts) {
+                email.setStatus(EmailOutbox.Status.DEAD);
+                dead++;
+                logger.error("Email {} à {} abandonné après {} tentatives: {}",
+                        email.getId(), email.getRecipient(), email.getAttempts(), email.getLastError());
+            } else {
+                email.setStatus(EmailOutbox.Status.PENDING);
+                email.setNextAttemptAt(now.plusSeconds(backoffSeconds(email.getAttempts())));
+                logger.warn("Échec de l'envoi de l'email {} (tentative {}), nouvel essai à {}",
+                        email.getId(), email.getAttempts(), email.getNextAttemptAt());
+            }
+        }
+        return dead;
+    }
+
+    /**
+     * Remet en attente tous les emails abandonnés
+     */
+    @Transactional
+    public int requeueDead() {
+        int count = outboxRepository.requeueDead(LocalDateTime.now());
+        logger.info("{} emails abandonnés remis en attente", count);
+        return count;
+    }
+
+    /**
+     * Supprime les emails envoyés depuis plus longtemps que la durée de rétention
+     */
+    @Transactional
+    public int purgeSent() {
+        return outboxRepository.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    /**
+     * Nombre d'emails par statut (profondeur de la file)
+     */
+    public Map<String, Long> getQueueDepth() {
+        Map<String, Long> depth = new LinkedHashMap<>();
+        depth.put("pending", outboxRepository.countByStatus(EmailOutbox.Status.PENDING));
+        depth.put("sending", outboxRepository.countByStatus(EmailOutbox.Status.SENDING));
+        depth.put("dead", outboxRepository.countByStatus(EmailOutbox.Status.DEAD));
+        return depth;
+    }
+
+    /**
+     * Délai avant la tentative suivante : doublé à chaque échec, plafonné
+     */
+    long backoffSeconds(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(backoffSeconds << exponent, maxBackoffSeconds);
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,175 @@
+package com.project.agent.service.mail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moteur de templates des emails : chaque template HTML est lu une seule fois au démarrage
+ * depuis le classpath (y compris dans un jar) et découpé en segments de texte et variables
+ * {{NOM}}. Le rendu concatène les segments en une seule passe dans un StringBuilder
+ * réutilisé par thread.
+ *
+ * Nommage des fichiers : {@code <nom>.html} pour la langue par défaut, et
+ * {@code <nom>_<langue>.html} ou {@code <nom>_<langue>_<PAYS>.html} pour une traduction.
+ */
+@Component
+public class EmailTemplateEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngine.class);
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{([A-Z0-9_]+)\\}\\}");
+    private static final Pattern LOCALIZED_NAME = Pattern.compile("(.+)_([a-z]{2})(?:_([A-Z]{2}))?");
+
+    // Au-delà, le builder du thread n'est pas conservé pour ne pas retenir un gros tampon
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    @Value("${app.mail.templates.location:classpath*:templates/*.html}")
+    private String location = "classpath*:templates/*.html";
+
+    // Nom du template -> clé de langue ("" par défaut, "en", "en_US") -> template compilé
+    private final Map<String, Map<String, CompiledTemplate>> templates = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    /**
+     * Template découpé : literals[i] précède la variable placeholders[i] ; le dernier texte suit la dernière variable
+     */
+    record CompiledTemplate(String[] literals, String[] placeholders, int literalLength) {
+    }
+
+    @PostConstruct
+    void loadTemplates() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location);
+            for (Resource resource : resources) {
+                String filename = resource.getFilename();
+                if (filename == null || !filename.endsWith(".html")) {
+                    continue;
+                }
+                try (InputStream in = resource.getInputStream()) {
+                    register(filename.substring(0, filename.length() - ".html".length()),
+                            new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            logger.info("{} templates d'email chargés depuis {}", templates.size(), location);
+        } catch (IOException e) {
+            logger.error("Impossible de charger les templates d'email depuis {}: {}", location, e.getMessage());
+        }
+    }
+
+    /**
+     * Compile et enregistre un template ; le suffixe de langue éventuel du nom est interprété
+     */
+    void register(String baseName, String source) {
+        String name = baseName;
+        String localeKey = "";
+        Matcher matcher = LOCALIZED_NAME.matcher(baseName);
+        if (matcher.matches()) {
+            name = matcher.group(1);
+            localeKey = matcher.group(3) != null ? matcher.group(2) + "_" + matcher.group(3) : matcher.group(2);
+        }
+        templates.computeIfAbsent(name, key -> new ConcurrentHashMap<>()).put(localeKey, compile(source));
+    }
+
+    /**
+     * Indique si un template de ce nom est disponible
+     */
+    public boolean hasTemplate(String name) {
+        return templates.containsKey(name);
+    }
+
+    /**
+     * Rendu dans la langue par défaut
+     */
+    public String render(String name, Map<String, String> values) {
+        return render(name, null, values);
+    }
+
+    /**
+     * Rendu dans la langue demandée (langue et pays, puis langue seule, puis défaut) ;
+     * une variable sans valeur est remplacée par une chaîne vide
+     */
+    public String render(String name, Locale locale, Map<String, String> values) {
+        CompiledTemplate template = resolve(name, locale);
+
+        StringBuilder builder = builders.get();
+        builder.setLength(0);
+        builder.ensureCapacity(template.literalLength() + 1024);
+
+        String[] literals = template.literals();
+        String[] placeholders = template.placeholders();
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+        builder.append(literals[placeholders.length]);
+
+        String result = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            builders.remove();
+        }
+        return result;
+    }
+
+    private CompiledTemplate resolve(String name, Locale locale) {
+        Map<String, CompiledTemplate> variants = templates.get(name);
+        if (variants == null) {
+            throw new RuntimeException("Template d'email introuvable: " + name);
+        }
+
+        CompiledTemplate template = null;
+        if (locale != null) {
+            if (!locale.getCountry().isEmpty()) {
+                template = variants.get(locale.getLanguage() + "_" + locale.getCountry());
+            }
+            if (template == null) {
+                template = variants.get(locale.getLanguage());
+            }
+        }
+        if (template == null) {
+            template = variants.get("");
+        }
+        if (template == null) {
+            // Aucune version par défaut : première traduction disponible
+            template = variants.values().iterator().next();
+        }
+        return template;
+    }
+
+    static CompiledTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        Matcher matcher = PLACEHOLDER.matcher(source);
+        int position = 0;
+        while (matcher.find()) {
+            literals.add(source.substring(position, matcher.start()));
+            placeholders.add(matcher.group(1));
+            position = matcher.end();
+        }
+        literals.add(source.substring(position));
+
+        int literalLength = literals.stream().mapToInt(String::length).sum();
+        return new CompiledTemplate(literals.toArray(new String[0]), placeholders.toArray(new String[0]), literalLength);
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.agent.service.mail;
+
+/**
+ * Email rendu, prêt à être enregistré dans l'outbox ou envoyé
+ */
+public record OutgoingEmail(String recipient, String subject, String htmlBody, String textBody) {
+}
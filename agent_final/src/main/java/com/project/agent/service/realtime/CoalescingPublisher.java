@@ -0,0 +1,215 @@
+package com.project.agent.service.realtime;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Publication WebSocket regroupée et limitée en débit, devant SimpMessagingTemplate.
+ *
+ * Les messages sont regroupés par destination et par clé (par exemple la date d'une
+ * disponibilité) : le premier part immédiatement, ceux qui suivent dans la fenêtre
+ * (app.websocket.coalescing.window-ms) sont fusionnés et un seul part à la fin de la
+ * fenêtre. Par défaut le plus récent remplace le précédent, qui est compté comme
+ * abandonné ; une fonction de fusion peut combiner des deltas à la place.
+ *
+ * Chaque message envoyé est converti une seule fois, puis le broker le diffuse tel quel
+ * à tous les abonnés. Au plus un message par clé est en attente : une rafale ne fait
+ * jamais grossir la file, quel que soit le débit de la source. Une clé n'est suivie que
+ * pendant sa fenêtre : elle est oubliée dès qu'une fenêtre se termine sans message.
+ */
+@Component
+public class CoalescingPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingPublisher.class);
+
+    // Nombre de destinations détaillées dans les statistiques
+    private static final int TOP_DESTINATIONS = 10;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.websocket.coalescing.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.websocket.coalescing.window-ms:100}")
+    private long windowMs = 100;
+
+    private ScheduledExecutorService flushExecutor;
+
+    // Destination et clé -> fenêtre en cours ; une entrée n'existe que tant qu'une fin de fenêtre
+    // est planifiée. Protégé par synchronized (slots)
+    private final Map<SlotKey, Slot> slots = new HashMap<>();
+
+    // Messages remplacés par un plus récent, par destination
+    private final Map<String, AtomicLong> droppedByDestination = new HashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private record SlotKey(String destination, Object key) {
+    }
+
+    private static final class Slot {
+        private Object pending;
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled && windowMs > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("ws-coalescing").daemon(true).factory());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Publie l'état complet d'une clé : seul le plus récent de la fenêtre est envoyé
+     */
+    public void publish(String destination, Object key, Object payload) {
+        publish(destination, key, payload, null);
+    }
+
+    /**
+     * Publie un delta : les deltas d'une même clé reçus dans la fenêtre sont combinés par merge
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void publish(String destination, Object key, T payload, BinaryOperator<T> merge) {
+        published.incrementAndGet();
+        if (flushExecutor == null) {
+            send(destination, payload);
+            return;
+        }
+
+        SlotKey slotKey = new SlotKey(destination, key);
+        boolean immediate = false;
+        synchronized (slots) {
+            Slot slot = slots.get(slotKey);
+            if (slot == null) {
+                // Hors fenêtre : envoi immédiat, la fenêtre commence maintenant
+                slots.put(slotKey, new Slot());
+                scheduleFlush(slotKey);
+                immediate = true;
+            } else if (slot.pending == null) {
+                slot.pending = payload;
+            } else if (merge != null) {
+                slot.pending = merge.apply((T) slot.pending, payload);
+                merged.incrementAndGet();
+            } else {
+                slot.pending = payload;
+                dropped.incrementAndGet();
+                droppedByDestination.computeIfAbsent(destination, d -> new AtomicLong()).incrementAndGet();
+            }
+        }
+
+        if (immediate) {
+            send(destination, payload);
+        }
+    }
+
+    /**
+     * Statistiques de regroupement pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", flushExecutor != null);
+        stats.put("windowMs", windowMs);
+        stats.put("published", published.get());
+        stats.put("sent", sent.get());
+        stats.put("merged", merged.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failures", failures.get());
+
+        Map<String, Long> topDropped = new LinkedHashMap<>();
+        synchronized (slots) {
+            stats.put("activeKeys", slots.size());
+            stats.put("pendingKeys", slots.values().stream().filter(slot -> slot.pending != null).count());
+            droppedByDestination.entrySet().stream()
+                    .sorted(Map.Entry.<String, AtomicLong>comparingByValue(Comparator.comparingLong(AtomicLong::get)).reversed())
+                    .limit(TOP_DESTINATIONS)
+                    .forEach(entry -> topDropped.put(entry.getKey(), entry.getValue().get()));
+        }
+        stats.put("droppedByDestination", topDropped);
+        return stats;
+    }
+
+    /**
+     * Fin de fenêtre : envoie le message en attente et ouvre une nouvelle fenêtre,
+     * ou oublie la clé si la fenêtre s'est terminée sans message
+     */
+    private void flush(SlotKey slotKey) {
+        Object payload;
+        synchronized (slots) {
+            Slot slot = slots.get(slotKey);
+            if (slot == null) {
+                return;
+            }
+            payload = slot.pending;
+            if (payload == null) {
+                slots.remove(slotKey);
+                return;
+            }
+            slot.pending = null;
+            scheduleFlush(slotKey);
+        }
+        send(slotKey.destination(), payload);
+    }
+
+    // Appelé sous synchronized (slots)
+    private void scheduleFlush(SlotKey slotKey) {
+        try {
+            flushExecutor.schedule(() -> flush(slotKey), windowMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours : la clé ne sera plus suivie
+            slots.remove(slotKey);
+        }
+    }
+
+    /**
+     * Convertit le message une seule fois (même convertisseur que convertAndSend) puis le remet au broker
+     */
+    private void send(String destination, Object payload) {
+        try {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setLeaveMutable(true);
+            Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, accessor.getMessageHeaders());
+            if (message == null) {
+                throw new IllegalStateException("Aucun convertisseur pour " + payload.getClass().getName());
+            }
+            messagingTemplate.send(destination, message);
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            logger.error("Erreur lors de l'envoi WebSocket vers {}: {}", destination, e.getMessage());
+        }
+    }
+}
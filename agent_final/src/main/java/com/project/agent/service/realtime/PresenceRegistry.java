@@ -0,0 +1,413 @@
+package com.project.agent.service.realtime;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import com.project.agent.dto.PresenceChangeDTO;
+import com.project.agent.repository.UserPresenceRepository;
+import com.project.agent.repository.UserPresenceRepository.OnlineAgent;
+import com.project.agent.service.IdentityCache.Identity;
+import com.project.agent.service.cluster.ClusterMembership;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Présence des utilisateurs connectés en WebSocket, par agent et par agence.
+ *
+ * Un agent est en ligne tant qu'il lui reste au moins une session (plusieurs onglets ou
+ * appareils). Les changements sont regroupés par agence pendant app.presence.debounce-ms
+ * puis publiés sur /topic/agency/{agencyId}/presence, réservé aux agents de l'agence et
+ * aux administrateurs : seul l'écart avec le dernier message publié est envoyé, si bien
+ * qu'une vague de reconnexions ne produit aucun message.
+ *
+ * Sans cluster (app.cluster.enabled=false), le registre ne connaît que les sessions de
+ * l'instance. Avec le cluster, chaque instance enregistre dans user_presence le nombre de
+ * sessions de ses utilisateurs : compteurs, liste des agents et messages portent alors sur
+ * toutes les instances vivantes, et un agent connecté à deux instances reste en ligne tant
+ * qu'une de ses sessions est ouverte. Les messages d'une agence sont publiés par l'instance
+ * à qui elle revient (ClusterMembership) toutes les app.presence.sync-interval-ms, ce qui
+ * couvre aussi les sessions d'une instance arrêtée brutalement.
+ */
+@Component
+public class PresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private UserPresenceRepository presenceRepository;
+
+    @Value("${app.presence.debounce-ms:2000}")
+    private long debounceMs = 2000;
+
+    // Période de lecture de la présence partagée par l'instance propriétaire de chaque agence
+    @Value("${app.presence.sync-interval-ms:2000}")
+    private long syncIntervalMs = 2000;
+
+    // Présence partagée entre les instances (cluster activé)
+    private boolean shared;
+
+    // Publications retardées et, en mode partagé, écritures dans user_presence dans l'ordre des changements
+    private ScheduledExecutorService presenceExecutor;
+
+    /**
+     * Agent en ligne et nombre de sessions ouvertes
+     */
+    public record AgentPresence(Long agentId, Long agencyId, String displayName, int sessions, Instant onlineSince) {
+    }
+
+    private record Session(Long userId, Long agentId, Long agencyId, String displayName) {
+    }
+
+    private static final class AgentEntry {
+        private final Long agencyId;
+        private final String displayName;
+        private final Instant onlineSince = Instant.now();
+        private final Set<String> sessionIds = new HashSet<>();
+
+        private AgentEntry(Long agencyId, String displayName) {
+            this.agencyId = agencyId;
+            this.displayName = displayName;
+        }
+    }
+
+    // Tous les états ci-dessous sont protégés par synchronized (sessions)
+    private final Map<String, Session> sessions = new HashMap<>();
+    private final Map<Long, AgentEntry> agents = new HashMap<>();
+    private final Map<Long, Integer> userSessions = new HashMap<>();
+
+    // Agence -> agents annoncés en ligne dans le dernier message publié
+    private final Map<Long, Set<Long>> publishedOnline = new HashMap<>();
+
+    // Agences dont un changement attend la fin de la fenêtre d'agrégation
+    private final Set<Long> pendingAgencies = new HashSet<>();
+
+    private final AtomicLong presenceChanges = new AtomicLong();
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong eventsSuppressed = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        shared = clusterMembership != null && clusterMembership.isEnabled();
+        if (shared || debounceMs > 0) {
+            presenceExecutor = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("presence-events").daemon(true).factory());
+        }
+        if (shared) {
+            // Lignes laissées par une exécution précédente sous le même identifiant d'instance
+            presenceExecutor.execute(() -> presenceRepository.deleteByNode(clusterMembership.getInstanceId()));
+            presenceExecutor.scheduleWithFixedDelay(this::synchronize, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (presenceExecutor != null) {
+            presenceExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Enregistre une session authentifiée ; un agent passe en ligne à sa première session
+     */
+    public void connect(String sessionId, Identity identity) {
+        Long changedAgency = null;
+        synchronized (sessions) {
+            if (sessionId == null || identity == null || sessions.containsKey(sessionId)) {
+                return;
+            }
+            Session session = new Session(identity.userId(), identity.agentId(), identity.agencyId(), identity.displayName());
+            sessions.put(sessionId, session);
+            storeSessions(session, userSessions.merge(session.userId(), 1, Integer::sum));
+
+            if (session.agentId() != null && session.agencyId() != null) {
+                AgentEntry entry = agents.get(session.agentId());
+                if (entry == null) {
+                    entry = new AgentEntry(session.agencyId(), identity.displayName());
+                    agents.put(session.agentId(), entry);
+                    changedAgency = session.agencyId();
+                }
+                entry.sessionIds.add(sessionId);
+            }
+        }
+        if (changedAgency != null) {
+            presenceChanged(changedAgency);
+        }
+    }
+
+    /**
+     * Retire une session ; un agent passe hors ligne à la fermeture de sa dernière session
+     */
+    public void disconnect(String sessionId) {
+        Long changedAgency = null;
+        synchronized (sessions) {
+            Session session = sessions.remove(sessionId);
+            if (session == null) {
+                return;
+            }
+            Integer remaining = userSessions.computeIfPresent(session.userId(), (userId, count) -> count > 1 ? count - 1 : null);
+            storeSessions(session, remaining == null ? 0 : remaining);
+
+            AgentEntry entry = session.agentId() != null ? agents.get(session.agentId()) : null;
+            if (entry != null) {
+                entry.sessionIds.remove(sessionId);
+                if (entry.sessionIds.isEmpty()) {
+                    agents.remove(session.agentId());
+                    changedAgency = entry.agencyId;
+                }
+            }
+        }
+        if (changedAgency != null) {
+            presenceChanged(changedAgency);
+        }
+    }
+
+    /**
+     * Agents en ligne d'une agence, par ordre de connexion
+     */
+    public List<AgentPresence> getOnlineAgents(Long agencyId) {
+        if (shared) {
+            return presenceRepository.findOnlineAgentsByAgency(agencyId, clusterMembership.getNodeTtlSeconds()).stream()
+                    .map(PresenceRegistry::toPresence)
+                    .toList();
+        }
+        synchronized (sessions) {
+            return agents.entrySet().stream()
+                    .filter(entry -> entry.getValue().agencyId.equals(agencyId))
+                    .map(entry -> toPresence(entry.getKey(), entry.getValue()))
+                    .sorted(Comparator.comparing(AgentPresence::onlineSince))
+                    .toList();
+        }
+    }
+
+    public boolean isOnline(Long agentId) {
+        if (shared) {
+            return presenceRepository.isAgentOnline(agentId, clusterMembership.getNodeTtlSeconds());
+        }
+        synchronized (sessions) {
+            return agents.containsKey(agentId);
+        }
+    }
+
+    /**
+     * Nombre d'agents ayant au moins une session ouverte
+     */
+    public int countOnlineAgents() {
+        if (shared) {
+            return (int) presenceRepository.countOnlineAgents(clusterMembership.getNodeTtlSeconds());
+        }
+        synchronized (sessions) {
+            return agents.size();
+        }
+    }
+
+    /**
+     * Nombre d'utilisateurs authentifiés (tous rôles) ayant au moins une session ouverte
+     */
+    public int countOnlineUsers() {
+        if (shared) {
+            return (int) presenceRepository.countOnlineUsers(clusterMembership.getNodeTtlSeconds());
+        }
+        synchronized (sessions) {
+            return userSessions.size();
+        }
+    }
+
+    /**
+     * Statistiques de présence pour la supervision
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shared", shared);
+        synchronized (sessions) {
+            stats.put("sessions", sessions.size());
+            stats.put("pendingAgencies", pendingAgencies.size());
+        }
+        stats.put("onlineUsers", countOnlineUsers());
+        stats.put("onlineAgents", countOnlineAgents());
+        stats.put("debounceMs", debounceMs);
+        stats.put("presenceChanges", presenceChanges.get());
+        stats.put("eventsPublished", eventsPublished.get());
+        stats.put("eventsSuppressed", eventsSuppressed.get());
+        return stats;
+    }
+
+    /**
+     * Planifie la publication de l'agence à la fin de la fenêtre, si elle ne l'est pas déjà
+     */
+    private void presenceChanged(Long agencyId) {
+        presenceChanges.incrementAndGet();
+        if (shared) {
+            // Publié par l'instance à qui revient l'agence, à sa prochaine synchronisation
+            return;
+        }
+        if (presenceExecutor == null) {
+            publish(agencyId);
+            return;
+        }
+        synchronized (sessions) {
+            if (!pendingAgencies.add(agencyId)) {
+                return;
+            }
+        }
+        presenceExecutor.schedule(() -> publish(agencyId), debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Met à jour le nombre de sessions de l'utilisateur sur cette instance dans la présence partagée.
+     * Appelé sous le verrou : les écritures passent dans l'ordre des changements.
+     */
+    private void storeSessions(Session session, int count) {
+        if (!shared) {
+            return;
+        }
+        String nodeId = clusterMembership.getInstanceId();
+        presenceExecutor.execute(() -> {
+            try {
+                if (count > 0) {
+                    presenceRepository.upsert(nodeId, session.userId(), session.agentId(), session.agencyId(),
+                            session.displayName(), count);
+                } else {
+                    presenceRepository.deleteByNodeAndUser(nodeId, session.userId());
+                }
+            } catch (Exception e) {
+                logger.error("Erreur lors de l'enregistrement de la présence de l'utilisateur {}: {}",
+                        session.userId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Présence partagée : publie l'écart de chaque agence qui revient à cette instance,
+     * à partir des sessions de toutes les instances vivantes
+     */
+    void synchronize() {
+        try {
+            Map<Long, Map<Long, AgentPresence>> byAgency = new HashMap<>();
+            for (OnlineAgent agent : presenceRepository.findOnlineAgents(clusterMembership.getNodeTtlSeconds())) {
+                byAgency.computeIfAbsent(agent.getAgencyId(), agencyId -> new LinkedHashMap<>())
+                        .put(agent.getAgentId(), toPresence(agent));
+            }
+
+            Set<Long> agencies = new HashSet<>(byAgency.keySet());
+            synchronized (sessions) {
+                agencies.addAll(publishedOnline.keySet());
+                // Agence reprise par une autre instance : c'est elle qui publie désormais
+                publishedOnline.keySet().removeIf(agencyId -> !clusterMembership.ownsAgency(agencyId));
+            }
+            for (Long agencyId : agencies) {
+                if (!clusterMembership.ownsAgency(agencyId)) {
+                    continue;
+                }
+                PresenceChangeDTO change;
+                synchronized (sessions) {
+                    change = diff(agencyId, byAgency.getOrDefault(agencyId, Map.of()));
+                }
+                send(agencyId, change);
+            }
+
+            if (clusterMembership.getShard().index() == 0) {
+                presenceRepository.deleteOrphans();
+            }
+        } catch (Exception e) {
+            logger.error("Erreur lors de la synchronisation de la présence: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publie l'écart entre les agents en ligne sur cette instance et ceux du dernier message de l'agence
+     */
+    private void publish(Long agencyId) {
+        PresenceChangeDTO change;
+        synchronized (sessions) {
+            pendingAgencies.remove(agencyId);
+
+            Map<Long, AgentPresence> current = new LinkedHashMap<>();
+            agents.forEach((agentId, entry) -> {
+                if (entry.agencyId.equals(agencyId)) {
+                    current.put(agentId, toPresence(agentId, entry));
+                }
+            });
+            change = diff(agencyId, current);
+        }
+        send(agencyId, change);
+    }
+
+    /**
+     * Écart entre les agents en ligne et ceux du dernier message de l'agence, qui devient l'état publié ;
+     * null s'il n'y a rien à publier. Appelé sous le verrou.
+     */
+    private PresenceChangeDTO diff(Long agencyId, Map<Long, AgentPresence> current) {
+        Set<Long> previous = publishedOnline.getOrDefault(agencyId, Set.of());
+
+        List<AgentPresence> online = new ArrayList<>();
+        current.forEach((agentId, presence) -> {
+            if (!previous.contains(agentId)) {
+                online.add(presence);
+            }
+        });
+        List<Long> offline = previous.stream().filter(agentId -> !current.containsKey(agentId)).toList();
+
+        if (current.isEmpty()) {
+            publishedOnline.remove(agencyId);
+        } else {
+            publishedOnline.put(agencyId, new LinkedHashSet<>(current.keySet()));
+        }
+        if (online.isEmpty() && offline.isEmpty()) {
+            eventsSuppressed.incrementAndGet();
+            return null;
+        }
+        return new PresenceChangeDTO(agencyId, online, new ArrayList<>(offline), current.size());
+    }
+
+    private void send(Long agencyId, PresenceChangeDTO change) {
+        if (change == null) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSend(agencyTopic(agencyId), change);
+            eventsPublished.incrementAndGet();
+        } catch (Exception e) {
+            logger.error("Erreur lors de la publication de la présence de l'agence {}: {}", agencyId, e.getMessage());
+        }
+    }
+
+    public static String agencyTopic(Long agencyId) {
+        return "/topic/agency/" + agencyId + "/presence";
+    }
+
+    private static AgentPresence toPresence(Long agentId, AgentEntry entry) {
+        return new AgentPresence(agentId, entry.agencyId, entry.displayName, entry.sessionIds.size(), entry.onlineSince);
+    }
+
+    private static AgentPresence toPresence(OnlineAgent agent) {
+        return new AgentPresence(agent.getAgentId(), agent.getAgencyId(), agent.getDisplayName(),
+                agent.getSessions().intValue(), agent.getOnlineSince().atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
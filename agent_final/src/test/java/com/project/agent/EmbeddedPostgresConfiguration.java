@@ -0,0 +1,65 @@
+package com.project.agent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Base PostgreSQL réelle pour les tests des requêtes propres à PostgreSQL (ON CONFLICT,
+ * FOR UPDATE SKIP LOCKED, index partiels...) que H2 n'exécute pas à l'identique.
+ *
+ * Un seul serveur embarqué est démarré pour toute la JVM de test ; chaque contexte Spring
+ * reçoit sa propre base, pour que le schéma create-drop d'un contexte n'efface pas celui d'un autre.
+ * À utiliser avec @DataJpaTest et "spring.test.database.replace=none".
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class EmbeddedPostgresConfiguration {
+
+    // Connexions du pool : assez pour les tests de concurrence, sous le max_connections du serveur
+    private static final int MAX_POOL_SIZE = 50;
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private static EmbeddedPostgres server;
+
+    // Arrêté par EmbeddedPostgres lui-même à la fin de la JVM
+    private static synchronized EmbeddedPostgres server() {
+        if (server == null) {
+            try {
+                server = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Impossible de démarrer PostgreSQL embarqué", e);
+            }
+        }
+        return server;
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource() throws SQLException {
+        EmbeddedPostgres postgres = server();
+        String database = "test_" + databases.incrementAndGet();
+
+        DataSource admin = postgres.getPostgresDatabase();
+        try (Connection connection = admin.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + database);
+        }
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl("postgres", database));
+        dataSource.setUsername("postgres");
+        dataSource.setMaximumPoolSize(MAX_POOL_SIZE);
+        return dataSource;
+    }
+}
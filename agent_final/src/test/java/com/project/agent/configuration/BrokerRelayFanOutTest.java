@@ -0,0 +1,182 @@
+package com.project.agent.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.project.agent.service.ReservationEventPublisher;
+
+/**
+ * Diffusion à travers le relais STOMP (mode app.websocket.broker.mode=relay) vers un broker
+ * embarqué, avec 10 000 abonnés simulés : 100 sessions clientes de 100 abonnements chacune,
+ * réparties sur les topics de réservations de 10 agences.
+ *
+ * Le relais est un StompBrokerRelayMessageHandler construit directement, sans contexte Spring,
+ * sur les préfixes /topic et /queue de WebSocketConfig : les trames des sessions y sont injectées
+ * et un canal sortant compte celles qui leur sont renvoyées. La configuration du mode relais
+ * elle-même (identifiants, hôte virtuel, destinations utilisateur entre instances) est couverte
+ * par WebSocketConfigRelayTest.
+ */
+class BrokerRelayFanOutTest {
+
+    private static final int SESSIONS = 100;
+    private static final int SUBSCRIPTIONS_PER_SESSION = 100;
+    private static final int SUBSCRIBERS = SESSIONS * SUBSCRIPTIONS_PER_SESSION;
+    private static final int AGENCIES = 10;
+    private static final long TIMEOUT_MS = 30000;
+
+    private FakeStompBroker broker;
+    private StompBrokerRelayMessageHandler relay;
+    private SimpMessagingTemplate messagingTemplate;
+
+    // Trames transmises aux sessions par le relais, par commande et par session
+    private final Map<StompCommand, AtomicInteger> outboundFrames = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> messagesBySession = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new FakeStompBroker();
+
+        ExecutorSubscribableChannel clientInboundChannel = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        MessageChannel clientOutboundChannel = (message, timeout) -> {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            outboundFrames.computeIfAbsent(accessor.getCommand(), c -> new AtomicInteger()).incrementAndGet();
+            if (accessor.getCommand() == StompCommand.MESSAGE) {
+                messagesBySession.computeIfAbsent(accessor.getSessionId(), s -> new AtomicInteger()).incrementAndGet();
+            }
+            return true;
+        };
+
+        relay = new StompBrokerRelayMessageHandler(clientInboundChannel, clientOutboundChannel, brokerChannel,
+                List.of("/topic", "/queue"));
+        relay.setRelayHost("127.0.0.1");
+        relay.setRelayPort(broker.getPort());
+        relay.setSystemHeartbeatSendInterval(0);
+        relay.setSystemHeartbeatReceiveInterval(0);
+        relay.start();
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+
+        await("connexion systeme", relay::isBrokerAvailable);
+        connectAndSubscribeAll();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        relay.stop();
+        broker.close();
+    }
+
+    private void send(StompCommand command, String sessionId, Consumer<StompHeaderAccessor> headers) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        headers.accept(accessor);
+        relay.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private int outbound(StompCommand command) {
+        AtomicInteger count = outboundFrames.get(command);
+        return count == null ? 0 : count.get();
+    }
+
+    private void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Delai depasse en attendant: " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Ouvre les sessions (une connexion TCP au broker chacune) puis les abonnements, avec reçu
+     */
+    private void connectAndSubscribeAll() throws InterruptedException {
+        for (int s = 0; s < SESSIONS; s++) {
+            send(StompCommand.CONNECT, "session-" + s, accessor -> {
+                accessor.setAcceptVersion("1.2");
+                accessor.setHeartbeat(0, 0);
+            });
+        }
+        await("CONNECTED des sessions", () -> outbound(StompCommand.CONNECTED) == SESSIONS);
+
+        for (int s = 0; s < SESSIONS; s++) {
+            for (int i = 0; i < SUBSCRIPTIONS_PER_SESSION; i++) {
+                String subscriptionId = "sub-" + i;
+                String destination = ReservationEventPublisher.agencyTopic((long) (i % AGENCIES));
+                send(StompCommand.SUBSCRIBE, "session-" + s, accessor -> {
+                    accessor.setSubscriptionId(subscriptionId);
+                    accessor.setDestination(destination);
+                    accessor.setReceipt(subscriptionId);
+                });
+            }
+        }
+        await("RECEIPT des abonnements", () -> outbound(StompCommand.RECEIPT) == SUBSCRIBERS);
+    }
+
+    private void publishToEveryAgency() {
+        for (long agencyId = 0; agencyId < AGENCIES; agencyId++) {
+            byte[] payload = ("{\"id\":" + agencyId + ",\"status\":\"CONFIRMED\",\"version\":1}")
+                    .getBytes(StandardCharsets.UTF_8);
+            messagingTemplate.convertAndSend(ReservationEventPublisher.agencyTopic(agencyId), payload);
+        }
+    }
+
+    // =========================================================================
+    // Tests de diffusion
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests de diffusion par le relais")
+    class FanOutTests {
+
+        @Test
+        @DisplayName("Un message par agence atteint chacun des 10 000 abonnes exactement une fois")
+        void publish_ReachesEverySubscriberOnce() throws InterruptedException {
+            assertEquals(SESSIONS + 1, broker.getConnectionCount(), "Une connexion par session plus la connexion systeme");
+            assertEquals(SUBSCRIBERS, broker.getSubscriptionCount());
+
+            publishToEveryAgency();
+
+            await("MESSAGE des abonnes", () -> outbound(StompCommand.MESSAGE) >= SUBSCRIBERS);
+            assertEquals(SUBSCRIBERS, broker.getDeliveredCount());
+            assertEquals(SESSIONS, messagesBySession.size());
+            messagesBySession.values().forEach(count -> assertEquals(SUBSCRIPTIONS_PER_SESSION, count.get()));
+        }
+
+        @Test
+        @DisplayName("Les sessions deconnectees ne recoivent plus rien")
+        void publish_AfterDisconnect_OnlyRemainingSessions() throws InterruptedException {
+            for (int s = 0; s < SESSIONS / 2; s++) {
+                send(StompCommand.DISCONNECT, "session-" + s, accessor -> {
+                });
+            }
+            await("retrait des abonnements", () -> broker.getSubscriptionCount() == SUBSCRIBERS / 2);
+
+            publishToEveryAgency();
+
+            await("MESSAGE des abonnes restants", () -> outbound(StompCommand.MESSAGE) >= SUBSCRIBERS / 2);
+            assertEquals(SUBSCRIBERS / 2, broker.getDeliveredCount());
+            assertEquals(SESSIONS / 2, messagesBySession.size());
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.project.agent.configuration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Substitut embarqué d'un broker STOMP pour les tests du mode relais : accepte les connexions
+ * sur un port local libre (un thread virtuel par connexion) et implémente le minimum du
+ * protocole STOMP 1.2 utilisé par le relais de Spring (CONNECT, SUBSCRIBE, UNSUBSCRIBE, SEND,
+ * DISCONNECT, reçus). Un SEND est diffusé à tous les abonnés de la destination exacte, avec
+ * ses en-têtes, comme le fait un broker réel. Les en-têtes des CONNECT (identifiants, hôte
+ * virtuel) et les destinations des SEND sont conservés pour les vérifications.
+ * Les battements de cœur sont désactivés (heart-beat:0,0).
+ */
+class FakeStompBroker implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final List<Map<String, String>> connectHeaders = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> sendsByDestination = new ConcurrentHashMap<>();
+
+    private record Frame(String command, Map<String, String> headers, byte[] body) {
+    }
+
+    private record Subscription(Connection connection, String id) {
+    }
+
+    private static final class Connection {
+
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        synchronized void write(byte[] frame) {
+            try {
+                out.write(frame);
+                out.flush();
+            } catch (IOException e) {
+                // Client déconnecté : ses abonnements sont retirés à la fermeture
+            }
+        }
+    }
+
+    FakeStompBroker() throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.acceptor = Thread.ofPlatform().name("fake-stomp").daemon(true).start(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    int getSubscriptionCount() {
+        return subscriptions.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Abonnements en cours aux destinations commençant par ce préfixe
+     */
+    int getSubscriptionCount(String destinationPrefix) {
+        return subscriptions.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(destinationPrefix))
+                .mapToInt(entry -> entry.getValue().size())
+                .sum();
+    }
+
+    long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * En-têtes de chaque trame CONNECT reçue, dans l'ordre d'arrivée
+     */
+    List<Map<String, String>> getConnectHeaders() {
+        return List.copyOf(connectHeaders);
+    }
+
+    int getSendCount(String destination) {
+        AtomicInteger count = sendsByDestination.get(destination);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        acceptor.interrupt();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().start(() -> handle(socket));
+            } catch (IOException e) {
+                // Serveur fermé
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        Connection connection = null;
+        try (socket) {
+            connections.incrementAndGet();
+            connection = new Connection(socket);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            Frame frame;
+            while ((frame = readFrame(in)) != null) {
+                if (!process(connection, frame)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client déconnecté
+        } finally {
+            connections.decrementAndGet();
+            Connection closed = connection;
+            subscriptions.values().forEach(list -> list.removeIf(s -> s.connection() == closed));
+        }
+    }
+
+    /**
+     * Traite une trame ; false pour fermer la connexion
+     */
+    private boolean process(Connection connection, Frame frame) {
+        Map<String, String> headers = frame.headers();
+        switch (frame.command()) {
+            case "CONNECT", "STOMP" -> {
+                connectHeaders.add(Map.copyOf(headers));
+                connection.write(encode("CONNECTED", Map.of("version", "1.2", "heart-beat", "0,0"), new byte[0]));
+            }
+            case "SUBSCRIBE" -> subscriptions
+                    .computeIfAbsent(headers.get("destination"), d -> new CopyOnWriteArrayList<>())
+                    .add(new Subscription(connection, headers.get("id")));
+            case "UNSUBSCRIBE" -> subscriptions.values()
+                    .forEach(list -> list.removeIf(s -> s.connection() == connection && s.id().equals(headers.get("id"))));
+            case "SEND" -> fanOut(headers, frame.body());
+            case "DISCONNECT" -> {
+                receipt(connection, headers);
+                return false;
+            }
+            default -> {
+                // Trame ignorée
+            }
+        }
+        receipt(connection, headers);
+        return true;
+    }
+
+    private void fanOut(Map<String, String> headers, byte[] body) {
+        String destination = headers.get("destination");
+        sendsByDestination.computeIfAbsent(destination, d -> new AtomicInteger()).incrementAndGet();
+        for (Subscription subscription : subscriptions.getOrDefault(destination, List.of())) {
+            Map<String, String> messageHeaders = new LinkedHashMap<>();
+            messageHeaders.put("subscription", subscription.id());
+            messageHeaders.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+            messageHeaders.put("destination", destination);
+            // En-têtes de l'émetteur, dont ceux du relais (destination d'origine d'un message utilisateur...)
+            headers.forEach((name, value) -> {
+                if (!"content-length".equals(name) && !"receipt".equals(name)) {
+                    messageHeaders.putIfAbsent(name, value);
+                }
+            });
+            delivered.incrementAndGet();
+            subscription.connection().write(encode("MESSAGE", messageHeaders, body));
+        }
+    }
+
+    private static void receipt(Connection connection, Map<String, String> headers) {
+        String receipt = headers.get("receipt");
+        if (receipt != null) {
+            connection.write(encode("RECEIPT", Map.of("receipt-id", receipt), new byte[0]));
+        }
+    }
+
+    private static byte[] encode(String command, Map<String, String> headers, byte[] body) {
+        StringBuilder head = new StringBuilder(command).append('\n');
+        headers.forEach((name, value) -> head.append(name).append(':').append(value).append('\n'));
+        head.append("content-length:").append(body.length).append("\n\n");
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(head.length() + body.length + 1);
+        frame.writeBytes(head.toString().getBytes(StandardCharsets.UTF_8));
+        frame.writeBytes(body);
+        frame.write(0);
+        return frame.toByteArray();
+    }
+
+    /**
+     * Lit une trame ; les lignes vides entre deux trames (battements de cœur) sont ignorées
+     */
+    private static Frame readFrame(InputStream in) throws IOException {
+        String command;
+        do {
+            command = readLine(in);
+            if (command == null) {
+                return null;
+            }
+        } while (command.isEmpty());
+
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            // La première occurrence d'un en-tête répété fait foi
+            headers.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+        }
+        if (line == null) {
+            return null;
+        }
+
+        byte[] body;
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            body = in.readNBytes(Integer.parseInt(contentLength));
+            if (in.read() != 0) {
+                throw new IOException("Trame STOMP mal terminée");
+            }
+        } else {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) > 0) {
+                buffer.write(b);
+            }
+            if (b < 0) {
+                return null;
+            }
+            body = buffer.toByteArray();
+        }
+        return new Frame(command, headers, body);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
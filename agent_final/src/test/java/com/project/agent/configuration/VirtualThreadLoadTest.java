@@ -0,0 +1,265 @@
+package com.project.agent.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.project.agent.model.Agency;
+import com.project.agent.repository.AgencyRepository;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Comparaison de l'application en threads plateforme (200 threads, valeur par défaut de
+ * server.tomcat.threads.max) et en threads virtuels (spring.threads.virtual.enabled),
+ * sous une rafale de requêtes sur GET /api/agencies/{id}.
+ *
+ * Chaque mode démarre le contexte complet sur un port aléatoire, avec le pool HikariCP par
+ * défaut (10 connexions) vers une base H2 en mode PostgreSQL servie en TCP : comme avec
+ * PostgreSQL, chaque requête SQL attend une réponse réseau. Mesure la latence p50/p99, le
+ * nombre maximal de requêtes en cours dans l'application, les threads plateforme du
+ * connecteur Tomcat et le pic de heap. Les deux modes s'exécutent dans la même JVM, donc avec la même heap
+ * maximale. Test long, lancé à la demande :
+ *
+ *   ./mvnw test -Dtest=VirtualThreadLoadTest -DloadTest=true -DargLine=-Xmx512m
+ *
+ * Les requêtes SQL restent limitées par le pool : en threads virtuels, l'attente se fait
+ * sur une connexion plutôt que dans la file d'acceptation de Tomcat.
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@TestPropertySource(properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:tcp://localhost:" + VirtualThreadLoadTest.H2_PORT
+                + "/mem:load;MODE=PostgreSQL;NON_KEYWORDS=DAY,VALUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.mail.host=localhost",
+        "app.mail.outbox.enabled=false",
+        "app.reservation-lock.store=memory",
+        "app.availability.cache.enabled=false",
+        "server.tomcat.max-connections=4000",
+        "server.tomcat.accept-count=2000",
+        "logging.level.com.project.agent=WARN",
+        "logging.level.com.project.agent.configuration.VirtualThreadLoadTest=INFO",
+        "logging.level.org.springframework.messaging=WARN",
+        "logging.level.org.springframework.web.socket=WARN" })
+class VirtualThreadLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    private static final int REQUESTS = 2000;
+    private static final int WARMUP_REQUESTS = 200;
+    private static final int PLATFORM_MAX_THREADS = 200;
+    static final int H2_PORT = 19092;
+
+    private static final Server H2_SERVER = startH2();
+
+    // Résultat de chaque mode, pour la comparaison faite par le second
+    private static final Map<String, Result> RESULTS = new ConcurrentHashMap<>();
+
+    private record Result(String mode, long p50Ms, long p99Ms, int maxConcurrent, long tomcatPlatformThreads,
+            long peakHeapMb) {
+    }
+
+    private static Server startH2() {
+        try {
+            return Server.createTcpServer("-tcpPort", String.valueOf(H2_PORT), "-ifNotExists").start();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Serveur H2 indisponible", e);
+        }
+    }
+
+    @AfterAll
+    static void stopH2() {
+        H2_SERVER.stop();
+    }
+
+    /**
+     * Compte les requêtes en cours de traitement dans l'application
+     */
+    @TestConfiguration
+    static class InFlightConfig {
+
+        static final AtomicInteger CONCURRENT = new AtomicInteger();
+        static final AtomicInteger MAX_CONCURRENT = new AtomicInteger();
+
+        @Bean
+        FilterRegistrationBean<OncePerRequestFilter> inFlightFilter() {
+            FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(
+                    new OncePerRequestFilter() {
+                        @Override
+                        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                FilterChain chain) throws ServletException, IOException {
+                            MAX_CONCURRENT.accumulateAndGet(CONCURRENT.incrementAndGet(), Math::max);
+                            try {
+                                chain.doFilter(request, response);
+                            } finally {
+                                CONCURRENT.decrementAndGet();
+                            }
+                        }
+                    });
+            registration.setOrder(Integer.MIN_VALUE);
+            return registration;
+        }
+    }
+
+    abstract static class LoadScenario {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private AgencyRepository agencyRepository;
+
+        Result run(String mode) throws Exception {
+            Agency agency = new Agency();
+            agency.setName("Agence " + mode);
+            agency.setAddress("1 rue de la Paix");
+            agency.setCity("Paris");
+            agency.setPhoneNumber("0102030405");
+            Long agencyId = agencyRepository.save(agency).getId();
+
+            URI uri = URI.create("http://127.0.0.1:" + port + "/api/agencies/" + agencyId);
+
+            // Préchauffage : chargement des classes et compilation hors mesure
+            load(uri, WARMUP_REQUESTS, mode);
+            return load(uri, REQUESTS, mode);
+        }
+
+        private Result load(URI uri, int requests, String mode) throws Exception {
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            InFlightConfig.MAX_CONCURRENT.set(0);
+
+            long[] latencies = new long[requests];
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients).build()) {
+                CountDownLatch startGate = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    int index = i;
+                    futures.add(clients.submit(() -> {
+                        startGate.await();
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        latencies[index] = (System.nanoTime() - start) / 1_000_000;
+                        assertEquals(200, response.statusCode(), response.body());
+                        return null;
+                    }));
+                }
+                startGate.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            // Threads de traitement du connecteur encore vivants (seuls les threads plateforme sont listés)
+            long tomcatPlatformThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("http-nio-") && thread.getName().contains("-exec-"))
+                    .count();
+
+            long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            Arrays.sort(latencies);
+            return new Result(mode, latencies[requests / 2], latencies[(int) Math.ceil(requests * 0.99) - 1],
+                    InFlightConfig.MAX_CONCURRENT.get(), tomcatPlatformThreads, peakHeap / (1024 * 1024));
+        }
+    }
+
+    @Nested
+    @Order(1)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=false" })
+    @Import(InFlightConfig.class)
+    @DirtiesContext
+    @DisplayName("Threads plateforme")
+    class PlatformThreadsTests extends LoadScenario {
+
+        @Test
+        @DisplayName("Au plus server.tomcat.threads.max requetes traitees simultanement")
+        void platformThreads_BoundedByTomcatPool() throws Exception {
+            Result platform = run("plateforme");
+            RESULTS.put(platform.mode(), platform);
+            logger.info("{}", platform);
+
+            assertTrue(platform.maxConcurrent() <= PLATFORM_MAX_THREADS, platform.toString());
+            assertTrue(platform.tomcatPlatformThreads() > 0, platform.toString());
+        }
+    }
+
+    @Nested
+    @Order(2)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=true" })
+    @Import(InFlightConfig.class)
+    @DirtiesContext
+    @DisplayName("Threads virtuels")
+    class VirtualThreadsTests extends LoadScenario {
+
+        @Test
+        @DisplayName("Plus de requetes en cours que le pool de Tomcat, sans thread plateforme par requete")
+        void virtualThreads_HigherConcurrencyWithoutPlatformThreads() throws Exception {
+            Result virtual = run("virtuel");
+            logger.info("{}", virtual);
+
+            assertTrue(virtual.maxConcurrent() > PLATFORM_MAX_THREADS,
+                    "Les threads virtuels doivent depasser la limite du pool de Tomcat : " + virtual);
+            assertEquals(0, virtual.tomcatPlatformThreads(), "Aucune requete ne doit occuper un thread plateforme");
+
+            Result platform = RESULTS.get("plateforme");
+            if (platform != null) {
+                logger.info("p99 virtuel {} ms, plateforme {} ms ; heap virtuel {} Mo, plateforme {} Mo",
+                        virtual.p99Ms(), platform.p99Ms(), virtual.peakHeapMb(), platform.peakHeapMb());
+            }
+        }
+    }
+}
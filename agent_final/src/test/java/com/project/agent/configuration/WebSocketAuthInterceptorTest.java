@@ -0,0 +1,111 @@
+package com.project.agent.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.security.Principal;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.project.agent.service.IdentityCache;
+
+class WebSocketAuthInterceptorTest {
+
+    private static final String AGENT = "agent@test.com";
+    private static final String ADMIN = "admin@test.com";
+
+    private WebSocketAuthInterceptor interceptor;
+    private IdentityCache identityCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        interceptor = new WebSocketAuthInterceptor();
+        identityCache = mock(IdentityCache.class);
+        setField(interceptor, "identityCache", identityCache);
+        when(identityCache.canAccessAgency(AGENT, 1L)).thenReturn(true);
+        when(identityCache.isAdmin(ADMIN)).thenReturn(true);
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private Message<?> subscribe(String destination, String user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        if (user != null) {
+            Principal principal = new UsernamePasswordAuthenticationToken(user, null, List.of());
+            accessor.setUser(principal);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // =========================================================================
+    // Tests pour les abonnements
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les abonnements")
+    class SubscribeTests {
+
+        @Test
+        @DisplayName("Un agent s'abonne aux topics de sa propre agence uniquement")
+        void subscribe_AgencyTopic_OnlyOwnAgency() {
+            assertNotNull(interceptor.preSend(subscribe("/topic/agency/1/reservations", AGENT), null));
+            assertNull(interceptor.preSend(subscribe("/topic/agency/2/reservations", AGENT), null));
+            assertNull(interceptor.preSend(subscribe("/topic/agency/1/presence", null), null));
+        }
+
+        @Test
+        @DisplayName("Les topics publics restent ouverts aux sessions anonymes")
+        void subscribe_PublicTopic_Allowed() {
+            assertNotNull(interceptor.preSend(subscribe("/topic/availability/1", null), null));
+        }
+
+        @Test
+        @DisplayName("Les motifs sont refuses, meme pour un agent autorise")
+        void subscribe_Wildcards_Refused() {
+            for (String destination : new String[] { "/topic/**", "/topic/*/1/reservations",
+                    "/topic/agency/*/reservations", "/topic/agency/{id}/reservations", "/topic/agency/1/>",
+                    "/topic/agency/1/#", "/topic/agency/?/presence" }) {
+                assertNull(interceptor.preSend(subscribe(destination, AGENT), null), destination);
+            }
+            verify(identityCache, never()).canAccessAgency(anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Les anciens topics globaux de reservations sont reserves aux administrateurs")
+        void subscribe_LegacyReservationTopics_AdminOnly() {
+            for (String destination : new String[] { "/topic/reservations", "/topic/reservation-updated" }) {
+                assertNull(interceptor.preSend(subscribe(destination, null), null), destination);
+                assertNull(interceptor.preSend(subscribe(destination, AGENT), null), destination);
+                assertNotNull(interceptor.preSend(subscribe(destination, ADMIN), null), destination);
+            }
+        }
+
+        @Test
+        @DisplayName("Une destination d'agence non normalisee est tout de meme controlee")
+        void subscribe_UnnormalizedAgencyTopic_Checked() {
+            assertNull(interceptor.preSend(subscribe("/topic//agency/2/reservations", AGENT), null));
+            assertNull(interceptor.preSend(subscribe("/topic/agency/abc/reservations", AGENT), null));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.project.agent.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.user.UserRegistryMessageHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.project.agent.model.Users;
+import com.project.agent.model.Users.Role;
+import com.project.agent.security.JwtTokenProvider;
+import com.project.agent.service.IdentityCache;
+import com.project.agent.service.UserService;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * WebSocketConfig en mode app.websocket.broker.mode=relay : deux instances de l'application
+ * (contexte Spring réel, serveur web sur un port aléatoire) partagent un broker STOMP embarqué.
+ * Un client STOMP se connecte en WebSocket à la première instance ; la seconde lui envoie des
+ * messages sur une destination /user/..., résolue soit par le registre des utilisateurs diffusé
+ * entre instances, soit par la diffusion des destinations non résolues.
+ *
+ * Seuls WebSocketConfig, WebSocketAuthInterceptor et le serveur web sont chargés ; l'authentification
+ * par jeton est simulée.
+ */
+class WebSocketConfigRelayTest {
+
+    private static final String AGENT = "agent@test.com";
+    private static final String AGENT_TOKEN = "agent-token";
+    private static final String HEARTBEAT_QUEUE = "/queue/lock-heartbeat";
+    private static final String USER_REGISTRY_TOPIC = "/topic/simp-user-registry";
+    private static final String UNRESOLVED_USER_TOPIC = "/topic/unresolved-user-destination";
+    private static final String VIRTUAL_HOST = "agents";
+    private static final long TIMEOUT_MS = 30000;
+
+    // Diffusion du registre toutes les 250 ms, ou jamais pendant la durée d'un test
+    private static final long FAST_REGISTRY_EXPIRATION_MS = 500;
+    private static final long SLOW_REGISTRY_EXPIRATION_MS = 600000;
+
+    private FakeStompBroker broker;
+    private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+    private WebSocketStompClient stompClient;
+
+    /**
+     * Instance minimale : serveur web, configuration WebSocket et intercepteur d'authentification
+     */
+    @Configuration
+    @ImportAutoConfiguration({ PropertyPlaceholderAutoConfiguration.class,
+            ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class })
+    @Import({ WebSocketConfig.class, WebSocketAuthInterceptor.class })
+    static class RelayInstance {
+
+        // Fréquence de diffusion du registre des utilisateurs (moitié de la période d'expiration)
+        @Bean
+        static BeanPostProcessor userRegistryExpiration(
+                @Value("${test.user-registry.expiration-ms}") long expirationMs) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                    if (bean instanceof UserRegistryMessageHandler handler) {
+                        handler.setRegistryExpirationPeriod(expirationMs);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new FakeStompBroker();
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new StringMessageConverter());
+        stompClient.setDefaultHeartbeat(new long[] { 0, 0 });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        instances.forEach(ConfigurableApplicationContext::close);
+        broker.close();
+    }
+
+    /**
+     * Dépendances de l'intercepteur, enregistrées telles quelles (sans injection dans les mocks)
+     */
+    private static void registerMocks(ConfigurableApplicationContext context) {
+        Claims claims = mock(Claims.class);
+        when(claims.getSubject()).thenReturn(AGENT);
+        Users agent = new Users();
+        agent.setEmail(AGENT);
+        agent.setRole(Role.AGENT);
+
+        JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+        when(tokenProvider.parseToken(AGENT_TOKEN)).thenReturn(Optional.of(claims));
+        when(tokenProvider.getUserFromClaims(claims)).thenReturn(agent);
+
+        context.getBeanFactory().registerSingleton("jwtTokenProvider", tokenProvider);
+        context.getBeanFactory().registerSingleton("userService", mock(UserService.class));
+        context.getBeanFactory().registerSingleton("identityCache", mock(IdentityCache.class));
+    }
+
+    private ConfigurableApplicationContext startInstance(long registryExpirationMs) throws InterruptedException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RelayInstance.class)
+                .initializers(WebSocketConfigRelayTest::registerMocks)
+                .properties(
+                        "server.port=0",
+                        "app.websocket.broker.mode=relay",
+                        "app.websocket.broker.relay.host=127.0.0.1",
+                        "app.websocket.broker.relay.port=" + broker.getPort(),
+                        "app.websocket.broker.relay.virtual-host=" + VIRTUAL_HOST,
+                        "app.websocket.broker.relay.client-login=client",
+                        "app.websocket.broker.relay.client-passcode=client-secret",
+                        "app.websocket.broker.relay.system-login=system",
+                        "app.websocket.broker.relay.system-passcode=system-secret",
+                        "test.user-registry.expiration-ms=" + registryExpirationMs)
+                .run();
+        instances.add(context);
+        StompBrokerRelayMessageHandler relay = context.getBean(StompBrokerRelayMessageHandler.class);
+        await("connexion systeme", relay::isBrokerAvailable);
+        return context;
+    }
+
+    private StompSession connectAgent(ConfigurableApplicationContext instance, BlockingQueue<String> received)
+            throws Exception {
+        String url = "ws://127.0.0.1:" + instance.getEnvironment().getProperty("local.server.port") + "/websocket";
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + AGENT_TOKEN);
+        StompSession session = stompClient.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                }).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        session.subscribe("/user" + HEARTBEAT_QUEUE, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((String) payload);
+            }
+        });
+        // Abonnement transmis au broker sous la destination propre à la session
+        await("abonnement de la session", () -> broker.getSubscriptionCount(HEARTBEAT_QUEUE + "-user") == 1);
+        return session;
+    }
+
+    private void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Delai depasse en attendant: " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // =========================================================================
+    // Tests de connexion au broker
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests de connexion au broker")
+    class ConnectionTests {
+
+        @Test
+        @DisplayName("Connexion systeme et connexions clientes avec leurs identifiants et l'hote virtuel")
+        void relay_UsesCredentialsAndVirtualHost() throws Exception {
+            ConfigurableApplicationContext instance = startInstance(SLOW_REGISTRY_EXPIRATION_MS);
+            connectAgent(instance, new LinkedBlockingQueue<>());
+
+            List<Map<String, String>> connects = broker.getConnectHeaders();
+            assertEquals(2, connects.size(), "Connexion systeme puis connexion de la session cliente");
+            assertEquals("system", connects.get(0).get("login"));
+            assertEquals("system-secret", connects.get(0).get("passcode"));
+            assertEquals("client", connects.get(1).get("login"));
+            assertEquals("client-secret", connects.get(1).get("passcode"));
+            connects.forEach(headers -> assertEquals(VIRTUAL_HOST, headers.get("host")));
+        }
+
+        @Test
+        @DisplayName("Chaque instance s'abonne aux topics de diffusion des utilisateurs")
+        void relay_SubscribesToUserBroadcastTopics() throws Exception {
+            startInstance(SLOW_REGISTRY_EXPIRATION_MS);
+            startInstance(SLOW_REGISTRY_EXPIRATION_MS);
+
+            await("abonnements systeme", () -> broker.getSubscriptionCount(USER_REGISTRY_TOPIC) == 2
+                    && broker.getSubscriptionCount(UNRESOLVED_USER_TOPIC) == 2);
+        }
+    }
+
+    // =========================================================================
+    // Tests des destinations utilisateur entre instances
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests des destinations utilisateur entre instances")
+    class UserDestinationTests {
+
+        @Test
+        @DisplayName("Un utilisateur connu par la diffusion du registre est joint directement")
+        void sendToUser_RegistryBroadcast_ResolvedOnSendingInstance() throws Exception {
+            ConfigurableApplicationContext connected = startInstance(FAST_REGISTRY_EXPIRATION_MS);
+            ConfigurableApplicationContext sending = startInstance(FAST_REGISTRY_EXPIRATION_MS);
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            connectAgent(connected, received);
+
+            SimpUserRegistry sendingRegistry = sending.getBean(SimpUserRegistry.class);
+            await("utilisateur dans le registre de l'autre instance", () -> sendingRegistry.getUser(AGENT) != null);
+            assertTrue(broker.getSendCount(USER_REGISTRY_TOPIC) > 0);
+
+            sending.getBean(SimpMessagingTemplate.class).convertAndSendToUser(AGENT, HEARTBEAT_QUEUE, "renouveles");
+
+            assertEquals("renouveles", received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(0, broker.getSendCount(UNRESOLVED_USER_TOPIC), "Destination resolue sans diffusion");
+        }
+
+        @Test
+        @DisplayName("Un utilisateur inconnu de l'instance emettrice est joint par la diffusion des destinations non resolues")
+        void sendToUser_UnknownUser_BroadcastToOtherInstances() throws Exception {
+            ConfigurableApplicationContext connected = startInstance(SLOW_REGISTRY_EXPIRATION_MS);
+            ConfigurableApplicationContext sending = startInstance(SLOW_REGISTRY_EXPIRATION_MS);
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            connectAgent(connected, received);
+
+            assertNull(sending.getBean(SimpUserRegistry.class).getUser(AGENT));
+
+            sending.getBean(SimpMessagingTemplate.class).convertAndSendToUser(AGENT, HEARTBEAT_QUEUE, "renouveles");
+
+            assertEquals("renouveles", received.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(1, broker.getSendCount(UNRESOLVED_USER_TOPIC));
+        }
+    }
+}
@@ -36,6 +36,8 @@ import com.project.agent.security.JwtTokenProvider;
 import com.project.agent.service.PasswordResetService;
 import com.project.agent.service.UserService;
 
+import io.jsonwebtoken.Jwts;
+
 @WebMvcTest(
     controllers = AuthController.class,
     excludeFilters = @ComponentScan.Filter(
@@ -222,8 +224,8 @@ class AuthControllerTest {
         @DisplayName("Verification d'authentification avec un token valide retourne les informations utilisateur")
         void checkAuth_ValidToken_ReturnsUserInfo() throws Exception {
             // Arrange
-            when(tokenProvider.validateToken("valid-token")).thenReturn(true);
-            when(tokenProvider.getEmailFromJWT("valid-token")).thenReturn("test@example.com");
+            when(tokenProvider.parseToken("valid-token"))
+                    .thenReturn(Optional.of(Jwts.claims().setSubject("test@example.com")));
             when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
 
             // Act & Assert
@@ -248,7 +250,7 @@ class AuthControllerTest {
         @DisplayName("Verification d'authentification avec un token invalide retourne non authentifie")
         void checkAuth_InvalidToken_ReturnsNotAuthenticated() throws Exception {
             // Arrange
-            when(tokenProvider.validateToken("invalid-token")).thenReturn(false);
+            when(tokenProvider.parseToken("invalid-token")).thenReturn(Optional.empty());
 
             // Act & Assert
             mockMvc.perform(get("/auth/check-auth")
@@ -0,0 +1,124 @@
+package com.project.agent.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class SlotCalendarTest {
+
+    private static final int GRANULARITY = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+
+    // =========================================================================
+    // Tests pour les operations sur le masque
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les operations sur le masque")
+    class MaskOperationTests {
+
+        @Test
+        @DisplayName("Ajout puis retrait d'un creneau")
+        void addAndRemove_RoundTrip() {
+            long mask = SlotCalendar.add(SlotCalendar.EMPTY, LocalTime.of(10, 0), GRANULARITY);
+
+            assertTrue(SlotCalendar.contains(mask, LocalTime.of(10, 0), GRANULARITY),
+                    "Le creneau ajoute doit etre present");
+            assertFalse(SlotCalendar.contains(mask, LocalTime.of(10, 30), GRANULARITY),
+                    "Le creneau suivant ne doit pas etre present");
+
+            mask = SlotCalendar.remove(mask, LocalTime.of(10, 0), GRANULARITY);
+            assertEquals(SlotCalendar.EMPTY, mask, "Le masque doit etre vide apres retrait");
+        }
+
+        @Test
+        @DisplayName("Une heure non alignee appartient au creneau qui la contient")
+        void indexOf_UnalignedTime_FloorsToSlot() {
+            assertEquals(SlotCalendar.indexOf(LocalTime.of(10, 0), GRANULARITY),
+                    SlotCalendar.indexOf(LocalTime.of(10, 15), GRANULARITY),
+                    "10:15 doit tomber dans le creneau de 10:00");
+        }
+
+        @Test
+        @DisplayName("Le dernier creneau de la journee utilise le bit de poids fort")
+        void lastSlot_UsesHighBit() {
+            long mask = SlotCalendar.add(SlotCalendar.EMPTY, LocalTime.of(23, 30), GRANULARITY);
+
+            assertEquals(47, SlotCalendar.nextSlot(mask, 0), "23:30 doit etre le creneau 47");
+            assertEquals(LocalTime.of(23, 30), SlotCalendar.timeOf(47, GRANULARITY));
+        }
+
+        @Test
+        @DisplayName("upTo inclut le creneau qui commence exactement a l'heure donnee")
+        void upTo_IncludesCurrentSlot() {
+            long mask = SlotCalendar.fromTimes(
+                    Arrays.asList(LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0)), GRANULARITY);
+
+            long expired = mask & SlotCalendar.upTo(LocalTime.of(10, 0), GRANULARITY);
+
+            assertEquals(Arrays.asList(LocalTime.of(9, 0), LocalTime.of(10, 0)),
+                    SlotCalendar.toTimes(expired, GRANULARITY));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour les conversions
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les conversions")
+    class ConversionTests {
+
+        @Test
+        @DisplayName("toTimes retourne les creneaux tries")
+        void toTimes_ReturnsSortedTimes() {
+            List<LocalTime> times = Arrays.asList(LocalTime.of(14, 0), LocalTime.of(9, 0), LocalTime.of(11, 30));
+
+            List<LocalTime> result = SlotCalendar.toTimes(SlotCalendar.fromTimes(times, GRANULARITY), GRANULARITY);
+
+            assertEquals(Arrays.asList(LocalTime.of(9, 0), LocalTime.of(11, 30), LocalTime.of(14, 0)), result);
+        }
+
+        @Test
+        @DisplayName("parse lit l'ancien format texte")
+        void parse_LegacyCsv() {
+            long mask = SlotCalendar.parse("09:00, 10:00,,11:00", GRANULARITY);
+
+            assertEquals(3, SlotCalendar.count(mask));
+            assertTrue(SlotCalendar.contains(mask, LocalTime.of(10, 0), GRANULARITY));
+        }
+
+        @Test
+        @DisplayName("parse retourne un masque vide pour une chaine vide ou nulle")
+        void parse_EmptyOrNull_ReturnsEmpty() {
+            assertEquals(SlotCalendar.EMPTY, SlotCalendar.parse("", GRANULARITY));
+            assertEquals(SlotCalendar.EMPTY, SlotCalendar.parse(null, GRANULARITY));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour la granularite
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour la granularite")
+    class GranularityTests {
+
+        @Test
+        @DisplayName("Les granularites qui tiennent dans un long sont acceptees")
+        void checkGranularity_Valid() {
+            assertDoesNotThrow(() -> SlotCalendar.checkGranularity(30));
+            assertDoesNotThrow(() -> SlotCalendar.checkGranularity(60));
+        }
+
+        @Test
+        @DisplayName("Une granularite trop fine ou qui ne divise pas la journee est refusee")
+        void checkGranularity_Invalid() {
+            assertThrows(IllegalArgumentException.class, () -> SlotCalendar.checkGranularity(15));
+            assertThrows(IllegalArgumentException.class, () -> SlotCalendar.checkGranularity(35));
+            assertThrows(IllegalArgumentException.class, () -> SlotCalendar.checkGranularity(0));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.project.agent.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.model.ClusterNode;
+
+/**
+ * Battements de cœur des instances sur une base PostgreSQL réelle : l'INSERT ... ON CONFLICT
+ * et les fenêtres calculées avec l'horloge de la base s'exécutent réellement.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import(EmbeddedPostgresConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClusterNodeRepositoryTest {
+
+    private static final long TTL_SECONDS = 30;
+
+    @Autowired
+    private ClusterNodeRepository clusterNodeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        clusterNodeRepository.deleteAll();
+    }
+
+    private void lastSeen(String nodeId, String ago) {
+        jdbcTemplate.update("UPDATE cluster_node SET last_heartbeat = LOCALTIMESTAMP - ?::interval WHERE node_id = ?",
+                ago, nodeId);
+    }
+
+    @Test
+    @DisplayName("Un nouveau battement rafraichit l'instance sans changer sa date de demarrage")
+    void heartbeat_Existing_RefreshesOnly() {
+        clusterNodeRepository.heartbeat("node-a", "host-a");
+        lastSeen("node-a", "1 minute");
+        LocalDateTime startedAt = clusterNodeRepository.findById("node-a").orElseThrow().getStartedAt();
+
+        clusterNodeRepository.heartbeat("node-a", "host-a");
+
+        ClusterNode node = clusterNodeRepository.findById("node-a").orElseThrow();
+        assertEquals(1, clusterNodeRepository.count());
+        assertEquals(startedAt, node.getStartedAt());
+        assertFalse(node.getLastHeartbeat().isBefore(startedAt));
+        assertEquals(List.of("node-a"), clusterNodeRepository.findLiveNodeIds(TTL_SECONDS));
+    }
+
+    @Test
+    @DisplayName("Seules les instances vues pendant la duree de vie sont vivantes, triees")
+    void findLiveNodeIds_WithinTtl_Sorted() {
+        clusterNodeRepository.heartbeat("node-c", "host-c");
+        clusterNodeRepository.heartbeat("node-a", "host-a");
+        clusterNodeRepository.heartbeat("node-b", "host-b");
+        lastSeen("node-b", "5 minutes");
+
+        assertEquals(List.of("node-a", "node-c"), clusterNodeRepository.findLiveNodeIds(TTL_SECONDS));
+    }
+
+    @Test
+    @DisplayName("Seules les instances arretees depuis longtemps sont supprimees")
+    void deleteStale_OnlyOldNodes() {
+        clusterNodeRepository.heartbeat("node-a", "host-a");
+        clusterNodeRepository.heartbeat("node-b", "host-b");
+        clusterNodeRepository.heartbeat("node-c", "host-c");
+        lastSeen("node-b", "5 minutes");
+        lastSeen("node-c", "2 days");
+
+        assertEquals(1, clusterNodeRepository.deleteStale(3600));
+        assertEquals(List.of("node-a", "node-b"),
+                clusterNodeRepository.findAll().stream().map(ClusterNode::getNodeId).sorted().toList());
+    }
+}
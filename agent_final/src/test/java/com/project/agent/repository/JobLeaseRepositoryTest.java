@@ -0,0 +1,124 @@
+package com.project.agent.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.model.JobLease;
+
+/**
+ * Baux des tâches planifiées sur une base PostgreSQL réelle : l'INSERT ... ON CONFLICT DO UPDATE
+ * ... WHERE de tryAcquire et les intervalles calculés par la base s'exécutent réellement.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import(EmbeddedPostgresConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLeaseRepositoryTest {
+
+    private static final String JOB = "sendAppointmentReminders";
+    private static final int INSTANCES = 20;
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jobLeaseRepository.deleteAll();
+    }
+
+    private JobLease lease() {
+        return jobLeaseRepository.findById(JOB).orElseThrow();
+    }
+
+    @Test
+    @DisplayName("Instances concurrentes : une seule obtient le bail")
+    void tryAcquire_ConcurrentInstances_SingleOwner() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(INSTANCES);
+        CountDownLatch start = new CountDownLatch(1);
+        int acquired = 0;
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < INSTANCES; i++) {
+                String owner = "node-" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return jobLeaseRepository.tryAcquire(JOB, owner, 60);
+                }));
+            }
+
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                acquired += future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, acquired, "Une seule instance doit obtenir le bail");
+        assertEquals(1, jobLeaseRepository.count());
+    }
+
+    @Test
+    @DisplayName("Un bail detenu est refuse, un bail echu est repris par une autre instance")
+    void tryAcquire_HeldThenExpired() {
+        assertEquals(1, jobLeaseRepository.tryAcquire(JOB, "node-a", 60));
+        assertEquals(0, jobLeaseRepository.tryAcquire(JOB, "node-b", 60));
+        assertEquals("node-a", lease().getOwner());
+
+        jdbcTemplate.update("UPDATE job_lease SET locked_until = LOCALTIMESTAMP - interval '1 second' WHERE name = ?", JOB);
+
+        assertEquals(1, jobLeaseRepository.tryAcquire(JOB, "node-b", 60));
+        assertEquals("node-b", lease().getOwner());
+    }
+
+    @Test
+    @DisplayName("Le bail rendu reste detenu jusqu'a la duree minimale puis se libere")
+    void release_KeepsLockAtLeast() {
+        jobLeaseRepository.tryAcquire(JOB, "node-a", 60);
+
+        assertEquals(1, jobLeaseRepository.release(JOB, "node-a", 30));
+        JobLease held = lease();
+        assertEquals("node-a", held.getLastRunBy());
+        assertNotNull(held.getLastRunAt());
+        assertEquals(held.getLockedAt().plusSeconds(30), held.getLockedUntil());
+        assertEquals(0, jobLeaseRepository.tryAcquire(JOB, "node-b", 60), "Duree minimale non ecoulee");
+
+        jobLeaseRepository.tryAcquire(JOB, "node-a", 60);
+        jdbcTemplate.update("UPDATE job_lease SET locked_at = LOCALTIMESTAMP - interval '1 minute' WHERE name = ?", JOB);
+        jobLeaseRepository.release(JOB, "node-a", 30);
+
+        assertEquals(1, jobLeaseRepository.tryAcquire(JOB, "node-b", 60), "Duree minimale ecoulee : bail libre");
+    }
+
+    @Test
+    @DisplayName("Seul le detenteur du bail peut le rendre")
+    void release_OtherOwner_Ignored() {
+        jobLeaseRepository.tryAcquire(JOB, "node-a", 60);
+
+        assertEquals(0, jobLeaseRepository.release(JOB, "node-b", 0));
+        assertEquals(0, jobLeaseRepository.tryAcquire(JOB, "node-b", 60));
+        assertNull(lease().getLastRunAt());
+    }
+}
@@ -0,0 +1,111 @@
+package com.project.agent.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.project.agent.model.Agency;
+import com.project.agent.model.Reservation;
+import com.project.agent.model.Users;
+
+import jakarta.persistence.OptimisticLockException;
+
+/**
+ * Mises à jour groupées des rappels sur une base H2 : elles incrémentent la version comme
+ * une modification JPA.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:reservation;MODE=PostgreSQL;NON_KEYWORDS=DAY,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+class ReservationRepositoryTest {
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Long reservationId;
+
+    @BeforeEach
+    void setUp() {
+        Agency agency = new Agency();
+        agency.setName("Agence");
+        agency.setAddress("1 rue");
+        agency.setCity("Ville");
+        agency.setPhoneNumber("0102030405");
+        entityManager.persist(agency);
+
+        Users user = new Users();
+        user.setUsername("client");
+        user.setEmail("client@test.com");
+        user.setPassword("motdepasse");
+        user.setRole(Users.Role.USER);
+        entityManager.persist(user);
+
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setAgency(agency);
+        reservation.setService("Service");
+        reservation.setStatus(Reservation.Status.CONFIRMED);
+        reservation.setStartDateTime(LocalDateTime.now().plusDays(1));
+        reservationId = entityManager.persistAndFlush(reservation).getId();
+        entityManager.clear();
+    }
+
+    private Reservation reload() {
+        entityManager.clear();
+        return entityManager.find(Reservation.class, reservationId);
+    }
+
+    // =========================================================================
+    // Tests pour markReminderSent et markShortReminderSent
+    // =========================================================================
+    @Test
+    @DisplayName("markReminderSent incremente la version")
+    void markReminderSent_IncrementsVersion() {
+        long version = reload().getVersion();
+
+        assertEquals(1, reservationRepository.markReminderSent(List.of(reservationId)));
+
+        Reservation reservation = reload();
+        assertTrue(reservation.isReminderSent());
+        assertEquals(version + 1, reservation.getVersion());
+    }
+
+    @Test
+    @DisplayName("markShortReminderSent incremente la version")
+    void markShortReminderSent_IncrementsVersion() {
+        long version = reload().getVersion();
+
+        assertEquals(1, reservationRepository.markShortReminderSent(List.of(reservationId)));
+
+        Reservation reservation = reload();
+        assertTrue(reservation.isShortReminderSent());
+        assertEquals(version + 1, reservation.getVersion());
+    }
+
+    @Test
+    @DisplayName("Une copie lue avant le marquage ne peut plus etre enregistree")
+    void markReminderSent_StaleCopy_OptimisticLockFailure() {
+        Reservation stale = reload();
+
+        reservationRepository.markReminderSent(List.of(reservationId));
+
+        stale.setStatus(Reservation.Status.CANCELED);
+        assertThrows(OptimisticLockException.class, () -> entityManager.getEntityManager().flush());
+    }
+}
@@ -0,0 +1,157 @@
+package com.project.agent.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.dto.SlotExpiryDTO;
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.service.AvailabilityCache;
+import com.project.agent.service.cluster.ClusterMembership;
+import com.project.agent.service.cluster.ClusterMembership.Shard;
+import com.project.agent.service.cluster.JobLeaseService;
+import com.project.agent.service.realtime.CoalescingPublisher;
+
+/**
+ * Expiration des créneaux passés sur une base PostgreSQL réelle : REMAINING_SLOTS_SQL et
+ * EXPIRE_SLOTS_SQL (bit_or, UPDATE ... FROM avec RETURNING, filtre MOD du shard) s'exécutent
+ * réellement. Le thread slot-expiry n'est pas démarré, le test appelle checkPassedTimeSlots.
+ *
+ * Les créneaux de minuit sont toujours atteints, ceux de fin de soirée ne le sont pas avant 23:00.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "scheduler.availability-check.enabled=false" })
+@Import({ EmbeddedPostgresConfiguration.class, AvailabilityScheduler.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AvailabilitySchedulerDatabaseTest {
+
+    private static final LocalTime MIDNIGHT = LocalTime.MIDNIGHT;
+    private static final LocalTime LATE_HOUR = LocalTime.of(23, 0);
+    private static final LocalTime LATE_HALF_HOUR = LocalTime.of(23, 30);
+
+    // Agences de l'instance (identifiant pair) et d'une autre instance (impair)
+    private static final long AGENCY_30 = 2L;
+    private static final long AGENCY_60 = 4L;
+    private static final long AGENCY_DEFAULT = 6L;
+    private static final long OTHER_AGENCY = 3L;
+
+    @Autowired
+    private AvailabilityScheduler availabilityScheduler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AvailabilityCache availabilityCache;
+
+    @MockitoBean
+    private CoalescingPublisher livePublisher;
+
+    @MockitoBean
+    private ClusterMembership clusterMembership;
+
+    @MockitoBean
+    private JobLeaseService jobLeaseService;
+
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(LocalTime.now().isBefore(LATE_HOUR), "Les creneaux de fin de soiree doivent rester a venir");
+        today = LocalDate.now();
+        when(clusterMembership.getShard()).thenReturn(new Shard(0, 2, List.of("node-a", "node-b")));
+
+        for (long agencyId : new long[] { AGENCY_30, AGENCY_60, AGENCY_DEFAULT, OTHER_AGENCY }) {
+            jdbcTemplate.update("INSERT INTO agency (id, name, address, city, phone_number) "
+                    + "VALUES (?, 'Agence', '1 rue', 'Ville', '0102030405')", agencyId);
+        }
+        insert(AGENCY_30, today, 30, slots(30, MIDNIGHT, LATE_HALF_HOUR), SlotCalendar.EMPTY);
+        insert(AGENCY_60, today, 60, slots(60, MIDNIGHT, LATE_HOUR), slots(60, LocalTime.of(12, 0)));
+        insert(AGENCY_DEFAULT, today, null, slots(SlotCalendar.DEFAULT_GRANULARITY_MINUTES, MIDNIGHT, LATE_HALF_HOUR),
+                null);
+        insert(OTHER_AGENCY, today, 60, slots(60, MIDNIGHT), SlotCalendar.EMPTY);
+        insert(AGENCY_30, today.plusDays(1), 30, slots(30, MIDNIGHT), SlotCalendar.EMPTY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE availability, agency CASCADE");
+    }
+
+    private static long slots(int granularity, LocalTime... times) {
+        return SlotCalendar.fromTimes(List.of(times), granularity);
+    }
+
+    private void insert(long agencyId, LocalDate date, Integer granularity, long available, Long booked) {
+        jdbcTemplate.update("INSERT INTO availability (agency_id, date, available_slots_mask, booked_slots_mask, "
+                + "slot_granularity, version) VALUES (?, ?, ?, ?, ?, 0)", agencyId, date, available, booked, granularity);
+    }
+
+    private Map<String, Object> row(long agencyId, LocalDate date) {
+        return jdbcTemplate.queryForMap("SELECT available_slots_mask, booked_slots_mask, slot_granularity, version "
+                + "FROM availability WHERE agency_id = ? AND date = ?", agencyId, date);
+    }
+
+    private void assertExpired(long agencyId, long available, long booked) {
+        Map<String, Object> row = row(agencyId, today);
+        assertEquals(available, row.get("available_slots_mask"), "Disponibles de l'agence " + agencyId);
+        assertEquals(booked, row.get("booked_slots_mask"), "Reserves de l'agence " + agencyId);
+        assertEquals(1L, row.get("version"), "Une seule modification pour l'agence " + agencyId);
+    }
+
+    @Test
+    @DisplayName("Les creneaux atteints sont reserves pour chaque granularite, y compris les lignes sans granularite")
+    void checkPassedTimeSlots_ReachedSlots_ExpiredPerGranularity() {
+        availabilityScheduler.checkPassedTimeSlots();
+
+        assertExpired(AGENCY_30, slots(30, LATE_HALF_HOUR), slots(30, MIDNIGHT));
+        assertExpired(AGENCY_60, slots(60, LATE_HOUR), slots(60, MIDNIGHT, LocalTime.of(12, 0)));
+        assertExpired(AGENCY_DEFAULT, slots(SlotCalendar.DEFAULT_GRANULARITY_MINUTES, LATE_HALF_HOUR),
+                slots(SlotCalendar.DEFAULT_GRANULARITY_MINUTES, MIDNIGHT));
+        assertNull(row(AGENCY_DEFAULT, today).get("slot_granularity"), "La granularite n'est pas ecrite");
+
+        assertEquals(0L, row(OTHER_AGENCY, today).get("version"), "Agence d'une autre instance");
+        assertEquals(0L, row(AGENCY_30, today.plusDays(1)).get("version"), "Journee suivante");
+    }
+
+    @Test
+    @DisplayName("Seuls les creneaux retires sont publies et invalides, une fois par agence")
+    void checkPassedTimeSlots_PublishesExpiredSlotsOnce() {
+        availabilityScheduler.checkPassedTimeSlots();
+        availabilityScheduler.checkPassedTimeSlots();
+
+        for (long agencyId : new long[] { AGENCY_30, AGENCY_60, AGENCY_DEFAULT }) {
+            ArgumentCaptor<SlotExpiryDTO> captor = ArgumentCaptor.forClass(SlotExpiryDTO.class);
+            verify(livePublisher).publish(eq("/topic/availability/" + agencyId + "/expired"), eq(today),
+                    captor.capture(), any());
+            assertEquals(List.of(MIDNIGHT), captor.getValue().getExpiredSlots());
+            verify(availabilityCache).invalidate(agencyId, today);
+        }
+        verify(livePublisher, never()).publish(eq("/topic/availability/" + OTHER_AGENCY + "/expired"), any(), any(),
+                any());
+        verify(availabilityCache, never()).invalidate(eq(OTHER_AGENCY), any());
+        assertEquals(1L, row(AGENCY_30, today).get("version"), "Le deuxieme passage ne modifie rien");
+    }
+}
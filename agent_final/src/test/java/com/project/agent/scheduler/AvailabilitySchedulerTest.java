@@ -0,0 +1,144 @@
+package com.project.agent.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.service.AvailabilityCache;
+import com.project.agent.service.cluster.ClusterMembership;
+import com.project.agent.service.cluster.ClusterMembership.Shard;
+
+class AvailabilitySchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+    private static final Duration MAX_SLEEP = Duration.ofMinutes(15);
+
+    private static long slots(int granularity, LocalTime... times) {
+        return SlotCalendar.fromTimes(List.of(times), granularity);
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // =========================================================================
+    // Tests pour nextExpiry
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour nextExpiry")
+    class NextExpiryTests {
+
+        @Test
+        @DisplayName("Reveil au debut du premier creneau restant, toutes granularites confondues")
+        void nextExpiry_EarliestSlotAcrossGranularities() {
+            LocalDateTime now = TODAY.atTime(9, 5);
+            Map<Integer, Long> remaining = new LinkedHashMap<>();
+            remaining.put(30, slots(30, LocalTime.of(9, 30), LocalTime.of(11, 0)));
+            remaining.put(15, slots(15, LocalTime.of(9, 15)));
+
+            assertEquals(TODAY.atTime(9, 15), AvailabilityScheduler.nextExpiry(remaining, now, MAX_SLEEP));
+        }
+
+        @Test
+        @DisplayName("Sans creneau proche, l'attente est bornee par maxSleep")
+        void nextExpiry_FarSlot_CappedByMaxSleep() {
+            LocalDateTime now = TODAY.atTime(9, 5);
+            Map<Integer, Long> remaining = Map.of(30, slots(30, LocalTime.of(14, 0)));
+
+            assertEquals(now.plus(MAX_SLEEP), AvailabilityScheduler.nextExpiry(remaining, now, MAX_SLEEP));
+        }
+
+        @Test
+        @DisplayName("Plus aucun creneau : reveil a minuit si elle arrive avant maxSleep")
+        void nextExpiry_NoSlotLeft_WakesAtMidnight() {
+            LocalDateTime now = TODAY.atTime(23, 55);
+
+            assertEquals(TODAY.plusDays(1).atStartOfDay(), AvailabilityScheduler.nextExpiry(Map.of(), now, MAX_SLEEP));
+        }
+
+        @Test
+        @DisplayName("Un masque vide est ignore")
+        void nextExpiry_EmptyMask_Ignored() {
+            LocalDateTime now = TODAY.atTime(10, 0);
+            Map<Integer, Long> remaining = Map.of(30, SlotCalendar.EMPTY);
+
+            assertEquals(now.plus(MAX_SLEEP), AvailabilityScheduler.nextExpiry(remaining, now, MAX_SLEEP));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour les reveils du thread slot-expiry
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les reveils du thread slot-expiry")
+    class WakeUpTests {
+
+        /**
+         * Attend la fin des passages déjà soumis au thread slot-expiry
+         */
+        private void awaitPasses(AvailabilityScheduler scheduler) throws Exception {
+            executor(scheduler).submit(() -> { }).get(5, TimeUnit.SECONDS);
+        }
+
+        private ScheduledExecutorService executor(AvailabilityScheduler scheduler) throws Exception {
+            Field field = AvailabilityScheduler.class.getDeclaredField("slotExpiryExecutor");
+            field.setAccessible(true);
+            return (ScheduledExecutorService) field.get(scheduler);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        @DisplayName("Les invalidations faites par le passage lui-meme ne relancent pas de passage")
+        void ownInvalidation_NoExtraPass() throws Exception {
+            AvailabilityCache availabilityCache = mock(AvailabilityCache.class);
+            ClusterMembership clusterMembership = mock(ClusterMembership.class);
+            when(clusterMembership.getShard()).thenReturn(new Shard(0, 1, List.of("node")));
+            AvailabilityScheduler scheduler = new AvailabilityScheduler();
+            setField(scheduler, "availabilityCache", availabilityCache);
+            setField(scheduler, "clusterMembership", clusterMembership);
+            setField(scheduler, "jdbcTemplate", mock(JdbcTemplate.class));
+
+            scheduler.startSlotExpiry();
+            try {
+                ArgumentCaptor<BiConsumer<Long, LocalDate>> listener = ArgumentCaptor.forClass(BiConsumer.class);
+                verify(availabilityCache).addChangeListener(listener.capture());
+                awaitPasses(scheduler);
+                // Un passage par lecture de la répartition des agences
+                verify(clusterMembership, times(1)).getShard();
+
+                executor(scheduler).submit(() -> listener.getValue().accept(1L, LocalDate.now())).get(5, TimeUnit.SECONDS);
+                awaitPasses(scheduler);
+                verify(clusterMembership, times(1)).getShard();
+
+                listener.getValue().accept(1L, LocalDate.now());
+                awaitPasses(scheduler);
+                verify(clusterMembership, times(2)).getShard();
+            } finally {
+                scheduler.stopSlotExpiry();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.project.agent.scheduler;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.project.agent.repository.ReservationRepository;
+import com.project.agent.service.EmailService;
+import com.project.agent.service.ReminderService;
+import com.project.agent.service.ReservationEventPublisher;
+import com.project.agent.service.cluster.JobLeaseService;
+
+@ExtendWith(MockitoExtension.class)
+class ReminderSchedulerTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private ReminderService reminderService;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    @Mock
+    private ReservationEventPublisher reservationEvents;
+
+    @InjectMocks
+    private ReminderScheduler reminderScheduler;
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // =========================================================================
+    // Tests pour les interrupteurs scheduler.*.enabled
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les interrupteurs des taches")
+    class EnabledFlagTests {
+
+        @Test
+        @DisplayName("Taches actives par defaut : chacune prend son bail")
+        void scheduledJobs_EnabledByDefault_RunUnderLease() {
+            reminderScheduler.sendAppointmentReminders();
+            reminderScheduler.sendShortReminders();
+            reminderScheduler.cancelExpiredPendingReservations();
+
+            verify(jobLeaseService).runExclusively(eq("sendAppointmentReminders"), any(), any());
+            verify(jobLeaseService).runExclusively(eq("sendShortReminders"), any(), any());
+            verify(jobLeaseService).runExclusively(eq("cancelExpiredPendingReservations"), any(), any());
+        }
+
+        @Test
+        @DisplayName("Taches desactivees : rien n'est lance")
+        void scheduledJobs_Disabled_DoNothing() throws Exception {
+            setField(reminderScheduler, "appointmentRemindersEnabled", false);
+            setField(reminderScheduler, "shortRemindersEnabled", false);
+            setField(reminderScheduler, "abandonedReservationsCleanupEnabled", false);
+
+            reminderScheduler.sendAppointmentReminders();
+            reminderScheduler.sendShortReminders();
+            reminderScheduler.cancelExpiredPendingReservations();
+
+            verifyNoInteractions(jobLeaseService, reservationRepository, reminderService);
+        }
+    }
+}
@@ -15,19 +15,29 @@ import org.springframework.security.core.Authentication;
 
 import com.project.agent.model.Users;
 import com.project.agent.model.Users.Role;
+import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.UserRepository.TokenEpoch;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 
 import java.security.Key;
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.Optional;
 
 @ExtendWith(MockitoExtension.class)
 class JwtTokenProviderTest {
 
     private JwtTokenProvider jwtTokenProvider;
+    private TokenRevocationList revocationList;
+    private VerifiedTokenCache tokenCache;
+
+    private record TestTokenEpoch(Long getId, LocalDateTime getTokenValidAfter) implements TokenEpoch {
+    }
 
     // A valid Base64-encoded 256-bit secret for HS256
     private static final String TEST_SECRET = "746573742D6F6E6C792D64756D6D792D7365637265742D666F722D756E6974";
@@ -42,6 +52,16 @@ class JwtTokenProviderTest {
         setField(jwtTokenProvider, "jwtSecret", TEST_SECRET);
         setField(jwtTokenProvider, "jwtExpirationInMs", TEST_EXPIRATION_MS);
         setField(jwtTokenProvider, "refreshTokenExpirationInMs", TEST_REFRESH_EXPIRATION_MS);
+
+        revocationList = new TokenRevocationList();
+        // Comptes existants, jamais révoqués en base
+        UserRepository userRepository = mock(UserRepository.class);
+        lenient().when(userRepository.findTokenEpochByEmail(anyString())).thenReturn(Optional.of(new TestTokenEpoch(1L, null)));
+        setField(revocationList, "userRepository", userRepository);
+        setField(jwtTokenProvider, "revocationList", revocationList);
+        tokenCache = new VerifiedTokenCache();
+        setField(jwtTokenProvider, "tokenCache", tokenCache);
+        jwtTokenProvider.init();
     }
 
     /**
@@ -279,6 +299,97 @@ class JwtTokenProviderTest {
         }
     }
 
+    // =========================================================================
+    // Tests pour parseToken et getUserFromClaims (authentification sans base)
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour parseToken et getUserFromClaims")
+    class ParseTokenTests {
+
+        private Users createAgent() {
+            Users user = new Users();
+            user.setId(3L);
+            user.setUsername("Agent Test");
+            user.setEmail("agent@example.com");
+            user.setRole(Role.AGENT);
+            user.setAgentId(7L);
+            return user;
+        }
+
+        @Test
+        @DisplayName("Le jeton d'acces porte l'identifiant, le role et l'agent de l'utilisateur")
+        void getUserFromClaims_AccessToken_RebuildsUser() {
+            String token = jwtTokenProvider.generateToken(createAgent());
+
+            Claims claims = jwtTokenProvider.parseToken(token).orElseThrow();
+            Users user = jwtTokenProvider.getUserFromClaims(claims);
+
+            assertNotNull(user);
+            assertEquals(3L, user.getId());
+            assertEquals("agent@example.com", user.getEmail());
+            assertEquals("Agent Test", user.getDisplayName());
+            assertEquals(Role.AGENT, user.getRole());
+            assertEquals(7L, user.getAgentId());
+            assertFalse(jwtTokenProvider.isRefreshToken(claims));
+        }
+
+        @Test
+        @DisplayName("Un ancien jeton sans claims d'identite doit etre recharge depuis la base")
+        void getUserFromClaims_LegacyToken_ReturnsNull() {
+            String token = jwtTokenProvider.generateTokenFromEmail("user@example.com");
+
+            Claims claims = jwtTokenProvider.parseToken(token).orElseThrow();
+
+            assertNull(jwtTokenProvider.getUserFromClaims(claims));
+        }
+
+        @Test
+        @DisplayName("Un refresh token est reconnu comme tel")
+        void isRefreshToken_RefreshToken_ReturnsTrue() {
+            String refreshToken = jwtTokenProvider.generateRefreshToken("user@example.com");
+
+            assertTrue(jwtTokenProvider.isRefreshToken(jwtTokenProvider.parseToken(refreshToken).orElseThrow()));
+        }
+
+        @Test
+        @DisplayName("Un jeton emis avant une revocation est refuse")
+        void parseToken_RevokedBeforeIssue_ReturnsEmpty() {
+            Date issuedAt = new Date(System.currentTimeMillis() - 60000);
+            String token = Jwts.builder()
+                    .setSubject("agent@example.com")
+                    .setIssuedAt(issuedAt)
+                    .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                    .signWith(getTestSigningKey(), SignatureAlgorithm.HS256)
+                    .compact();
+
+            revocationList.revokeAll("agent@example.com");
+
+            assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+            assertTrue(jwtTokenProvider.validateToken(jwtTokenProvider.generateToken(createAgent())),
+                    "Un jeton emis apres la revocation doit rester valide");
+        }
+
+        @Test
+        @DisplayName("Un jeton deja verifie est servi par le cache, et reste soumis a la revocation")
+        void parseToken_Cached_HitThenRevoked() throws Exception {
+            String token = Jwts.builder()
+                    .setSubject("agent@example.com")
+                    .setIssuedAt(new Date(System.currentTimeMillis() - 60000))
+                    .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                    .signWith(getTestSigningKey(), SignatureAlgorithm.HS256)
+                    .compact();
+
+            Claims first = jwtTokenProvider.parseToken(token).orElseThrow();
+            Claims second = jwtTokenProvider.parseToken(token).orElseThrow();
+
+            assertSame(first, second, "Le second appel doit reutiliser les claims verifies");
+            assertEquals(1L, tokenCache.getStatistics().get("hits"));
+
+            revocationList.revokeAll("agent@example.com");
+            assertTrue(jwtTokenProvider.parseToken(token).isEmpty());
+        }
+    }
+
     // =========================================================================
     // Tests pour getExpirationTime
     // =========================================================================
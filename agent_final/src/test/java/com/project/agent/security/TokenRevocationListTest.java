@@ -0,0 +1,152 @@
+package com.project.agent.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.UserRepository.TokenEpoch;
+
+class TokenRevocationListTest {
+
+    private static final String EMAIL = "agent@example.com";
+
+    private TokenRevocationList revocationList;
+    private UserRepository userRepository;
+
+    private record TestTokenEpoch(Long getId, LocalDateTime getTokenValidAfter) implements TokenEpoch {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userRepository = mock(UserRepository.class);
+        revocationList = newRevocationList(userRepository);
+    }
+
+    private static TokenRevocationList newRevocationList(UserRepository userRepository) throws Exception {
+        TokenRevocationList list = new TokenRevocationList();
+        setField(list, "userRepository", userRepository);
+        return list;
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private static void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Optional<TokenEpoch> epoch(LocalDateTime validAfter) {
+        return Optional.of(new TestTokenEpoch(1L, validAfter));
+    }
+
+    private static Date secondsAgo(long seconds) {
+        return new Date(System.currentTimeMillis() - seconds * 1000);
+    }
+
+    // =========================================================================
+    // Tests pour isRevoked
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour isRevoked")
+    class IsRevokedTests {
+
+        @Test
+        @DisplayName("Un jeton emis avant la date enregistree en base est refuse")
+        void isRevoked_IssuedBeforeSharedEpoch_True() {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(LocalDateTime.now().minusSeconds(30)));
+
+            assertTrue(revocationList.isRevoked(EMAIL, secondsAgo(60)));
+            assertFalse(revocationList.isRevoked(EMAIL, secondsAgo(10)));
+        }
+
+        @Test
+        @DisplayName("Sans revocation enregistree, le jeton est accepte")
+        void isRevoked_NeverRevoked_False() {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(null));
+
+            assertFalse(revocationList.isRevoked(EMAIL, secondsAgo(60)));
+        }
+
+        @Test
+        @DisplayName("Les jetons d'un compte supprime sont refuses")
+        void isRevoked_DeletedAccount_True() {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(Optional.empty());
+
+            assertTrue(revocationList.isRevoked(EMAIL, new Date()));
+        }
+
+        @Test
+        @DisplayName("La date lue est gardee en cache jusqu'a expiration")
+        void isRevoked_Cached_SingleQueryUntilTtl() throws Exception {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(null));
+
+            revocationList.isRevoked(EMAIL, new Date());
+            revocationList.isRevoked(EMAIL, new Date());
+            verify(userRepository, times(1)).findTokenEpochByEmail(EMAIL);
+
+            setField(revocationList, "cacheTtlMs", 0L);
+            revocationList.isRevoked(EMAIL, new Date());
+            verify(userRepository, times(2)).findTokenEpochByEmail(EMAIL);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour revokeAll
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour revokeAll")
+    class RevokeAllTests {
+
+        @Test
+        @DisplayName("La revocation est ecrite en base et appliquee tout de suite sur l'instance")
+        void revokeAll_WritesSharedEpochAndAppliesLocally() {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(null));
+            Date issuedAt = secondsAgo(60);
+            assertFalse(revocationList.isRevoked(EMAIL, issuedAt));
+
+            revocationList.revokeAll(EMAIL);
+
+            verify(userRepository).updateTokenValidAfter(eq(EMAIL), any(LocalDateTime.class));
+            assertTrue(revocationList.isRevoked(EMAIL, issuedAt), "Le cache local ne doit pas masquer la revocation");
+        }
+
+        @Test
+        @DisplayName("Une revocation prononcee sur une autre instance est vue apres expiration du cache")
+        void revokeAll_OtherInstance_SeenAfterTtl() throws Exception {
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(null));
+            Date issuedAt = secondsAgo(60);
+            setField(revocationList, "cacheTtlMs", 0L);
+            assertFalse(revocationList.isRevoked(EMAIL, issuedAt));
+
+            // L'autre instance écrit la date dans la même table
+            TokenRevocationList otherInstance = newRevocationList(userRepository);
+            otherInstance.revokeAll(EMAIL);
+            when(userRepository.findTokenEpochByEmail(EMAIL)).thenReturn(epoch(LocalDateTime.now()));
+
+            assertTrue(revocationList.isRevoked(EMAIL, issuedAt));
+        }
+
+        @Test
+        @DisplayName("Revocation desactivee : aucun acces a la base")
+        void revokeAll_Disabled_NoQuery() throws Exception {
+            setField(revocationList, "enabled", false);
+
+            revocationList.revokeAll(EMAIL);
+
+            assertFalse(revocationList.isRevoked(EMAIL, secondsAgo(60)));
+            verifyNoInteractions(userRepository);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.project.agent.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+class VerifiedTokenCacheTest {
+
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new VerifiedTokenCache();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private Claims claimsExpiringIn(long millis) {
+        return Jwts.claims()
+                .setSubject("user@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+
+    // =========================================================================
+    // Tests pour get / put
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour get et put")
+    class GetPutTests {
+
+        @Test
+        @DisplayName("Les claims d'un jeton verifie sont retournes et comptes comme succes")
+        void get_AfterPut_ReturnsHit() {
+            Claims claims = claimsExpiringIn(60000);
+            cache.put("token-a", claims);
+
+            assertSame(claims, cache.get("token-a"));
+            assertNull(cache.get("token-b"));
+            assertEquals(1L, cache.getStatistics().get("hits"));
+            assertEquals(1L, cache.getStatistics().get("misses"));
+        }
+
+        @Test
+        @DisplayName("Un jeton expire n'est plus servi")
+        void get_ExpiredToken_ReturnsNull() {
+            cache.put("token-a", claimsExpiringIn(-1000));
+
+            assertNull(cache.get("token-a"));
+            assertEquals(1L, cache.getStatistics().get("expirations"));
+        }
+
+        @Test
+        @DisplayName("Un jeton sans date d'expiration n'est pas mis en cache")
+        void put_NoExpiration_NotCached() {
+            cache.put("token-a", Jwts.claims().setSubject("user@example.com"));
+
+            assertNull(cache.get("token-a"));
+        }
+
+        @Test
+        @DisplayName("Cache desactive : rien n'est conserve")
+        void put_Disabled_NotCached() throws Exception {
+            setField(cache, "enabled", false);
+
+            cache.put("token-a", claimsExpiringIn(60000));
+
+            assertNull(cache.get("token-a"));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour l'eviction
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour l'eviction")
+    class EvictionTests {
+
+        @Test
+        @DisplayName("Au-dela de la taille maximale, les jetons expires sont retires avant les plus recents")
+        void put_Overflow_EvictsExpiredFirst() throws Exception {
+            setField(cache, "maxEntries", 2);
+            cache.put("token-expire", claimsExpiringIn(1));
+            cache.put("token-a", claimsExpiringIn(60000));
+            Thread.sleep(5);
+
+            cache.put("token-b", claimsExpiringIn(60000));
+
+            assertNotNull(cache.get("token-a"));
+            assertNotNull(cache.get("token-b"));
+            assertEquals(0L, cache.getStatistics().get("evictions"));
+            assertEquals(2, cache.getStatistics().get("size"));
+        }
+
+        @Test
+        @DisplayName("Sans jeton expire, le moins recemment utilise est evince")
+        void put_Overflow_EvictsLeastRecentlyUsed() throws Exception {
+            setField(cache, "maxEntries", 2);
+            cache.put("token-a", claimsExpiringIn(60000));
+            cache.put("token-b", claimsExpiringIn(60000));
+            cache.get("token-a");
+
+            cache.put("token-c", claimsExpiringIn(60000));
+
+            assertNotNull(cache.get("token-a"));
+            assertNull(cache.get("token-b"));
+            assertNotNull(cache.get("token-c"));
+            assertEquals(1L, cache.getStatistics().get("evictions"));
+        }
+    }
+}
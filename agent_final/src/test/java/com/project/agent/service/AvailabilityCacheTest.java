@@ -0,0 +1,208 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.project.agent.dto.AvailabilityDTO;
+import com.project.agent.model.Agency;
+import com.project.agent.model.Availability;
+
+class AvailabilityCacheTest {
+
+    private static final Long AGENCY_ID = 1L;
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+
+    private AvailabilityCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AvailabilityCache();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private AvailabilityDTO createDto(Long agencyId, LocalDate date) {
+        Agency agency = new Agency();
+        agency.setId(agencyId);
+        agency.setName("Agence " + agencyId);
+
+        Availability availability = new Availability();
+        availability.setAgency(agency);
+        availability.setDate(date);
+        availability.setAvailableTimeSlots(Arrays.asList(LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        return new AvailabilityDTO(availability);
+    }
+
+    private void put(Long agencyId, LocalDate date) {
+        cache.put(agencyId, date, createDto(agencyId, date), cache.currentVersion());
+    }
+
+    // =========================================================================
+    // Tests pour get / put
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour get et put")
+    class GetPutTests {
+
+        @Test
+        @DisplayName("Une entree mise en cache est retournee et comptee comme succes")
+        void get_AfterPut_ReturnsHit() {
+            put(AGENCY_ID, DATE);
+
+            AvailabilityDTO result = cache.get(AGENCY_ID, DATE);
+
+            assertNotNull(result);
+            assertEquals(Arrays.asList(LocalTime.of(9, 0), LocalTime.of(10, 0)), result.getAvailableTimeSlots());
+            assertEquals(1L, cache.getStatistics().get("hits"));
+            assertEquals(0L, cache.getStatistics().get("misses"));
+        }
+
+        @Test
+        @DisplayName("Une entree absente est comptee comme echec")
+        void get_Missing_ReturnsNull() {
+            assertNull(cache.get(AGENCY_ID, DATE));
+            assertEquals(1L, cache.getStatistics().get("misses"));
+        }
+
+        @Test
+        @DisplayName("Modifier le DTO retourne ne modifie pas l'entree en cache")
+        void get_ReturnsCopy() {
+            put(AGENCY_ID, DATE);
+
+            cache.get(AGENCY_ID, DATE).getBookedSlotInfo().put("09:00", "modifie");
+
+            assertTrue(cache.get(AGENCY_ID, DATE).getBookedSlotInfo().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Une entree expiree n'est plus retournee")
+        void get_Expired_ReturnsNull() throws Exception {
+            setField(cache, "ttlSeconds", 0L);
+            put(AGENCY_ID, DATE);
+
+            assertNull(cache.get(AGENCY_ID, DATE));
+            assertEquals(1L, cache.getStatistics().get("expirations"));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour l'invalidation
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour l'invalidation")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("invalidate ne retire que la date concernee")
+        void invalidate_RemovesOnlyThatDate() {
+            put(AGENCY_ID, DATE);
+            put(AGENCY_ID, DATE.plusDays(1));
+
+            cache.invalidate(AGENCY_ID, DATE);
+
+            assertNull(cache.get(AGENCY_ID, DATE));
+            assertNotNull(cache.get(AGENCY_ID, DATE.plusDays(1)));
+        }
+
+        @Test
+        @DisplayName("invalidateAgency retire toutes les dates de l'agence")
+        void invalidateAgency_RemovesAllDates() {
+            put(AGENCY_ID, DATE);
+            put(AGENCY_ID, DATE.plusDays(1));
+            put(2L, DATE);
+
+            cache.invalidateAgency(AGENCY_ID);
+
+            assertNull(cache.get(AGENCY_ID, DATE));
+            assertNull(cache.get(AGENCY_ID, DATE.plusDays(1)));
+            assertNotNull(cache.get(2L, DATE));
+        }
+
+        @Test
+        @DisplayName("Une valeur calculee avant une invalidation n'est pas mise en cache")
+        void put_AfterConcurrentInvalidation_IsIgnored() {
+            long version = cache.currentVersion();
+            AvailabilityDTO staleDto = createDto(AGENCY_ID, DATE);
+
+            cache.invalidate(AGENCY_ID, DATE);
+            cache.put(AGENCY_ID, DATE, staleDto, version);
+
+            assertNull(cache.get(AGENCY_ID, DATE));
+        }
+
+        @Test
+        @DisplayName("Hors transaction, les ecouteurs sont prevenus immediatement")
+        void invalidate_NoTransaction_NotifiesListeners() {
+            List<Long> changedAgencies = new ArrayList<>();
+            cache.addChangeListener((agencyId, date) -> changedAgencies.add(agencyId));
+
+            cache.invalidate(AGENCY_ID, DATE);
+
+            assertEquals(List.of(AGENCY_ID), changedAgencies);
+        }
+
+        @Test
+        @DisplayName("Dans une transaction, les ecouteurs ne sont prevenus qu'apres le commit")
+        void invalidate_InTransaction_NotifiesAfterCommit() {
+            List<LocalDate> changedDates = new ArrayList<>();
+            cache.addChangeListener((agencyId, date) -> changedDates.add(date));
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                cache.invalidate(AGENCY_ID, DATE);
+                assertTrue(changedDates.isEmpty());
+
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            assertEquals(List.of(DATE), changedDates);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour l'eviction
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour l'eviction")
+    class EvictionTests {
+
+        @Test
+        @DisplayName("L'entree la moins recemment utilisee est evincee au-dela de la taille maximale")
+        void put_OverCapacity_EvictsLeastRecentlyUsed() throws Exception {
+            setField(cache, "maxEntries", 2);
+            put(AGENCY_ID, DATE);
+            put(AGENCY_ID, DATE.plusDays(1));
+
+            // Lire la premiere date pour qu'elle devienne la plus recente
+            cache.get(AGENCY_ID, DATE);
+            put(AGENCY_ID, DATE.plusDays(2));
+
+            assertNotNull(cache.get(AGENCY_ID, DATE));
+            assertNull(cache.get(AGENCY_ID, DATE.plusDays(1)));
+            assertNotNull(cache.get(AGENCY_ID, DATE.plusDays(2)));
+            assertEquals(1L, cache.getStatistics().get("evictions"));
+        }
+    }
+}
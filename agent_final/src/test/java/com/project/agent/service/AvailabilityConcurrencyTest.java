@@ -0,0 +1,226 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.exception.ConflictException;
+import com.project.agent.model.Agency;
+import com.project.agent.model.Agency.BusinessHours;
+import com.project.agent.model.Availability;
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.repository.AgencyRepository;
+import com.project.agent.repository.AvailabilityRepository;
+import com.project.agent.service.realtime.CoalescingPublisher;
+
+/**
+ * Réservations concurrentes d'un même créneau sur une base PostgreSQL réelle : les
+ * UPDATE conditionnés à la version (compareAndSetSlots) et l'INSERT ... ON CONFLICT
+ * (insertIfAbsent) s'exécutent réellement, chaque client dans sa propre transaction.
+ * L'index unique (agence, date) dont dépend l'INSERT ... ON CONFLICT est aussi vérifié
+ * sur une base qui ne l'a pas encore, ainsi que la conversion des lignes au format texte.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import({ EmbeddedPostgresConfiguration.class, AvailabilityService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AvailabilityConcurrencyTest {
+
+    private static final int BOOKERS = 500;
+    private static final int GRANULARITY = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+    private static final LocalDateTime SLOT = LocalDate.now().plusDays(1).atTime(10, 0);
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private AvailabilityRepository availabilityRepository;
+
+    @Autowired
+    private AgencyRepository agencyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private AvailabilityCache availabilityCache;
+
+    @MockitoBean
+    private IdentityCache identityCache;
+
+    @MockitoBean
+    private CoalescingPublisher livePublisher;
+
+    private Agency agency;
+
+    @BeforeEach
+    void setUp() {
+        agency = new Agency();
+        agency.setName("Agence");
+        agency.setAddress("1 rue");
+        agency.setCity("Ville");
+        agency.setPhoneNumber("0102030405");
+        List<BusinessHours> businessHours = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            BusinessHours hours = new BusinessHours();
+            hours.setDay(day);
+            hours.setOpeningTime("09:00");
+            hours.setClosingTime("12:00");
+            businessHours.add(hours);
+        }
+        agency.setBusinessHours(businessHours);
+        agency = agencyRepository.save(agency);
+    }
+
+    @AfterEach
+    void tearDown() {
+        availabilityRepository.deleteAll();
+        agencyRepository.deleteAll();
+    }
+
+    /**
+     * Lance les clients en même temps et compte les réservations obtenues et les conflits
+     */
+    private int[] bookConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < BOOKERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        availabilityService.markTimeSlotAsTemporarilyBooked(agency, SLOT);
+                        successes.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new int[] { successes.get(), conflicts.get() };
+    }
+
+    private void assertSingleBooking(int[] outcome) {
+        assertEquals(1, outcome[0], "Un seul client doit obtenir le creneau");
+        assertEquals(BOOKERS - 1, outcome[1], "Tous les autres clients doivent recevoir un conflit");
+
+        List<Availability> rows = availabilityRepository.findAll();
+        assertEquals(1, rows.size(), "Une seule ligne pour la journee");
+        Availability row = rows.get(0);
+        assertTrue(SlotCalendar.contains(row.getBookedSlotsMask(), SLOT.toLocalTime(), GRANULARITY));
+        assertFalse(SlotCalendar.contains(row.getAvailableSlotsMask(), SLOT.toLocalTime(), GRANULARITY));
+        assertTrue(SlotCalendar.contains(row.getAvailableSlotsMask(), LocalTime.of(9, 0), GRANULARITY),
+                "Les autres creneaux restent disponibles");
+    }
+
+    @Test
+    @DisplayName("500 clients concurrents sur une journee existante : une seule reservation")
+    void markTimeSlot_ConcurrentBookers_ExistingDay_NoDoubleBooking() throws Exception {
+        Availability availability = new Availability();
+        availability.setAgency(agency);
+        availability.setDate(SLOT.toLocalDate());
+        availability.setSlotGranularity(GRANULARITY);
+        availability.setAvailableSlotsMask(SlotCalendar.fromTimes(
+                List.of(LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0)), GRANULARITY));
+        availability.setBookedSlotsMask(SlotCalendar.EMPTY);
+        long version = availabilityRepository.save(availability).getVersion();
+
+        assertSingleBooking(bookConcurrently());
+        assertEquals(version + 1, availabilityRepository.findAll().get(0).getVersion(),
+                "Une seule modification doit avoir ete ecrite");
+    }
+
+    @Test
+    @DisplayName("500 clients concurrents sur une journee sans disponibilite : une seule ligne creee et une seule reservation")
+    void markTimeSlot_ConcurrentBookers_NewDay_NoDoubleBooking() throws Exception {
+        assertSingleBooking(bookConcurrently());
+    }
+
+    @Test
+    @DisplayName("Base sans index unique : les journees en double sont supprimees puis l'index est cree")
+    void ensureUniqueDayIndex_Duplicates_KeepsLatestRowAndCreatesIndex() throws Exception {
+        jdbcTemplate.execute("ALTER TABLE availability DROP CONSTRAINT uk_availability_agency_date");
+        String insert = "INSERT INTO availability (agency_id, date, available_slots_mask, booked_slots_mask, "
+                + "slot_granularity, version) VALUES (?, ?, 0, 0, ?, 0)";
+        jdbcTemplate.update(insert, agency.getId(), SLOT.toLocalDate(), GRANULARITY);
+        jdbcTemplate.update(insert, agency.getId(), SLOT.toLocalDate(), GRANULARITY);
+        Long latestId = jdbcTemplate.queryForObject("SELECT max(id) FROM availability", Long.class);
+
+        availabilityService.ensureUniqueDayIndex();
+        availabilityService.ensureUniqueDayIndex();
+
+        List<Availability> rows = availabilityRepository.findAll();
+        assertEquals(1, rows.size());
+        assertEquals(latestId, rows.get(0).getId(), "La ligne la plus recente est conservee");
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_indexes WHERE indexname = 'uk_availability_agency_date'", Integer.class));
+
+        // insertIfAbsent s'appuie sur l'index cree
+        availabilityRepository.deleteAll();
+        assertSingleBooking(bookConcurrently());
+    }
+
+    @Test
+    @DisplayName("Les lignes au format texte sont converties en masques au demarrage")
+    void migrateLegacyTimeSlots_NullMasks_Backfilled() {
+        LocalDate today = LocalDate.now();
+        String insert = "INSERT INTO availability (agency_id, date, available_time_slots, booked_time_slots, version) "
+                + "VALUES (?, ?, ?, ?, 0)";
+        jdbcTemplate.update(insert, agency.getId(), today, "09:00,10:00,11:00", "");
+        jdbcTemplate.update(insert, agency.getId(), SLOT.toLocalDate(), "09:00", "10:00,11:00");
+
+        availabilityService.migrateLegacyTimeSlots();
+        availabilityService.migrateLegacyTimeSlots();
+
+        Map<String, Object> converted = jdbcTemplate.queryForMap("SELECT available_slots_mask, booked_slots_mask, "
+                + "slot_granularity, version FROM availability WHERE date = ?", SLOT.toLocalDate());
+        assertEquals(SlotCalendar.fromTimes(List.of(LocalTime.of(9, 0)), GRANULARITY), converted.get("available_slots_mask"));
+        assertEquals(SlotCalendar.fromTimes(List.of(LocalTime.of(10, 0), LocalTime.of(11, 0)), GRANULARITY),
+                converted.get("booked_slots_mask"));
+        assertEquals(GRANULARITY, converted.get("slot_granularity"));
+        assertEquals(1L, converted.get("version"), "Une seule conversion par ligne");
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM availability WHERE available_slots_mask IS NULL", Integer.class));
+        // Les créneaux du jour sont signalés une fois à l'expiration des créneaux
+        verify(availabilityCache, times(1)).invalidate(agency.getId(), today);
+    }
+}
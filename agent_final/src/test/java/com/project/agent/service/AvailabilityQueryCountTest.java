@@ -0,0 +1,208 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.project.agent.dto.AvailabilityDTO;
+import com.project.agent.model.Agency;
+import com.project.agent.model.Agent;
+import com.project.agent.model.Availability;
+import com.project.agent.model.BlockedTimeSlot;
+import com.project.agent.model.Reservation;
+import com.project.agent.model.ReservationFeedback;
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.model.Users;
+import com.project.agent.service.realtime.CoalescingPublisher;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Nombre de requêtes SQL émises pour enrichir les disponibilités d'une période, sur une base
+ * H2 : il ne doit pas dépendre du nombre de réservations, ni charger leurs associations
+ * (client, agent, avis).
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:availability;MODE=PostgreSQL;NON_KEYWORDS=DAY,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import(AvailabilityService.class)
+class AvailabilityQueryCountTest {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(3);
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private AvailabilityCache availabilityCache;
+
+    @MockitoBean
+    private IdentityCache identityCache;
+
+    @MockitoBean
+    private CoalescingPublisher livePublisher;
+
+    private Agency agency;
+    private Statistics statistics;
+    private int userCount;
+    private int reservationCount;
+
+    @BeforeEach
+    void setUp() {
+        agency = new Agency();
+        agency.setName("Agence");
+        agency.setAddress("1 rue");
+        agency.setCity("Ville");
+        agency.setPhoneNumber("0102030405");
+        entityManager.persist(agency);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Users newUser(Users.Role role) {
+        Users user = new Users();
+        user.setUsername("user" + userCount);
+        user.setEmail("user" + userCount++ + "@test.com");
+        user.setPassword("motdepasse");
+        user.setRole(role);
+        return entityManager.persist(user);
+    }
+
+    /**
+     * Réservations confirmées de la journée, chacune avec son client, son agent, son blocage et son avis
+     */
+    private void createReservations(int count) {
+        for (int n = 0; n < count; n++) {
+            int i = reservationCount++;
+            Agent agent = new Agent();
+            agent.setUser(newUser(Users.Role.AGENT));
+            agent.setAgency(agency);
+            entityManager.persist(agent);
+
+            Reservation reservation = new Reservation();
+            reservation.setUser(newUser(Users.Role.USER));
+            reservation.setAgency(agency);
+            reservation.setHandledByAgent(agent);
+            reservation.setService("Service " + i);
+            reservation.setStatus(Reservation.Status.CONFIRMED);
+            reservation.setStartDateTime(DAY.atTime(8, 0).plusMinutes(30L * i));
+            entityManager.persist(reservation);
+
+            ReservationFeedback feedback = new ReservationFeedback();
+            feedback.setReservation(reservation);
+            feedback.setRating(5);
+            feedback.setCreatedAt(LocalDateTime.now());
+            entityManager.persist(feedback);
+
+            BlockedTimeSlot blockedSlot = new BlockedTimeSlot();
+            blockedSlot.setAgency(agency);
+            blockedSlot.setDate(DAY);
+            blockedSlot.setTime(DAY.atTime(16, 0).plusMinutes(30L * i).toLocalTime());
+            blockedSlot.setReason("Pause " + i);
+            blockedSlot.setBlockedBy(agent);
+            entityManager.persist(blockedSlot);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    // =========================================================================
+    // Tests pour getAgencyAvailabilityForRange
+    // =========================================================================
+    @Test
+    @DisplayName("Aucune entite reservation, agent ou client n'est chargee")
+    void range_LoadsNoReservationEntities() {
+        createReservations(6);
+
+        List<AvailabilityDTO> dtos = availabilityService.getAgencyAvailabilityForRange(agency.getId(), DAY, DAY);
+
+        assertEquals("Réservé pour: Service 0", dtos.get(0).getBookedSlotInfo().get("08:00"));
+        assertEquals("Bloqué: Pause 5", dtos.get(0).getBookedSlotInfo().get("18:30"));
+        assertEquals(0, statistics.getEntityStatistics(Reservation.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Agent.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Users.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(ReservationFeedback.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(BlockedTimeSlot.class.getName()).getLoadCount());
+    }
+
+    @Test
+    @DisplayName("Le nombre de requetes ne depend pas du nombre de reservations")
+    void range_StatementCountIndependentOfRows() {
+        createReservations(1);
+        availabilityService.getAgencyAvailabilityForRange(agency.getId(), DAY, DAY.plusDays(6));
+        long withOne = statistics.getPrepareStatementCount();
+
+        createReservations(9);
+        availabilityService.getAgencyAvailabilityForRange(agency.getId(), DAY, DAY.plusDays(6));
+        long withTen = statistics.getPrepareStatementCount();
+
+        assertEquals(withOne, withTen);
+    }
+
+    // =========================================================================
+    // Tests pour enrichAvailabilityDTOs
+    // =========================================================================
+    @Test
+    @DisplayName("Deux requetes au total : blocages et projection des reservations")
+    void enrich_TwoStatements() {
+        createReservations(8);
+        List<AvailabilityDTO> dtos = availabilityService.getAgencyAvailabilityForRange(agency.getId(), DAY, DAY);
+        statistics.clear();
+        dtos.forEach(dto -> dto.setBookedTimeSlots(List.of(DAY.atTime(8, 0).toLocalTime(),
+                DAY.atTime(16, 0).toLocalTime())));
+
+        availabilityService.enrichAvailabilityDTOs(agency.getId(), dtos);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals("Réservé pour: Service 0", dtos.get(0).getBookedSlotInfo().get("08:00"));
+        assertEquals("Bloqué: Pause 0", dtos.get(0).getBookedSlotInfo().get("16:00"));
+    }
+
+    @Test
+    @DisplayName("Les reservations sont rattachees aux creneaux a la granularite de la ligne")
+    void enrich_UsesRowGranularity() {
+        // Seule la réservation 1 (08:30) tombe dans le créneau d'une heure de 08:00
+        createReservations(2);
+        entityManager.getEntityManager()
+                .createQuery("UPDATE Reservation r SET r.startDateTime = :start WHERE r.service = 'Service 0'")
+                .setParameter("start", DAY.atTime(7, 0))
+                .executeUpdate();
+        Availability availability = new Availability();
+        availability.setAgency(entityManager.find(Agency.class, agency.getId()));
+        availability.setDate(DAY);
+        availability.setSlotGranularity(60);
+        availability.setAvailableSlotsMask(SlotCalendar.EMPTY);
+        availability.setBookedSlotsMask(SlotCalendar.fromTimes(List.of(DAY.atTime(8, 0).toLocalTime()), 60));
+        entityManager.persistAndFlush(availability);
+
+        List<AvailabilityDTO> dtos = availabilityService.getAgencyAvailabilityForRange(agency.getId(), DAY, DAY);
+
+        assertEquals(60, dtos.get(0).getSlotGranularity());
+        assertEquals("Réservé pour: Service 1", dtos.get(0).getBookedSlotInfo().get("08:00"));
+    }
+}
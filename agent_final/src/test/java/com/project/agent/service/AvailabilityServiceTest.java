@@ -0,0 +1,229 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.project.agent.exception.ConflictException;
+import com.project.agent.model.Agency;
+import com.project.agent.model.Agency.BusinessHours;
+import com.project.agent.model.SlotCalendar;
+import com.project.agent.repository.AgencyRepository;
+import com.project.agent.repository.AgentRepository;
+import com.project.agent.repository.AvailabilityRepository;
+import com.project.agent.repository.AvailabilityRepository.SlotState;
+import com.project.agent.repository.BlockedTimeSlotRepository;
+import com.project.agent.repository.ReservationRepository;
+import com.project.agent.service.realtime.CoalescingPublisher;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AvailabilityServiceTest {
+
+    private static final Long AVAILABILITY_ID = 10L;
+    private static final int GRANULARITY = SlotCalendar.DEFAULT_GRANULARITY_MINUTES;
+    private static final LocalDateTime SLOT = LocalDate.now().plusDays(1).atTime(10, 0);
+
+    @Mock
+    private AvailabilityRepository availabilityRepository;
+
+    @Mock
+    private AgencyRepository agencyRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private BlockedTimeSlotRepository blockedTimeSlotRepository;
+
+    @Mock
+    private AgentRepository agentRepository;
+
+    @Mock
+    private CoalescingPublisher livePublisher;
+
+    @Mock
+    private AvailabilityCache availabilityCache;
+
+    @InjectMocks
+    private AvailabilityService availabilityService;
+
+    private Agency testAgency;
+
+    // Ligne "availability" simulee : version et masques modifies uniquement par compare-and-set
+    private long version;
+    private long availableMask;
+    private long bookedMask;
+
+    private record TestSlotState(Long getId, Long getVersion, Long getAvailableSlotsMask,
+            Long getBookedSlotsMask, Integer getSlotGranularity) implements SlotState {
+    }
+
+    @BeforeEach
+    void setUp() {
+        testAgency = new Agency();
+        testAgency.setId(1L);
+        testAgency.setName("Agence Test");
+
+        version = 0;
+        availableMask = SlotCalendar.fromTimes(
+                List.of(LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0)), GRANULARITY);
+        bookedMask = SlotCalendar.EMPTY;
+
+        when(availabilityRepository.findSlotState(any(Agency.class), any(LocalDate.class)))
+                .thenAnswer(invocation -> Optional.of(readRow()));
+        when(availabilityRepository.compareAndSetSlots(anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> compareAndSet(
+                        invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)));
+    }
+
+    private SlotState readRow() {
+        return new TestSlotState(AVAILABILITY_ID, version, availableMask, bookedMask, GRANULARITY);
+    }
+
+    private int compareAndSet(Long expectedVersion, Long newAvailable, Long newBooked) {
+        if (version != expectedVersion) {
+            return 0;
+        }
+        version++;
+        availableMask = newAvailable;
+        bookedMask = newBooked;
+        return 1;
+    }
+
+    // =========================================================================
+    // Tests pour markTimeSlotAsTemporarilyBooked
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour markTimeSlotAsTemporarilyBooked")
+    class MarkTimeSlotAsTemporarilyBookedTests {
+
+        @Test
+        @DisplayName("Reserve un creneau disponible")
+        void markTimeSlot_Available_Success() {
+            availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT);
+
+            assertFalse(SlotCalendar.contains(availableMask, SLOT.toLocalTime(), GRANULARITY));
+            assertTrue(SlotCalendar.contains(bookedMask, SLOT.toLocalTime(), GRANULARITY));
+            verify(availabilityCache).invalidate(1L, SLOT.toLocalDate());
+            verify(livePublisher).publish(eq("/topic/availability/1"), eq(SLOT.toLocalDate()), any(Object.class));
+        }
+
+        @Test
+        @DisplayName("Refuse un creneau deja reserve avec un conflit")
+        void markTimeSlot_AlreadyBooked_ThrowsConflict() {
+            availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT);
+
+            assertThrows(ConflictException.class,
+                    () -> availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT));
+            assertEquals(1, version, "Une seule modification doit avoir ete ecrite");
+        }
+
+        @Test
+        @DisplayName("Abandonne apres le nombre maximal de tentatives si la version change toujours")
+        void markTimeSlot_AlwaysConcurrentUpdate_ThrowsConflictAfterBoundedRetries() {
+            doReturn(0).when(availabilityRepository).compareAndSetSlots(anyLong(), anyLong(), anyLong(), anyLong());
+
+            assertThrows(ConflictException.class,
+                    () -> availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT));
+            verify(availabilityRepository, times(5)).compareAndSetSlots(anyLong(), anyLong(), anyLong(), anyLong());
+            verify(livePublisher, never()).publish(anyString(), any(), any(Object.class));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour releaseTimeSlot
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour releaseTimeSlot")
+    class ReleaseTimeSlotTests {
+
+        @Test
+        @DisplayName("Un creneau libere peut etre reserve de nouveau")
+        void releaseTimeSlot_ThenBookAgain_Success() {
+            availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT);
+            availabilityService.releaseTimeSlot(testAgency, SLOT);
+
+            assertTrue(SlotCalendar.contains(availableMask, SLOT.toLocalTime(), GRANULARITY));
+            assertDoesNotThrow(() -> availabilityService.markTimeSlotAsTemporarilyBooked(testAgency, SLOT));
+        }
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private BusinessHours hours(String opening, String closing) {
+        BusinessHours hours = new BusinessHours();
+        hours.setDay(DayOfWeek.MONDAY);
+        hours.setOpeningTime(opening);
+        hours.setClosingTime(closing);
+        return hours;
+    }
+
+    // =========================================================================
+    // Tests pour checkBusinessHours
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour checkBusinessHours")
+    class CheckBusinessHoursTests {
+
+        @Test
+        @DisplayName("Accepte des heures alignees sur la granularite")
+        void checkBusinessHours_Aligned_Accepted() {
+            assertDoesNotThrow(() -> availabilityService.checkBusinessHours(
+                    List.of(hours("09:00", "12:00"), hours("13:30", "18:00"))));
+        }
+
+        @Test
+        @DisplayName("Refuse une ouverture qui ne commence pas un creneau")
+        void checkBusinessHours_MisalignedOpening_Rejected() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> availabilityService.checkBusinessHours(List.of(hours("09:15", "12:00"))));
+        }
+
+        @Test
+        @DisplayName("Refuse une granularite que les creneaux d'une heure ne suivent pas")
+        void checkBusinessHours_HourlySlotsOffGrid_Rejected() throws Exception {
+            setField(availabilityService, "slotGranularityMinutes", 45);
+
+            // 09:00 est aligne sur 45 minutes, 10:00 ne l'est pas
+            assertThrows(IllegalArgumentException.class,
+                    () -> availabilityService.checkBusinessHours(List.of(hours("09:00", "11:00"))));
+        }
+
+        @Test
+        @DisplayName("Ignore les jours fermes et une fermeture tardive ne boucle pas apres minuit")
+        void checkBusinessHours_ClosedAndLateClosing_Accepted() {
+            BusinessHours closed = hours("09:15", "12:00");
+            closed.setClosed(true);
+
+            assertDoesNotThrow(() -> availabilityService.checkBusinessHours(
+                    List.of(closed, hours("23:00", "23:59"))));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.project.agent.model.Users;
+import com.project.agent.repository.UserRepository;
+import com.project.agent.repository.UserRepository.UserIdentity;
+import com.project.agent.service.IdentityCache.Identity;
+
+class IdentityCacheTest {
+
+    private static final String EMAIL = "agent@test.com";
+
+    private IdentityCache cache;
+    private UserRepository userRepository;
+
+    private record TestUserIdentity(Long getUserId, String getEmail, String getDisplayName, Users.Role getRole,
+            Long getAgentId, Long getAgencyId) implements UserIdentity {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new IdentityCache();
+        userRepository = mock(UserRepository.class);
+        setField(cache, "userRepository", userRepository);
+        when(userRepository.findIdentityByEmail(EMAIL)).thenReturn(Optional.of(
+                new TestUserIdentity(3L, EMAIL, "Agent Test", Users.Role.AGENT, 7L, 1L)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // =========================================================================
+    // Tests pour find
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour find")
+    class FindTests {
+
+        @Test
+        @DisplayName("Charge l'identite une seule fois puis la sert depuis le cache partage")
+        void find_Twice_SingleQuery() {
+            Identity first = cache.find(EMAIL).orElseThrow();
+            Identity second = cache.find(EMAIL).orElseThrow();
+
+            assertEquals(first, second);
+            assertEquals(7L, first.agentId());
+            assertEquals(1L, first.agencyId());
+            verify(userRepository, times(1)).findIdentityByEmail(EMAIL);
+            assertEquals(1L, cache.getStatistics().get("hits"));
+        }
+
+        @Test
+        @DisplayName("Dans une requete HTTP, l'identite est reutilisee sans consulter le cache partage")
+        void find_WithinRequest_ServedFromRequestScope() {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+            cache.find(EMAIL);
+            cache.find(EMAIL);
+            cache.find(EMAIL);
+
+            verify(userRepository, times(1)).findIdentityByEmail(EMAIL);
+            assertEquals(0L, cache.getStatistics().get("hits"), "Le cache partage ne doit etre lu qu'une fois");
+        }
+
+        @Test
+        @DisplayName("Un email inconnu n'est pas mis en cache")
+        void find_Unknown_Empty() {
+            when(userRepository.findIdentityByEmail(anyString())).thenReturn(Optional.empty());
+
+            assertTrue(cache.find("inconnu@test.com").isEmpty());
+            assertTrue(cache.find("inconnu@test.com").isEmpty());
+
+            verify(userRepository, times(2)).findIdentityByEmail("inconnu@test.com");
+        }
+
+        @Test
+        @DisplayName("Cache desactive : chaque appel hors requete interroge la base")
+        void find_Disabled_AlwaysLoads() throws Exception {
+            setField(cache, "enabled", false);
+
+            cache.find(EMAIL);
+            cache.find(EMAIL);
+
+            verify(userRepository, times(2)).findIdentityByEmail(EMAIL);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour canAccessAgency
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour canAccessAgency")
+    class CanAccessAgencyTests {
+
+        @Test
+        @DisplayName("Un agent n'accede qu'a sa propre agence")
+        void canAccessAgency_Agent_OnlyOwnAgency() {
+            assertTrue(cache.canAccessAgency(EMAIL, 1L));
+            assertFalse(cache.canAccessAgency(EMAIL, 2L));
+        }
+
+        @Test
+        @DisplayName("Un administrateur accede a toutes les agences, un client a aucune")
+        void canAccessAgency_AdminAndUser() {
+            when(userRepository.findIdentityByEmail("admin@test.com")).thenReturn(Optional.of(
+                    new TestUserIdentity(1L, "admin@test.com", "Admin", Users.Role.ADMIN, null, null)));
+            when(userRepository.findIdentityByEmail("client@test.com")).thenReturn(Optional.of(
+                    new TestUserIdentity(2L, "client@test.com", "Client", Users.Role.USER, null, null)));
+
+            assertTrue(cache.canAccessAgency("admin@test.com", 2L));
+            assertFalse(cache.canAccessAgency("client@test.com", 1L));
+            assertFalse(cache.canAccessAgency("inconnu@test.com", 1L));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour evict
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour evict")
+    class EvictTests {
+
+        @Test
+        @DisplayName("Apres eviction (changement d'agence), l'identite est rechargee")
+        void evict_ReloadsNewAgency() {
+            cache.find(EMAIL);
+            when(userRepository.findIdentityByEmail(EMAIL)).thenReturn(Optional.of(
+                    new TestUserIdentity(3L, EMAIL, "Agent Test", Users.Role.AGENT, 7L, 2L)));
+
+            cache.evict(EMAIL);
+
+            assertEquals(2L, cache.find(EMAIL).orElseThrow().agencyId());
+            verify(userRepository, times(2)).findIdentityByEmail(EMAIL);
+        }
+
+        @Test
+        @DisplayName("L'eviction retire aussi l'identite de la requete courante")
+        void evict_WithinRequest_RemovesRequestScopedIdentity() {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+            cache.find(EMAIL);
+
+            cache.evict(EMAIL);
+            cache.find(EMAIL);
+
+            verify(userRepository, times(2)).findIdentityByEmail(EMAIL);
+        }
+
+        @Test
+        @DisplayName("Une identite chargee avant une eviction concurrente n'est pas mise en cache")
+        void find_EvictedDuringLoad_NotCached() {
+            when(userRepository.findIdentityByEmail(EMAIL)).thenAnswer(invocation -> {
+                cache.evict(EMAIL);
+                return Optional.of(new TestUserIdentity(3L, EMAIL, "Agent Test", Users.Role.USER, null, null));
+            });
+
+            cache.find(EMAIL);
+            cache.find(EMAIL);
+
+            verify(userRepository, times(2)).findIdentityByEmail(EMAIL);
+        }
+    }
+}
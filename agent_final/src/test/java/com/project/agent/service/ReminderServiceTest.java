@@ -0,0 +1,119 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.project.agent.model.Reservation;
+import com.project.agent.repository.ReservationRepository;
+import com.project.agent.service.ReminderService.ChunkResult;
+import com.project.agent.service.ReminderService.ReminderType;
+import com.project.agent.service.mail.OutgoingEmail;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReminderServiceTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @InjectMocks
+    private ReminderService reminderService;
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    @BeforeEach
+    void setUp() {
+        from = LocalDateTime.now();
+        to = from.plusHours(24);
+    }
+
+    private Reservation reservation(long id) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        return reservation;
+    }
+
+    private OutgoingEmail email(long id) {
+        return new OutgoingEmail("user" + id + "@test.com", "Rappel", "<p>Rappel</p>", "Rappel");
+    }
+
+    // =========================================================================
+    // Tests pour dispatchChunk
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour dispatchChunk")
+    class DispatchChunkTests {
+
+        @Test
+        @DisplayName("Les rappels d'un lot sont enregistres ensemble et marques en une seule requete")
+        void dispatchChunk_DayBefore_EnqueuesAndMarksInBulk() {
+            when(reservationRepository.lockDueReminderIds(from, to, 0L, 200)).thenReturn(List.of(1L, 2L));
+            when(reservationRepository.findWithDetailsByIdIn(List.of(1L, 2L)))
+                    .thenReturn(List.of(reservation(1L), reservation(2L)));
+            when(emailService.renderAppointmentReminder(any())).thenAnswer(
+                    invocation -> email(((Reservation) invocation.getArgument(0)).getId()));
+
+            ChunkResult result = reminderService.dispatchChunk(ReminderType.DAY_BEFORE, from, to, 0L, 200);
+
+            assertEquals(List.of(1L, 2L), result.remindedIds());
+            assertEquals(2L, result.lastId());
+            verify(emailService).sendAll(List.of(email(1L), email(2L)));
+            verify(reservationRepository).markReminderSent(List.of(1L, 2L));
+            verify(reservationRepository, never()).markShortReminderSent(anyCollection());
+            verify(reservationRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Un rappel impossible a rendre n'est pas marque, les autres sont envoyes")
+        void dispatchChunk_RenderFailure_SkipsOnlyThatReservation() {
+            when(reservationRepository.lockDueShortReminderIds(from, to, 5L, 200)).thenReturn(List.of(6L, 7L));
+            when(reservationRepository.findWithDetailsByIdIn(List.of(6L, 7L)))
+                    .thenReturn(List.of(reservation(6L), reservation(7L)));
+            when(emailService.renderAppointmentReminder(any())).thenAnswer(invocation -> {
+                Reservation reservation = invocation.getArgument(0);
+                if (reservation.getId() == 6L) {
+                    throw new IllegalStateException("Agence manquante");
+                }
+                return email(reservation.getId());
+            });
+
+            ChunkResult result = reminderService.dispatchChunk(ReminderType.HOUR_BEFORE, from, to, 5L, 200);
+
+            assertEquals(List.of(7L), result.remindedIds());
+            assertEquals(7L, result.lastId(), "Le lot suivant doit commencer apres la reservation ignoree");
+            verify(emailService).sendAll(List.of(email(7L)));
+            verify(reservationRepository).markShortReminderSent(List.of(7L));
+        }
+
+        @Test
+        @DisplayName("Aucun rappel du : lot vide, aucun envoi")
+        void dispatchChunk_NothingDue_Empty() {
+            when(reservationRepository.lockDueReminderIds(any(), any(), anyLong(), anyInt())).thenReturn(List.of());
+
+            ChunkResult result = reminderService.dispatchChunk(ReminderType.DAY_BEFORE, from, to, 0L, 200);
+
+            assertTrue(result.isEmpty());
+            verifyNoInteractions(emailService);
+            verify(reservationRepository, never()).markReminderSent(anyCollection());
+        }
+    }
+}
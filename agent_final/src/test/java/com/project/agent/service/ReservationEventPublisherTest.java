@@ -0,0 +1,150 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.project.agent.dto.ReservationDeltaDTO;
+import com.project.agent.model.Agency;
+import com.project.agent.model.Agent;
+import com.project.agent.model.Reservation;
+import com.project.agent.model.Reservation.Status;
+
+class ReservationEventPublisherTest {
+
+    private static final String TOPIC = "/topic/agency/1/reservations";
+
+    private ReservationEventPublisher publisher;
+    private SimpMessagingTemplate messagingTemplate;
+    private Reservation reservation;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        publisher = new ReservationEventPublisher();
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        setField(publisher, "messagingTemplate", messagingTemplate);
+
+        Agency agency = new Agency();
+        agency.setId(1L);
+        reservation = new Reservation();
+        reservation.setId(42L);
+        reservation.setAgency(agency);
+        reservation.setService("Voyage");
+        reservation.setDescription("Une longue description qui ne doit pas etre publiee");
+        reservation.setStatus(Status.PENDING);
+        reservation.setVersion(0L);
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private ReservationDeltaDTO sentDelta() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq(TOPIC), payload.capture());
+        return (ReservationDeltaDTO) payload.getValue();
+    }
+
+    // =========================================================================
+    // Tests pour publish
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour publish")
+    class PublishTests {
+
+        @Test
+        @DisplayName("Hors transaction, le delta part immediatement sur le topic de l'agence")
+        void publish_NoTransaction_SendsDeltaToAgencyTopic() {
+            publisher.publish(reservation, ReservationEventPublisher.SERVICE);
+
+            ReservationDeltaDTO delta = sentDelta();
+            assertEquals(42L, delta.getId());
+            assertEquals(Status.PENDING, delta.getStatus());
+            assertEquals(0L, delta.getVersion());
+            assertEquals(1, delta.getChanges().size(), "Seuls les champs demandes sont publies");
+            assertEquals("Voyage", delta.getChanges().get(ReservationEventPublisher.SERVICE));
+        }
+
+        @Test
+        @DisplayName("Dans une transaction, le delta part apres le commit avec la version ecrite en base")
+        void publish_InTransaction_SendsAfterCommitWithFlushedVersion() {
+            Agent agent = new Agent();
+            agent.setId(7L);
+            reservation.setHandledByAgent(agent);
+            reservation.setStatus(Status.CONFIRMED);
+            reservation.setStartDateTime(LocalDateTime.of(2026, 3, 10, 10, 0));
+
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                publisher.publish(reservation, ReservationEventPublisher.START_DATE_TIME,
+                        ReservationEventPublisher.END_DATE_TIME, ReservationEventPublisher.HANDLED_BY_AGENT_ID);
+                verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+
+                // Version incrementee au flush, avant le commit
+                reservation.setVersion(1L);
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+
+            ReservationDeltaDTO delta = sentDelta();
+            assertEquals(1L, delta.getVersion());
+            assertEquals(7L, delta.getChanges().get(ReservationEventPublisher.HANDLED_BY_AGENT_ID));
+            assertFalse(delta.getChanges().containsKey(ReservationEventPublisher.END_DATE_TIME),
+                    "Un champ null n'est pas publie");
+        }
+
+        @Test
+        @DisplayName("Une reservation sans agence n'est pas publiee")
+        void publish_NoAgency_NothingSent() {
+            reservation.setAgency(null);
+
+            publisher.publish(reservation);
+
+            verifyNoInteractions(messagingTemplate);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour publishLegacy
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour publishLegacy")
+    class PublishLegacyTests {
+
+        @Test
+        @DisplayName("Par defaut, rien n'est diffuse sur les anciens topics globaux")
+        void publishLegacy_DisabledByDefault_NothingSent() {
+            publisher.publishLegacy(ReservationEventPublisher.LEGACY_UPDATED_TOPIC, reservation);
+
+            verifyNoInteractions(messagingTemplate);
+        }
+
+        @Test
+        @DisplayName("Une fois active, l'entite est diffusee sur l'ancien topic")
+        void publishLegacy_Enabled_SendsEntity() throws Exception {
+            setField(publisher, "legacyTopicsEnabled", true);
+
+            publisher.publishLegacy(ReservationEventPublisher.LEGACY_CREATED_TOPIC, reservation);
+
+            verify(messagingTemplate).convertAndSend(ReservationEventPublisher.LEGACY_CREATED_TOPIC, reservation);
+        }
+    }
+}
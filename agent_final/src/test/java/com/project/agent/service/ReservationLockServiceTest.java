@@ -0,0 +1,316 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.project.agent.dto.LockHeartbeatDTO;
+import com.project.agent.dto.LockReleaseDTO;
+import com.project.agent.dto.LockStatusDTO;
+import com.project.agent.model.Agent;
+import com.project.agent.model.Users;
+import com.project.agent.repository.AgentRepository;
+import com.project.agent.repository.ReservationRepository;
+import com.project.agent.repository.ReservationRepository.ReservationAgency;
+import com.project.agent.service.lock.LockExpiryTimer;
+import com.project.agent.service.lock.LockLeaseRegistry;
+import com.project.agent.service.lock.ReservationLockStore;
+import com.project.agent.service.lock.ReservationLockStore.LockEntry;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReservationLockServiceTest {
+
+    private static final Long RESERVATION_ID = 42L;
+    private static final Long AGENT_ID = 7L;
+
+    @Mock
+    private ReservationLockStore lockStore;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private AgentRepository agentRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private LockExpiryTimer expiryTimer;
+
+    @Spy
+    private LockLeaseRegistry leaseRegistry = new LockLeaseRegistry();
+
+    @InjectMocks
+    private ReservationLockService lockService;
+
+    private Users agentUser;
+
+    private record TestReservationAgency(Long getId, Long getAgencyId) implements ReservationAgency {
+    }
+
+    @BeforeEach
+    void setUp() {
+        agentUser = new Users();
+        agentUser.setId(3L);
+        agentUser.setUsername("Agent Test");
+        agentUser.setEmail("agent@test.com");
+        agentUser.setRole(Users.Role.AGENT);
+        agentUser.setAgentId(AGENT_ID);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(agentUser, null, agentUser.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // =========================================================================
+    // Tests pour lockReservation
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour lockReservation")
+    class LockReservationTests {
+
+        @Test
+        @DisplayName("Verrouille avec une seule operation du stockage et sans requete d'identite")
+        void lockReservation_Free_SingleStoreCall() {
+            when(lockStore.tryAcquire(eq(RESERVATION_ID), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenAnswer(invocation -> new LockEntry(RESERVATION_ID, AGENT_ID, LocalDateTime.now(),
+                            invocation.getArgument(2)));
+
+            assertTrue(lockService.lockReservation(RESERVATION_ID));
+
+            verify(lockStore, times(1)).tryAcquire(eq(RESERVATION_ID), eq(AGENT_ID), any(LocalDateTime.class));
+            verifyNoInteractions(agentRepository);
+            verify(reservationRepository, never()).findById(anyLong());
+            verify(messagingTemplate).convertAndSend(eq("/topic/lock-status/" + RESERVATION_ID), any(Object.class));
+            verify(expiryTimer).schedule(eq(RESERVATION_ID), any(LocalDateTime.class));
+        }
+
+        @Test
+        @DisplayName("Echoue sans notifier si un autre agent detient le verrou")
+        void lockReservation_HeldByOther_ReturnsFalse() {
+            when(lockStore.tryAcquire(eq(RESERVATION_ID), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenReturn(new LockEntry(RESERVATION_ID, 99L, LocalDateTime.now(),
+                            LocalDateTime.now().plusMinutes(5)));
+
+            assertFalse(lockService.lockReservation(RESERVATION_ID));
+
+            verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+            verify(expiryTimer, never()).schedule(anyLong(), any(LocalDateTime.class));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour getActiveLocks
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour getActiveLocks")
+    class GetActiveLocksTests {
+
+        @Test
+        @DisplayName("Renvoie les verrous filtres par le stockage avec une seule requete d'agents")
+        void getActiveLocks_FiltersByAgency_ConstantQueries() {
+            LocalDateTime now = LocalDateTime.now();
+            when(lockStore.findActiveByAgency(10L)).thenReturn(List.of(
+                    new LockEntry(1L, AGENT_ID, now, now.plusMinutes(5)),
+                    new LockEntry(3L, 99L, now, now.plusMinutes(3))));
+            Agent agent = new Agent();
+            agent.setId(AGENT_ID);
+            when(agentRepository.findAllById(any())).thenReturn(List.of(agent));
+
+            List<LockStatusDTO> snapshot = lockService.getActiveLocks(10L);
+
+            assertEquals(List.of(1L, 3L), snapshot.stream().map(LockStatusDTO::getReservationId).toList());
+            assertTrue(snapshot.stream().allMatch(lock -> lock.isLocked() && lock.getAgencyId().equals(10L)));
+            assertEquals(now.plusMinutes(5), snapshot.get(0).getExpiresAt());
+            verify(lockStore, never()).findAllActive();
+            verify(agentRepository, times(1)).findAllById(any());
+        }
+
+        @Test
+        @DisplayName("Aucun agent n'est charge si l'agence n'a pas de verrou")
+        void getActiveLocks_NoLocks_NoAgentQuery() {
+            when(lockStore.findActiveByAgency(10L)).thenReturn(List.of());
+
+            assertTrue(lockService.getActiveLocks(10L).isEmpty());
+
+            verify(agentRepository, never()).findAllById(any());
+        }
+
+        @Test
+        @DisplayName("Le delta de verrouillage est aussi publie sur le topic de l'agence")
+        void lockReservation_PublishesAgencyDelta() {
+            when(reservationRepository.findAgencyIdsByIdIn(anyCollection()))
+                    .thenReturn(List.of(new TestReservationAgency(RESERVATION_ID, 10L)));
+            when(lockStore.tryAcquire(eq(RESERVATION_ID), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenAnswer(invocation -> new LockEntry(RESERVATION_ID, AGENT_ID, LocalDateTime.now(),
+                            invocation.getArgument(2)));
+
+            lockService.lockReservation(RESERVATION_ID);
+
+            verify(messagingTemplate).convertAndSend(eq("/topic/agency/10/locks"),
+                    argThat((Object payload) -> payload instanceof LockStatusDTO lock
+                            && lock.isLocked() && lock.getExpiresAt() != null));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour releaseExpiredLocks
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour releaseExpiredLocks")
+    class ReleaseExpiredLocksTests {
+
+        @Test
+        @DisplayName("Libere un lot en un seul appel et charge les agents en une requete")
+        void releaseExpiredLocks_Batch_SingleReleaseAndAgentQuery() {
+            LocalDateTime expiredAt = LocalDateTime.now().minusSeconds(1);
+            when(lockStore.releaseExpired(eq(List.of(1L, 2L)), any(LocalDateTime.class))).thenReturn(List.of(
+                    new LockEntry(1L, AGENT_ID, expiredAt.minusMinutes(5), expiredAt),
+                    new LockEntry(2L, AGENT_ID, expiredAt.minusMinutes(5), expiredAt)));
+            Agent agent = new Agent();
+            agent.setId(AGENT_ID);
+            when(agentRepository.findAllById(any())).thenReturn(List.of(agent));
+
+            lockService.releaseExpiredLocks(List.of(1L, 2L));
+
+            verify(lockStore, times(1)).releaseExpired(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+            verify(agentRepository, times(1)).findAllById(any());
+            verify(messagingTemplate).convertAndSend(eq("/topic/lock-status/1"), any(Object.class));
+            verify(messagingTemplate).convertAndSend(eq("/topic/lock-status/2"), any(Object.class));
+        }
+
+        @Test
+        @DisplayName("Un seul message par agence et un seul sur le topic general pour tout le lot")
+        void releaseExpiredLocks_Batch_OneMessagePerAgency() {
+            LocalDateTime expiredAt = LocalDateTime.now().minusSeconds(1);
+            when(lockStore.releaseExpired(anyList(), any(LocalDateTime.class))).thenReturn(List.of(
+                    new LockEntry(1L, AGENT_ID, expiredAt.minusMinutes(5), expiredAt),
+                    new LockEntry(2L, AGENT_ID, expiredAt.minusMinutes(5), expiredAt),
+                    new LockEntry(3L, AGENT_ID, expiredAt.minusMinutes(5), expiredAt)));
+            when(reservationRepository.findAgencyIdsByIdIn(anyCollection())).thenReturn(List.of(
+                    new TestReservationAgency(1L, 10L),
+                    new TestReservationAgency(2L, 10L),
+                    new TestReservationAgency(3L, 20L)));
+
+            lockService.releaseExpiredLocks(List.of(1L, 2L, 3L));
+
+            verify(reservationRepository, times(1)).findAgencyIdsByIdIn(anyCollection());
+            verify(messagingTemplate).convertAndSend("/topic/agency/10/locks/released",
+                    new LockReleaseDTO(10L, List.of(1L, 2L), "Réservation disponible pour traitement"));
+            verify(messagingTemplate).convertAndSend("/topic/agency/20/locks/released",
+                    new LockReleaseDTO(20L, List.of(3L), "Réservation disponible pour traitement"));
+            verify(messagingTemplate).convertAndSend("/topic/reservation-locks-released",
+                    new LockReleaseDTO(null, List.of(1L, 2L, 3L), "Réservation disponible pour traitement"));
+            verify(messagingTemplate, never()).convertAndSend(eq("/topic/reservation-lock-status"), any(Object.class));
+            verify(messagingTemplate, never()).convertAndSend(eq("/topic/agency/10/locks"), any(Object.class));
+            // Un message par reservation, un par agence et un sur le topic general
+            verify(messagingTemplate, times(6)).convertAndSend(anyString(), any(Object.class));
+        }
+
+        @Test
+        @DisplayName("Ne notifie rien si aucun verrou n'etait reellement expire")
+        void releaseExpiredLocks_NothingExpired_NoNotification() {
+            when(lockStore.releaseExpired(anyList(), any(LocalDateTime.class))).thenReturn(List.of());
+
+            lockService.releaseExpiredLocks(List.of(1L));
+
+            verifyNoInteractions(agentRepository, messagingTemplate);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour les baux de session WebSocket
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour les baux de session WebSocket")
+    class SessionLeaseTests {
+
+        @Test
+        @DisplayName("Un battement renouvelle tous les verrous de la session en une operation")
+        void renewSessionLeases_RenewsInOneCall() {
+            when(lockStore.extendAll(eq(List.of(1L, 2L)), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenReturn(List.of(1L));
+
+            LockHeartbeatDTO result = lockService.renewSessionLeases("session-1", agentUser, List.of(1L, 2L, 1L));
+
+            assertEquals(List.of(1L), result.getRenewed());
+            assertEquals(List.of(2L), result.getLost());
+            verify(lockStore, times(1)).extendAll(anyCollection(), eq(AGENT_ID), any(LocalDateTime.class));
+            verify(expiryTimer).schedule(eq(1L), any(LocalDateTime.class));
+        }
+
+        @Test
+        @DisplayName("Refuse un battement sans agent authentifie")
+        void renewSessionLeases_Anonymous_Throws() {
+            assertThrows(RuntimeException.class,
+                    () -> lockService.renewSessionLeases("session-1", null, List.of(1L)));
+            verifyNoInteractions(lockStore);
+        }
+
+        @Test
+        @DisplayName("La deconnexion libere les verrous de la session en une operation")
+        void releaseSessionLeases_ReleasesTrackedLocks() {
+            when(lockStore.extendAll(anyCollection(), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenReturn(List.of(1L, 2L));
+            lockService.renewSessionLeases("session-1", agentUser, List.of(1L, 2L));
+            LocalDateTime now = LocalDateTime.now();
+            when(lockStore.releaseAll(anyCollection(), eq(AGENT_ID))).thenReturn(List.of(
+                    new LockEntry(1L, AGENT_ID, now, now.plusMinutes(5)),
+                    new LockEntry(2L, AGENT_ID, now, now.plusMinutes(5))));
+
+            lockService.releaseSessionLeases("session-1");
+
+            verify(lockStore, times(1)).releaseAll(argThat(ids -> ids.size() == 2), eq(AGENT_ID));
+            verify(messagingTemplate).convertAndSend(eq("/topic/lock-status/1"), any(Object.class));
+            verify(messagingTemplate).convertAndSend(eq("/topic/lock-status/2"), any(Object.class));
+            verify(expiryTimer).cancel(1L);
+            verify(expiryTimer).cancel(2L);
+        }
+
+        @Test
+        @DisplayName("Un verrou encore renouvele par un autre onglet du meme agent n'est pas libere")
+        void releaseSessionLeases_SharedWithOtherSession_Kept() {
+            when(lockStore.extendAll(anyCollection(), eq(AGENT_ID), any(LocalDateTime.class)))
+                    .thenAnswer(invocation -> List.copyOf(invocation.<List<Long>>getArgument(0)));
+            lockService.renewSessionLeases("session-1", agentUser, List.of(1L, 2L));
+            lockService.renewSessionLeases("session-2", agentUser, List.of(2L));
+
+            lockService.releaseSessionLeases("session-1");
+
+            verify(lockStore).releaseAll(argThat(ids -> ids.size() == 1 && ids.contains(1L)), eq(AGENT_ID));
+        }
+
+        @Test
+        @DisplayName("La deconnexion d'une session sans verrou ne fait rien")
+        void releaseSessionLeases_UnknownSession_NoOp() {
+            lockService.releaseSessionLeases("inconnue");
+
+            verifyNoInteractions(lockStore, messagingTemplate);
+        }
+    }
+}
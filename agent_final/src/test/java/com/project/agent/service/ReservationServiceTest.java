@@ -20,7 +20,6 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
@@ -37,6 +36,7 @@ import com.project.agent.repository.AgencyRepository;
 import com.project.agent.repository.AgentRepository;
 import com.project.agent.repository.ReservationRepository;
 import com.project.agent.repository.UserRepository;
+import com.project.agent.service.IdentityCache.Identity;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -58,7 +58,10 @@ class ReservationServiceTest {
     private AvailabilityService availabilityService;
 
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private IdentityCache identityCache;
+
+    @Mock
+    private ReservationEventPublisher reservationEvents;
 
     @Mock
     private Authentication authentication;
@@ -121,6 +124,18 @@ class ReservationServiceTest {
         when(securityContext.getAuthentication()).thenReturn(authentication);
         SecurityContextHolder.setContext(securityContext);
         when(authentication.getName()).thenReturn(email);
+
+        // Identite resolue par le cache, sans requete utilisateur ni agent
+        Identity identity = email.equals(agentUser.getEmail())
+                ? new Identity(agentUser.getId(), email, agentUser.getDisplayName(), Role.AGENT, testAgent.getId(),
+                        testAgency.getId())
+                : new Identity(testUser.getId(), email, testUser.getDisplayName(), Role.USER, null, null);
+        when(identityCache.current()).thenReturn(Optional.of(identity));
+        if (identity.isAgent()) {
+            when(identityCache.currentAgent()).thenReturn(identity);
+        } else {
+            when(identityCache.currentAgent()).thenThrow(new RuntimeException("Agent non trouv\u00e9"));
+        }
     }
 
     // =========================================================================
@@ -141,7 +156,7 @@ class ReservationServiceTest {
             request.setDescription("Voyage a Paris");
             request.setAgencyId(1L);
 
-            when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(testUser));
+            when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
             when(reservationRepository.findByUserAndStatusIn(eq(testUser), anyList()))
                     .thenReturn(Collections.emptyList());
             when(agencyRepository.findById(1L)).thenReturn(Optional.of(testAgency));
@@ -172,7 +187,9 @@ class ReservationServiceTest {
                     "La date de creation doit etre definie");
 
             verify(reservationRepository).save(any(Reservation.class));
-            verify(messagingTemplate).convertAndSend(eq("/topic/reservations"), any(Reservation.class));
+            verify(reservationEvents).publishLegacy(eq(ReservationEventPublisher.LEGACY_CREATED_TOPIC), any(Reservation.class));
+            verify(reservationEvents).publish(any(Reservation.class), eq(ReservationEventPublisher.SERVICE),
+                    eq(ReservationEventPublisher.PREFERRED_DATE));
         }
 
         @Test
@@ -190,7 +207,7 @@ class ReservationServiceTest {
             existingReservation.setId(99L);
             existingReservation.setStatus(Status.PENDING);
 
-            when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(testUser));
+            when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
             when(reservationRepository.findByUserAndStatusIn(eq(testUser), anyList()))
                     .thenReturn(Arrays.asList(existingReservation));
 
@@ -203,7 +220,7 @@ class ReservationServiceTest {
                     "Le message doit mentionner la reservation active existante");
 
             verify(reservationRepository, never()).save(any(Reservation.class));
-            verify(messagingTemplate, never()).convertAndSend(anyString(), any(Reservation.class));
+            verify(reservationEvents, never()).publishLegacy(anyString(), any(Reservation.class));
         }
 
         @Test
@@ -218,7 +235,7 @@ class ReservationServiceTest {
             request.setAgencyId(1L);
             request.setPreferredDate("2025-06-15T10:00:00");
 
-            when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(testUser));
+            when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
             when(reservationRepository.findByUserAndStatusIn(eq(testUser), anyList()))
                     .thenReturn(Collections.emptyList());
             when(agencyRepository.findById(1L)).thenReturn(Optional.of(testAgency));
@@ -255,8 +272,7 @@ class ReservationServiceTest {
             LocalDateTime end = LocalDateTime.of(2025, 6, 15, 11, 0);
 
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
-            when(userRepository.findByEmail("agent@example.com")).thenReturn(Optional.of(agentUser));
-            when(agentRepository.findByUser(agentUser)).thenReturn(Optional.of(testAgent));
+            when(agentRepository.findById(1L)).thenReturn(Optional.of(testAgent));
             when(reservationRepository.save(any(Reservation.class)))
                     .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -279,7 +295,9 @@ class ReservationServiceTest {
                     "La description doit contenir le message de l'agent");
 
             verify(availabilityService).updateAvailabilityAfterReservation(any(Reservation.class));
-            verify(messagingTemplate).convertAndSend(eq("/topic/reservation-updated"), any(Reservation.class));
+            verify(reservationEvents).publishLegacy(eq(ReservationEventPublisher.LEGACY_UPDATED_TOPIC), any(Reservation.class));
+            verify(reservationEvents).publish(any(Reservation.class), eq(ReservationEventPublisher.START_DATE_TIME),
+                    eq(ReservationEventPublisher.END_DATE_TIME), eq(ReservationEventPublisher.HANDLED_BY_AGENT_ID));
         }
 
         @Test
@@ -363,8 +381,7 @@ class ReservationServiceTest {
                     .when(authentication).getAuthorities();
 
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
-            when(userRepository.findByEmail("agent@example.com")).thenReturn(Optional.of(agentUser));
-            when(agentRepository.findByUser(agentUser)).thenReturn(Optional.of(testAgent));
+            when(agentRepository.findById(1L)).thenReturn(Optional.of(testAgent));
             when(reservationRepository.save(any(Reservation.class)))
                     .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -381,7 +398,7 @@ class ReservationServiceTest {
                     "L'agent doit etre assigne");
 
             verify(reservationRepository).save(any(Reservation.class));
-            verify(messagingTemplate).convertAndSend(eq("/topic/reservation-updated"), any(Reservation.class));
+            verify(reservationEvents).publishLegacy(eq(ReservationEventPublisher.LEGACY_UPDATED_TOPIC), any(Reservation.class));
         }
 
         @Test
@@ -415,8 +432,7 @@ class ReservationServiceTest {
             testReservation.setStatus(Status.CONFIRMED);
 
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
-            when(userRepository.findByEmail("agent@example.com")).thenReturn(Optional.of(agentUser));
-            when(agentRepository.findByUser(agentUser)).thenReturn(Optional.of(testAgent));
+            when(agentRepository.findById(1L)).thenReturn(Optional.of(testAgent));
             when(reservationRepository.save(any(Reservation.class)))
                     .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -469,8 +485,7 @@ class ReservationServiceTest {
             testReservation.setStatus(Status.CONFIRMED);
 
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
-            when(userRepository.findByEmail("agent@example.com")).thenReturn(Optional.of(agentUser));
-            when(agentRepository.findByUser(agentUser)).thenReturn(Optional.of(testAgent));
+            when(agentRepository.findById(1L)).thenReturn(Optional.of(testAgent));
             when(reservationRepository.save(any(Reservation.class)))
                     .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -489,7 +504,7 @@ class ReservationServiceTest {
                     "La description doit contenir les notes de completion");
 
             verify(reservationRepository).save(any(Reservation.class));
-            verify(messagingTemplate).convertAndSend(eq("/topic/reservation-updated"), any(Reservation.class));
+            verify(reservationEvents).publishLegacy(eq(ReservationEventPublisher.LEGACY_UPDATED_TOPIC), any(Reservation.class));
         }
 
         @Test
@@ -522,8 +537,7 @@ class ReservationServiceTest {
             testReservation.setStatus(Status.CONFIRMED);
 
             when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
-            when(userRepository.findByEmail("agent@example.com")).thenReturn(Optional.of(agentUser));
-            when(agentRepository.findByUser(agentUser)).thenReturn(Optional.of(testAgent));
+            when(agentRepository.findById(1L)).thenReturn(Optional.of(testAgent));
             when(reservationRepository.save(any(Reservation.class)))
                     .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -0,0 +1,58 @@
+package com.project.agent.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class TransactionHooksTest {
+
+    private final List<String> actions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Hors transaction : afterCommit ne fait rien, afterCommitOrNow execute l'action")
+    void noTransaction_OnlyAfterCommitOrNowRuns() {
+        TransactionHooks.afterCommit(() -> actions.add("afterCommit"));
+        TransactionHooks.afterCommitOrNow(() -> actions.add("afterCommitOrNow"));
+
+        assertEquals(List.of("afterCommitOrNow"), actions);
+    }
+
+    @Test
+    @DisplayName("En transaction : les actions attendent le commit")
+    void transaction_ActionsRunAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionHooks.afterCommit(() -> actions.add("afterCommit"));
+        TransactionHooks.afterCommitOrNow(() -> actions.add("afterCommitOrNow"));
+        assertTrue(actions.isEmpty());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(List.of("afterCommit", "afterCommitOrNow"), actions);
+    }
+
+    @Test
+    @DisplayName("Transaction annulee : aucune action n'est executee")
+    void rollback_NoAction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionHooks.afterCommitOrNow(() -> actions.add("afterCommitOrNow"));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertTrue(actions.isEmpty());
+    }
+}
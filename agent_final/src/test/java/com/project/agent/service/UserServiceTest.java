@@ -33,6 +33,7 @@ import com.project.agent.repository.PendingUserRepository;
 import com.project.agent.repository.ReservationRepository;
 import com.project.agent.repository.UserRepository;
 import com.project.agent.repository.VerificationCodeRepository;
+import com.project.agent.security.TokenRevocationList;
 
 import jakarta.persistence.EntityManager;
 
@@ -66,6 +67,12 @@ class UserServiceTest {
     @Mock
     private VerificationCodeRepository verificationCodeRepository;
 
+    @Mock
+    private IdentityCache identityCache;
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
     @InjectMocks
     private UserService userService;
 
@@ -319,6 +326,7 @@ class UserServiceTest {
             verify(userRepository).save(userCaptor.capture());
             assertEquals("newEncodedPassword", userCaptor.getValue().getPassword(),
                     "Le mot de passe doit etre mis a jour avec la nouvelle valeur encodee");
+            verify(tokenRevocationList).revokeAll("test@example.com");
         }
 
         @Test
@@ -0,0 +1,63 @@
+package com.project.agent.service.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class ClusterMembershipTest {
+
+    private ClusterMembership membership;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        membership = new ClusterMembership();
+        setField(membership, "enabled", false);
+        setField(membership, "configuredInstanceId", "node-b");
+        membership.start();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // =========================================================================
+    // Tests pour updateShard
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour updateShard")
+    class UpdateShardTests {
+
+        @Test
+        @DisplayName("Chaque agence revient a une seule instance selon son rang")
+        void updateShard_ThreeNodes_AgenciesSplitByRank() {
+            membership.updateShard(List.of("node-a", "node-b", "node-c"));
+
+            assertEquals(1, membership.getShard().index());
+            assertEquals(3, membership.getShard().count());
+            assertTrue(membership.ownsAgency(1L));
+            assertTrue(membership.ownsAgency(4L));
+            assertFalse(membership.ownsAgency(3L));
+            assertFalse(membership.ownsAgency(null));
+        }
+
+        @Test
+        @DisplayName("Instance absente de la liste : elle traite toutes les agences")
+        void updateShard_SelfNotYetVisible_OwnsEverything() {
+            membership.updateShard(List.of("node-a"));
+
+            assertEquals(1, membership.getShard().count());
+            assertTrue(membership.ownsAgency(3L));
+        }
+    }
+}
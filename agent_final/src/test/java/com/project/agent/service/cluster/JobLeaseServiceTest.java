@@ -0,0 +1,103 @@
+package com.project.agent.service.cluster;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import com.project.agent.repository.JobLeaseRepository;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class JobLeaseServiceTest {
+
+    private static final String INSTANCE = "node-a";
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @InjectMocks
+    private JobLeaseService jobLeaseService;
+
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        executions = new AtomicInteger();
+        when(clusterMembership.isEnabled()).thenReturn(true);
+        when(clusterMembership.getInstanceId()).thenReturn(INSTANCE);
+    }
+
+    // =========================================================================
+    // Tests pour runExclusively
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour runExclusively")
+    class RunExclusivelyTests {
+
+        @Test
+        @DisplayName("Bail obtenu : la tache s'execute puis le bail est rendu")
+        void runExclusively_LeaseAcquired_RunsAndReleases() {
+            when(jobLeaseRepository.tryAcquire("job", INSTANCE, 600L)).thenReturn(1);
+
+            boolean ran = jobLeaseService.runExclusively("job", Duration.ofMinutes(10), executions::incrementAndGet);
+
+            assertTrue(ran);
+            assertEquals(1, executions.get());
+            verify(jobLeaseRepository).release("job", INSTANCE, 30L);
+        }
+
+        @Test
+        @DisplayName("Bail detenu par une autre instance : la tache n'est pas executee")
+        void runExclusively_LeaseHeldElsewhere_Skipped() {
+            when(jobLeaseRepository.tryAcquire(anyString(), anyString(), anyLong())).thenReturn(0);
+
+            boolean ran = jobLeaseService.runExclusively("job", Duration.ofMinutes(10), executions::incrementAndGet);
+
+            assertFalse(ran);
+            assertEquals(0, executions.get());
+            verify(jobLeaseRepository, never()).release(anyString(), anyString(), anyLong());
+        }
+
+        @Test
+        @DisplayName("Une tache en erreur rend quand meme son bail")
+        void runExclusively_TaskFails_LeaseReleased() {
+            when(jobLeaseRepository.tryAcquire(anyString(), anyString(), anyLong())).thenReturn(1);
+
+            jobLeaseService.runExclusively("job", Duration.ofMinutes(10), () -> {
+                throw new IllegalStateException("echec");
+            });
+
+            verify(jobLeaseRepository).release("job", INSTANCE, 30L);
+            assertEquals(1L, jobLeaseService.getStatus().get(0).get("localFailures"));
+        }
+
+        @Test
+        @DisplayName("Cluster desactive : la tache s'execute sans bail")
+        void runExclusively_ClusterDisabled_RunsLocally() {
+            when(clusterMembership.isEnabled()).thenReturn(false);
+
+            boolean ran = jobLeaseService.runExclusively("job", Duration.ofMinutes(10), executions::incrementAndGet);
+
+            assertTrue(ran);
+            assertEquals(1, executions.get());
+            verifyNoInteractions(jobLeaseRepository);
+        }
+    }
+}
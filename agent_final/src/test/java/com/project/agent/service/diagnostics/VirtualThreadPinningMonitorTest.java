@@ -0,0 +1,54 @@
+package com.project.agent.service.diagnostics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+
+    // =========================================================================
+    // Tests pour recordPinning
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour recordPinning")
+    class RecordPinningTests {
+
+        @Test
+        @DisplayName("Les epinglages sont regroupes par site, ceux pendant un appel JDBC sont comptes a part")
+        @SuppressWarnings("unchecked")
+        void recordPinning_GroupsBySite() {
+            monitor.recordPinning("com.project.agent.service.Cache.load:42", true, TimeUnit.MILLISECONDS.toNanos(30));
+            monitor.recordPinning("com.project.agent.service.Cache.load:42", true, TimeUnit.MILLISECONDS.toNanos(80));
+            monitor.recordPinning("com.project.agent.service.Other.run:7", false, TimeUnit.MILLISECONDS.toNanos(25));
+
+            Map<String, Object> stats = monitor.getStatistics();
+            assertEquals(3L, stats.get("pinnedEvents"));
+            assertEquals(2L, stats.get("pinnedInJdbc"));
+            assertEquals(135L, stats.get("pinnedMs"));
+
+            Map<String, Map<String, Object>> sites = (Map<String, Map<String, Object>>) stats.get("sites");
+            Map<String, Object> jdbcSite = sites.get("com.project.agent.service.Cache.load:42");
+            assertEquals(2L, jdbcSite.get("count"));
+            assertEquals(80L, jdbcSite.get("maxMs"));
+            assertEquals(true, jdbcSite.get("jdbc"));
+            assertEquals("com.project.agent.service.Cache.load:42", sites.keySet().iterator().next(),
+                    "Le site le plus frequent doit apparaitre en premier");
+        }
+
+        @Test
+        @DisplayName("Sans threads virtuels, aucun suivi n'est demarre")
+        void start_PlatformThreads_NotMonitoring() {
+            monitor.start();
+
+            assertEquals(false, monitor.getStatistics().get("monitoring"));
+            monitor.stop();
+        }
+    }
+}
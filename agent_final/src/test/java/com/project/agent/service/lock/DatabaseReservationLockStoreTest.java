@@ -0,0 +1,100 @@
+package com.project.agent.service.lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+
+/**
+ * Contrat de ReservationLockStore pour le stockage PostgreSQL, sur une base réelle : l'INSERT
+ * ... ON CONFLICT de ACQUIRE_SQL s'appuie sur l'index unique partiel uk_reservation_lock_active,
+ * que H2 ne sait pas reproduire. Chaque appel du stockage s'exécute dans sa propre transaction.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import({ EmbeddedPostgresConfiguration.class, DatabaseReservationLockStore.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DatabaseReservationLockStoreTest extends ReservationLockStoreContract {
+
+    @Autowired
+    private DatabaseReservationLockStore databaseStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Agences, réservations et agents attendus par le contrat, avec leurs identifiants fixes
+     */
+    @Override
+    ReservationLockStore createStore() {
+        jdbcTemplate.update("INSERT INTO agency (id, name, address, city, phone_number) "
+                + "VALUES (10, 'Agence 10', '1 rue', 'Ville', '0102030405'), (20, 'Agence 20', '2 rue', 'Ville', '0102030406')");
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password, role) "
+                + "SELECT g, 'agent' || g, 'agent' || g || '@test.com', 'motdepasse', 'AGENT' "
+                + "FROM generate_series(1, ?) g", AGENTS);
+        jdbcTemplate.update("INSERT INTO agent (id, user_id, available) SELECT g, g, true FROM generate_series(1, ?) g",
+                AGENTS);
+        jdbcTemplate.update("INSERT INTO reservation (id, user_id, agency_id, reminder_sent, short_reminder_sent, version) "
+                + "VALUES (1, 1, 10, false, false, 0), (2, 1, 20, false, false, 0), (3, 1, 10, false, false, 0), "
+                + "(42, 1, 20, false, false, 0)");
+        databaseStore.ensureActiveLockIndex();
+        return databaseStore;
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE reservation_lock, reservation, agent, users, agency CASCADE");
+    }
+
+    @Test
+    @DisplayName("Un verrou libere laisse sa ligne inactive et un nouveau verrou est insere")
+    void tryAcquire_AfterRelease_InsertsNewActiveRow() {
+        store.tryAcquire(RESERVATION_ID, AGENT_1, LocalDateTime.now().plusMinutes(5));
+        store.release(RESERVATION_ID, AGENT_1);
+
+        assertTrue(store.tryAcquire(RESERVATION_ID, AGENT_2, LocalDateTime.now().plusMinutes(5)).isHeldBy(AGENT_2));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM reservation_lock WHERE reservation_id = ?", Integer.class, RESERVATION_ID));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM reservation_lock WHERE reservation_id = ? AND active", Integer.class, RESERVATION_ID));
+    }
+
+    @Test
+    @DisplayName("Une reservation inexistante est signalee sans verrou cree")
+    void tryAcquire_UnknownReservation_Throws() {
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> store.tryAcquire(999L, AGENT_1, LocalDateTime.now().plusMinutes(5)));
+
+        assertEquals("Réservation non trouvée", error.getMessage());
+    }
+
+    @Test
+    @DisplayName("Les verrous actifs en double sont desactives avant la creation de l'index partiel")
+    void ensureActiveLockIndex_Duplicates_KeepsLatest() {
+        jdbcTemplate.execute("DROP INDEX uk_reservation_lock_active");
+        String insert = "INSERT INTO reservation_lock (reservation_id, locked_by_id, locked_at, expires_at, active) "
+                + "VALUES (?, ?, LOCALTIMESTAMP, LOCALTIMESTAMP + interval '5 minutes', true)";
+        jdbcTemplate.update(insert, RESERVATION_ID, AGENT_1);
+        jdbcTemplate.update(insert, RESERVATION_ID, AGENT_2);
+
+        databaseStore.ensureActiveLockIndex();
+
+        assertEquals(AGENT_2, store.findActive(RESERVATION_ID).map(lock -> lock.agentId()).orElse(null));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM reservation_lock WHERE active", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_indexes WHERE indexname = 'uk_reservation_lock_active'", Integer.class));
+    }
+}
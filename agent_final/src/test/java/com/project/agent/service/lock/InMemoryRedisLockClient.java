@@ -0,0 +1,106 @@
+package com.project.agent.service.lock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Substitut embarqué de Redis pour les tests : reproduit en mémoire la sémantique
+ * des scripts Lua de SpringDataRedisLockClient, y compris le TTL des clés.
+ * Chaque méthode est synchronisée, comme un script Lua s'exécute sans interruption sur le serveur.
+ */
+class InMemoryRedisLockClient implements RedisLockClient {
+
+    private record StoredValue(String value, long expiresAtMillis) {
+    }
+
+    private final Map<String, StoredValue> values = new HashMap<>();
+
+    @Override
+    public synchronized String acquire(String key, String owner, String value, long nowMillis, long ttlMillis) {
+        String current = get(key);
+        String newValue = value;
+        if (current != null) {
+            String[] parts = current.split("\\|");
+            if (Long.parseLong(parts[2]) >= nowMillis) {
+                if (!parts[0].equals(owner)) {
+                    return current;
+                }
+                newValue = parts[0] + "|" + parts[1] + "|" + value.split("\\|")[2];
+            }
+        }
+        set(key, newValue, ttlMillis);
+        return newValue;
+    }
+
+    @Override
+    public synchronized boolean replaceIfOwned(String key, String owner, String value, long nowMillis, long ttlMillis) {
+        String current = get(key);
+        if (current == null) {
+            return false;
+        }
+        String[] parts = current.split("\\|");
+        if (!parts[0].equals(owner) || Long.parseLong(parts[2]) < nowMillis) {
+            return false;
+        }
+        set(key, value, ttlMillis);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteIfOwned(String key, String owner) {
+        String current = get(key);
+        if (current != null && current.split("\\|")[0].equals(owner)) {
+            values.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean deleteIfEquals(String key, String value) {
+        String current = get(key);
+        if (current != null && current.equals(value)) {
+            values.remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        StoredValue stored = values.get(key);
+        if (stored == null) {
+            return null;
+        }
+        if (stored.expiresAtMillis() <= System.currentTimeMillis()) {
+            values.remove(key);
+            return null;
+        }
+        return stored.value();
+    }
+
+    @Override
+    public synchronized String getAndDelete(String key) {
+        String current = get(key);
+        values.remove(key);
+        return current;
+    }
+
+    @Override
+    public synchronized List<String> scanKeys(String pattern) {
+        String prefix = pattern.endsWith("*") ? pattern.substring(0, pattern.length() - 1) : pattern;
+        List<String> keys = new ArrayList<>();
+        for (String key : values.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private void set(String key, String value, long ttlMillis) {
+        values.put(key, new StoredValue(value, System.currentTimeMillis() + ttlMillis));
+    }
+}
@@ -0,0 +1,97 @@
+package com.project.agent.service.lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LockExpiryTimerTest {
+
+    private LockExpiryTimer timer;
+
+    private final LinkedBlockingQueue<List<Long>> batches = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        timer = new LockExpiryTimer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    @DisplayName("Les echeances atteintes ensemble sont transmises en un seul lot")
+    void dueExpiries_DeliveredAsOneBatch() throws Exception {
+        LocalDateTime past = LocalDateTime.now().minusSeconds(1);
+        timer.schedule(1L, past);
+        timer.schedule(2L, past);
+        timer.schedule(1L, past.plusNanos(1_000_000));
+
+        timer.start(batches::add);
+
+        List<Long> batch = batches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(2, batch.size(), "Chaque reservation ne doit apparaitre qu'une fois");
+        assertEquals(Set.of(1L, 2L), Set.copyOf(batch));
+        assertEquals(0, timer.pendingCount());
+    }
+
+    @Test
+    @DisplayName("Une echeance future n'est pas declenchee avant son heure")
+    void futureExpiry_NotDeliveredEarly() throws Exception {
+        timer.start(batches::add);
+        timer.schedule(1L, LocalDateTime.now().plusNanos(300_000_000));
+
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS), "L'echeance ne doit pas etre atteinte");
+        assertEquals(List.of(1L), batches.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Une echeance prolongee n'est declenchee qu'une fois, a la derniere echeance")
+    void extendedExpiry_DeliveredOnceAtLatestDeadline() throws Exception {
+        timer.start(batches::add);
+        LocalDateTime now = LocalDateTime.now();
+        timer.schedule(1L, now.plusNanos(200_000_000));
+        for (int i = 1; i <= 10; i++) {
+            timer.schedule(1L, now.plusNanos(200_000_000 + i * 50_000_000L));
+        }
+        assertEquals(1, timer.pendingCount());
+
+        assertNull(batches.poll(500, TimeUnit.MILLISECONDS), "Les echeances remplacees ne doivent rien liberer");
+        assertEquals(List.of(1L), batches.poll(5, TimeUnit.SECONDS));
+        assertNull(batches.poll(300, TimeUnit.MILLISECONDS), "Une seule liberation par reservation");
+        assertEquals(0, timer.pendingCount());
+    }
+
+    @Test
+    @DisplayName("Une echeance avancee est declenchee a la nouvelle heure")
+    void earlierExpiry_DeliveredAtNewDeadline() throws Exception {
+        timer.start(batches::add);
+        timer.schedule(1L, LocalDateTime.now().plusSeconds(30));
+        timer.schedule(1L, LocalDateTime.now().plusNanos(100_000_000));
+
+        assertEquals(List.of(1L), batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, timer.pendingCount());
+    }
+
+    @Test
+    @DisplayName("Un verrou libere avant son echeance n'est pas transmis")
+    void cancelledExpiry_NotDelivered() throws Exception {
+        timer.start(batches::add);
+        timer.schedule(1L, LocalDateTime.now().plusNanos(100_000_000));
+        timer.cancel(1L);
+
+        assertNull(batches.poll(400, TimeUnit.MILLISECONDS));
+        assertEquals(0, timer.pendingCount());
+    }
+}
@@ -0,0 +1,213 @@
+package com.project.agent.service.lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.project.agent.service.lock.ReservationLockStore.LockEntry;
+
+/**
+ * Contrat commun des implémentations de ReservationLockStore, exécuté par
+ * ReservationLockStoreTest (mémoire, Redis) et DatabaseReservationLockStoreTest (PostgreSQL).
+ *
+ * Chaque implémentation fournit les mêmes données : réservations 1 et 3 dans l'agence 10,
+ * réservations 2 et 42 dans l'agence 20, agents 1 à 200.
+ */
+abstract class ReservationLockStoreContract {
+
+    static final Long RESERVATION_ID = 42L;
+    static final Long AGENT_1 = 1L;
+    static final Long AGENT_2 = 2L;
+    static final int AGENTS = 200;
+
+    private static LocalDateTime inMinutes(long minutes) {
+        return LocalDateTime.now().plusMinutes(minutes);
+    }
+
+    private static LocalDateTime secondsAgo(long seconds) {
+        return LocalDateTime.now().minusSeconds(seconds);
+    }
+
+    protected ReservationLockStore store;
+
+    abstract ReservationLockStore createStore() throws Exception;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = createStore();
+    }
+
+    @Test
+    @DisplayName("Acquiert un verrou libre")
+    void tryAcquire_Free_Success() {
+        LockEntry holder = store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(5));
+
+        assertTrue(holder.isHeldBy(AGENT_1));
+        assertTrue(store.findActive(RESERVATION_ID).isPresent());
+    }
+
+    @Test
+    @DisplayName("Retourne le detenteur actuel si un autre agent detient le verrou")
+    void tryAcquire_HeldByOther_ReturnsHolder() {
+        store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(5));
+
+        LockEntry holder = store.tryAcquire(RESERVATION_ID, AGENT_2, inMinutes(5));
+
+        assertTrue(holder.isHeldBy(AGENT_1), "Le verrou doit rester a l'agent 1");
+    }
+
+    @Test
+    @DisplayName("Le meme agent prolonge son verrou en le reacquerant")
+    void tryAcquire_SameAgent_ExtendsLock() {
+        LockEntry first = store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(5));
+
+        LockEntry second = store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(10));
+
+        assertTrue(second.isHeldBy(AGENT_1));
+        assertTrue(second.expiresAt().isAfter(first.expiresAt()), "L'expiration doit etre prolongee");
+    }
+
+    @Test
+    @DisplayName("Un verrou expire peut etre pris par un autre agent")
+    void tryAcquire_Expired_TakenByOther() {
+        store.tryAcquire(RESERVATION_ID, AGENT_1, secondsAgo(1));
+
+        assertTrue(store.findActive(RESERVATION_ID).isEmpty(), "Un verrou expire n'est pas actif");
+        assertTrue(store.tryAcquire(RESERVATION_ID, AGENT_2, inMinutes(5)).isHeldBy(AGENT_2));
+    }
+
+    @Test
+    @DisplayName("Seul le detenteur peut liberer ou prolonger le verrou")
+    void releaseAndExtend_OnlyByOwner() {
+        store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(5));
+
+        assertFalse(store.extend(RESERVATION_ID, AGENT_2, inMinutes(10)));
+        assertFalse(store.release(RESERVATION_ID, AGENT_2));
+        assertTrue(store.extend(RESERVATION_ID, AGENT_1, inMinutes(10)));
+        assertTrue(store.release(RESERVATION_ID, AGENT_1));
+        assertTrue(store.findActive(RESERVATION_ID).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Prolongation et liberation groupees limitees aux verrous de l'agent")
+    void extendAllAndReleaseAll_OnlyOwnLocks() {
+        store.tryAcquire(1L, AGENT_1, inMinutes(5));
+        store.tryAcquire(2L, AGENT_1, secondsAgo(1));
+        store.tryAcquire(3L, AGENT_2, inMinutes(5));
+
+        List<Long> extended = store.extendAll(List.of(1L, 2L, 3L), AGENT_1, inMinutes(10));
+
+        assertEquals(List.of(1L), extended, "Seul le verrou valide de l'agent doit etre prolonge");
+
+        List<LockEntry> released = store.releaseAll(List.of(1L, 3L), AGENT_1);
+
+        assertEquals(List.of(1L), released.stream().map(LockEntry::reservationId).toList());
+        assertTrue(store.findActive(3L).isPresent(), "Le verrou d'un autre agent doit etre conserve");
+    }
+
+    @Test
+    @DisplayName("findAllActive retourne uniquement les verrous non expires")
+    void findAllActive_ExcludesExpired() {
+        store.tryAcquire(1L, AGENT_1, inMinutes(5));
+        store.tryAcquire(2L, AGENT_2, secondsAgo(1));
+        store.tryAcquire(3L, AGENT_2, inMinutes(5));
+
+        List<Long> active = store.findAllActive().stream().map(LockEntry::reservationId).sorted().toList();
+
+        assertEquals(List.of(1L, 3L), active);
+    }
+
+    @Test
+    @DisplayName("findActiveByAgency retourne uniquement les verrous actifs de l'agence")
+    void findActiveByAgency_FiltersAgencyAndExpired() {
+        store.tryAcquire(1L, AGENT_1, secondsAgo(1));
+        store.tryAcquire(2L, AGENT_2, inMinutes(5));
+        store.tryAcquire(3L, AGENT_2, inMinutes(5));
+
+        List<Long> active = store.findActiveByAgency(10L).stream().map(LockEntry::reservationId).toList();
+
+        assertEquals(List.of(3L), active);
+    }
+
+    @Test
+    @DisplayName("La liberation forcee retourne le verrou libere")
+    void forceRelease_ReturnsPreviousHolder() {
+        store.tryAcquire(RESERVATION_ID, AGENT_1, inMinutes(5));
+
+        assertEquals(AGENT_1, store.forceRelease(RESERVATION_ID).map(LockEntry::agentId).orElse(null));
+        assertTrue(store.forceRelease(RESERVATION_ID).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Seuls les verrous expires sont liberes par le nettoyage")
+    void releaseExpired_OnlyExpiredLocks() {
+        store.tryAcquire(1L, AGENT_1, secondsAgo(1));
+        store.tryAcquire(2L, AGENT_2, inMinutes(5));
+
+        List<LockEntry> released = store.releaseExpired(LocalDateTime.now());
+
+        assertEquals(1, released.size());
+        assertEquals(1L, released.get(0).reservationId());
+        assertTrue(store.findActive(2L).isPresent(), "Le verrou valide doit etre conserve");
+        assertTrue(store.releaseExpired(LocalDateTime.now()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("La liberation ciblee ignore les reservations hors du lot et les verrous valides")
+    void releaseExpiredByIds_OnlyGivenExpiredLocks() {
+        store.tryAcquire(1L, AGENT_1, secondsAgo(1));
+        store.tryAcquire(2L, AGENT_1, secondsAgo(1));
+        store.tryAcquire(3L, AGENT_2, inMinutes(5));
+
+        List<LockEntry> released = store.releaseExpired(List.of(1L, 3L), LocalDateTime.now());
+
+        assertEquals(List.of(1L), released.stream().map(LockEntry::reservationId).toList());
+        assertEquals(List.of(2L), store.releaseExpired(LocalDateTime.now()).stream()
+                .map(LockEntry::reservationId).toList(), "Le verrou hors du lot doit rester a liberer");
+        assertTrue(store.findActive(3L).isPresent());
+    }
+
+    @Test
+    @DisplayName("200 agents concurrents sur la meme reservation : un seul detenteur")
+    void tryAcquire_ConcurrentAgents_SingleHolder() throws Exception {
+        int agents = AGENTS;
+        ExecutorService executor = Executors.newFixedThreadPool(agents);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long agentId = 1; agentId <= agents; agentId++) {
+                Long agent = agentId;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (store.tryAcquire(RESERVATION_ID, agent, inMinutes(5)).isHeldBy(agent)) {
+                        acquired.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, acquired.get(), "Un seul agent doit obtenir le verrou");
+    }
+}
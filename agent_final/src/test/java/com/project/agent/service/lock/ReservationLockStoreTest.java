@@ -0,0 +1,70 @@
+package com.project.agent.service.lock;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+
+import com.project.agent.repository.ReservationRepository;
+
+/**
+ * Contrat de ReservationLockStore pour les stockages en mémoire et Redis.
+ * Le stockage PostgreSQL est vérifié sur une base réelle par DatabaseReservationLockStoreTest.
+ */
+class ReservationLockStoreTest {
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private static void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Dépôt simulé : réservations 1 et 3 dans l'agence 10, réservations 2 et 42 dans l'agence 20
+     */
+    private static ReservationRepository reservationRepository() {
+        Map<Long, Long> agencies = Map.of(1L, 10L, 2L, 20L, 3L, 10L, 42L, 20L);
+        ReservationRepository repository = mock(ReservationRepository.class);
+        when(repository.findIdsByAgencyIdAndIdIn(anyLong(), any())).thenAnswer(invocation -> {
+            Long agencyId = invocation.getArgument(0);
+            Collection<Long> ids = invocation.getArgument(1);
+            return ids.stream().filter(id -> agencyId.equals(agencies.get(id))).toList();
+        });
+        return repository;
+    }
+
+    @Nested
+    @DisplayName("Stockage en memoire")
+    class InMemoryStoreTests extends ReservationLockStoreContract {
+
+        @Override
+        ReservationLockStore createStore() throws Exception {
+            InMemoryReservationLockStore memoryStore = new InMemoryReservationLockStore();
+            setField(memoryStore, "reservationRepository", reservationRepository());
+            return memoryStore;
+        }
+    }
+
+    @Nested
+    @DisplayName("Stockage Redis avec substitut embarque")
+    class RedisStoreTests extends ReservationLockStoreContract {
+
+        @Override
+        ReservationLockStore createStore() throws Exception {
+            RedisReservationLockStore redisStore = new RedisReservationLockStore();
+            setField(redisStore, "redisLockClient", new InMemoryRedisLockClient());
+            setField(redisStore, "reservationRepository", reservationRepository());
+            return redisStore;
+        }
+    }
+}
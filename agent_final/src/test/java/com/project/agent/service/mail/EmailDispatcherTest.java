@@ -0,0 +1,159 @@
+package com.project.agent.service.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.project.agent.model.EmailOutbox;
+
+class EmailDispatcherTest {
+
+    private EmailDispatcher dispatcher;
+    private EmailOutboxService outboxService;
+    private JavaMailSenderImpl mailSender;
+    private FakeSmtpServer smtpServer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtpServer = new FakeSmtpServer("rejete");
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+
+        outboxService = mock(EmailOutboxService.class);
+        dispatcher = new EmailDispatcher();
+        setField(dispatcher, "outboxService", outboxService);
+        setField(dispatcher, "mailSender", mailSender);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        smtpServer.close();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private EmailOutbox email(long id, String recipient) {
+        EmailOutbox email = new EmailOutbox();
+        email.setId(id);
+        email.setRecipient(recipient);
+        email.setSubject("Sujet " + id);
+        email.setHtmlBody("<p>Bonjour</p>");
+        email.setTextBody("Bonjour");
+        email.setStatus(EmailOutbox.Status.SENDING);
+        email.setAttempts(1);
+        return email;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<Collection<Long>> sentCaptor() {
+        return ArgumentCaptor.forClass(Collection.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<Map<Long, String>> failuresCaptor() {
+        return ArgumentCaptor.forClass(Map.class);
+    }
+
+    // =========================================================================
+    // Tests pour sendBatch
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour sendBatch")
+    class SendBatchTests {
+
+        @Test
+        @DisplayName("Un lot est envoye sur une seule connexion SMTP")
+        void sendBatch_AllDelivered_SingleConnection() {
+            dispatcher.sendBatch(List.of(email(1L, "a@test.com"), email(2L, "b@test.com"), email(3L, "c@test.com")));
+
+            assertEquals(1, smtpServer.getConnectionCount());
+            assertEquals(List.of("a@test.com", "b@test.com", "c@test.com"), smtpServer.getDeliveredRecipients());
+
+            ArgumentCaptor<Collection<Long>> sent = sentCaptor();
+            ArgumentCaptor<Map<Long, String>> failures = failuresCaptor();
+            verify(outboxService).recordResults(sent.capture(), failures.capture());
+            assertEquals(List.of(1L, 2L, 3L), List.copyOf(sent.getValue()));
+            assertTrue(failures.getValue().isEmpty());
+            assertEquals(3L, dispatcher.getStatistics().get("sent"));
+        }
+
+        @Test
+        @DisplayName("Un destinataire refuse n'empeche pas l'envoi des autres emails du lot")
+        void sendBatch_OneRejected_OthersDelivered() {
+            dispatcher.sendBatch(List.of(email(1L, "a@test.com"), email(2L, "rejete@test.com"), email(3L, "c@test.com")));
+
+            assertEquals(List.of("a@test.com", "c@test.com"), smtpServer.getDeliveredRecipients());
+
+            ArgumentCaptor<Collection<Long>> sent = sentCaptor();
+            ArgumentCaptor<Map<Long, String>> failures = failuresCaptor();
+            verify(outboxService).recordResults(sent.capture(), failures.capture());
+            assertEquals(List.of(1L, 3L), List.copyOf(sent.getValue()));
+            assertEquals(Set.of(2L), failures.getValue().keySet());
+        }
+
+        @Test
+        @DisplayName("Serveur SMTP injoignable : tout le lot est en echec")
+        void sendBatch_ServerDown_AllFailed() throws Exception {
+            int closedPort;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                closedPort = socket.getLocalPort();
+            }
+            mailSender.setPort(closedPort);
+
+            dispatcher.sendBatch(List.of(email(1L, "a@test.com"), email(2L, "b@test.com")));
+
+            ArgumentCaptor<Collection<Long>> sent = sentCaptor();
+            ArgumentCaptor<Map<Long, String>> failures = failuresCaptor();
+            verify(outboxService).recordResults(sent.capture(), failures.capture());
+            assertTrue(sent.getValue().isEmpty());
+            assertEquals(Set.of(1L, 2L), failures.getValue().keySet());
+            assertEquals(2L, dispatcher.getStatistics().get("failedAttempts"));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour drain
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour drain")
+    class DrainTests {
+
+        @Test
+        @DisplayName("Les lots sont reserves et envoyes jusqu'a ce que la file soit vide")
+        void drain_ClaimsUntilEmpty() {
+            when(outboxService.claim(anyInt()))
+                    .thenReturn(List.of(email(1L, "a@test.com")))
+                    .thenReturn(List.of(email(2L, "b@test.com")))
+                    .thenReturn(List.of());
+
+            dispatcher.drain();
+
+            verify(outboxService, times(3)).claim(anyInt());
+            verify(outboxService, times(2)).recordResults(anyCollection(), anyMap());
+            assertEquals(List.of("a@test.com", "b@test.com"), smtpServer.getDeliveredRecipients());
+        }
+    }
+}
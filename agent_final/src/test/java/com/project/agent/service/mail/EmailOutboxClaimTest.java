@@ -0,0 +1,135 @@
+package com.project.agent.service.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.model.EmailOutbox;
+import com.project.agent.repository.EmailOutboxRepository;
+
+/**
+ * Réservation des emails de l'outbox sur une base PostgreSQL réelle : le SELECT ... FOR UPDATE
+ * SKIP LOCKED de lockDueIds s'exécute réellement, chaque worker dans sa propre transaction.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import({ EmbeddedPostgresConfiguration.class, EmailOutboxService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmailOutboxClaimTest {
+
+    private static final int EMAILS = 200;
+    private static final int WORKERS = 8;
+    private static final int BATCH_SIZE = 10;
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @AfterEach
+    void tearDown() {
+        outboxRepository.deleteAll();
+    }
+
+    private EmailOutbox save(EmailOutbox.Status status, LocalDateTime nextAttemptAt) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient("user@test.com");
+        email.setSubject("Sujet");
+        email.setStatus(status);
+        email.setCreatedAt(LocalDateTime.now());
+        email.setNextAttemptAt(nextAttemptAt);
+        return outboxRepository.save(email);
+    }
+
+    private static List<Long> ids(List<EmailOutbox> emails) {
+        return emails.stream().map(EmailOutbox::getId).toList();
+    }
+
+    @Test
+    @DisplayName("Workers concurrents : chaque email est reserve une seule fois")
+    void claim_ConcurrentWorkers_EachEmailOnce() throws Exception {
+        for (int i = 0; i < EMAILS; i++) {
+            save(EmailOutbox.Status.PENDING, LocalDateTime.now().minusMinutes(1));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Long> claimed = new ArrayList<>();
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int i = 0; i < WORKERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> mine = new ArrayList<>();
+                    List<EmailOutbox> batch;
+                    while (!(batch = outboxService.claim(BATCH_SIZE)).isEmpty()) {
+                        mine.addAll(ids(batch));
+                    }
+                    return mine;
+                }));
+            }
+
+            start.countDown();
+            for (Future<List<Long>> future : futures) {
+                claimed.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<Long> distinct = new HashSet<>(claimed);
+        assertEquals(EMAILS, claimed.size(), "Aucun email ne doit etre reserve deux fois");
+        assertEquals(EMAILS, distinct.size());
+        assertEquals(EMAILS, outboxRepository.countByStatus(EmailOutbox.Status.SENDING));
+        assertTrue(outboxRepository.findAll().stream().allMatch(email -> email.getAttempts() == 1));
+    }
+
+    @Test
+    @DisplayName("Un email en cours d'envoi n'est repris qu'apres l'expiration de son bail")
+    void claim_SendingLease_ReclaimedOnlyAfterExpiry() {
+        EmailOutbox expired = save(EmailOutbox.Status.SENDING, LocalDateTime.now().minusSeconds(1));
+        save(EmailOutbox.Status.SENDING, LocalDateTime.now().plusMinutes(5));
+
+        List<EmailOutbox> claimed = outboxService.claim(BATCH_SIZE);
+
+        assertEquals(List.of(expired.getId()), ids(claimed));
+        assertEquals(1, claimed.get(0).getAttempts());
+        assertTrue(claimed.get(0).getNextAttemptAt().isAfter(LocalDateTime.now()), "Nouveau bail pour le worker");
+        assertTrue(outboxService.claim(BATCH_SIZE).isEmpty(), "Le nouveau bail empeche une deuxieme reservation");
+    }
+
+    @Test
+    @DisplayName("Seuls les emails echus en attente ou en cours d'envoi sont reserves, les plus anciens d'abord")
+    void claim_OnlyDueEmails_OldestFirst() {
+        EmailOutbox recent = save(EmailOutbox.Status.PENDING, LocalDateTime.now().minusMinutes(1));
+        EmailOutbox oldest = save(EmailOutbox.Status.PENDING, LocalDateTime.now().minusMinutes(10));
+        save(EmailOutbox.Status.PENDING, LocalDateTime.now().plusMinutes(5));
+        save(EmailOutbox.Status.SENT, LocalDateTime.now().minusMinutes(10));
+        save(EmailOutbox.Status.DEAD, LocalDateTime.now().minusMinutes(10));
+
+        assertEquals(List.of(oldest.getId()), ids(outboxService.claim(1)));
+        assertEquals(List.of(recent.getId()), ids(outboxService.claim(BATCH_SIZE)));
+        assertTrue(outboxService.claim(BATCH_SIZE).isEmpty());
+    }
+}
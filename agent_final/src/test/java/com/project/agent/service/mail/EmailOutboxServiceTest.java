@@ -0,0 +1,112 @@
+package com.project.agent.service.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.project.agent.model.EmailOutbox;
+import com.project.agent.repository.EmailOutboxRepository;
+
+class EmailOutboxServiceTest {
+
+    private EmailOutboxService outboxService;
+    private EmailOutboxRepository outboxRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outboxService = new EmailOutboxService();
+        outboxRepository = mock(EmailOutboxRepository.class);
+        setField(outboxService, "outboxRepository", outboxRepository);
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private EmailOutbox sending(long id, int attempts) {
+        EmailOutbox email = new EmailOutbox();
+        email.setId(id);
+        email.setRecipient("user@test.com");
+        email.setStatus(EmailOutbox.Status.SENDING);
+        email.setAttempts(attempts);
+        return email;
+    }
+
+    // =========================================================================
+    // Tests pour recordResults
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour recordResults")
+    class RecordResultsTests {
+
+        @Test
+        @DisplayName("Un email en echec est remis en attente avec un delai croissant")
+        void recordResults_Failure_RetriedWithBackoff() {
+            EmailOutbox email = sending(1L, 2);
+            when(outboxRepository.findAllById(any())).thenReturn(List.of(email));
+            LocalDateTime before = LocalDateTime.now();
+
+            int dead = outboxService.recordResults(List.of(), Map.of(1L, "Connexion refusee"));
+
+            assertEquals(0, dead);
+            assertEquals(EmailOutbox.Status.PENDING, email.getStatus());
+            assertEquals("Connexion refusee", email.getLastError());
+            assertFalse(email.getNextAttemptAt().isBefore(before.plusSeconds(60)));
+        }
+
+        @Test
+        @DisplayName("Apres le nombre maximal de tentatives, l'email est abandonne")
+        void recordResults_MaxAttempts_DeadLettered() {
+            EmailOutbox email = sending(1L, 5);
+            when(outboxRepository.findAllById(any())).thenReturn(List.of(email));
+
+            int dead = outboxService.recordResults(List.of(), Map.of(1L, "550 Mailbox unavailable"));
+
+            assertEquals(1, dead);
+            assertEquals(EmailOutbox.Status.DEAD, email.getStatus());
+        }
+
+        @Test
+        @DisplayName("Les emails envoyes sont marques en une seule requete")
+        void recordResults_Sent_MarkedInBulk() {
+            when(outboxRepository.findAllById(any())).thenReturn(List.of());
+
+            outboxService.recordResults(List.of(1L, 2L), Map.of());
+
+            verify(outboxRepository).markSent(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour backoffSeconds
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour backoffSeconds")
+    class BackoffTests {
+
+        @Test
+        @DisplayName("Le delai double a chaque tentative puis est plafonne")
+        void backoffSeconds_DoublesThenCapped() {
+            assertEquals(30, outboxService.backoffSeconds(1));
+            assertEquals(60, outboxService.backoffSeconds(2));
+            assertEquals(120, outboxService.backoffSeconds(3));
+            assertEquals(3600, outboxService.backoffSeconds(10));
+            assertEquals(3600, outboxService.backoffSeconds(100));
+        }
+    }
+}
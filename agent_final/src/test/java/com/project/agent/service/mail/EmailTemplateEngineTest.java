@@ -0,0 +1,81 @@
+package com.project.agent.service.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class EmailTemplateEngineTest {
+
+    private EmailTemplateEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new EmailTemplateEngine();
+    }
+
+    // =========================================================================
+    // Tests pour loadTemplates
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour loadTemplates")
+    class LoadTemplatesTests {
+
+        @Test
+        @DisplayName("Le template des emails est charge depuis le classpath et rempli en une passe")
+        void loadTemplates_ClasspathTemplate_Rendered() {
+            engine.loadTemplates();
+
+            assertTrue(engine.hasTemplate("email_template"));
+            String html = engine.render("email_template", Map.of(
+                    "TITLE", "Titre", "USERNAME", "Alice", "MESSAGE_CONTENT", "<p>Contenu</p>", "CONCLUSION", "Merci"));
+
+            assertTrue(html.contains("<title>Titre</title>"));
+            assertTrue(html.contains("<strong>Alice</strong>"));
+            assertTrue(html.contains("<p>Contenu</p>"));
+            assertFalse(html.contains("{{"), "Aucune variable ne doit rester, meme sans valeur");
+        }
+    }
+
+    // =========================================================================
+    // Tests pour render
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour render")
+    class RenderTests {
+
+        @Test
+        @DisplayName("Une valeur contenant une variable n'est pas interpretee a nouveau")
+        void render_ValueWithPlaceholder_NotReplacedTwice() {
+            engine.register("test", "A {{X}} B {{Y}} C");
+
+            assertEquals("A {{Y}} B y C", engine.render("test", Map.of("X", "{{Y}}", "Y", "y")));
+        }
+
+        @Test
+        @DisplayName("La traduction la plus precise est choisie, sinon la version par defaut")
+        void render_Locale_FallsBackToLanguageThenDefault() {
+            engine.register("test", "Bonjour {{NOM}}");
+            engine.register("test_en", "Hello {{NOM}}");
+            engine.register("test_en_US", "Hi {{NOM}}");
+
+            assertEquals("Hi Bob", engine.render("test", Locale.US, Map.of("NOM", "Bob")));
+            assertEquals("Hello Bob", engine.render("test", Locale.UK, Map.of("NOM", "Bob")));
+            assertEquals("Bonjour Bob", engine.render("test", Locale.GERMAN, Map.of("NOM", "Bob")));
+            assertEquals("Bonjour Bob", engine.render("test", Map.of("NOM", "Bob")));
+        }
+
+        @Test
+        @DisplayName("Template inconnu : exception")
+        void render_UnknownTemplate_Throws() {
+            RuntimeException exception = assertThrows(RuntimeException.class,
+                    () -> engine.render("inconnu", Map.of()));
+            assertTrue(exception.getMessage().contains("inconnu"));
+        }
+    }
+}
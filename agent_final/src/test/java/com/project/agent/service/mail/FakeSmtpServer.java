@@ -0,0 +1,107 @@
+package com.project.agent.service.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Substitut embarqué d'un serveur SMTP pour les tests : accepte les connexions sur un port
+ * local libre, répond au dialogue SMTP minimal (sans authentification ni STARTTLS) et
+ * enregistre les destinataires des messages reçus. Les destinataires contenant
+ * rejectedMarker sont refusés (550) au RCPT TO.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final String rejectedMarker;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<String> deliveredRecipients = new ArrayList<>();
+    private final Thread acceptor;
+
+    FakeSmtpServer(String rejectedMarker) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.rejectedMarker = rejectedMarker;
+        this.acceptor = Thread.ofPlatform().name("fake-smtp").daemon(true).start(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    synchronized List<String> getDeliveredRecipients() {
+        return new ArrayList<>(deliveredRecipients);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        acceptor.interrupt();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                handle(socket);
+            } catch (IOException e) {
+                // Serveur fermé ou client déconnecté
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        OutputStream out = socket.getOutputStream();
+        reply(out, "220 localhost ESMTP");
+
+        List<String> recipients = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.toUpperCase();
+            if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                reply(out, "250 localhost");
+            } else if (command.startsWith("MAIL FROM")) {
+                recipients.clear();
+                reply(out, "250 OK");
+            } else if (command.startsWith("RCPT TO")) {
+                if (rejectedMarker != null && line.contains(rejectedMarker)) {
+                    reply(out, "550 Mailbox unavailable");
+                } else {
+                    recipients.add(line.substring(line.indexOf(':') + 1).replaceAll("[<> ]", ""));
+                    reply(out, "250 OK");
+                }
+            } else if (command.startsWith("DATA")) {
+                reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                while ((line = in.readLine()) != null && !line.equals(".")) {
+                    // Contenu du message ignoré
+                }
+                synchronized (this) {
+                    deliveredRecipients.addAll(recipients);
+                }
+                reply(out, "250 OK");
+            } else if (command.startsWith("QUIT")) {
+                reply(out, "221 Bye");
+                return;
+            } else {
+                // RSET, NOOP (vérification de la connexion par JavaMail) et autres commandes
+                reply(out, "250 OK");
+            }
+        }
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+}
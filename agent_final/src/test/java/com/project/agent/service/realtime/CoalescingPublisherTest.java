@@ -0,0 +1,179 @@
+package com.project.agent.service.realtime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class CoalescingPublisherTest {
+
+    private static final String TOPIC = "/topic/availability/1";
+
+    private CoalescingPublisher publisher;
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        publisher = new CoalescingPublisher();
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        when(messagingTemplate.getMessageConverter()).thenReturn(new SimpleMessageConverter());
+        setField(publisher, "messagingTemplate", messagingTemplate);
+        setField(publisher, "windowMs", 200L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.stop();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> sentPayloads(String destination, int expected) {
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, timeout(2000).times(expected)).send(eq(destination), captor.capture());
+        List<Object> payloads = new ArrayList<>();
+        captor.getAllValues().forEach(message -> payloads.add(message.getPayload()));
+        return payloads;
+    }
+
+    private void awaitNoActiveKeys() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!Integer.valueOf(0).equals(publisher.getStatistics().get("activeKeys"))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, publisher.getStatistics().get("activeKeys"));
+    }
+
+    // =========================================================================
+    // Tests pour publish
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour publish")
+    class PublishTests {
+
+        @Test
+        @DisplayName("Le premier message part immediatement, une rafale n'envoie ensuite que le plus recent")
+        void publish_Burst_LeadingThenLatest() {
+            publisher.start();
+
+            publisher.publish(TOPIC, "2026-10-19", "v1");
+            publisher.publish(TOPIC, "2026-10-19", "v2");
+            publisher.publish(TOPIC, "2026-10-19", "v3");
+
+            assertEquals(List.of("v1", "v3"), sentPayloads(TOPIC, 2));
+            Map<String, Object> stats = publisher.getStatistics();
+            assertEquals(3L, stats.get("published"));
+            assertEquals(2L, stats.get("sent"));
+            assertEquals(1L, stats.get("dropped"));
+            assertEquals(Map.of(TOPIC, 1L), stats.get("droppedByDestination"));
+        }
+
+        @Test
+        @DisplayName("Avec une fonction de fusion, les deltas de la fenetre sont combines")
+        void publish_WithMerge_CombinesDeltas() {
+            publisher.start();
+
+            publisher.publish(TOPIC, "k", "a", String::concat);
+            publisher.publish(TOPIC, "k", "b", String::concat);
+            publisher.publish(TOPIC, "k", "c", String::concat);
+
+            assertEquals(List.of("a", "bc"), sentPayloads(TOPIC, 2));
+            assertEquals(1L, publisher.getStatistics().get("merged"));
+            assertEquals(0L, publisher.getStatistics().get("dropped"));
+        }
+
+        @Test
+        @DisplayName("Des cles differentes ne sont pas regroupees")
+        void publish_DistinctKeys_AllSent() {
+            publisher.start();
+
+            publisher.publish(TOPIC, "2026-10-19", "jour1");
+            publisher.publish(TOPIC, "2026-10-20", "jour2");
+            publisher.publish("/topic/availability/2", "2026-10-19", "agence2");
+
+            assertEquals(List.of("jour1", "jour2"), sentPayloads(TOPIC, 2));
+            assertEquals(List.of("agence2"), sentPayloads("/topic/availability/2", 1));
+        }
+
+        @Test
+        @DisplayName("Regroupement desactive : chaque message est envoye")
+        void publish_Disabled_SendsEverything() throws Exception {
+            setField(publisher, "enabled", false);
+            publisher.start();
+
+            publisher.publish(TOPIC, "2026-10-19", "v1");
+            publisher.publish(TOPIC, "2026-10-19", "v2");
+
+            assertEquals(List.of("v1", "v2"), sentPayloads(TOPIC, 2));
+            assertEquals(false, publisher.getStatistics().get("enabled"));
+        }
+
+        @Test
+        @DisplayName("Une erreur d'envoi est comptee sans etre propagee")
+        void publish_SendFails_CountedAsFailure() {
+            doThrow(new RuntimeException("broker indisponible")).when(messagingTemplate).send(anyString(), any(Message.class));
+            publisher.start();
+
+            assertDoesNotThrow(() -> publisher.publish(TOPIC, "2026-10-19", "v1"));
+            assertEquals(1L, publisher.getStatistics().get("failures"));
+        }
+    }
+
+    // =========================================================================
+    // Tests pour la fin de fenetre
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour la fin de fenetre")
+    class FlushTests {
+
+        @Test
+        @DisplayName("Une cle est oubliee des qu'une fenetre se termine sans message")
+        void flush_IdleKeys_Removed() throws Exception {
+            publisher.start();
+
+            for (int day = 1; day <= 50; day++) {
+                publisher.publish(TOPIC, "2026-10-" + day, "v1");
+                publisher.publish(TOPIC, "2026-10-" + day, "v2");
+            }
+            assertEquals(50, publisher.getStatistics().get("activeKeys"));
+
+            sentPayloads(TOPIC, 100);
+            awaitNoActiveKeys();
+        }
+
+        @Test
+        @DisplayName("Apres l'oubli de la cle, le message suivant part immediatement")
+        void flush_AfterRemoval_NextMessageImmediate() throws Exception {
+            publisher.start();
+
+            publisher.publish(TOPIC, "2026-10-19", "v1");
+            awaitNoActiveKeys();
+            publisher.publish(TOPIC, "2026-10-19", "v2");
+
+            verify(messagingTemplate, times(2)).send(eq(TOPIC), any(Message.class));
+        }
+    }
+}
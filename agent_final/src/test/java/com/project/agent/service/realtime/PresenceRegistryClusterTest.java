@@ -0,0 +1,178 @@
+package com.project.agent.service.realtime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.project.agent.EmbeddedPostgresConfiguration;
+import com.project.agent.dto.PresenceChangeDTO;
+import com.project.agent.model.Users;
+import com.project.agent.repository.ClusterNodeRepository;
+import com.project.agent.repository.UserPresenceRepository;
+import com.project.agent.service.IdentityCache.Identity;
+import com.project.agent.service.cluster.ClusterMembership;
+import com.project.agent.service.cluster.ClusterMembership.Shard;
+
+/**
+ * Présence partagée entre deux instances (node-a et node-b) sur une base PostgreSQL réelle :
+ * chaque instance a son propre registre, node-a possède l'agence 1 et publie sa présence.
+ */
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.jpa.hibernate.ddl-auto=create-drop" })
+@Import(EmbeddedPostgresConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PresenceRegistryClusterTest {
+
+    private static final String TOPIC = "/topic/agency/1/presence";
+    private static final long NODE_TTL_SECONDS = 30;
+
+    private static final Identity AGENT = new Identity(3L, "agent@test.com", "Agent Test", Users.Role.AGENT, 7L, 1L);
+    private static final Identity CLIENT = new Identity(5L, "client@test.com", "Client", Users.Role.USER, null, null);
+
+    @Autowired
+    private UserPresenceRepository presenceRepository;
+
+    @Autowired
+    private ClusterNodeRepository clusterNodeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PresenceRegistry nodeA;
+    private PresenceRegistry nodeB;
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        clusterNodeRepository.heartbeat("node-a", "host-a");
+        clusterNodeRepository.heartbeat("node-b", "host-b");
+        nodeA = registry("node-a", true);
+        nodeB = registry("node-b", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+        presenceRepository.deleteAll();
+        clusterNodeRepository.deleteAll();
+    }
+
+    private PresenceRegistry registry(String nodeId, boolean ownsAgencies) throws Exception {
+        ClusterMembership membership = mock(ClusterMembership.class);
+        when(membership.isEnabled()).thenReturn(true);
+        when(membership.getInstanceId()).thenReturn(nodeId);
+        when(membership.getNodeTtlSeconds()).thenReturn(NODE_TTL_SECONDS);
+        when(membership.ownsAgency(anyLong())).thenReturn(ownsAgencies);
+        when(membership.getShard()).thenReturn(new Shard(ownsAgencies ? 0 : 1, 2, List.of("node-a", "node-b")));
+
+        PresenceRegistry registry = new PresenceRegistry();
+        setField(registry, "messagingTemplate", messagingTemplate);
+        setField(registry, "clusterMembership", membership);
+        setField(registry, "presenceRepository", presenceRepository);
+        // Synchronisations déclenchées par le test uniquement
+        setField(registry, "syncIntervalMs", TimeUnit.HOURS.toMillis(1));
+        registry.start();
+        return registry;
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Attend que les écritures de présence déjà soumises par l'instance soient passées
+     */
+    private void awaitStore(PresenceRegistry registry) throws Exception {
+        Field field = PresenceRegistry.class.getDeclaredField("presenceExecutor");
+        field.setAccessible(true);
+        ((ScheduledExecutorService) field.get(registry)).submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private List<PresenceChangeDTO> published(int expected) {
+        ArgumentCaptor<PresenceChangeDTO> captor = ArgumentCaptor.forClass(PresenceChangeDTO.class);
+        verify(messagingTemplate, times(expected)).convertAndSend(eq(TOPIC), captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    @DisplayName("Les compteurs portent sur les sessions de toutes les instances")
+    void counts_AcrossNodes() throws Exception {
+        nodeA.connect("a1", CLIENT);
+        nodeB.connect("b1", AGENT);
+        nodeB.connect("b2", AGENT);
+        awaitStore(nodeA);
+        awaitStore(nodeB);
+
+        assertEquals(2, nodeA.countOnlineUsers());
+        assertEquals(1, nodeA.countOnlineAgents());
+        assertTrue(nodeA.isOnline(7L));
+        assertEquals(2, nodeA.getOnlineAgents(1L).get(0).sessions());
+    }
+
+    @Test
+    @DisplayName("Un agent connecte a deux instances reste en ligne tant qu'une session est ouverte")
+    void agentOnTwoNodes_OnlineUntilLastSessionClosed() throws Exception {
+        nodeA.connect("a1", AGENT);
+        nodeB.connect("b1", AGENT);
+        awaitStore(nodeA);
+        awaitStore(nodeB);
+        nodeA.synchronize();
+        nodeB.synchronize();
+        assertEquals(List.of(7L), published(1).get(0).getOnline().stream().map(a -> a.agentId()).toList());
+
+        nodeA.disconnect("a1");
+        awaitStore(nodeA);
+        nodeA.synchronize();
+        assertTrue(nodeA.isOnline(7L));
+        published(1);
+
+        nodeB.disconnect("b1");
+        awaitStore(nodeB);
+        nodeA.synchronize();
+        PresenceChangeDTO offline = published(2).get(1);
+        assertEquals(List.of(7L), offline.getOffline());
+        assertEquals(0, offline.getOnlineCount());
+    }
+
+    @Test
+    @DisplayName("Les sessions d'une instance sans battement de coeur ne sont plus comptees")
+    void deadNode_SessionsDropped() throws Exception {
+        nodeB.connect("b1", AGENT);
+        awaitStore(nodeB);
+        nodeA.synchronize();
+        published(1);
+
+        jdbcTemplate.update("UPDATE cluster_node SET last_heartbeat = LOCALTIMESTAMP - interval '5 minutes' "
+                + "WHERE node_id = 'node-b'");
+        nodeA.synchronize();
+
+        assertEquals(List.of(7L), published(2).get(1).getOffline());
+        assertEquals(0, nodeA.countOnlineAgents());
+    }
+}
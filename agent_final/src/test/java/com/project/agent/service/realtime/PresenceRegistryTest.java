@@ -0,0 +1,161 @@
+package com.project.agent.service.realtime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.project.agent.dto.PresenceChangeDTO;
+import com.project.agent.model.Users;
+import com.project.agent.service.IdentityCache.Identity;
+import com.project.agent.service.realtime.PresenceRegistry.AgentPresence;
+
+class PresenceRegistryTest {
+
+    private static final String TOPIC = "/topic/agency/1/presence";
+
+    private static final Identity AGENT = new Identity(3L, "agent@test.com", "Agent Test", Users.Role.AGENT, 7L, 1L);
+    private static final Identity OTHER_AGENT = new Identity(4L, "autre@test.com", "Autre", Users.Role.AGENT, 8L, 2L);
+    private static final Identity CLIENT = new Identity(5L, "client@test.com", "Client", Users.Role.USER, null, null);
+
+    private PresenceRegistry registry;
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        registry = new PresenceRegistry();
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        setField(registry, "messagingTemplate", messagingTemplate);
+        setField(registry, "debounceMs", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+    }
+
+    /**
+     * Helper pour definir les champs prives via reflection.
+     */
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private List<PresenceChangeDTO> published(int expected) {
+        ArgumentCaptor<PresenceChangeDTO> captor = ArgumentCaptor.forClass(PresenceChangeDTO.class);
+        verify(messagingTemplate, timeout(2000).times(expected)).convertAndSend(eq(TOPIC), captor.capture());
+        return captor.getAllValues();
+    }
+
+    // =========================================================================
+    // Tests pour connect / disconnect
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour connect et disconnect")
+    class ConnectTests {
+
+        @Test
+        @DisplayName("Un agent avec deux sessions reste en ligne tant qu'une session est ouverte")
+        void connect_TwoSessions_OnlineUntilLastClosed() {
+            registry.start();
+
+            registry.connect("s1", AGENT);
+            registry.connect("s2", AGENT);
+            List<AgentPresence> online = registry.getOnlineAgents(1L);
+            assertEquals(1, online.size());
+            assertEquals(2, online.get(0).sessions());
+
+            registry.disconnect("s1");
+            assertTrue(registry.isOnline(7L));
+
+            registry.disconnect("s2");
+            assertFalse(registry.isOnline(7L));
+
+            List<PresenceChangeDTO> changes = published(2);
+            assertEquals(7L, changes.get(0).getOnline().get(0).agentId());
+            assertEquals(List.of(7L), changes.get(1).getOffline());
+            assertEquals(0, changes.get(1).getOnlineCount());
+        }
+
+        @Test
+        @DisplayName("Les utilisateurs et les agents sont comptes une fois, toutes sessions confondues")
+        void counts_DistinctUsersAndAgents() {
+            registry.start();
+
+            registry.connect("s1", AGENT);
+            registry.connect("s2", AGENT);
+            registry.connect("s3", OTHER_AGENT);
+            registry.connect("s4", CLIENT);
+            registry.connect("s5", CLIENT);
+
+            assertEquals(2, registry.countOnlineAgents());
+            assertEquals(3, registry.countOnlineUsers());
+            assertEquals(List.of(8L), registry.getOnlineAgents(2L).stream().map(AgentPresence::agentId).toList());
+            assertEquals(5, registry.getStatistics().get("sessions"));
+        }
+
+        @Test
+        @DisplayName("Une session inconnue ou deja fermee est ignoree")
+        void disconnect_UnknownSession_Ignored() {
+            registry.start();
+
+            registry.disconnect("inconnue");
+            registry.connect("s1", CLIENT);
+            registry.disconnect("s1");
+            registry.disconnect("s1");
+
+            assertEquals(0, registry.countOnlineUsers());
+            verifyNoInteractions(messagingTemplate);
+        }
+    }
+
+    // =========================================================================
+    // Tests pour l'agregation des changements
+    // =========================================================================
+    @Nested
+    @DisplayName("Tests pour l'agregation des changements")
+    class DebounceTests {
+
+        @Test
+        @DisplayName("Une vague de reconnexions dans la fenetre ne publie rien")
+        void reconnectWave_NoEvent() throws Exception {
+            registry.connect("s1", AGENT);
+            published(1);
+
+            setField(registry, "debounceMs", 200L);
+            registry.start();
+            registry.disconnect("s1");
+            registry.connect("s2", AGENT);
+
+            Thread.sleep(500);
+            verify(messagingTemplate, times(1)).convertAndSend(eq(TOPIC), any(Object.class));
+            assertEquals(1L, registry.getStatistics().get("eventsSuppressed"));
+        }
+
+        @Test
+        @DisplayName("Les connexions d'une meme agence dans la fenetre produisent un seul message")
+        void connections_WithinWindow_SingleEvent() throws Exception {
+            setField(registry, "debounceMs", 200L);
+            registry.start();
+
+            registry.connect("s1", AGENT);
+            registry.connect("s2", new Identity(6L, "agent2@test.com", "Agent 2", Users.Role.AGENT, 9L, 1L));
+
+            PresenceChangeDTO change = published(1).get(0);
+            assertEquals(List.of(7L, 9L), change.getOnline().stream().map(AgentPresence::agentId).sorted().toList());
+            assertEquals(2, change.getOnlineCount());
+        }
+    }
+}